@@ -0,0 +1,104 @@
+package com.xf.benchmark.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 端到端延迟统计
+ * <p>
+ * 发送方把 System.nanoTime() 写进 content（p / b 前缀区分私聊和广播），接收方收到后用同一个 JVM 的时钟相减，
+ * 因此发送和接收必须都在压测进程里，延迟包含两段网络往返和服务端的全部处理。
+ */
+public class LatencyRecorder {
+
+    private static final char PRIVATE = 'p';
+    private static final char BROADCAST = 'b';
+
+    private final Histogram privateLatency = new ConcurrentHistogram(3);
+    private final Histogram broadcastLatency = new ConcurrentHistogram(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder privateReceived = new LongAdder();
+    private final LongAdder broadcastReceived = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * 生成带发送时间戳的 content，长度补齐到 size
+     */
+    public String content(boolean broadcast, int size) {
+        StringBuilder content = new StringBuilder(Math.max(size, 24));
+        content.append(broadcast ? BROADCAST : PRIVATE).append(System.nanoTime()).append(':');
+        while (content.length() < size) {
+            content.append('x');
+        }
+        sent.increment();
+        return content.toString();
+    }
+
+    /**
+     * 收到一条消息的 content；不是压测发出的格式时忽略
+     */
+    public void received(String content) {
+        long now = System.nanoTime();
+        int colon = content == null ? -1 : content.indexOf(':');
+        if (colon < 2) {
+            return;
+        }
+        char kind = content.charAt(0);
+        long sentAt;
+        try {
+            sentAt = Long.parseLong(content, 1, colon, 10);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        long micros = Math.max(0, (now - sentAt) / 1000);
+        if (kind == PRIVATE) {
+            privateLatency.recordValue(micros);
+            privateReceived.increment();
+        } else if (kind == BROADCAST) {
+            broadcastLatency.recordValue(micros);
+            broadcastReceived.increment();
+        }
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    /**
+     * 预热结束后清空，只保留正式阶段的数据
+     */
+    public void reset() {
+        privateLatency.reset();
+        broadcastLatency.reset();
+        sent.reset();
+        privateReceived.reset();
+        broadcastReceived.reset();
+        errors.reset();
+    }
+
+    public Histogram getPrivateLatency() {
+        return privateLatency;
+    }
+
+    public Histogram getBroadcastLatency() {
+        return broadcastLatency;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getPrivateReceived() {
+        return privateReceived.sum();
+    }
+
+    public long getBroadcastReceived() {
+        return broadcastReceived.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,24 @@
+package com.xf.benchmark.load;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一个压测连接
+ */
+public interface LoadClient {
+
+    String getUid();
+
+    /**
+     * 握手并完成订阅，成功后 future 完成
+     */
+    CompletableFuture<Void> connect();
+
+    void sendPrivate(String toUser, String content) throws Exception;
+
+    void sendBroadcast(String content) throws Exception;
+
+    boolean isOpen();
+
+    void close();
+}
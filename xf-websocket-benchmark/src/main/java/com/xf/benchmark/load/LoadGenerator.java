@@ -0,0 +1,234 @@
+package com.xf.benchmark.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.benchmark.support.JwtTokens;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.HdrHistogram.Histogram;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 端到端 WebSocket 压测工具
+ * <p>
+ * 对本机（或指定地址）启动的 native / stomp 服务建立 N 个并发连接，按给定速率互发私聊和广播，输出：
+ * 1. 建连速率和失败数；
+ * 2. 建连前后服务端堆内存的差值，折算成每个连接的内存占用和每 GB 堆能承载的连接数（读 Actuator，受 GC 时机影响，
+ *    取多次采样的最小值）；原生模块以 reactive 模式运行时另外输出 Netty 池化直接内存的变化；
+ * 3. 私聊 / 广播的端到端延迟分布（HdrHistogram p50 / p99 / p999 / max）；
+ * 4. 带 --jwt-secret 时，建连期间服务端验签缓存的命中 / 未命中次数。
+ * <p>
+ * 运行: java -cp target/benchmarks.jar com.xf.benchmark.load.LoadGenerator --target=native --clients=5000 --rate=2000
+ */
+public class LoadGenerator {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int HEAP_SAMPLES = 5;
+    private static final int MAX_MESSAGE_BUFFER = 256 * 1024;
+    private static final double GIB = 1024.0 * 1024 * 1024;
+
+    private final LoadOptions options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final ServerProbe probe;
+    private final List<LoadClient> clients = new ArrayList<>();
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.probe = new ServerProbe(options.actuator(), objectMapper);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(LoadOptions.parse(args)).run();
+    }
+
+    public void run() throws Exception {
+        System.out.printf("== %s %s, %d clients, %d msg/s, broadcast ratio %.3f ==%n",
+                options.target(), options.url(), options.clients(), options.rate(), options.broadcastRatio());
+        OptionalLong heapBefore = sampleHeap();
+        OptionalLong directBefore = probe.directMemoryUsed();
+        OptionalLong hitsBefore = probe.count(authMetric("hits"));
+        OptionalLong missesBefore = probe.count(authMetric("misses"));
+
+        long connectStart = System.nanoTime();
+        int failed = connectAll();
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+        int connected = clients.size();
+        System.out.printf("connected %d, failed %d, %.1f conn/s (%.2f s)%n",
+                connected, failed, connected / connectSeconds, connectSeconds);
+        if (options.jwtSecret() != null) {
+            OptionalLong hits = probe.count(authMetric("hits"));
+            OptionalLong misses = probe.count(authMetric("misses"));
+            if (hits.isPresent() && misses.isPresent() && hitsBefore.isPresent() && missesBefore.isPresent()) {
+                System.out.printf("auth cache      hits %d, misses %d%n", hits.getAsLong() - hitsBefore.getAsLong(),
+                        misses.getAsLong() - missesBefore.getAsLong());
+            }
+        }
+        if (connected < 2) {
+            System.out.println("Not enough clients connected, is the server running?");
+            return;
+        }
+
+        // 等订阅在服务端生效、建连产生的临时对象被回收后再采样
+        TimeUnit.SECONDS.sleep(2);
+        OptionalLong heapAfter = sampleHeap();
+        OptionalLong directAfter = probe.directMemoryUsed();
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService senders = Executors.newFixedThreadPool(options.sendThreads());
+        double perTick = options.rate() * TICK_MILLIS / 1000.0;
+        double[] carry = new double[1];
+        ticker.scheduleAtFixedRate(() -> {
+            carry[0] += perTick;
+            int count = (int) carry[0];
+            carry[0] -= count;
+            for (int i = 0; i < count; i++) {
+                senders.execute(this::sendOne);
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        TimeUnit.MILLISECONDS.sleep(options.warmup().toMillis());
+        recorder.reset();
+        long runStart = System.nanoTime();
+        TimeUnit.MILLISECONDS.sleep(options.duration().toMillis());
+        ticker.shutdownNow();
+        senders.shutdown();
+        senders.awaitTermination(10, TimeUnit.SECONDS);
+        double runSeconds = (System.nanoTime() - runStart) / 1e9;
+        // 留出时间接收在途消息
+        TimeUnit.SECONDS.sleep(2);
+
+        report(heapBefore, heapAfter, directBefore, directAfter, connected, runSeconds);
+        clients.forEach(LoadClient::close);
+    }
+
+    private int connectAll() throws InterruptedException {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        // 服务端会把多条广播合并成一帧发送，客户端默认 8KB 的缓冲区不够
+        container.setDefaultMaxTextMessageBufferSize(MAX_MESSAGE_BUFFER);
+        StandardWebSocketClient webSocketClient = new StandardWebSocketClient(container);
+        WebSocketStompClient stompClient = new WebSocketStompClient(webSocketClient);
+        stompClient.setInboundMessageSizeLimit(MAX_MESSAGE_BUFFER);
+
+        Semaphore inFlight = new Semaphore(options.connectConcurrency());
+        CountDownLatch done = new CountDownLatch(options.clients());
+        AtomicInteger failed = new AtomicInteger();
+        List<LoadClient> all = new ArrayList<>(options.clients());
+        long tokenExp = tokenExpiry();
+        for (int i = 0; i < options.clients(); i++) {
+            String uid = options.uidPrefix() + i;
+            String token = options.jwtSecret() != null ? JwtTokens.hs256(options.jwtSecret(), uid, tokenExp) : null;
+            LoadClient client = LoadOptions.NATIVE.equals(options.target())
+                    ? new NativeLoadClient(uid, token, options.url(), webSocketClient, objectMapper, recorder)
+                    : new StompLoadClient(uid, token, options.url(), stompClient, objectMapper, recorder);
+            all.add(client);
+            inFlight.acquire();
+            client.connect().whenComplete((ignored, ex) -> {
+                if (ex != null) {
+                    failed.incrementAndGet();
+                }
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        for (LoadClient client : all) {
+            if (client.isOpen()) {
+                clients.add(client);
+            }
+        }
+        return failed.get();
+    }
+
+    /**
+     * 令牌过期时间取到整点之后一小时：同一小时内重复运行签出的令牌完全相同，第二次运行即可测到热缓存下的建连速率
+     */
+    private static long tokenExpiry() {
+        long hour = TimeUnit.HOURS.toSeconds(1);
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        return (now / hour + 2) * hour;
+    }
+
+    private static String authMetric(String result) {
+        return "xf.websocket.auth.cache." + result;
+    }
+
+    private void sendOne() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadClient sender = clients.get(random.nextInt(clients.size()));
+        boolean broadcast = random.nextDouble() < options.broadcastRatio();
+        try {
+            if (broadcast) {
+                sender.sendBroadcast(recorder.content(true, options.messageSize()));
+            } else {
+                LoadClient receiver;
+                do {
+                    receiver = clients.get(random.nextInt(clients.size()));
+                } while (receiver == sender);
+                sender.sendPrivate(receiver.getUid(), recorder.content(false, options.messageSize()));
+            }
+        } catch (Exception e) {
+            recorder.error();
+        }
+    }
+
+    private OptionalLong sampleHeap() throws InterruptedException {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < HEAP_SAMPLES; i++) {
+            OptionalLong used = probe.heapUsed();
+            if (used.isEmpty()) {
+                return OptionalLong.empty();
+            }
+            min = Math.min(min, used.getAsLong());
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        return OptionalLong.of(min);
+    }
+
+    private void report(OptionalLong heapBefore, OptionalLong heapAfter, OptionalLong directBefore,
+                        OptionalLong directAfter, int connected, double runSeconds) {
+        if (heapBefore.isPresent() && heapAfter.isPresent()) {
+            long delta = heapAfter.getAsLong() - heapBefore.getAsLong();
+            System.out.printf("server heap     %.1f MB -> %.1f MB, ~%.1f KB per connection, ~%.0f connections per GB%n",
+                    heapBefore.getAsLong() / 1048576.0, heapAfter.getAsLong() / 1048576.0,
+                    delta / 1024.0 / connected, delta > 0 ? connected * GIB / delta : Double.POSITIVE_INFINITY);
+        } else {
+            System.out.printf("server heap     n/a (%s/metrics not reachable)%n", options.actuator());
+        }
+        if (directBefore.isPresent() && directAfter.isPresent()) {
+            System.out.printf("server direct   %.1f MB -> %.1f MB (Netty pooled allocator)%n",
+                    directBefore.getAsLong() / 1048576.0, directAfter.getAsLong() / 1048576.0);
+        }
+        System.out.printf("messages        sent %d (%.1f/s), received private %d, broadcast %d, errors %d%n",
+                recorder.getSent(), recorder.getSent() / runSeconds,
+                recorder.getPrivateReceived(), recorder.getBroadcastReceived(), recorder.getErrors());
+        System.out.println("latency (ms)    p50      p99      p999     max      count");
+        printLatency("private", recorder.getPrivateLatency());
+        printLatency("broadcast", recorder.getBroadcastLatency());
+    }
+
+    private static void printLatency(String name, Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            System.out.printf("  %-13s-%n", name);
+            return;
+        }
+        System.out.printf("  %-13s%-9.2f%-9.2f%-9.2f%-9.2f%d%n", name,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,65 @@
+package com.xf.benchmark.load;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行格式为 --name=value
+ *
+ * @param target             native / stomp
+ * @param url                WebSocket 地址，为空时按 target 取本机默认端口
+ * @param actuator           Actuator 根地址，用来读取服务端堆内存；为空时由 url 推导
+ * @param clients            并发连接数
+ * @param connectConcurrency 建连阶段同时进行中的握手数上限
+ * @param rate               所有连接合计每秒发送的消息数
+ * @param broadcastRatio     广播消息占比，其余为随机挑选接收者的私聊
+ * @param messageSize        content 长度（字符）
+ * @param warmup             预热时长，期间的延迟不计入报告
+ * @param duration           正式发送时长
+ * @param sendThreads        发送线程数
+ * @param uidPrefix          压测用户名前缀
+ * @param jwtSecret          服务端的 HS256 密钥，非空时每个连接带上以 uid 为 sub 签发的令牌；为空时沿用 uid / username 明文
+ */
+public record LoadOptions(String target, URI url, URI actuator, int clients, int connectConcurrency, int rate,
+                          double broadcastRatio, int messageSize, Duration warmup, Duration duration,
+                          int sendThreads, String uidPrefix, String jwtSecret) {
+
+    public static final String NATIVE = "native";
+    public static final String STOMP = "stomp";
+
+    public static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg + ", expected --name=value");
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String target = values.getOrDefault("target", NATIVE);
+        if (!NATIVE.equals(target) && !STOMP.equals(target)) {
+            throw new IllegalArgumentException("--target must be native or stomp");
+        }
+        URI url = URI.create(values.getOrDefault("url",
+                NATIVE.equals(target) ? "ws://localhost:8081/ws/native" : "ws://localhost:8080/ws"));
+        String scheme = "wss".equals(url.getScheme()) ? "https" : "http";
+        URI actuator = URI.create(values.getOrDefault("actuator",
+                scheme + "://" + url.getHost() + ":" + url.getPort() + "/actuator"));
+        return new LoadOptions(
+                target,
+                url,
+                actuator,
+                Integer.parseInt(values.getOrDefault("clients", "1000")),
+                Integer.parseInt(values.getOrDefault("connect-concurrency", "200")),
+                Integer.parseInt(values.getOrDefault("rate", "1000")),
+                Double.parseDouble(values.getOrDefault("broadcast-ratio", "0.01")),
+                Integer.parseInt(values.getOrDefault("message-size", "64")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "5"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "30"))),
+                Integer.parseInt(values.getOrDefault("send-threads", "4")),
+                values.getOrDefault("uid-prefix", "load-"),
+                values.get("jwt-secret"));
+    }
+}
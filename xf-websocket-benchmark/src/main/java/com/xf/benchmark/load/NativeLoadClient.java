@@ -0,0 +1,130 @@
+package com.xf.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * /ws/native 压测连接：握手带 uid，收到带 seq 的单聊帧后按 index.html 的做法回 ack
+ * <p>
+ * 广播帧可能被服务端合并成 JSON 数组，逐个取出 content。
+ */
+public class NativeLoadClient extends TextWebSocketHandler implements LoadClient {
+
+    private static final int SEND_TIME_LIMIT = 10_000;
+    private static final int SEND_BUFFER_LIMIT = 1024 * 1024;
+
+    private final String uid;
+    private final URI url;
+    private final WebSocketClient client;
+    private final ObjectMapper objectMapper;
+    private final LatencyRecorder recorder;
+    private volatile WebSocketSession session;
+
+    /**
+     * @param token 握手带的 JWT，为空时只带 uid 参数（服务端需开启 allow-plain-user）
+     */
+    public NativeLoadClient(String uid, String token, URI url, WebSocketClient client, ObjectMapper objectMapper,
+                            LatencyRecorder recorder) {
+        this.uid = uid;
+        this.url = URI.create(url + (url.getQuery() == null ? "?" : "&")
+                + (token != null ? "token=" + token : "uid=" + uid));
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public String getUid() {
+        return uid;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        return client.execute(this, null, url)
+                .thenAccept(raw -> session = new ConcurrentWebSocketSessionDecorator(raw, SEND_TIME_LIMIT,
+                        SEND_BUFFER_LIMIT));
+    }
+
+    @Override
+    public void sendPrivate(String toUser, String content) throws IOException {
+        send("{\"toUser\":\"" + toUser + "\",\"type\":\"text\",\"content\":\"" + content + "\"}");
+    }
+
+    @Override
+    public void sendBroadcast(String content) throws IOException {
+        send("{\"toUser\":\"*\",\"type\":\"text\",\"content\":\"" + content + "\"}");
+    }
+
+    private void send(String payload) throws IOException {
+        WebSocketSession current = session;
+        if (current != null && current.isOpen()) {
+            current.sendMessage(new TextMessage(payload));
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(@NonNull WebSocketSession raw, TextMessage message) throws IOException {
+        JsonNode node = objectMapper.readTree(message.getPayload());
+        if (node.isArray()) {
+            for (JsonNode item : node) {
+                handleFrame(item);
+            }
+        } else {
+            handleFrame(node);
+        }
+    }
+
+    private void handleFrame(JsonNode node) throws IOException {
+        JsonNode content = node.get("content");
+        if (content == null) {
+            // 发送回执 / 续传回执
+            return;
+        }
+        recorder.received(content.asText());
+        JsonNode seq = node.get("seq");
+        if (seq != null) {
+            send("{\"type\":\"ack\",\"fromUser\":\"" + node.path("fromUser").asText() + "\",\"seq\":" + seq.asLong() + "}");
+        }
+    }
+
+    @Override
+    public void handleTransportError(@NonNull WebSocketSession raw, @NonNull Throwable exception) {
+        recorder.error();
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession raw, @NonNull CloseStatus status) {
+        if (status.getCode() != CloseStatus.NORMAL.getCode()) {
+            recorder.error();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        WebSocketSession current = session;
+        return current != null && current.isOpen();
+    }
+
+    @Override
+    public void close() {
+        WebSocketSession current = session;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // 压测结束，关闭失败无需处理
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.xf.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * 通过 Actuator 读取被测服务的堆内存占用和计数器
+ * <p>
+ * 服务端需要暴露 metrics 端点（两个模块的 application.yml 默认已开启）；读不到时返回空，报告中显示 n/a。
+ * 原生模块以 reactive 模式运行时，还能读到 Netty 池化分配器占用的直接内存。
+ */
+public class ServerProbe {
+
+    private final URI actuator;
+    private final URI heapUsed;
+    private final URI directMemoryUsed;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final ObjectMapper objectMapper;
+
+    public ServerProbe(URI actuator, ObjectMapper objectMapper) {
+        this.actuator = actuator;
+        this.heapUsed = URI.create(actuator + "/metrics/jvm.memory.used?tag=area:heap");
+        this.directMemoryUsed = URI.create(actuator + "/metrics/xf.native.reactive.direct.memory");
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 当前堆内存占用（字节）
+     */
+    public OptionalLong heapUsed() {
+        return read(heapUsed);
+    }
+
+    /**
+     * reactive 模式下 Netty 池化分配器占用的直接内存（字节），servlet 模式下为空
+     */
+    public OptionalLong directMemoryUsed() {
+        return read(directMemoryUsed);
+    }
+
+    /**
+     * 服务端某个计数器的当前值
+     */
+    public OptionalLong count(String metric) {
+        return read(URI.create(actuator + "/metrics/" + metric));
+    }
+
+    private OptionalLong read(URI uri) {
+        try {
+            HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5))
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                return OptionalLong.empty();
+            }
+            JsonNode measurements = objectMapper.readTree(response.body()).path("measurements");
+            return measurements.isEmpty()
+                    ? OptionalLong.empty()
+                    : OptionalLong.of(measurements.get(0).path("value").asLong());
+        } catch (Exception e) {
+            return OptionalLong.empty();
+        }
+    }
+}
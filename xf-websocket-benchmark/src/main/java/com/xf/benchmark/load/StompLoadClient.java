@@ -0,0 +1,135 @@
+package com.xf.benchmark.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * /ws 压测连接：CONNECT 帧带 Authorization 头（没有令牌时带 username 头），订阅公共频道和私聊队列
+ * <p>
+ * 私聊发到 /app/chat.private，广播发到 /app/chat.sendMessage，与页面上的用法一致。
+ */
+public class StompLoadClient extends StompSessionHandlerAdapter implements LoadClient {
+
+    private final String uid;
+    private final String token;
+    private final URI url;
+    private final WebSocketStompClient client;
+    private final ObjectMapper objectMapper;
+    private final LatencyRecorder recorder;
+    private volatile StompSession session;
+
+    /**
+     * @param token CONNECT 带的 JWT，为空时只带 username 头（服务端需开启 allow-plain-user）
+     */
+    public StompLoadClient(String uid, String token, URI url, WebSocketStompClient client, ObjectMapper objectMapper,
+                           LatencyRecorder recorder) {
+        this.uid = uid;
+        this.token = token;
+        this.url = url;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public String getUid() {
+        return uid;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        StompHeaders connectHeaders = new StompHeaders();
+        if (token != null) {
+            connectHeaders.add("Authorization", "Bearer " + token);
+        } else {
+            connectHeaders.add("username", uid);
+        }
+        return client.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, this)
+                .thenAccept(connected -> session = connected);
+    }
+
+    @Override
+    public void afterConnected(@NonNull StompSession stompSession, @NonNull StompHeaders connectedHeaders) {
+        stompSession.subscribe("/topic/public", this);
+        stompSession.subscribe("/user/queue/private", this);
+    }
+
+    @Override
+    public void sendPrivate(String toUser, String content) {
+        send("/app/chat.private", "{\"receiver\":\"" + toUser + "\",\"content\":\"" + content + "\"}");
+    }
+
+    @Override
+    public void sendBroadcast(String content) {
+        send("/app/chat.sendMessage",
+                "{\"type\":\"CHAT\",\"sender\":\"" + uid + "\",\"content\":\"" + content + "\"}");
+    }
+
+    /**
+     * StompSession 不保证多线程同时发送的安全，同一个连接上的发送串行化
+     */
+    private synchronized void send(String destination, String json) {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            current.send(headers, json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    @NonNull
+    public Type getPayloadType(@NonNull StompHeaders headers) {
+        return byte[].class;
+    }
+
+    @Override
+    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+        try {
+            JsonNode node = objectMapper.readTree((byte[]) payload);
+            recorder.received(node.path("content").asText(null));
+        } catch (IOException e) {
+            recorder.error();
+        }
+    }
+
+    @Override
+    public void handleException(@NonNull StompSession stompSession, StompCommand command,
+                                @NonNull StompHeaders headers, @NonNull byte[] payload, @NonNull Throwable exception) {
+        recorder.error();
+    }
+
+    @Override
+    public void handleTransportError(@NonNull StompSession stompSession, @NonNull Throwable exception) {
+        recorder.error();
+    }
+
+    @Override
+    public boolean isOpen() {
+        StompSession current = session;
+        return current != null && current.isConnected();
+    }
+
+    @Override
+    public void close() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.xf.benchmark.nativechat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.benchmark.support.NativeChatFixture;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import com.xf.nativechat.handler.MyNativeChatHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyNativeChatHandler 收消息的完整路径
+ * <p>
+ * 一次调用 = 流式解析 + 单聊投递（分配序号、入接收者出站队列）+ 集群转发判断 + 回执入发送者出站队列；
+ * 真正写 socket 由出站队列的发送线程完成，不计入耗时。
+ * 运行: java -jar target/benchmarks.jar ChatHandlerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ChatHandlerBenchmark {
+
+    /**
+     * content 长度（字符）
+     */
+    @Param({"32", "4096"})
+    public int contentLength;
+
+    private NativeChatFixture fixture;
+    private MyNativeChatHandler handler;
+    private StubWebSocketSession sender;
+    private TextMessage direct;
+    private TextMessage offline;
+    private TextMessage ping;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new NativeChatFixture();
+        handler = fixture.getHandler();
+        sender = fixture.connect("s-1001", "1001");
+        fixture.connect("s-1002", "1002");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String content = "x".repeat(contentLength);
+        direct = new TextMessage(objectMapper.writeValueAsString(
+                Map.of("toUser", "1002", "type", "text", "content", content, "msgId", "m-1")));
+        offline = new TextMessage(objectMapper.writeValueAsString(
+                Map.of("toUser", "2002", "type", "text", "content", content, "msgId", "m-2")));
+        ping = new TextMessage("ping");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    /**
+     * 接收者在线：单聊转发 + 回执
+     */
+    @Benchmark
+    public void directMessage() throws Exception {
+        handler.handleMessage(sender, direct);
+    }
+
+    /**
+     * 接收者不在线：存入离线收件箱（超过单用户上限后丢最旧的，稳态下每次一存一丢）
+     */
+    @Benchmark
+    public void offlineMessage() throws Exception {
+        handler.handleMessage(sender, offline);
+    }
+
+    /**
+     * 心跳：只更新活跃时间并回 pong
+     */
+    @Benchmark
+    public void ping() throws Exception {
+        handler.handleMessage(sender, ping);
+    }
+}
@@ -0,0 +1,96 @@
+package com.xf.benchmark.nativechat;
+
+import com.xf.benchmark.support.JwtTokens;
+import com.xf.websocket.core.auth.TokenAuthenticator;
+import com.xf.websocket.core.auth.VerifiedToken;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 握手认证的吞吐：冷缓存（每次都验签）对比热缓存（重连风暴时同一批令牌再次握手）
+ * <p>
+ * 测的是 {@link TokenAuthenticator#authenticate}，即握手拦截器里除取参数外的全部工作；STOMP 模块的 CONNECT 认证共用 xf-websocket-core 的同一个实现。
+ * cold 关闭缓存，每次调用都解析并验签；warm 预先认证过全部令牌，每次调用都命中缓存。
+ * 运行: java -jar target/benchmarks.jar HandshakeAuthBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandshakeAuthBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret";
+
+    @Param({"HS256", "RS256"})
+    public String alg;
+
+    @Param({"cold", "warm"})
+    public String cache;
+
+    /**
+     * 参与握手的不同令牌数（不同用户）
+     */
+    @Param({"10000"})
+    public int tokens;
+
+    private TokenAuthenticator authenticator;
+    private String[] pool;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchAlgorithmException {
+        XfWebSocketCoreProperties properties = new XfWebSocketCoreProperties();
+        XfWebSocketCoreProperties.Auth auth = properties.getAuth();
+        auth.setCacheMaxEntries("warm".equals(cache) ? tokens * 2 : 0);
+        auth.setCacheTtl(Duration.ofHours(1));
+
+        long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        pool = new String[tokens];
+        if ("RS256".equals(alg)) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair keyPair = generator.generateKeyPair();
+            auth.setRsaPublicKey(JwtTokens.pem(keyPair.getPublic()));
+            for (int i = 0; i < tokens; i++) {
+                pool[i] = JwtTokens.rs256(keyPair.getPrivate(), "u" + i, exp);
+            }
+        } else {
+            auth.setHmacSecret(SECRET);
+            for (int i = 0; i < tokens; i++) {
+                pool[i] = JwtTokens.hs256(SECRET, "u" + i, exp);
+            }
+        }
+        authenticator = new TokenAuthenticator(properties);
+        for (String token : pool) {
+            if (authenticator.authenticate(token) == null) {
+                throw new IllegalStateException("Token rejected during setup");
+            }
+        }
+    }
+
+    @Benchmark
+    public VerifiedToken authenticate() {
+        String token = pool[next];
+        next = next + 1 == pool.length ? 0 : next + 1;
+        return authenticator.authenticate(token);
+    }
+}
@@ -0,0 +1,110 @@
+package com.xf.benchmark.nativechat;
+
+import com.xf.websocket.core.support.StubWebSocketSession;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 僵尸连接检测在 1 万 ~ 100 万连接下的开销
+ * <p>
+ * legacyScan 为改造前的 cleanZombieSessions：每 30 秒遍历全部连接，从属性 Map 里取装箱的 lastHeartbeat 比较，
+ * 一次调用 = 一轮全量扫描。
+ * wheelTick 为 HeartbeatWheel 的一格（1 秒）：先按每 30 秒一次心跳的频率 touch 这一秒内收到心跳的连接，
+ * 再推进时间轮处理到期的槽；连接的活跃时间均匀分布，稳态下没有连接被关闭。
+ * 两者折算到同样的时间跨度时，wheelTick 需要乘以 30。
+ * 运行: java -jar target/benchmarks.jar HeartbeatSweepBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class HeartbeatSweepBenchmark {
+
+    private static final long TIMEOUT_MILLIS = 60_000;
+    private static final long TICK_MILLIS = 1_000;
+    private static final int HEARTBEAT_TICKS = 30;
+
+    @Param({"10000", "100000", "1000000"})
+    public int sessions;
+
+    private Map<String, WebSocketSession> legacySessions;
+    private HeartbeatWheel wheel;
+    private HeartbeatWheel.Entry[] entries;
+    private long now;
+    private int touchCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        now = System.currentTimeMillis();
+        legacySessions = new ConcurrentHashMap<>(sessions * 2);
+        for (int i = 0; i < sessions; i++) {
+            WebSocketSession session = StubWebSocketSession.counting("legacy-" + i, "u" + i);
+            session.getAttributes().put("lastHeartbeat", now);
+            legacySessions.put("u" + i, session);
+        }
+
+        // 分 TIMEOUT / TICK 批注册，让连接的到期时间均匀落在各个槽里
+        wheel = new HeartbeatWheel(TIMEOUT_MILLIS, TICK_MILLIS, false);
+        entries = new HeartbeatWheel.Entry[sessions];
+        int batches = (int) (TIMEOUT_MILLIS / TICK_MILLIS);
+        for (int i = 0; i < sessions; i++) {
+            entries[i] = wheel.register(StubWebSocketSession.counting("wheel-" + i, "u" + i));
+            if ((i + 1) % Math.max(1, sessions / batches) == 0) {
+                now += TICK_MILLIS;
+                wheel.tick(now);
+            }
+        }
+        now += TICK_MILLIS;
+        wheel.tick(now);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Benchmark
+    public int legacyScan() {
+        long current = System.currentTimeMillis();
+        int[] zombies = new int[1];
+        legacySessions.forEach((uid, session) -> {
+            Long lastHeartbeat = (Long) session.getAttributes().get("lastHeartbeat");
+            if (lastHeartbeat != null && (current - lastHeartbeat > TIMEOUT_MILLIS)) {
+                zombies[0]++;
+            }
+        });
+        return zombies[0];
+    }
+
+    @Benchmark
+    public void wheelTick() {
+        int heartbeats = Math.max(1, sessions / HEARTBEAT_TICKS);
+        for (int i = 0; i < heartbeats; i++) {
+            wheel.touch(entries[touchCursor]);
+            if (++touchCursor == entries.length) {
+                touchCursor = 0;
+            }
+        }
+        now += TICK_MILLIS;
+        wheel.tick(now);
+    }
+}
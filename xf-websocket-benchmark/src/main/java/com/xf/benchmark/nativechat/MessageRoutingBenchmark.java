@@ -0,0 +1,106 @@
+package com.xf.benchmark.nativechat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.nativechat.protocol.ChatMessageCodec;
+import com.xf.websocket.core.session.SplicedTextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站消息路由：改造前的 readTree + HashMap + writeValueAsString 对比流式解析
+ * <p>
+ * 重点看 gc.alloc.rate.norm（每条消息分配的字节数）:
+ * java -jar target/benchmarks.jar MessageRoutingBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MessageRoutingBenchmark {
+
+    /**
+     * content 长度（字符）：短文本 / 64KB / 5MB base64 图片
+     */
+    @Param({"32", "65536", "5242880"})
+    public int contentLength;
+
+    private static final Writer NULL_WRITER = Writer.nullWriter();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder content = new StringBuilder("data:image/png;base64,");
+        while (content.length() < contentLength) {
+            content.append("iVBORw0KGgoAAAANSUhEUgAA");
+        }
+        content.setLength(contentLength);
+        Map<String, Object> message = new HashMap<>();
+        message.put("toUser", "1002");
+        message.put("type", contentLength > 1024 ? "image" : "text");
+        message.put("content", content.toString());
+        payload = objectMapper.writeValueAsString(message);
+    }
+
+    /**
+     * 改造前 MyNativeChatHandler.handleTextMessage 的做法
+     */
+    @Benchmark
+    public String legacyTreeRoute() throws IOException {
+        JsonNode json = objectMapper.readTree(payload);
+        if (json.has("toUser") && json.has("content")) {
+            String toUser = json.get("toUser").asText();
+            String content = json.get("content").asText();
+            String type = json.has("type") ? json.get("type").asText() : "text";
+
+            Map<String, Object> msgMap = new HashMap<>();
+            msgMap.put("fromUser", "1001");
+            msgMap.put("content", content);
+            msgMap.put("type", type);
+            return toUser + objectMapper.writeValueAsString(msgMap);
+        }
+        return null;
+    }
+
+    /**
+     * 流式解析头部 + content 原样拷贝进新字符串（广播路径）
+     */
+    @Benchmark
+    public String streamingRoute() throws IOException {
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        return ChatMessageCodec.forward("1001", header, payload);
+    }
+
+    /**
+     * 流式解析头部 + 拼接帧直接写出（单聊路径），content 零拷贝
+     * <p>
+     * 用 Writer.nullWriter() 代替容器的 sendWriter，只统计路由本身的分配
+     */
+    @Benchmark
+    public SplicedTextMessage splicedRoute() throws IOException {
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        SplicedTextMessage frame = ChatMessageCodec.forwardFrame("1001", header, payload);
+        frame.writeTo(NULL_WRITER);
+        return frame;
+    }
+}
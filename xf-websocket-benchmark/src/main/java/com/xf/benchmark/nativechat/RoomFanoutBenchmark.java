@@ -0,0 +1,113 @@
+package com.xf.benchmark.nativechat;
+
+import com.xf.websocket.core.support.StubWebSocketSession;
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.nativechat.room.RoomRegistry;
+import com.xf.websocket.core.session.SessionRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 房间内发送时遍历成员的开销，以及加入 / 退出房间的吞吐
+ * <p>
+ * 节点上共有 rooms 个房间（除被测房间外每个房间 2 个成员），被测房间有 members 个成员连接。
+ * legacyFanout 为原来的做法：房间成员以 uid 集合保存，每条消息复制一份成员列表，再逐个到 SessionRegistry 查连接。
+ * 只统计遍历成员本身，不含入队（入队开销见 SendToUserBenchmark）。
+ * 运行: java -jar target/benchmarks.jar RoomFanoutBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+@State(Scope.Benchmark)
+public class RoomFanoutBenchmark {
+
+    private static final String ROOM = "big";
+
+    /**
+     * 被测房间的成员连接数
+     */
+    @Param({"1000", "100000"})
+    public int members;
+
+    /**
+     * 节点上的房间总数
+     */
+    @Param({"100000"})
+    public int rooms;
+
+    private RoomRegistry roomRegistry;
+    private SessionRegistry sessionRegistry;
+    private Set<String> legacyMembers;
+    private WebSocketSession[] sessions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        roomRegistry = new RoomRegistry(new NativeWebSocketProperties());
+        sessionRegistry = new SessionRegistry();
+        legacyMembers = ConcurrentHashMap.newKeySet();
+        sessions = new WebSocketSession[members];
+        for (int i = 0; i < members; i++) {
+            String uid = "u" + i;
+            sessions[i] = StubWebSocketSession.counting(String.valueOf(i), uid);
+            sessionRegistry.register(uid, sessions[i]);
+            roomRegistry.join(sessions[i], ROOM);
+            legacyMembers.add(uid);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int r = 1; r < rooms; r++) {
+            for (int k = 0; k < 2; k++) {
+                roomRegistry.join(sessions[random.nextInt(members)], "room-" + r);
+            }
+        }
+    }
+
+    @Benchmark
+    public int roomFanout(Blackhole blackhole) {
+        return roomRegistry.forEachMember(ROOM, null, blackhole::consume);
+    }
+
+    @Benchmark
+    public int legacyFanout(Blackhole blackhole) {
+        List<String> snapshot = new ArrayList<>(legacyMembers);
+        int visited = 0;
+        for (String uid : snapshot) {
+            for (WebSocketSession session : sessionRegistry.getSessions(uid)) {
+                blackhole.consume(session);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    @Benchmark
+    public boolean joinLeave() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        WebSocketSession session = sessions[random.nextInt(members)];
+        String room = "churn-" + random.nextInt(1024);
+        roomRegistry.join(session, room);
+        return roomRegistry.leave(session, room);
+    }
+}
@@ -0,0 +1,80 @@
+package com.xf.benchmark.nativechat;
+
+import com.xf.benchmark.support.NativeChatFixture;
+import com.xf.nativechat.handler.MyNativeChatHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个业务线程同时调用 sendToUser 的吞吐
+ * <p>
+ * users=1 时所有线程都往同一个用户的出站队列里写，是锁竞争最激烈的情况；users 越大竞争越分散。
+ * 每个用户 devices 个端在线，一次调用会入队 devices 次。
+ * 运行: java -jar target/benchmarks.jar SendToUserBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(4)
+@State(Scope.Benchmark)
+public class SendToUserBenchmark {
+
+    /**
+     * 消息目标用户数
+     */
+    @Param({"1", "1000"})
+    public int users;
+
+    /**
+     * 每个用户同时在线的端数
+     */
+    @Param({"2"})
+    public int devices;
+
+    private NativeChatFixture fixture;
+    private MyNativeChatHandler handler;
+    private String[] uids;
+    private TextMessage message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new NativeChatFixture();
+        handler = fixture.getHandler();
+        uids = new String[users];
+        for (int i = 0; i < users; i++) {
+            uids[i] = "u" + i;
+            for (int d = 0; d < devices; d++) {
+                fixture.connect(i + "-" + d, uids[i]);
+            }
+        }
+        message = new TextMessage("{\"fromUser\":\"system\",\"type\":\"text\",\"content\":\"hello\"}");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void sendToUser() {
+        handler.sendToUser(uids[ThreadLocalRandom.current().nextInt(uids.length)], message);
+    }
+}
@@ -0,0 +1,132 @@
+package com.xf.benchmark.nativechat;
+
+import com.xf.websocket.core.support.StubWebSocketSession;
+import com.xf.websocket.core.session.SessionRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SessionRegistry 查询与上下线吞吐
+ * <p>
+ * legacy* 为改造前的 uid -> Session 单值 ConcurrentHashMap，作为对照组。
+ * 运行: java -jar target/benchmarks.jar SessionRegistryBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SessionRegistryBenchmark {
+
+    /**
+     * 在线用户数
+     */
+    @Param({"10000", "100000"})
+    public int users;
+
+    /**
+     * 每个用户同时在线的端数
+     */
+    @Param({"2"})
+    public int devices;
+
+    private String[] uids;
+    private SessionRegistry registry;
+    private Map<String, WebSocketSession> legacy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        uids = new String[users];
+        registry = new SessionRegistry();
+        legacy = new ConcurrentHashMap<>();
+        for (int i = 0; i < users; i++) {
+            uids[i] = "u" + i;
+            for (int d = 0; d < devices; d++) {
+                StubWebSocketSession session = StubWebSocketSession.counting(i + "-" + d, uids[i]);
+                registry.register(uids[i], session);
+                legacy.put(uids[i], session);
+            }
+        }
+    }
+
+    /**
+     * 每个线程自己的一批会话，用于上下线基准，避免在测量时分配对象
+     */
+    @State(Scope.Thread)
+    public static class Churn {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private WebSocketSession[] sessions;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int thread = THREADS.incrementAndGet();
+            sessions = new WebSocketSession[1024];
+            for (int i = 0; i < sessions.length; i++) {
+                sessions[i] = StubWebSocketSession.counting("churn-" + thread + "-" + i);
+            }
+        }
+
+        WebSocketSession next() {
+            return sessions[next++ & (sessions.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public WebSocketSession[] lookup() {
+        return registry.getSessions(uids[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    @Benchmark
+    public boolean churn(Churn churn) {
+        String uid = uids[ThreadLocalRandom.current().nextInt(users)];
+        WebSocketSession session = churn.next();
+        registry.register(uid, session);
+        return registry.unregister(uid, session.getId());
+    }
+
+    @Benchmark
+    public int onlineCount() {
+        return registry.getOnlineUserCount();
+    }
+
+    @Benchmark
+    public WebSocketSession legacyLookup() {
+        return legacy.get(uids[ThreadLocalRandom.current().nextInt(users)]);
+    }
+
+    @Benchmark
+    public boolean legacyChurn(Churn churn) {
+        String uid = uids[ThreadLocalRandom.current().nextInt(users)];
+        WebSocketSession session = churn.next();
+        legacy.put(uid, session);
+        return legacy.remove(uid, session);
+    }
+
+    @Benchmark
+    public int legacyOnlineCount() {
+        return legacy.size();
+    }
+}
@@ -0,0 +1,107 @@
+package com.xf.benchmark.stomp;
+
+import com.xf.chat.broker.IndexedSubscriptionRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SimpleBroker 广播一条消息给一个目的地上全部订阅者的耗时
+ * <p>
+ * 一次调用 = 查订阅表 + 为每个订阅者复制一份消息头 + 发到 clientOutboundChannel。
+ * clientOutboundChannel 换成只计数的通道，不做 STOMP 编码和 socket 写入（编码开销见 StompCodecBenchmark）。
+ * 运行: java -jar target/benchmarks.jar BrokerFanoutBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BrokerFanoutBenchmark {
+
+    private static final String DESTINATION = "/topic/public";
+
+    /**
+     * 目的地上的订阅者数
+     */
+    @Param({"10", "1000", "10000"})
+    public int subscribers;
+
+    @Param({"default", "indexed"})
+    public String registryType;
+
+    private final LongAdder delivered = new LongAdder();
+    private SimpleBrokerMessageHandler broker;
+    private Message<byte[]> message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MessageChannel clientOutboundChannel = (msg, timeout) -> {
+            delivered.increment();
+            return true;
+        };
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutboundChannel,
+                new ExecutorSubscribableChannel(), List.of("/topic", "/queue"));
+        if ("indexed".equals(registryType)) {
+            broker.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+        }
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            // 代理只给 CONNECT 过的会话投递
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId("s" + i);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            accessor.setSessionId("s" + i);
+            accessor.setSubscriptionId("sub-0");
+            accessor.setDestination(DESTINATION);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(DESTINATION);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        byte[] payload = "{\"type\":\"CHAT\",\"content\":\"hello\",\"sender\":\"alice\"}".getBytes(StandardCharsets.UTF_8);
+        message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        // 去掉 CONNECT_ACK，只统计广播
+        delivered.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.stop();
+        if (delivered.sum() == 0) {
+            throw new IllegalStateException("no message was delivered, check the broker setup");
+        }
+    }
+
+    @Benchmark
+    public void fanout() {
+        broker.handleMessage(message);
+    }
+}
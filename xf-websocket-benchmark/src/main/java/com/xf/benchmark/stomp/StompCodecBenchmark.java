@@ -0,0 +1,133 @@
+package com.xf.benchmark.stomp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.chat.codec.ChatBinaryCodec;
+import com.xf.chat.model.ChatMessage;
+import com.xf.chat.model.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * STOMP 模块单条消息的编解码开销
+ * <p>
+ * serialize / deserialize：ChatMessage 与 JSON 之间的转换（@MessageMapping 入参和 convertAndSend 都要走一次）；
+ * encode / decode：STOMP MESSAGE 帧与字节之间的转换（每个订阅者的每条出站消息都要 encode 一次）；
+ * binary*：同样的消息用二进制格式（{@link ChatBinaryCodec}）编解码，transcode 为出站通道上 JSON 直接转二进制的开销。
+ * 两种格式的 payload 和整帧大小由 ChatBinaryCodecTest 检查，这里只测耗时。
+ * 运行: java -jar target/benchmarks.jar StompCodecBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StompCodecBenchmark {
+
+    /**
+     * content 长度（字符）
+     */
+    @Param({"32", "4096"})
+    public int contentLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StompEncoder encoder = new StompEncoder();
+    private final StompDecoder decoder = new StompDecoder();
+
+    private ChatMessage chatMessage;
+    private byte[] json;
+    private Message<byte[]> frame;
+    private byte[] encoded;
+    private byte[] binary;
+    private Message<byte[]> binaryFrame;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        chatMessage = ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .sender("alice")
+                .receiver("bob")
+                .content("x".repeat(contentLength))
+                .build();
+        json = objectMapper.writeValueAsBytes(chatMessage);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/public");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId("a1b2c3d4-0");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setContentLength(json.length);
+        frame = MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+        encoded = encoder.encode(frame);
+
+        binary = ChatBinaryCodec.encode(chatMessage);
+        StompHeaderAccessor binaryAccessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        binaryAccessor.setDestination("/topic/public");
+        binaryAccessor.setSubscriptionId("sub-0");
+        binaryAccessor.setMessageId("a1b2c3d4-0");
+        binaryAccessor.setContentType(ChatBinaryCodec.MIME_TYPE);
+        binaryFrame = MessageBuilder.createMessage(binary, binaryAccessor.getMessageHeaders());
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(chatMessage);
+    }
+
+    @Benchmark
+    public ChatMessage deserialize() throws IOException {
+        return objectMapper.readValue(json, ChatMessage.class);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return ChatBinaryCodec.encode(chatMessage);
+    }
+
+    @Benchmark
+    public ChatMessage binaryDeserialize() {
+        return ChatBinaryCodec.decode(binary);
+    }
+
+    @Benchmark
+    public byte[] transcode() throws IOException {
+        return ChatBinaryCodec.transcodeJson(json);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return encoder.encode(binaryFrame);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(frame);
+    }
+
+    @Benchmark
+    public List<Message<byte[]>> decode() {
+        return decoder.decode(ByteBuffer.wrap(encoded));
+    }
+}
@@ -0,0 +1,160 @@
+package com.xf.benchmark.stomp;
+
+import com.xf.chat.broker.IndexedSubscriptionRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SimpleBroker 订阅表的查询与订阅变动吞吐
+ * <p>
+ * default 为 Spring 自带的 DefaultSubscriptionRegistry（缓存上限 1024 个目的地），indexed 为 IndexedSubscriptionRegistry。
+ * 订阅均匀分布在 subscriptions / 10 个房间上，每个房间 10 个订阅者，查询随机挑房间。
+ * mixed 组模拟线上场景：3 个线程不停查询投递，1 个线程不停订阅/退订。
+ * 运行: java -jar target/benchmarks.jar SubscriptionRegistryBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubscriptionRegistryBenchmark {
+
+    private static final int ROOM_SIZE = 10;
+
+    @Param({"10000", "100000"})
+    public int subscriptions;
+
+    @Param({"default", "indexed"})
+    public String registryType;
+
+    private SubscriptionRegistry registry;
+    private Message<byte[]>[] lookups;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        registry = "default".equals(registryType) ? new DefaultSubscriptionRegistry() : new IndexedSubscriptionRegistry();
+        int rooms = subscriptions / ROOM_SIZE;
+        lookups = new Message[rooms];
+        for (int room = 0; room < rooms; room++) {
+            String destination = "/topic/room/" + room;
+            lookups[room] = message(destination);
+            for (int i = 0; i < ROOM_SIZE; i++) {
+                registry.registerSubscription(subscribe("s" + room + "-" + i, "sub-0", destination));
+            }
+        }
+    }
+
+    /**
+     * 每个线程自己的一批会话，订阅和退订交替进行，不在测量时分配消息
+     */
+    @State(Scope.Thread)
+    public static class Churn {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private Message<byte[]>[] subscribes;
+        private Message<byte[]>[] unsubscribes;
+        private boolean[] subscribed;
+        private int next;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setUp(SubscriptionRegistryBenchmark benchmark) {
+            int thread = THREADS.incrementAndGet();
+            int size = 1024;
+            int rooms = benchmark.subscriptions / ROOM_SIZE;
+            subscribes = new Message[size];
+            unsubscribes = new Message[size];
+            subscribed = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                String session = "churn-" + thread + "-" + i;
+                subscribes[i] = subscribe(session, "sub-0", "/topic/room/" + ThreadLocalRandom.current().nextInt(rooms));
+                unsubscribes[i] = unsubscribe(session, "sub-0");
+            }
+        }
+
+        void step(SubscriptionRegistry registry) {
+            int i = next;
+            next = (i + 1) & (subscribes.length - 1);
+            if (subscribed[i]) {
+                registry.unregisterSubscription(unsubscribes[i]);
+            } else {
+                registry.registerSubscription(subscribes[i]);
+            }
+            subscribed[i] = !subscribed[i];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public MultiValueMap<String, String> find() {
+        return registry.findSubscriptions(lookups[ThreadLocalRandom.current().nextInt(lookups.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void churn(Churn churn) {
+        churn.step(registry);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public MultiValueMap<String, String> mixedFind() {
+        return find();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedChurn(Churn churn) {
+        churn.step(registry);
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> subscribe(String session, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(session);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> unsubscribe(String session, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(session);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
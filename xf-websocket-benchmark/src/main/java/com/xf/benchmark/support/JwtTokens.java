@@ -0,0 +1,62 @@
+package com.xf.benchmark.support;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * 压测用的 JWT 签发（HS256 / RS256）
+ * <p>
+ * 线上的令牌由认证服务签发，这里只是让基准和压测工具能带上服务端认可的令牌。
+ */
+public final class JwtTokens {
+
+    private static final Base64.Encoder URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private JwtTokens() {
+    }
+
+    public static String hs256(String secret, String subject, long expSeconds) {
+        String signingInput = signingInput("HS256", subject, expSeconds);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return signingInput + "." + URL_ENCODER.encodeToString(
+                    mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String rs256(PrivateKey key, String subject, long expSeconds) {
+        String signingInput = signingInput("RS256", subject, expSeconds);
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(key);
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + URL_ENCODER.encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 公钥转成服务端 rsa-public-key 配置项接受的 PEM
+     */
+    public static String pem(PublicKey key) {
+        return "-----BEGIN PUBLIC KEY-----\n" + Base64.getMimeEncoder().encodeToString(key.getEncoded())
+                + "\n-----END PUBLIC KEY-----";
+    }
+
+    private static String signingInput(String alg, String subject, long expSeconds) {
+        String header = "{\"alg\":\"" + alg + "\",\"typ\":\"JWT\"}";
+        String claims = "{\"sub\":\"" + subject + "\",\"exp\":" + expSeconds + "}";
+        return URL_ENCODER.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + URL_ENCODER.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,98 @@
+package com.xf.benchmark.support;
+
+import com.xf.nativechat.cluster.ClusterRouter;
+import com.xf.nativechat.cluster.InMemoryPresenceDirectory;
+import com.xf.nativechat.cluster.LoopbackClusterTransport;
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.nativechat.handler.MyNativeChatHandler;
+import com.xf.nativechat.metrics.NativeChatMetrics;
+import com.xf.nativechat.room.RoomRegistry;
+import com.xf.nativechat.session.DeliveryTracker;
+import com.xf.nativechat.session.FrameCompressor;
+import com.xf.nativechat.store.MessageStore;
+import com.xf.nativechat.store.OfflineInbox;
+import com.xf.nativechat.store.PersistencePipeline;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import com.xf.websocket.core.session.SessionRegistry;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * 不启动 Spring 容器，按 Bean 的依赖关系手工装配 MyNativeChatHandler
+ * <p>
+ * 持久化关闭（没有 MessageStore），集群为单节点回环，限流额度调到不会触发（仍然走一遍令牌桶）；其余组件与线上一致，包括它们各自的后台线程，
+ * 用完需要 {@link #close()}。
+ */
+public class NativeChatFixture implements AutoCloseable {
+
+    private final OutboundQueueManager outboundQueueManager;
+    private final HeartbeatWheel heartbeatWheel;
+    private final ClusterRouter clusterRouter;
+    private final PersistencePipeline persistencePipeline;
+    private final OfflineInbox offlineInbox;
+    private final DeliveryTracker deliveryTracker;
+    private final RateLimiter rateLimiter;
+    private final RoomRegistry roomRegistry;
+    private final MyNativeChatHandler handler;
+
+    public NativeChatFixture() {
+        this(new NativeWebSocketProperties(), new XfWebSocketCoreProperties());
+    }
+
+    public NativeChatFixture(NativeWebSocketProperties properties, XfWebSocketCoreProperties coreProperties) {
+        properties.getPersistence().setEnabled(false);
+        XfWebSocketCoreProperties.Limit unlimited = new XfWebSocketCoreProperties.Limit(1e9, 1_000_000_000,
+                DataSize.ofGigabytes(1024), DataSize.ofGigabytes(1024));
+        coreProperties.getRateLimit().setSession(unlimited);
+        coreProperties.getRateLimit().setUser(unlimited);
+        coreProperties.getRateLimit().setAck(unlimited);
+        SessionRegistry sessionRegistry = new SessionRegistry();
+        this.outboundQueueManager = new OutboundQueueManager(coreProperties);
+        this.heartbeatWheel = new HeartbeatWheel(coreProperties);
+        this.clusterRouter = new ClusterRouter(properties, sessionRegistry, new InMemoryPresenceDirectory(),
+                new LoopbackClusterTransport(new LoopbackClusterTransport.Hub()));
+        this.persistencePipeline = new PersistencePipeline(properties,
+                new StaticListableBeanFactory().getBeanProvider(MessageStore.class));
+        this.offlineInbox = new OfflineInbox(properties);
+        this.deliveryTracker = new DeliveryTracker(properties);
+        this.rateLimiter = new RateLimiter(coreProperties);
+        this.roomRegistry = new RoomRegistry(properties);
+        this.handler = new MyNativeChatHandler(sessionRegistry, outboundQueueManager, heartbeatWheel, clusterRouter,
+                persistencePipeline, offlineInbox, deliveryTracker, new NativeChatMetrics(new SimpleMeterRegistry()),
+                rateLimiter, roomRegistry, new FrameCompressor(properties), properties);
+        handler.init();
+    }
+
+    public MyNativeChatHandler getHandler() {
+        return handler;
+    }
+
+    public RoomRegistry getRoomRegistry() {
+        return roomRegistry;
+    }
+
+    /**
+     * 模拟一个用户上线（走 afterConnectionEstablished，会话被出站队列装饰并注册）
+     */
+    public StubWebSocketSession connect(String sessionId, String uid) {
+        StubWebSocketSession session = StubWebSocketSession.counting(sessionId, uid);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        outboundQueueManager.shutdown();
+        heartbeatWheel.shutdown();
+        clusterRouter.shutdown();
+        persistencePipeline.shutdown();
+        offlineInbox.shutdown();
+        deliveryTracker.shutdown();
+        rateLimiter.shutdown();
+    }
+}
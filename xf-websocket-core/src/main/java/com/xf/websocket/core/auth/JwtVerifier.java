@@ -0,0 +1,197 @@
+package com.xf.websocket.core.auth;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * JWT 验签（HS256 / RS256），只依赖 JDK 和 jackson-core
+ * <p>
+ * 只做 WebSocket 握手需要的部分：校验签名、exp / nbf（允许时钟偏差）、可选的 iss，取出 sub 作为用户 ID。
+ * 算法以服务端配置的密钥为准，令牌头里的 alg 只用来选择已配置的一种，不接受 none，也不会拿 RSA 公钥当 HMAC 密钥用。
+ * <p>
+ * Mac / Signature 不是线程安全的，每个线程各持有一份。
+ */
+@Slf4j
+public final class JwtVerifier {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Base64.Decoder URL_DECODER = Base64.getUrlDecoder();
+
+    private static final String HS256 = "HS256";
+    private static final String RS256 = "RS256";
+
+    private final ThreadLocal<Mac> hmac;
+    private final ThreadLocal<Signature> rsa;
+    private final PublicKey rsaPublicKey;
+    private final String issuer;
+    private final long clockSkewMillis;
+
+    /**
+     * @param hmacSecret   HS256 密钥，为空时不接受 HS256
+     * @param rsaPublicKey RS256 公钥（PEM 或 Base64 的 X.509），为空时不接受 RS256
+     * @param issuer       要求的 iss，为空时不校验
+     */
+    public JwtVerifier(String hmacSecret, String rsaPublicKey, String issuer, Duration clockSkew) {
+        this.hmac = isEmpty(hmacSecret) ? null : hmac(hmacSecret.getBytes(StandardCharsets.UTF_8));
+        this.rsaPublicKey = isEmpty(rsaPublicKey) ? null : parsePublicKey(rsaPublicKey);
+        this.rsa = this.rsaPublicKey == null ? null : ThreadLocal.withInitial(JwtVerifier::newRsaSignature);
+        this.issuer = isEmpty(issuer) ? null : issuer;
+        this.clockSkewMillis = clockSkew.toMillis();
+    }
+
+    /**
+     * 是否配置了任何一种验签密钥
+     */
+    public boolean isConfigured() {
+        return hmac != null || rsa != null;
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @return 签名或声明不合法时返回 null
+     */
+    public VerifiedToken verify(String token, long nowMillis) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            log.debug("Malformed token");
+            return null;
+        }
+        try {
+            String alg = readAlg(URL_DECODER.decode(token.substring(0, firstDot)));
+            byte[] signingInput = token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII);
+            byte[] signature = URL_DECODER.decode(token.substring(secondDot + 1));
+            if (!verifySignature(alg, signingInput, signature)) {
+                log.debug("Token signature rejected, alg: {}", alg);
+                return null;
+            }
+            return readClaims(URL_DECODER.decode(token.substring(firstDot + 1, secondDot)), nowMillis);
+        } catch (IllegalArgumentException | IOException | GeneralSecurityException e) {
+            log.debug("Invalid token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean verifySignature(String alg, byte[] signingInput, byte[] signature)
+            throws GeneralSecurityException {
+        if (HS256.equals(alg) && hmac != null) {
+            byte[] expected = hmac.get().doFinal(signingInput);
+            // 定长比较，不泄露匹配到第几个字节
+            return MessageDigest.isEqual(expected, signature);
+        }
+        if (RS256.equals(alg) && rsa != null) {
+            Signature verifier = rsa.get();
+            verifier.initVerify(rsaPublicKey);
+            verifier.update(signingInput);
+            return verifier.verify(signature);
+        }
+        return false;
+    }
+
+    private static String readAlg(byte[] header) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(header)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("alg".equals(field) && token == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    private VerifiedToken readClaims(byte[] payload, long nowMillis) throws IOException {
+        String subject = null;
+        String iss = null;
+        long exp = Long.MAX_VALUE;
+        long nbf = Long.MIN_VALUE;
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "sub" -> subject = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "iss" -> iss = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "exp" -> exp = token.isNumeric() ? parser.getLongValue() * 1000 : exp;
+                    case "nbf" -> nbf = token.isNumeric() ? parser.getLongValue() * 1000 : nbf;
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (subject == null || subject.isEmpty()) {
+            log.debug("Token has no subject");
+            return null;
+        }
+        if (exp != Long.MAX_VALUE && nowMillis - clockSkewMillis >= exp) {
+            log.debug("Token of {} expired", subject);
+            return null;
+        }
+        if (nbf != Long.MIN_VALUE && nowMillis + clockSkewMillis < nbf) {
+            log.debug("Token of {} not yet valid", subject);
+            return null;
+        }
+        if (issuer != null && !issuer.equals(iss)) {
+            log.debug("Token of {} has unexpected issuer {}", subject, iss);
+            return null;
+        }
+        return new VerifiedToken(subject, exp);
+    }
+
+    private static ThreadLocal<Mac> hmac(byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret, "HmacSHA256");
+        return ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+    }
+
+    private static Signature newRsaSignature() {
+        try {
+            return Signature.getInstance("SHA256withRSA");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA256withRSA not available", e);
+        }
+    }
+
+    private static PublicKey parsePublicKey(String pem) {
+        String base64 = pem.replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "").replaceAll("\\s", "");
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid RSA public key", e);
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isBlank();
+    }
+}
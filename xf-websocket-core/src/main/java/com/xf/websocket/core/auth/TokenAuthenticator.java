@@ -0,0 +1,72 @@
+package com.xf.websocket.core.auth;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌认证（原生模块的握手、STOMP 的 CONNECT）：先查验签缓存，未命中再验签并写入缓存
+ */
+@Slf4j
+public class TokenAuthenticator {
+
+    private final JwtVerifier verifier;
+    private final TokenCache cache;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public TokenAuthenticator(XfWebSocketCoreProperties properties) {
+        XfWebSocketCoreProperties.Auth auth = properties.getAuth();
+        // 配置绑定时解析不了的占位符会原样保留，不拦下来就会拿 "${...}" 当密钥启动
+        if (auth.getHmacSecret() != null && auth.getHmacSecret().startsWith("${")) {
+            throw new IllegalStateException("xf.websocket.core.auth.hmac-secret is not resolved: "
+                    + auth.getHmacSecret() + ", provide it through the environment");
+        }
+        this.verifier = new JwtVerifier(auth.getHmacSecret(), auth.getRsaPublicKey(), auth.getIssuer(),
+                auth.getClockSkew());
+        this.cache = new TokenCache(auth.getCacheMaxEntries(), auth.getCacheTtl().toMillis());
+        if (!verifier.isConfigured() && !auth.isAllowPlainUser()) {
+            log.warn("No token key configured (xf.websocket.core.auth.hmac-secret / rsa-public-key), "
+                    + "every connection will be rejected");
+        }
+    }
+
+    /**
+     * @return 令牌不合法时返回 null
+     */
+    public VerifiedToken authenticate(String token) {
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = cache.get(token, now);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        VerifiedToken verified = verifier.verify(token, now);
+        if (verified == null) {
+            failures.increment();
+            return null;
+        }
+        cache.put(token, verified, now);
+        return verified;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+}
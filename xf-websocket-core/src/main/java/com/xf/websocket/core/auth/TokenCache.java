@@ -0,0 +1,87 @@
+package com.xf.websocket.core.auth;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 验签结果缓存：有界、按条目过期
+ * <p>
+ * 发版或网络抖动后大量客户端带着同一个令牌重连，缓存命中时握手不再做签名运算（RS256 一次验签是几十微秒级的 CPU）。
+ * 1. Key 是完整的令牌字符串，只有逐字节相同的令牌才会命中，不存在“签名相同、声明被篡改”的问题；
+ * 2. 条目的过期时间取 min(令牌 exp, 写入时间 + ttl)，过期的令牌不会因为缓存而继续有效；
+ * 3. 条目数达到上限时先清理过期条目，仍然不够就随机淘汰一成，读路径上没有锁也没有 LRU 链表的维护开销。
+ */
+public final class TokenCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // Key: 完整令牌
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 同一时刻只有一个线程做淘汰，其他线程这次不写缓存
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param maxEntries 最大条数，0 表示不缓存
+     */
+    public TokenCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return 未命中或已过期时返回 null
+     */
+    public VerifiedToken get(String token, long nowMillis) {
+        Entry entry = entries.get(token);
+        if (entry == null) {
+            return null;
+        }
+        if (nowMillis >= entry.expiresAt) {
+            entries.remove(token, entry);
+            return null;
+        }
+        return entry.token;
+    }
+
+    public void put(String token, VerifiedToken verified, long nowMillis) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        long expiresAt = Math.min(verified.expiresAtMillis(), nowMillis + ttlMillis);
+        if (expiresAt <= nowMillis) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !evict(nowMillis)) {
+            return;
+        }
+        entries.put(token, new Entry(verified, expiresAt));
+    }
+
+    private boolean evict(long nowMillis) {
+        if (!evicting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            entries.values().removeIf(entry -> nowMillis >= entry.expiresAt);
+            int target = maxEntries - Math.max(1, maxEntries / 10);
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > target && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            return true;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(VerifiedToken token, long expiresAt) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.xf.websocket.core.auth;
+
+/**
+ * 验签通过的令牌
+ *
+ * @param subject         用户 ID（sub）
+ * @param expiresAtMillis 过期时间（exp，毫秒），令牌没有 exp 时为 Long.MAX_VALUE
+ */
+public record VerifiedToken(String subject, long expiresAtMillis) {
+}
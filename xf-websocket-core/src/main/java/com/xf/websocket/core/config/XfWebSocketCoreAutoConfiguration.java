@@ -0,0 +1,84 @@
+package com.xf.websocket.core.config;
+
+import com.xf.websocket.core.auth.TokenAuthenticator;
+import com.xf.websocket.core.drain.ConnectionDrainer;
+import com.xf.websocket.core.drain.DrainHandler;
+import com.xf.websocket.core.metrics.XfWebSocketMetricsBinder;
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import com.xf.websocket.core.session.SessionRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * WebSocket 公共组件的自动配置
+ * <p>
+ * 引入 xf-websocket-core 即注册会话注册表、心跳时间轮、出站队列、令牌认证、限流和停机排空，配置在 xf.websocket.core.* 下；
+ * 使用方声明同类型的 Bean 即可替换。停机排空的重连提示与协议有关，由使用方提供 {@link DrainHandler}，没有时只关闭不提示。
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(XfWebSocketCoreProperties.class)
+public class XfWebSocketCoreAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SessionRegistry sessionRegistry() {
+        return new SessionRegistry();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HeartbeatWheel heartbeatWheel(XfWebSocketCoreProperties properties) {
+        return new HeartbeatWheel(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OutboundQueueManager outboundQueueManager(XfWebSocketCoreProperties properties) {
+        return new OutboundQueueManager(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TokenAuthenticator tokenAuthenticator(XfWebSocketCoreProperties properties) {
+        return new TokenAuthenticator(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimiter rateLimiter(XfWebSocketCoreProperties properties) {
+        return new RateLimiter(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ConnectionDrainer connectionDrainer(OutboundQueueManager outboundQueueManager,
+                                               ObjectProvider<DrainHandler> drainHandler,
+                                               XfWebSocketCoreProperties properties) {
+        return new ConnectionDrainer(outboundQueueManager,
+                drainHandler.getIfAvailable(() -> (session, afterMillis) -> null), properties);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public XfWebSocketMetricsBinder xfWebSocketMetricsBinder(OutboundQueueManager outboundQueueManager,
+                                                                 HeartbeatWheel heartbeatWheel,
+                                                                 TokenAuthenticator tokenAuthenticator,
+                                                                 RateLimiter rateLimiter,
+                                                                 ConnectionDrainer connectionDrainer) {
+            return new XfWebSocketMetricsBinder(outboundQueueManager, heartbeatWheel, tokenAuthenticator,
+                    rateLimiter, connectionDrainer);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.xf.websocket.core.config;
+
+import com.xf.websocket.core.ratelimit.RateLimitAction;
+import com.xf.websocket.core.session.OverflowPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * WebSocket 公共组件配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.core.* 配置项，原生模块和 STOMP 模块共用同一套键。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.core")
+public class XfWebSocketCoreProperties {
+
+    /**
+     * 出站发送队列配置
+     */
+    private final Outbound outbound = new Outbound();
+
+    /**
+     * 心跳/僵尸连接检测配置
+     */
+    private final Heartbeat heartbeat = new Heartbeat();
+
+    /**
+     * 令牌认证配置
+     */
+    private final Auth auth = new Auth();
+
+    /**
+     * 入站限流配置
+     */
+    private final RateLimit rateLimit = new RateLimit();
+
+    /**
+     * 停机排空配置
+     */
+    private final Drain drain = new Drain();
+
+    @Data
+    public static class Outbound {
+
+        /**
+         * 每个会话最多排队的消息条数
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * 每个会话排队消息的总大小上限
+         */
+        private DataSize bufferSizeLimit = DataSize.ofMegabytes(16);
+
+        /**
+         * 单次写 socket 允许的最长耗时，超过后认为对端是慢连接并关闭；也是关闭连接前等待队列发完的上限
+         */
+        private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+        /**
+         * 队列溢出时的处理策略
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+        /**
+         * 负责写 socket 的线程数，0 表示 CPU 核数 * 2
+         */
+        private int drainThreads = 0;
+
+        /**
+         * 单个会话一次最多连续发送的条数，发完后让出线程，避免一个会话长期霸占发送线程
+         */
+        private int drainBatchSize = 64;
+
+        /**
+         * 广播消息的攒批窗口：窗口内同一会话排队的多条小消息合并成一个帧发送，0 表示不等待
+         */
+        private Duration coalesceWindow = Duration.ofMillis(5);
+
+        /**
+         * 合并帧的最大大小，0 表示关闭合并
+         */
+        private DataSize coalesceMaxFrameSize = DataSize.ofKilobytes(64);
+    }
+
+    @Data
+    public static class Heartbeat {
+
+        /**
+         * 超过该时长没有收到任何消息，视为僵尸连接并关闭
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+
+        /**
+         * 时间轮每格的时长，也是超时判断的精度
+         */
+        private Duration tick = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Auth {
+
+        /**
+         * HS256 签名密钥，为空时不接受 HS256 令牌
+         */
+        private String hmacSecret = "";
+
+        /**
+         * RS256 验签公钥（X.509 PEM，或去掉首尾行的 Base64），为空时不接受 RS256 令牌
+         */
+        private String rsaPublicKey = "";
+
+        /**
+         * 要求的签发方（iss），为空时不校验
+         */
+        private String issuer = "";
+
+        /**
+         * 校验 exp / nbf 时允许的时钟偏差
+         */
+        private Duration clockSkew = Duration.ofSeconds(30);
+
+        /**
+         * 是否允许不带令牌、直接声明用户（原生模块的 uid 参数、STOMP 的 username 头），仅用于本地开发和演示页面
+         */
+        private boolean allowPlainUser = false;
+
+        /**
+         * 验签结果缓存的最大条数，0 表示不缓存
+         */
+        private int cacheMaxEntries = 100_000;
+
+        /**
+         * 验签结果的缓存时长，实际不会超过令牌本身的 exp
+         */
+        private Duration cacheTtl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class RateLimit {
+
+        /**
+         * 是否对入站消息限流
+         */
+        private boolean enabled = true;
+
+        /**
+         * 单个连接的限额
+         */
+        private Limit session = new Limit(20, 40, DataSize.ofKilobytes(256), DataSize.ofMegabytes(1));
+
+        /**
+         * 单个用户（所有连接合计）的限额
+         */
+        private Limit user = new Limit(50, 100, DataSize.ofMegabytes(1), DataSize.ofMegabytes(4));
+
+        /**
+         * 单个连接的 ack 限额，只限条数：ack 的数量取决于别人发来多少，不占上面的发送额度，单独放宽计数
+         */
+        private Limit ack = new Limit(200, 400, null, null);
+
+        /**
+         * 超限后的处理方式
+         */
+        private RateLimitAction action = RateLimitAction.THROTTLE;
+
+        /**
+         * THROTTLE 模式下连续被拒绝多少条后关闭连接，0 表示从不关闭
+         */
+        private int closeAfterViolations = 200;
+
+        /**
+         * 用户维度的令牌桶空闲（已回满）多久后回收
+         */
+        private Duration idleTimeout = Duration.ofMinutes(5);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        /**
+         * 每秒补充的消息数，0 表示不限制条数
+         */
+        private double messagesPerSecond;
+
+        /**
+         * 允许的突发条数（桶容量）
+         */
+        private int messageBurst;
+
+        /**
+         * 每秒补充的字节数，0 表示不限制流量
+         */
+        private DataSize bytesPerSecond;
+
+        /**
+         * 允许的突发字节数，需不小于单条消息的最大长度，否则超长消息永远无法通过
+         */
+        private DataSize byteBurst;
+    }
+
+    @Data
+    public static class Drain {
+
+        /**
+         * 停机时是否分批排空连接；关闭后由容器一次性断开所有连接
+         */
+        private boolean enabled = true;
+
+        /**
+         * 排空的总时长上限，超过后剩余连接一次性关闭，停机最多因此多等这么久
+         */
+        private Duration timeout = Duration.ofSeconds(20);
+
+        /**
+         * 每秒关闭的连接数上限，按集群握手路径能承受的重连速率设置；连接太多、超时前关不完时自动加大批次
+         */
+        private int reconnectRate = 500;
+
+        /**
+         * 两批之间的间隔
+         */
+        private Duration batchInterval = Duration.ofMillis(100);
+
+        /**
+         * 重连提示里的随机退避上限，客户端在 [0, reconnect-jitter) 内随机等待后再重连
+         */
+        private Duration reconnectJitter = Duration.ofSeconds(5);
+
+        /**
+         * 关闭前等待出站队列发完的最长时间
+         */
+        private Duration flushTimeout = Duration.ofSeconds(2);
+    }
+}
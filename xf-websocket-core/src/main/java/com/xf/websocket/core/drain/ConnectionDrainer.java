@@ -0,0 +1,199 @@
+package com.xf.websocket.core.drain;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import com.xf.websocket.core.session.QueuedSessionDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 停机排空
+ * <p>
+ * 原来停机时容器一次性关掉所有连接，客户端同时重连，全部压到其他节点的握手和验签上。这里在 Spring 开始停止各组件之前（ContextClosedEvent）：
+ * 1. 进入排空状态，使用方据 {@link #isDraining()} 拒绝新连接（原生握手返回 503 和 Retry-After，STOMP 拒绝 CONNECT）；
+ * 2. 把 {@link OutboundQueueManager} 上注册的连接按批次关闭，每秒关闭的连接数不超过 reconnect-rate，超时前关不完时自动加大批次；
+ * 3. 每个连接先收到 {@link DrainHandler} 给出的重连提示，等待时间在 [0, reconnect-jitter) 内随机，同一批的客户端错开重连；
+ * 4. 提示入队后等出站队列发完（最多 flush-timeout），再以 1012（Service Restart）关闭。
+ * <p>
+ * 没有注册到出站队列的连接（例如原生模块的媒体通道）仍由容器在停机时关闭。
+ */
+@Slf4j
+public class ConnectionDrainer {
+
+    private static final long FLUSH_POLL_MILLIS = 10;
+
+    private final OutboundQueueManager outboundQueueManager;
+    private final DrainHandler drainHandler;
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final int reconnectRate;
+    private final long batchIntervalMillis;
+    private final long reconnectJitterMillis;
+    private final long flushTimeoutMillis;
+
+    private volatile boolean draining;
+    private final LongAdder drainedCount = new LongAdder();
+
+    public ConnectionDrainer(OutboundQueueManager outboundQueueManager, DrainHandler drainHandler,
+                             XfWebSocketCoreProperties properties) {
+        this.outboundQueueManager = outboundQueueManager;
+        this.drainHandler = drainHandler;
+        XfWebSocketCoreProperties.Drain config = properties.getDrain();
+        this.enabled = config.isEnabled();
+        this.timeoutMillis = config.getTimeout().toMillis();
+        this.reconnectRate = Math.max(1, config.getReconnectRate());
+        this.batchIntervalMillis = Math.max(1, config.getBatchInterval().toMillis());
+        this.reconnectJitterMillis = config.getReconnectJitter().toMillis();
+        this.flushTimeoutMillis = config.getFlushTimeout().toMillis();
+    }
+
+    @EventListener
+    public void onContextClosed(ContextClosedEvent event) {
+        if (enabled) {
+            drain();
+        }
+    }
+
+    /**
+     * 是否已进入排空状态，此后应拒绝新的连接
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * 拒绝连接时建议客户端等待的秒数
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(reconnectJitterMillis));
+    }
+
+    /**
+     * 分批关闭当前所有连接，阻塞到全部关闭或超时
+     */
+    public void drain() {
+        draining = true;
+        List<QueuedSessionDecorator> sessions = new ArrayList<>(outboundQueueManager.getSessionCount());
+        outboundQueueManager.forEachSession(sessions::add);
+        if (sessions.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int batchSize = batchSize(sessions.size(), reconnectRate, batchIntervalMillis, timeoutMillis);
+        log.info("Draining {} sessions, {} per batch", sessions.size(), batchSize);
+
+        int from = 0;
+        while (from < sessions.size()) {
+            long batchStart = System.nanoTime();
+            // 超时后剩下的一次关完，不再拖住停机
+            int to = batchStart - deadline >= 0 ? sessions.size() : Math.min(sessions.size(), from + batchSize);
+            List<QueuedSessionDecorator> batch = sessions.subList(from, to);
+            long flushTimeout = Math.min(flushTimeoutMillis,
+                    Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - batchStart)));
+            // 提示要排在已发出的消息之后，先等上游把消息交到会话的出站队列
+            if (!drainHandler.awaitUpstream(flushTimeout)) {
+                closeAll(sessions.subList(from, sessions.size()));
+                return;
+            }
+            for (QueuedSessionDecorator session : batch) {
+                hint(session);
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (!awaitFlushed(batch, Math.min(flushTimeoutMillis, Math.max(0, remaining)))) {
+                closeAll(sessions.subList(from, sessions.size()));
+                return;
+            }
+            closeAll(batch);
+            from = to;
+            if (from < sessions.size()
+                    && !pause(batchIntervalMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart))) {
+                closeAll(sessions.subList(from, sessions.size()));
+                return;
+            }
+        }
+        log.info("Drained {} sessions", sessions.size());
+    }
+
+    /**
+     * 每批关闭的连接数：不超过 reconnect-rate 对应的数量，但要保证超时前能关完
+     */
+    static int batchSize(int sessions, int reconnectRate, long batchIntervalMillis, long timeoutMillis) {
+        int byRate = (int) Math.max(1, (long) reconnectRate * batchIntervalMillis / 1000);
+        long batches = Math.max(1, timeoutMillis / batchIntervalMillis);
+        int byDeadline = (int) ((sessions + batches - 1) / batches);
+        return Math.max(byRate, byDeadline);
+    }
+
+    private void hint(QueuedSessionDecorator session) {
+        long after = reconnectJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(reconnectJitterMillis) : 0;
+        try {
+            WebSocketMessage<?> message = drainHandler.reconnectHint(session, after);
+            if (message != null) {
+                session.sendMessage(message);
+            }
+        } catch (Exception e) {
+            log.debug("Send reconnect hint to {} failed: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 等待这一批连接的出站队列发完
+     *
+     * @return 线程被中断时返回 false
+     */
+    private boolean awaitFlushed(List<QueuedSessionDecorator> batch, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int index = 0;
+        while (index < batch.size()) {
+            QueuedSessionDecorator session = batch.get(index);
+            if (session.isOpen() && !session.isFlushed() && System.nanoTime() - deadline < 0) {
+                if (!pause(FLUSH_POLL_MILLIS)) {
+                    return false;
+                }
+            } else {
+                index++;
+            }
+        }
+        return true;
+    }
+
+    private void closeAll(List<QueuedSessionDecorator> sessions) {
+        for (QueuedSessionDecorator session : sessions) {
+            try {
+                session.close(CloseStatus.SERVICE_RESTARTED);
+                drainedCount.increment();
+            } catch (Exception e) {
+                log.debug("Close session {} failed: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private static boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 排空过程中主动关闭的连接数
+     */
+    public long getDrainedCount() {
+        return drainedCount.sum();
+    }
+}
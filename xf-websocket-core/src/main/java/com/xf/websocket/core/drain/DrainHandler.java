@@ -0,0 +1,29 @@
+package com.xf.websocket.core.drain;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 停机排空时与协议相关的部分，由使用方提供
+ * <p>
+ * 原生模块发一条 {"type":"reconnect","after":N}，STOMP 模块发一个带 reconnect-after 头的 ERROR 帧。
+ */
+public interface DrainHandler {
+
+    /**
+     * 关闭前发给客户端的重连提示
+     *
+     * @param afterMillis 建议客户端等待多久再重连
+     * @return 为 null 时不发提示，直接关闭
+     */
+    WebSocketMessage<?> reconnectHint(WebSocketSession session, long afterMillis);
+
+    /**
+     * 每批关闭前等待还没进入会话出站队列的消息（例如 STOMP 出站通道线程池里排队的）
+     *
+     * @return 线程被中断时返回 false
+     */
+    default boolean awaitUpstream(long timeoutMillis) {
+        return true;
+    }
+}
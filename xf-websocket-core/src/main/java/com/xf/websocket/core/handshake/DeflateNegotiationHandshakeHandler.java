@@ -0,0 +1,127 @@
+package com.xf.websocket.core.handshake;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 控制 permessage-deflate 协商的握手处理器
+ * <p>
+ * 浏览器默认都会请求 permessage-deflate，容器（Tomcat）只要支持就会答应。
+ * 容器升级时直接读取请求头，这里在交给容器之前改写客户端的扩展请求头：
+ * 1. 端点配置为不压缩（如媒体通道）时直接去掉该扩展；
+ * 2. 按请求判断不该协商时也去掉，例如原生模块中客户端已选择应用层压缩（compress 参数），避免同一条消息被压缩两次；
+ * 3. 不保留压缩上下文时补上 server_no_context_takeover，容器据此每条消息重置压缩窗口。
+ */
+public class DeflateNegotiationHandshakeHandler extends DefaultHandshakeHandler {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    public DeflateNegotiationHandshakeHandler(boolean enabled, boolean contextTakeover) {
+        this(enabled, contextTakeover, request -> true);
+    }
+
+    /**
+     * @param deflateAllowed enabled 时再按请求判断是否允许协商，返回 false 的请求去掉该扩展
+     */
+    public DeflateNegotiationHandshakeHandler(boolean enabled, boolean contextTakeover,
+                                              Predicate<ServerHttpRequest> deflateAllowed) {
+        super(new ExtensionFilteringUpgradeStrategy(new StandardWebSocketUpgradeStrategy(), enabled, contextTakeover,
+                deflateAllowed));
+    }
+
+    /**
+     * Tomcat 升级时直接从 HttpServletRequest 读取扩展请求头，与 Spring 选出的扩展无关，只能包装请求改写请求头
+     */
+    private record ExtensionFilteringUpgradeStrategy(RequestUpgradeStrategy delegate, boolean enabled,
+                                                     boolean contextTakeover,
+                                                     Predicate<ServerHttpRequest> deflateAllowed)
+            implements RequestUpgradeStrategy {
+
+        @Override
+        @NonNull
+        public String[] getSupportedVersions() {
+            return delegate.getSupportedVersions();
+        }
+
+        @Override
+        @NonNull
+        public List<WebSocketExtension> getSupportedExtensions(@NonNull ServerHttpRequest request) {
+            return delegate.getSupportedExtensions(request);
+        }
+
+        @Override
+        public void upgrade(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+                @Nullable String selectedProtocol, @NonNull List<WebSocketExtension> selectedExtensions,
+                @Nullable Principal user, @NonNull WebSocketHandler wsHandler, @NonNull Map<String, Object> attributes)
+                throws HandshakeFailureException {
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                HttpServletRequest original = servletRequest.getServletRequest();
+                String extensions = filterExtensions(original.getHeaders(EXTENSIONS_HEADER),
+                        enabled && deflateAllowed.test(request), contextTakeover);
+                request = new ServletServerHttpRequest(new HttpServletRequestWrapper(original) {
+                    @Override
+                    public String getHeader(String name) {
+                        return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? extensions : super.getHeader(name);
+                    }
+
+                    @Override
+                    public Enumeration<String> getHeaders(String name) {
+                        if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                            return extensions == null ? Collections.emptyEnumeration()
+                                    : Collections.enumeration(List.of(extensions));
+                        }
+                        return super.getHeaders(name);
+                    }
+                });
+            }
+            delegate.upgrade(request, response, selectedProtocol, selectedExtensions, user, wsHandler, attributes);
+        }
+    }
+
+    private static String filterExtensions(Enumeration<String> headers, boolean allowDeflate,
+            boolean contextTakeover) {
+        StringBuilder out = new StringBuilder();
+        while (headers.hasMoreElements()) {
+            for (WebSocketExtension extension : WebSocketExtension.parseExtensions(headers.nextElement())) {
+                boolean deflate = PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName());
+                if (deflate && !allowDeflate) {
+                    continue;
+                }
+                if (!out.isEmpty()) {
+                    out.append(", ");
+                }
+                out.append(extension.getName());
+                extension.getParameters().forEach((key, value) -> {
+                    out.append("; ").append(key);
+                    if (value != null && !value.isEmpty()) {
+                        out.append('=').append(value);
+                    }
+                });
+                if (deflate && !contextTakeover && !extension.getParameters().containsKey(SERVER_NO_CONTEXT_TAKEOVER)) {
+                    out.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+                }
+            }
+        }
+        return out.isEmpty() ? null : out.toString();
+    }
+}
@@ -0,0 +1,331 @@
+package com.xf.websocket.core.inbox;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 离线收件箱的堆外存储，原生模块和 STOMP 模块共用，各自只负责回放时怎么投递
+ * <p>
+ * 1. 每个用户的收件箱是一块按需扩容的堆外内存（direct ByteBuffer），条目为 expireAt(long) | length(int) | 消息字节，
+ * 不为每条消息创建对象，10 万离线用户也不会给 GC 增加负担；
+ * 2. 单个用户超过条数 / 字节上限时丢弃最旧的；总上限按各收件箱缓冲区的容量（实际申请的堆外内存）计，
+ * 新建或扩容会超过总上限时拒绝新消息，消息被取走一部分时容量仍计入，收件箱清空释放后才归还；
+ * 3. 同一收件箱内条目按时间追加，过期的一定在最前面，清理时只需从头截掉；
+ * 4. 回放先 {@link #peek} 复制不移除，投递出去之后再按 {@link Cursor} {@link #remove}，投递失败的留在收件箱。
+ * <p>
+ * 所有收件箱的读写都在 ConcurrentHashMap 的桶锁内进行，收件箱清空后移除，堆外内存随之释放。
+ */
+public class MailboxStore {
+
+    private static final int ENTRY_HEADER = 12;
+    private static final int MIN_CAPACITY = 64;
+
+    private final long ttlMillis;
+    private final int maxMessagesPerUser;
+    private final int maxBytesPerUser;
+    private final long maxTotalBytes;
+
+    // Key: 用户（原生模块的 uid、STOMP 的用户名）
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final LongAdder storedCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param ttlMillis          消息保留时长
+     * @param maxMessagesPerUser 单个用户最多保留的条数
+     * @param maxBytesPerUser    单个用户最多占用的字节数（含每条 12 字节的条目头）
+     * @param maxTotalBytes      所有收件箱缓冲区容量合计的上限
+     */
+    public MailboxStore(long ttlMillis, int maxMessagesPerUser, int maxBytesPerUser, long maxTotalBytes) {
+        this.ttlMillis = ttlMillis;
+        this.maxMessagesPerUser = maxMessagesPerUser;
+        this.maxBytesPerUser = maxBytesPerUser;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * 保存一条离线消息
+     *
+     * @return 超过容量上限被拒绝时返回 false
+     */
+    public boolean store(String user, byte[] payload) {
+        if (ENTRY_HEADER + payload.length > maxBytesPerUser) {
+            rejectedCount.increment();
+            return false;
+        }
+        boolean[] stored = new boolean[1];
+        long expireAt = System.currentTimeMillis() + ttlMillis;
+        mailboxes.compute(user, (key, mailbox) -> {
+            Mailbox target = mailbox != null ? mailbox : new Mailbox();
+            stored[0] = target.add(expireAt, payload);
+            return retain(target);
+        });
+        if (!stored[0]) {
+            rejectedCount.increment();
+            return false;
+        }
+        storedCount.increment();
+        return true;
+    }
+
+    /**
+     * 按存入顺序复制最多 max 条未过期的消息，不移除
+     *
+     * @return 复制的起点，交给 {@link #remove}；收件箱不存在时返回 null
+     */
+    public Cursor peek(String user, List<byte[]> out, int max) {
+        Cursor[] cursor = new Cursor[1];
+        long now = System.currentTimeMillis();
+        mailboxes.computeIfPresent(user, (key, mailbox) -> {
+            mailbox.dropExpired(now);
+            cursor[0] = new Cursor(mailbox, mailbox.firstIndex);
+            int position = mailbox.head;
+            for (int i = 0; i < mailbox.count && out.size() < max; i++) {
+                byte[] bytes = mailbox.read(position);
+                out.add(bytes);
+                position += ENTRY_HEADER + bytes.length;
+            }
+            return retain(mailbox);
+        });
+        return cursor[0];
+    }
+
+    /**
+     * 移除从 cursor 起已投递的 count 条；其间被挤出或过期的已经不在，收件箱清空后重建的也不会误删
+     */
+    public void remove(String user, Cursor cursor, int count) {
+        if (cursor == null || count == 0) {
+            return;
+        }
+        long endIndex = cursor.firstIndex + count;
+        mailboxes.computeIfPresent(user, (key, mailbox) -> {
+            while (mailbox == cursor.mailbox && !mailbox.isEmpty() && mailbox.firstIndex < endIndex) {
+                mailbox.dropHead();
+            }
+            return retain(mailbox);
+        });
+    }
+
+    /**
+     * 在桶锁内调用：收件箱清空时归还缓冲区容量，返回 null 让它从 map 中移除
+     */
+    private static Mailbox retain(Mailbox mailbox) {
+        if (!mailbox.isEmpty()) {
+            return mailbox;
+        }
+        mailbox.free();
+        return null;
+    }
+
+    /**
+     * 占用 bytes 的总容量，超过上限时不占用
+     */
+    private boolean reserve(long bytes) {
+        long current;
+        do {
+            current = totalBytes.get();
+            if (current + bytes > maxTotalBytes) {
+                return false;
+            }
+        } while (!totalBytes.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    public boolean contains(String user) {
+        return mailboxes.containsKey(user);
+    }
+
+    /**
+     * 截掉所有收件箱中已过期的消息，清空的收件箱直接移除
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (String user : mailboxes.keySet()) {
+            mailboxes.computeIfPresent(user, (key, mailbox) -> {
+                mailbox.dropExpired(now);
+                return retain(mailbox);
+            });
+        }
+    }
+
+    /**
+     * 该用户收件箱中的消息数（含尚未清理的过期消息）
+     */
+    public int size(String user) {
+        Mailbox mailbox = mailboxes.get(user);
+        return mailbox == null ? 0 : mailbox.count;
+    }
+
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    /**
+     * 所有收件箱占用的堆外字节数（缓冲区容量合计）
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public long getStoredCount() {
+        return storedCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * {@link #peek} 时收件箱的状态，{@link #remove} 据此只移除这次复制出去的条目
+     */
+    public static final class Cursor {
+
+        private final Mailbox mailbox;
+        private final long firstIndex;
+
+        private Cursor(Mailbox mailbox, long firstIndex) {
+            this.mailbox = mailbox;
+            this.firstIndex = firstIndex;
+        }
+    }
+
+    /**
+     * 单个用户的收件箱：[head, tail) 为有效数据，只在 ConcurrentHashMap 的桶锁内访问；缓冲区在第一次写入时申请
+     */
+    private final class Mailbox {
+
+        private ByteBuffer buffer;
+        private int head;
+        private int tail;
+        private int count;
+        // head 处条目的序号，每移除一条加一，回放按序号确认移除到哪里
+        private long firstIndex;
+
+        /**
+         * @return 需要扩容而总容量不够时返回 false，此时不挤掉已有条目
+         */
+        boolean add(long expireAt, byte[] bytes) {
+            int entrySize = ENTRY_HEADER + bytes.length;
+            // 先算出要挤掉几条、剩下多少，确认容量够用再动手
+            int evict = 0;
+            int remaining = used();
+            int position = head;
+            while (evict < count && (count - evict >= maxMessagesPerUser || remaining + entrySize > maxBytesPerUser)) {
+                int size = ENTRY_HEADER + buffer.getInt(position + 8);
+                position += size;
+                remaining -= size;
+                evict++;
+            }
+            int capacity = capacity();
+            int required = remaining + entrySize;
+            if (required > capacity) {
+                int grown = Math.max(capacity, MIN_CAPACITY);
+                while (grown < required) {
+                    grown <<= 1;
+                }
+                grown = Math.min(grown, maxBytesPerUser);
+                if (!reserve(grown - capacity)) {
+                    return false;
+                }
+                capacity = grown;
+            }
+            for (int i = 0; i < evict; i++) {
+                dropHead();
+                evictedCount.increment();
+            }
+            ensureWritable(entrySize, capacity);
+            buffer.putLong(tail, expireAt);
+            buffer.putInt(tail + 8, bytes.length);
+            buffer.put(tail + ENTRY_HEADER, bytes);
+            tail += entrySize;
+            count++;
+            return true;
+        }
+
+        byte[] read(int position) {
+            byte[] bytes = new byte[buffer.getInt(position + 8)];
+            buffer.get(position + ENTRY_HEADER, bytes);
+            return bytes;
+        }
+
+        void dropExpired(long now) {
+            while (count > 0 && buffer.getLong(head) <= now) {
+                dropHead();
+                expiredCount.increment();
+            }
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void dropHead() {
+            int entrySize = ENTRY_HEADER + buffer.getInt(head + 8);
+            head += entrySize;
+            count--;
+            firstIndex++;
+            if (count == 0) {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        /**
+         * 从 map 中移除时调用，归还占用的容量
+         */
+        void free() {
+            totalBytes.addAndGet(-capacity());
+            buffer = null;
+        }
+
+        private int used() {
+            return tail - head;
+        }
+
+        private int capacity() {
+            return buffer == null ? 0 : buffer.capacity();
+        }
+
+        /**
+         * 尾部空间不够时先把数据挪到开头，容量已在 {@link #add} 中占好，需要时换成 capacity 大小的缓冲区
+         */
+        private void ensureWritable(int entrySize, int capacity) {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(capacity);
+                return;
+            }
+            if (tail + entrySize <= buffer.capacity()) {
+                return;
+            }
+            int used = used();
+            if (capacity > buffer.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+                grown.put(0, buffer, head, used);
+                buffer = grown;
+            } else {
+                // compact 允许源和目标重叠
+                buffer.limit(tail).position(head);
+                buffer.compact();
+                buffer.clear();
+            }
+            head = 0;
+            tail = used;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.xf.websocket.core.metrics;
+
+import com.xf.websocket.core.auth.TokenAuthenticator;
+import com.xf.websocket.core.drain.ConnectionDrainer;
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 公共组件的指标（xf.websocket.*），原生模块和 STOMP 模块使用同一组名字
+ * <p>
+ * 与各模块自己的 binder 一样，只在采集时读取组件维护的计数，不给收发路径增加开销。
+ */
+@RequiredArgsConstructor
+public class XfWebSocketMetricsBinder implements MeterBinder {
+
+    private final OutboundQueueManager outboundQueueManager;
+    private final HeartbeatWheel heartbeatWheel;
+    private final TokenAuthenticator tokenAuthenticator;
+    private final RateLimiter rateLimiter;
+    private final ConnectionDrainer connectionDrainer;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("xf.websocket.outbound.sessions", outboundQueueManager, OutboundQueueManager::getSessionCount)
+                .description("接入出站队列的连接数")
+                .register(registry);
+        Gauge.builder("xf.websocket.outbound.queue.depth", outboundQueueManager, OutboundQueueManager::totalQueueDepth)
+                .description("所有连接出站队列中排队的消息数")
+                .register(registry);
+        counter(registry, "xf.websocket.heartbeat.evictions", "心跳超时被关闭的连接数",
+                heartbeatWheel, HeartbeatWheel::getEvictedCount);
+
+        counter(registry, "xf.websocket.ratelimit.throttled", "超过限流额度被丢弃的入站消息数",
+                rateLimiter, RateLimiter::getThrottledCount);
+        counter(registry, "xf.websocket.ratelimit.closed", "因持续超限被关闭的连接数",
+                rateLimiter, RateLimiter::getClosedCount);
+        Gauge.builder("xf.websocket.ratelimit.user.buckets", rateLimiter, RateLimiter::getUserBucketCount)
+                .description("用户维度令牌桶数量")
+                .register(registry);
+
+        counter(registry, "xf.websocket.auth.cache.hits", "令牌命中验签缓存的次数",
+                tokenAuthenticator, TokenAuthenticator::getCacheHits);
+        counter(registry, "xf.websocket.auth.cache.misses", "令牌未命中缓存、需要验签的次数",
+                tokenAuthenticator, TokenAuthenticator::getCacheMisses);
+        counter(registry, "xf.websocket.auth.failures", "验签或声明校验不通过的令牌数",
+                tokenAuthenticator, TokenAuthenticator::getFailures);
+        Gauge.builder("xf.websocket.auth.cache.size", tokenAuthenticator, TokenAuthenticator::getCacheSize)
+                .description("验签缓存条数")
+                .register(registry);
+
+        counter(registry, "xf.websocket.drain.closed", "停机排空时分批关闭的连接数",
+                connectionDrainer, ConnectionDrainer::getDrainedCount);
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, String description, T target,
+                                    ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, target, count)
+                .description(description)
+                .register(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.xf.websocket.core.ratelimit;
+
+/**
+ * 超过限流额度时的处理方式
+ * <p>
+ * THROTTLE: 丢弃超限的消息（原生模块另回一条 throttled 通知），连续超限达到 close-after-violations 后关闭连接
+ * CLOSE: 第一次超限就关闭连接（原生模块以 1008 Policy Violation 关闭，STOMP 先回 ERROR 帧）
+ */
+public enum RateLimitAction {
+    THROTTLE,
+    CLOSE
+}
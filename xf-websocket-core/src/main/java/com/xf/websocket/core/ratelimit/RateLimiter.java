@@ -0,0 +1,204 @@
+package com.xf.websocket.core.ratelimit;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 入站消息限流
+ * <p>
+ * 一个客户端在循环里不停发消息，就能让收消息线程、出站队列和持久化都围着它转。这里对每条入站消息同时检查两层令牌桶：
+ * 1. 连接维度：挂在 WebSocket 会话属性上（STOMP 消息头里的 simpSessionAttributes 就是同一个 Map），随连接释放；
+ * 2. 用户维度：同一用户所有连接合计，放在 Map 中，空闲（已回满）超过 idleTimeout 后由后台线程回收；
+ * 每层分别限制条数和字节数（按字符数计），任一超限即拒绝。所有桶都是无锁的 {@link TokenBucket}。
+ * <p>
+ * 客户端的 ack 走 {@link #acquireAck}：只按连接计条数，额度单独配置，不占发送额度，也不会被刷满的发送额度挡住。
+ * <p>
+ * 被拒绝的消息仍然扣掉了已检查通过的那部分额度，持续刷消息的客户端不会因此占到便宜。
+ */
+public class RateLimiter {
+
+    public static final String SESSION_ATTR = "rateLimit";
+    public static final String ACK_SESSION_ATTR = "rateLimit.ack";
+
+    /**
+     * 一条消息的限流结果
+     */
+    public enum Decision {
+        ALLOW,
+        THROTTLE,
+        CLOSE
+    }
+
+    private final boolean enabled;
+    private final XfWebSocketCoreProperties.Limit sessionLimit;
+    private final XfWebSocketCoreProperties.Limit userLimit;
+    private final XfWebSocketCoreProperties.Limit ackLimit;
+    private final RateLimitAction action;
+    private final int closeAfterViolations;
+    private final long idleNanos;
+
+    // Key: 用户（原生模块的 uid、STOMP 的用户名）
+    private final Map<String, Buckets> userBuckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder throttledCount = new LongAdder();
+    private final LongAdder closedCount = new LongAdder();
+
+    public RateLimiter(XfWebSocketCoreProperties properties) {
+        XfWebSocketCoreProperties.RateLimit config = properties.getRateLimit();
+        this.enabled = config.isEnabled();
+        this.sessionLimit = config.getSession();
+        this.userLimit = config.getUser();
+        this.ackLimit = config.getAck();
+        this.action = config.getAction();
+        this.closeAfterViolations = config.getCloseAfterViolations();
+        this.idleNanos = config.getIdleTimeout().toNanos();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, config.getIdleTimeout().toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 检查一条入站消息
+     *
+     * @param uid    用户，匿名连接为空
+     * @param length 消息长度（文本按字符数，二进制按字节数）
+     */
+    public Decision acquire(WebSocketSession session, String uid, int length) {
+        return acquire(session.getAttributes(), uid, length);
+    }
+
+    /**
+     * 检查一条入站消息
+     *
+     * @param sessionAttributes WebSocket 会话属性，为空时只检查用户维度
+     * @param user              用户，匿名连接为空
+     * @param length            消息长度
+     */
+    public Decision acquire(Map<String, Object> sessionAttributes, String user, int length) {
+        if (!enabled) {
+            return Decision.ALLOW;
+        }
+        long now = System.nanoTime();
+        Buckets sessionBuckets = sessionAttributes != null
+                ? sessionBuckets(sessionAttributes, SESSION_ATTR, sessionLimit) : null;
+        boolean allowed = (sessionBuckets == null || sessionBuckets.tryAcquire(length, now))
+                && (user == null || userBuckets(user).tryAcquire(length, now));
+        return decide(sessionBuckets, allowed);
+    }
+
+    /**
+     * 检查一条 ack：只扣连接维度 ack 桶里的一条，不计字节，也不计入用户维度
+     * <p>
+     * 超限的 ack 可以直接丢弃，后面的累计确认会覆盖它；持续刷 ack 的连接同样会按 closeAfterViolations 被关闭。
+     */
+    public Decision acquireAck(WebSocketSession session) {
+        if (!enabled) {
+            return Decision.ALLOW;
+        }
+        Buckets ackBuckets = sessionBuckets(session.getAttributes(), ACK_SESSION_ATTR, ackLimit);
+        return decide(ackBuckets, ackBuckets.tryAcquire(0, System.nanoTime()));
+    }
+
+    private Decision decide(Buckets sessionBuckets, boolean allowed) {
+        if (allowed) {
+            if (sessionBuckets != null && sessionBuckets.violations.get() != 0) {
+                sessionBuckets.violations.set(0);
+            }
+            return Decision.ALLOW;
+        }
+        int violations = sessionBuckets != null ? sessionBuckets.violations.incrementAndGet() : 0;
+        if (action == RateLimitAction.CLOSE || (closeAfterViolations > 0 && violations >= closeAfterViolations)) {
+            closedCount.increment();
+            return Decision.CLOSE;
+        }
+        throttledCount.increment();
+        return Decision.THROTTLE;
+    }
+
+    private Buckets sessionBuckets(Map<String, Object> sessionAttributes, String attribute,
+                                   XfWebSocketCoreProperties.Limit limit) {
+        Object existing = sessionAttributes.get(attribute);
+        if (existing instanceof Buckets buckets) {
+            return buckets;
+        }
+        // 原生模块同一连接的消息由容器串行回调；STOMP 关闭 preserve-receive-order 时可能并发处理，以先放进去的为准
+        sessionAttributes.putIfAbsent(attribute, new Buckets(limit));
+        return (Buckets) sessionAttributes.get(attribute);
+    }
+
+    private Buckets userBuckets(String uid) {
+        Buckets buckets = userBuckets.get(uid);
+        return buckets != null ? buckets : userBuckets.computeIfAbsent(uid, key -> new Buckets(userLimit));
+    }
+
+    /**
+     * 回收已回满且空闲超过 idleTimeout 的用户令牌桶
+     * <p>
+     * 回收与取令牌并发时，刚取过令牌的旧桶可能被移除，下一条消息拿到的是新的满桶；只会放宽，不会误拒。
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        userBuckets.values().removeIf(buckets -> buckets.isIdle(now, idleNanos));
+    }
+
+    public int getUserBucketCount() {
+        return userBuckets.size();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    public long getClosedCount() {
+        return closedCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 一个连接或一个用户的条数桶和字节桶，限额为 0 的维度不建桶
+     */
+    private static final class Buckets {
+
+        private final TokenBucket messages;
+        private final TokenBucket bytes;
+        // 连续被拒绝的条数，只对连接维度有意义
+        private final AtomicInteger violations = new AtomicInteger();
+
+        Buckets(XfWebSocketCoreProperties.Limit limit) {
+            this.messages = limit.getMessagesPerSecond() > 0
+                    ? new TokenBucket(limit.getMessagesPerSecond(), limit.getMessageBurst())
+                    : null;
+            this.bytes = limit.getBytesPerSecond() != null && limit.getBytesPerSecond().toBytes() > 0
+                    ? new TokenBucket(limit.getBytesPerSecond().toBytes(), limit.getByteBurst().toBytes())
+                    : null;
+        }
+
+        boolean tryAcquire(int length, long now) {
+            return (messages == null || messages.tryAcquire(1, now))
+                    && (bytes == null || bytes.tryAcquire(length, now));
+        }
+
+        boolean isIdle(long now, long idleNanos) {
+            return (messages == null || messages.isIdle(now, idleNanos))
+                    && (bytes == null || bytes.isIdle(now, idleNanos));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.xf.websocket.core.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 无锁令牌桶
+ * <p>
+ * 按 GCRA（Generic Cell Rate Algorithm）实现，与令牌桶等价，但状态只有一个 long：
+ * “理论到达时间” tat，表示按补充速率桶要到什么时候才会回满。取 n 个令牌就是把 tat 往后推 n 个补充间隔，
+ * 推完后超出当前时间的部分不能大于桶容量对应的时长。
+ * 一次 CAS 完成“补充 + 扣减”，没有锁，也不需要后台线程定时补充。
+ */
+public final class TokenBucket {
+
+    private static final VarHandle TAT;
+
+    static {
+        try {
+            TAT = MethodHandles.lookup().findVarHandle(TokenBucket.class, "tat", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // 补充一个令牌需要的纳秒数
+    private final double nanosPerToken;
+    // 桶容量对应的时长
+    private final long capacityNanos;
+
+    @SuppressWarnings("unused")
+    private volatile long tat;
+
+    /**
+     * @param tokensPerSecond 每秒补充的令牌数，必须大于 0
+     * @param capacity        桶容量（允许的突发量）
+     */
+    public TokenBucket(double tokensPerSecond, long capacity) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("token bucket rate and capacity must be > 0");
+        }
+        this.nanosPerToken = 1_000_000_000d / tokensPerSecond;
+        this.capacityNanos = (long) (capacity * nanosPerToken);
+        // tat 不晚于当前时间即为满桶；往前多推一个容量，调用方在建桶之前取的 now 也能看到满桶
+        this.tat = System.nanoTime() - capacityNanos;
+    }
+
+    /**
+     * 尝试取 tokens 个令牌
+     *
+     * @param now System.nanoTime()
+     * @return 令牌不足时返回 false，桶状态不变
+     */
+    public boolean tryAcquire(long tokens, long now) {
+        long cost = (long) (tokens * nanosPerToken);
+        while (true) {
+            long current = (long) TAT.getVolatile(this);
+            long next = Math.max(current, now) + cost;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (TAT.compareAndSet(this, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 桶已回满并且空闲了至少 idleNanos
+     */
+    public boolean isIdle(long now, long idleNanos) {
+        return now - (long) TAT.getVolatile(this) >= idleNanos;
+    }
+}
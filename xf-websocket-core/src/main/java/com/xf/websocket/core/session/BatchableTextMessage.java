@@ -0,0 +1,47 @@
+package com.xf.websocket.core.session;
+
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+/**
+ * 可合并发送的文本消息
+ * <p>
+ * 广播时整条 JSON 只序列化一次，同一个实例被放进所有接收者的出站队列。
+ * 出站队列在发送时，会把连续排队的多条可合并消息拼成一个 JSON 数组帧 [a,b,c] 一次写出，
+ * 减少帧数量和系统调用次数；只有一条时直接发送内部共享的 {@link TextMessage}，不产生额外对象。
+ * <p>
+ * 注意：payload 必须是一个完整的 JSON 对象，客户端收到数组帧时逐条处理即可。
+ */
+public final class BatchableTextMessage implements WebSocketMessage<String> {
+
+    private final TextMessage message;
+
+    public BatchableTextMessage(String json) {
+        this.message = new TextMessage(json);
+    }
+
+    @Override
+    public String getPayload() {
+        return message.getPayload();
+    }
+
+    /**
+     * 按字符数返回长度，避免 UTF-8 编码
+     */
+    @Override
+    public int getPayloadLength() {
+        return message.getPayload().length();
+    }
+
+    @Override
+    public boolean isLast() {
+        return true;
+    }
+
+    /**
+     * 不合并时直接发送的共享帧
+     */
+    public TextMessage getTextMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,227 @@
+package com.xf.websocket.core.session;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 心跳时间轮（Hashed Timing Wheel）
+ * <p>
+ * 替代“每 30 秒扫一遍所有连接”的做法：
+ * 1. 每个连接对应一个 {@link Entry}，收到任何消息时只写一次 volatile long（{@link #touch(Entry)}），
+ * 不再往 Session 属性 Map 里塞装箱的 Long；
+ * 2. 连接按“预计超时时间”挂在轮子的某个槽上，每个 tick 只处理当前槽里的连接：
+ * 真超时的关闭，期间有过活动的按最新活跃时间挂到新的槽上（惰性重排）；
+ * 3. 因此每次 tick 的开销只和“这一刻到期的连接数”有关，而不是总连接数。
+ * <p>
+ * 所有槽只由时间轮线程访问，注册走无锁队列，心跳更新只写 volatile 字段，整条路径没有锁。
+ */
+@Slf4j
+public class HeartbeatWheel {
+
+    /**
+     * Entry 存放在 Session 属性中的 Key
+     */
+    public static final String SESSION_ATTR = "heartbeat";
+
+    private final long timeoutMillis;
+    private final long tickMillis;
+    private final int mask;
+    private final Queue<Entry>[] wheel;
+
+    // 新注册的连接先放这里，由时间轮线程搬到对应的槽
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ticker;
+    // 关闭连接可能阻塞在写 close 帧上，放到单独线程，避免拖慢 tick
+    private final ExecutorService closer;
+
+    // 时间轮的粗粒度时钟，每个 tick 更新一次，心跳更新直接读它，省掉 System.currentTimeMillis()
+    private volatile long clock;
+    // 已处理到的 tick 序号，只有时间轮线程读写
+    private long currentTick;
+
+    private volatile long evictedCount;
+
+    public HeartbeatWheel(XfWebSocketCoreProperties properties) {
+        this(properties.getHeartbeat().getTimeout().toMillis(), properties.getHeartbeat().getTick().toMillis(), true);
+    }
+
+    /**
+     * @param start 为 false 时不启动时间轮线程，由调用方通过 {@link #tick(long)} 手动推进（测试、基准）
+     */
+    @SuppressWarnings("unchecked")
+    public HeartbeatWheel(long timeoutMillis, long tickMillis, boolean start) {
+        if (tickMillis <= 0 || timeoutMillis < tickMillis) {
+            throw new IllegalArgumentException("heartbeat tick must be > 0 and <= timeout");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.tickMillis = tickMillis;
+        // 槽数取 2 的幂并覆盖一个完整超时周期，保证任何连接都不需要“转多圈”
+        int size = Integer.highestOneBit((int) (timeoutMillis / tickMillis) + 1) << 1;
+        this.mask = size - 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.clock = System.currentTimeMillis();
+        this.currentTick = clock / tickMillis;
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "ws-heartbeat-wheel"));
+        this.closer = Executors.newSingleThreadExecutor(r -> daemon(r, "ws-heartbeat-evict"));
+        if (start) {
+            ticker.scheduleAtFixedRate(this::safeTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 连接建立时注册
+     */
+    public Entry register(WebSocketSession session) {
+        Entry entry = new Entry(session, clock);
+        session.getAttributes().put(SESSION_ATTR, entry);
+        pending.add(entry);
+        return entry;
+    }
+
+    /**
+     * 收到任何消息都算一次“活跃”，只写一次 volatile long
+     */
+    public void touch(Entry entry) {
+        entry.lastActive = clock;
+    }
+
+    /**
+     * 按 Session 更新活跃时间（Session 未注册时忽略）
+     */
+    public void touch(WebSocketSession session) {
+        Object entry = session.getAttributes().get(SESSION_ATTR);
+        if (entry instanceof Entry e) {
+            e.lastActive = clock;
+        }
+    }
+
+    /**
+     * 连接断开时注销，真正从槽里摘除在下次轮到它时进行
+     */
+    public void cancel(WebSocketSession session) {
+        Object entry = session.getAttributes().get(SESSION_ATTR);
+        if (entry instanceof Entry e) {
+            e.cancelled = true;
+        }
+    }
+
+    private void safeTick() {
+        try {
+            tick(System.currentTimeMillis());
+        } catch (Throwable ex) {
+            log.error("Heartbeat wheel tick failed", ex);
+        }
+    }
+
+    /**
+     * 推进时间轮到 now，处理期间经过的所有槽
+     */
+    public void tick(long now) {
+        clock = now;
+        long targetTick = now / tickMillis;
+
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            schedule(entry, entry.lastActive + timeoutMillis);
+        }
+
+        // 正常每次只推进一格；如果线程被耽搁，补处理错过的槽（最多一整圈）
+        long from = Math.max(currentTick + 1, targetTick - mask);
+        for (long t = from; t <= targetTick; t++) {
+            currentTick = t;
+            expire(wheel[(int) (t & mask)], now);
+        }
+        currentTick = Math.max(currentTick, targetTick);
+    }
+
+    private void expire(Queue<Entry> bucket, long now) {
+        int n = bucket.size();
+        for (int i = 0; i < n; i++) {
+            Entry entry = bucket.poll();
+            if (entry.cancelled) {
+                continue;
+            }
+            long deadline = entry.lastActive + timeoutMillis;
+            if (deadline <= now) {
+                evict(entry);
+            } else {
+                // 期间有过活动，按新的截止时间重新挂槽
+                schedule(entry, deadline);
+            }
+        }
+    }
+
+    private void schedule(Entry entry, long deadline) {
+        long tick = Math.max(deadline / tickMillis, currentTick + 1);
+        wheel[(int) (tick & mask)].add(entry);
+    }
+
+    private void evict(Entry entry) {
+        entry.cancelled = true;
+        evictedCount++;
+        WebSocketSession session = entry.session;
+        closer.execute(() -> {
+            try {
+                log.warn("Closing zombie session: {}", session.getId());
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.error("Close zombie session failed", e);
+            }
+        });
+    }
+
+    /**
+     * 累计被判定为僵尸并关闭的连接数
+     */
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        closer.shutdown();
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * 时间轮上的一个连接
+     */
+    public static final class Entry {
+
+        private final WebSocketSession session;
+        // 最近一次活跃时间，收消息线程写，时间轮线程读
+        private volatile long lastActive;
+        private volatile boolean cancelled;
+
+        Entry(WebSocketSession session, long now) {
+            this.session = session;
+            this.lastActive = now;
+        }
+
+        public long getLastActive() {
+            return lastActive;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.xf.websocket.core.session;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * 把连接接入出站队列和心跳时间轮的 Handler 装饰器
+ * <p>
+ * 适用于自己不管理会话的 Handler（例如 STOMP 的 SubProtocolWebSocketHandler）：
+ * 连接建立时把 {@link QueuedSessionDecorator} 交给被装饰的 Handler，此后它发出的帧都经过出站队列；
+ * 收到任何消息（包括 STOMP 心跳帧）都刷新一次活跃时间，断开时释放队列并从时间轮上摘除。
+ */
+public class ManagedSessionHandlerDecorator extends WebSocketHandlerDecorator {
+
+    private final OutboundQueueManager outboundQueueManager;
+    private final HeartbeatWheel heartbeatWheel;
+
+    public ManagedSessionHandlerDecorator(WebSocketHandler delegate, OutboundQueueManager outboundQueueManager,
+                                          HeartbeatWheel heartbeatWheel) {
+        super(delegate);
+        this.outboundQueueManager = outboundQueueManager;
+        this.heartbeatWheel = heartbeatWheel;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        WebSocketSession outbound = outboundQueueManager.register(session);
+        heartbeatWheel.register(session);
+        super.afterConnectionEstablished(outbound);
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        heartbeatWheel.touch(session);
+        super.handleMessage(session, message);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        outboundQueueManager.unregister(session);
+        heartbeatWheel.cancel(session);
+        super.afterConnectionClosed(session, closeStatus);
+    }
+}
@@ -0,0 +1,158 @@
+package com.xf.websocket.core.session;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * 出站队列管理器
+ * <p>
+ * 负责为每个连接创建 {@link QueuedSessionDecorator}，并持有所有会话共享的发送线程池。
+ * 业务代码拿到装饰后的 Session 调用 sendMessage 即可，真正的 socket 写入在发送线程上完成。
+ * 应用层压缩等与协议相关的处理由使用方在注册时以 frameEncoder 传入，本类不关心帧的内容。
+ */
+@Slf4j
+public class OutboundQueueManager {
+
+    /**
+     * 装饰后的 Session 存放在原始 Session 属性中的 Key
+     */
+    public static final String SESSION_ATTR = "outboundSession";
+
+    private final QueuedSessionDecorator.Options options;
+    private final ExecutorService executor;
+    // 只负责“攒批窗口到期后把发送任务交给 executor”，本身不做 IO
+    private final ScheduledExecutorService scheduler;
+
+    // Key: sessionId, Value: 装饰后的 Session，用于汇总指标和停机排空
+    private final Map<String, QueuedSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+    public OutboundQueueManager(XfWebSocketCoreProperties properties) {
+        XfWebSocketCoreProperties.Outbound config = properties.getOutbound();
+        this.options = new QueuedSessionDecorator.Options(
+                config.getQueueCapacity(),
+                config.getBufferSizeLimit().toBytes(),
+                config.getSendTimeLimit().toMillis(),
+                config.getOverflowPolicy(),
+                config.getDrainBatchSize(),
+                config.getCoalesceWindow().toNanos(),
+                (int) config.getCoalesceMaxFrameSize().toBytes());
+        int threads = config.getDrainThreads() > 0
+                ? config.getDrainThreads()
+                : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ws-outbound-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-outbound-coalesce");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 为新连接包装出站队列
+     */
+    public QueuedSessionDecorator register(WebSocketSession session) {
+        return register(session, UnaryOperator.identity());
+    }
+
+    /**
+     * 为新连接包装出站队列
+     *
+     * @param frameEncoder 写 socket 前对每一帧做的转换（例如应用层压缩），在发送线程上执行
+     */
+    public QueuedSessionDecorator register(WebSocketSession session, UnaryOperator<WebSocketMessage<?>> frameEncoder) {
+        QueuedSessionDecorator decorator = new QueuedSessionDecorator(session, options, executor, scheduler,
+                frameEncoder);
+        session.getAttributes().put(SESSION_ATTR, decorator);
+        sessions.put(session.getId(), decorator);
+        return decorator;
+    }
+
+    /**
+     * 连接断开时释放出站队列
+     */
+    public void unregister(WebSocketSession session) {
+        QueuedSessionDecorator decorator = sessions.remove(session.getId());
+        if (decorator != null) {
+            decorator.release();
+        }
+    }
+
+    /**
+     * 获取连接对应的出站 Session，未注册时返回原始 Session
+     */
+    public WebSocketSession outbound(WebSocketSession session) {
+        Object decorator = session.getAttributes().get(SESSION_ATTR);
+        return decorator instanceof WebSocketSession ws ? ws : session;
+    }
+
+    /**
+     * 已注册的会话数
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 遍历所有已注册的出站 Session（弱一致）
+     */
+    public void forEachSession(Consumer<QueuedSessionDecorator> action) {
+        sessions.values().forEach(action);
+    }
+
+    /**
+     * 各会话的队列指标快照
+     */
+    public List<QueueStats> stats() {
+        List<QueueStats> result = new ArrayList<>(sessions.size());
+        sessions.forEach((id, s) -> result.add(new QueueStats(id, s.getQueueDepth(), s.getBufferSize(),
+                s.getHighWatermark(), s.getSentCount(), s.getDroppedCount(), s.getCoalescedCount())));
+        return result;
+    }
+
+    /**
+     * 所有会话当前排队消息总数
+     */
+    public long totalQueueDepth() {
+        long total = 0;
+        for (QueuedSessionDecorator s : sessions.values()) {
+            total += s.getQueueDepth();
+        }
+        return total;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 单个会话的出站队列指标
+     */
+    public record QueueStats(String sessionId, int queueDepth, long bufferSize, int highWatermark,
+                             long sentCount, long droppedCount, long coalescedCount) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.xf.websocket.core.session;
+
+/**
+ * 出站队列溢出策略
+ * <p>
+ * DROP_OLDEST: 丢弃队列中最早的消息，为新消息腾出位置（适合行情、状态类推送，只关心最新值）
+ * DROP_NEWEST: 丢弃当前要入队的新消息，已排队的消息保持不变
+ * CLOSE_SESSION: 直接关闭会话，由客户端重连（适合不允许丢消息的场景）
+ */
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DROP_NEWEST,
+    CLOSE_SESSION
+}
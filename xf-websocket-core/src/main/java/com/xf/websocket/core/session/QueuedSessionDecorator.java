@@ -0,0 +1,383 @@
+package com.xf.websocket.core.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * 带出站队列的 Session 装饰器
+ * <p>
+ * 思路和 Spring 自带的 ConcurrentWebSocketSessionDecorator 类似，区别在于：
+ * 1. sendMessage 只负责入队，真正写 socket 的动作交给独立的发送线程池，调用方（通常是收消息的线程）永远不会被慢连接卡住；
+ * 2. 每个会话同一时刻最多只有一个发送任务在跑（drainer），保证同一个 socket 上的帧不会交错；
+ * 3. 队列满时按 {@link OverflowPolicy} 处理，并记录队列深度、丢弃数等指标；
+ * 4. 连续排队的 {@link BatchableTextMessage} 会在一个很短的窗口内攒批，合并成一个帧写出；
+ * 5. 写出前经过 frameEncoder（例如应用层压缩），编码同样在发送线程上完成；
+ * 6. close 时队列里还有消息（例如 STOMP 写完 ERROR 帧紧接着关闭连接），先把它们发完再关闭，最多等 sendTimeLimit；
+ * 判定连接不可靠（SESSION_NOT_RELIABLE）时直接关闭，丢弃未发送的消息。
+ */
+@Slf4j
+public class QueuedSessionDecorator extends WebSocketSessionDecorator {
+
+    private final BlockingQueue<WebSocketMessage<?>> queue;
+    private final Options options;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final UnaryOperator<WebSocketMessage<?>> frameEncoder;
+
+    // 当前是否已有发送任务在跑或已预约（单 drainer 保证）
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // 队列中消息的总大小（字符数/字节数的估算值）
+    private final AtomicLong bufferSize = new AtomicLong();
+    // 合并时从队列多取出的一条不可合并消息，只有 drainer 线程写；isFlushed 和排空检查会在其他线程读，所以是 volatile
+    private volatile WebSocketMessage<?> carry;
+    // 当前这次写 socket 的开始时间，0 表示没有在写
+    private volatile long sendStartTime;
+    private volatile boolean closed;
+    // 等队列发完后再使用的关闭状态，为 null 表示没有待执行的关闭
+    private volatile CloseStatus pendingClose;
+
+    // 指标
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private volatile int highWatermark;
+
+    public QueuedSessionDecorator(WebSocketSession delegate, Options options,
+            Executor executor, ScheduledExecutorService scheduler) {
+        this(delegate, options, executor, scheduler, UnaryOperator.identity());
+    }
+
+    /**
+     * @param frameEncoder 写 socket 前对每一帧（合并之后）做的转换
+     */
+    public QueuedSessionDecorator(WebSocketSession delegate, Options options, Executor executor,
+            ScheduledExecutorService scheduler, UnaryOperator<WebSocketMessage<?>> frameEncoder) {
+        super(delegate);
+        this.queue = new ArrayBlockingQueue<>(options.queueCapacity());
+        this.options = options;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.frameEncoder = frameEncoder;
+    }
+
+    /**
+     * 入队发送，不阻塞调用线程；被拒绝的消息直接丢弃，需要知道结果时用 {@link #trySend}
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        trySend(message);
+    }
+
+    /**
+     * 入队发送，不阻塞调用线程
+     *
+     * @return 消息进入出站队列时返回 true；连接已关闭或正在关闭、写 socket 超时、队列按溢出策略拒绝时返回 false
+     */
+    public boolean trySend(WebSocketMessage<?> message) {
+        if (closed || pendingClose != null || !isOpen()) {
+            return false;
+        }
+        if (isSendTimeExceeded()) {
+            log.warn("Outbound send stuck for more than {} ms, closing session {}", options.sendTimeLimit(), getId());
+            closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        }
+
+        int size = sizeOf(message);
+        if (!offer(message, size)) {
+            return false;
+        }
+        int depth = queue.size();
+        if (depth > highWatermark) {
+            highWatermark = depth;
+        }
+        // 可合并的消息延迟一个窗口再发，让后续消息有机会攒进同一帧
+        scheduleDrain(message instanceof BatchableTextMessage ? options.coalesceWindowNanos() : 0);
+        return true;
+    }
+
+    private boolean offer(WebSocketMessage<?> message, int size) {
+        while (bufferSize.get() + size > options.bufferSizeLimit() || !queue.offer(message)) {
+            switch (options.overflowPolicy()) {
+                case DROP_NEWEST -> {
+                    droppedCount.incrementAndGet();
+                    return false;
+                }
+                case CLOSE_SESSION -> {
+                    log.warn("Outbound queue overflow ({} messages), closing session {}", queue.size(), getId());
+                    droppedCount.incrementAndGet();
+                    closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                    return false;
+                }
+                default -> {
+                    // DROP_OLDEST: 腾出位置后重试
+                    WebSocketMessage<?> oldest = queue.poll();
+                    if (oldest == null) {
+                        // 队列已空但单条消息仍超过字节上限，只能丢掉新消息
+                        droppedCount.incrementAndGet();
+                        return false;
+                    }
+                    bufferSize.addAndGet(-sizeOf(oldest));
+                    droppedCount.incrementAndGet();
+                }
+            }
+        }
+        bufferSize.addAndGet(size);
+        return true;
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                if (delayNanos > 0) {
+                    scheduler.schedule(() -> submitDrain(), delayNanos, TimeUnit.NANOSECONDS);
+                } else {
+                    executor.execute(this::drain);
+                }
+            } catch (RejectedExecutionException ex) {
+                // 发送线程池已关闭（应用停机中）
+                draining.set(false);
+            }
+        }
+    }
+
+    private void submitDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException ex) {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * 在发送线程上执行：把队列中的消息依次写到 socket
+     */
+    private void drain() {
+        try {
+            int sent = 0;
+            WebSocketMessage<?> message;
+            while (sent < options.drainBatchSize() && !closed && (message = next()) != null) {
+                WebSocketMessage<?> frame = message;
+                if (message instanceof BatchableTextMessage batchable) {
+                    frame = coalesce(batchable);
+                }
+                frame = frameEncoder.apply(frame);
+                sendStartTime = System.currentTimeMillis();
+                try {
+                    if (frame instanceof SplicedTextMessage spliced) {
+                        // 转发的大消息直接流式写出，不拼接完整字符串
+                        spliced.sendTo(getDelegate());
+                    } else {
+                        getDelegate().sendMessage(frame);
+                    }
+                } finally {
+                    sendStartTime = 0;
+                }
+                sentCount.incrementAndGet();
+                sent++;
+            }
+        } catch (Throwable ex) {
+            log.warn("Outbound send failed, closing session {}: {}", getId(), ex.getMessage());
+            closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记之后再检查一次，避免与入队线程之间出现“消息入队了但没人发”的情况
+        if (!closed && (carry != null || !queue.isEmpty())) {
+            scheduleDrain(0);
+        } else if (!closed && pendingClose != null) {
+            closeNow(pendingClose);
+        }
+    }
+
+    private WebSocketMessage<?> next() {
+        WebSocketMessage<?> message = carry;
+        if (message != null) {
+            carry = null;
+            return message;
+        }
+        message = queue.poll();
+        if (message != null) {
+            bufferSize.addAndGet(-sizeOf(message));
+        }
+        return message;
+    }
+
+    /**
+     * 把紧跟在 first 后面的可合并消息拼成一个 JSON 数组帧
+     */
+    private WebSocketMessage<?> coalesce(BatchableTextMessage first) {
+        if (options.maxFrameSize() <= 0) {
+            return first.getTextMessage();
+        }
+        WebSocketMessage<?> next = next();
+        if (!(next instanceof BatchableTextMessage)
+                || first.getPayloadLength() + next.getPayloadLength() + 3 > options.maxFrameSize()) {
+            carry = next;
+            return first.getTextMessage();
+        }
+
+        // 按已排队的消息估算容量，不超过合并帧上限，避免每批都按上限分配
+        long queued = first.getPayloadLength() + next.getPayloadLength() + bufferSize.get() + queue.size() + 3;
+        StringBuilder frame = new StringBuilder((int) Math.min(queued, options.maxFrameSize()));
+        frame.append('[').append(first.getPayload());
+        int merged = 1;
+        while (next instanceof BatchableTextMessage batchable
+                && frame.length() + batchable.getPayloadLength() + 2 <= options.maxFrameSize()) {
+            frame.append(',').append(batchable.getPayload());
+            merged++;
+            next = next();
+        }
+        carry = next;
+        coalescedCount.addAndGet(merged - 1);
+        return new TextMessage(frame.append(']'));
+    }
+
+    private boolean isSendTimeExceeded() {
+        long start = sendStartTime;
+        return start > 0 && System.currentTimeMillis() - start > options.sendTimeLimit();
+    }
+
+    /**
+     * 关闭连接：队列里还有消息时先发完再关闭（最多等 sendTimeLimit），不再接受新的消息
+     */
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        if (closed || status.equalsCode(CloseStatus.SESSION_NOT_RELIABLE) || isFlushed() || !isOpen()) {
+            release();
+            super.close(status);
+            return;
+        }
+        pendingClose = status;
+        scheduleDrain(0);
+        try {
+            // 对端不读数据时发送线程可能一直卡在写 socket 上，到时间后不再等待
+            scheduler.schedule(() -> closeNow(status), options.sendTimeLimit(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            closeNow(status);
+        }
+    }
+
+    // 发送线程和超时任务可能同时走到这里
+    private synchronized void closeNow(CloseStatus status) {
+        if (closed) {
+            return;
+        }
+        release();
+        try {
+            super.close(status);
+        } catch (IOException ex) {
+            log.debug("Close session {} failed: {}", getId(), ex.getMessage());
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            close(status);
+        } catch (IOException ex) {
+            log.debug("Close session {} failed: {}", getId(), ex.getMessage());
+        }
+    }
+
+    /**
+     * 连接断开后调用，丢弃尚未发送的消息
+     */
+    public void release() {
+        closed = true;
+        queue.clear();
+        bufferSize.set(0);
+    }
+
+    /**
+     * 消息大小估算：文本按字符数计，避免为了计算长度再做一次 UTF-8 编码
+     */
+    private static int sizeOf(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage textMessage) {
+            return textMessage.getPayload().length();
+        }
+        if (message instanceof BinaryMessage binaryMessage) {
+            return binaryMessage.getPayload().remaining();
+        }
+        return message.getPayloadLength();
+    }
+
+    /**
+     * 队列里的消息是否都已写到 socket（没有排队、也没有正在写的）
+     */
+    public boolean isFlushed() {
+        return queue.isEmpty() && !draining.get() && carry == null;
+    }
+
+    // ----------------- 指标 -----------------
+
+    /**
+     * 当前排队中的消息条数
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * 当前排队中的消息总大小
+     */
+    public long getBufferSize() {
+        return bufferSize.get();
+    }
+
+    /**
+     * 历史最大排队深度
+     */
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * 实际写出的帧数（合并后的帧只算一次）
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 因合并而省掉的帧数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 出站队列参数
+     *
+     * @param queueCapacity       每个会话最多排队条数
+     * @param bufferSizeLimit     排队消息总大小上限
+     * @param sendTimeLimit       单次写 socket 超时时间（毫秒）
+     * @param overflowPolicy      溢出策略
+     * @param drainBatchSize      单次最多连续发送条数
+     * @param coalesceWindowNanos 可合并消息的攒批窗口（纳秒），0 表示立即发送
+     * @param maxFrameSize        合并帧的最大字符数，0 表示不合并
+     */
+    public record Options(int queueCapacity, long bufferSizeLimit, long sendTimeLimit,
+                          OverflowPolicy overflowPolicy, int drainBatchSize,
+                          long coalesceWindowNanos, int maxFrameSize) {
+    }
+}
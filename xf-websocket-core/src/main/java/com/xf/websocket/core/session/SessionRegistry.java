@@ -0,0 +1,137 @@
+package com.xf.websocket.core.session;
+
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 在线会话注册表（支持多端同时在线）
+ * <p>
+ * 替代原来的 uid -> Session 单值 Map：
+ * 1. 一个 uid 可以同时挂多个 Session（手机 + PC + 网页），消息投递给所有端；
+ * 2. 注销按 sessionId 进行，旧连接断开时不会误删同一个 uid 下新登录的连接；
+ * 3. 每个 uid 的 Session 列表是不可变数组，读取无锁、无拷贝，修改时在 ConcurrentHashMap 的
+ * compute 中整体替换（只锁住该 uid 所在的桶，相当于分段锁）；
+ * 4. 在线用户数、在线连接数用计数器维护，查询不需要遍历 Map。
+ */
+public class SessionRegistry {
+
+    private static final WebSocketSession[] EMPTY = new WebSocketSession[0];
+
+    // Key: uid, Value: 该用户当前所有在线 Session
+    private final ConcurrentHashMap<String, WebSocketSession[]> users = new ConcurrentHashMap<>();
+    // 计数器用 LongAdder：上下线频繁时多线程不会争抢同一个缓存行，sum() 的开销只和 CPU 核数有关
+    private final LongAdder userCount = new LongAdder();
+    private final LongAdder sessionCount = new LongAdder();
+
+    /**
+     * 注册一个连接
+     */
+    public void register(String uid, WebSocketSession session) {
+        users.compute(uid, (key, current) -> {
+            if (current == null) {
+                userCount.increment();
+                sessionCount.increment();
+                return new WebSocketSession[]{session};
+            }
+            for (WebSocketSession s : current) {
+                if (s == session) {
+                    return current;
+                }
+            }
+            WebSocketSession[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = session;
+            sessionCount.increment();
+            return next;
+        });
+    }
+
+    /**
+     * 按 sessionId 注销一个连接
+     *
+     * @return 是否真的移除了
+     */
+    public boolean unregister(String uid, String sessionId) {
+        boolean[] removed = new boolean[1];
+        users.computeIfPresent(uid, (key, current) -> {
+            int index = indexOf(current, sessionId);
+            if (index < 0) {
+                return current;
+            }
+            removed[0] = true;
+            sessionCount.decrement();
+            if (current.length == 1) {
+                userCount.decrement();
+                return null;
+            }
+            WebSocketSession[] next = new WebSocketSession[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            return next;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 获取用户的所有在线 Session，返回的数组不可修改
+     */
+    public WebSocketSession[] getSessions(String uid) {
+        WebSocketSession[] sessions = users.get(uid);
+        return sessions != null ? sessions : EMPTY;
+    }
+
+    public boolean isOnline(String uid) {
+        return users.containsKey(uid);
+    }
+
+    /**
+     * 在线用户数（多端只算一个）
+     */
+    public int getOnlineUserCount() {
+        return userCount.intValue();
+    }
+
+    /**
+     * 在线连接数
+     */
+    public int getSessionCount() {
+        return sessionCount.intValue();
+    }
+
+    /**
+     * 在线用户 uid 集合（弱一致视图）
+     */
+    public Set<String> getOnlineUsers() {
+        return users.keySet();
+    }
+
+    /**
+     * 遍历所有在线 Session（弱一致，遍历期间的上下线可能看得到也可能看不到）
+     */
+    public void forEachSession(Consumer<WebSocketSession> action) {
+        for (WebSocketSession[] sessions : users.values()) {
+            for (WebSocketSession session : sessions) {
+                action.accept(session);
+            }
+        }
+    }
+
+    private static int indexOf(WebSocketSession[] sessions, String sessionId) {
+        // 调用方传入的通常就是 session.getId() 本身，先按引用比较，省掉逐个比较字符串内容的缓存未命中
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i].getId() == sessionId) {
+                return i;
+            }
+        }
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i].getId().equals(sessionId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
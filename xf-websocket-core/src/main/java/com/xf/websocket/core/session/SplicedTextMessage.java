@@ -0,0 +1,87 @@
+package com.xf.websocket.core.session;
+
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 拼接式文本消息：前缀 + 原始报文中的一个片段 + 后缀
+ * <p>
+ * 转发大消息（例如 5MB 的 base64 图片）时，不再把 content 复制成新的字符串，
+ * 而是直接引用收到的原始报文，发送时用容器的 sendWriter 把三段依次写进同一个 WebSocket 帧。
+ * 只有在确实需要完整字符串时（例如容器不支持 sendWriter）才调用 {@link #getPayload()} 拼出来并缓存。
+ */
+public final class SplicedTextMessage implements WebSocketMessage<String> {
+
+    private final String prefix;
+    private final String source;
+    private final int start;
+    private final int end;
+    private final String suffix;
+    private volatile String payload;
+
+    public SplicedTextMessage(String prefix, String source, int start, int end, String suffix) {
+        this.prefix = prefix;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.suffix = suffix;
+    }
+
+    /**
+     * 完整消息内容（按需拼接，拼接后缓存）
+     */
+    @Override
+    public String getPayload() {
+        String result = payload;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder(getPayloadLength());
+            builder.append(prefix).append(source, start, end).append(suffix);
+            result = builder.toString();
+            payload = result;
+        }
+        return result;
+    }
+
+    /**
+     * 按字符数返回长度
+     */
+    @Override
+    public int getPayloadLength() {
+        return prefix.length() + (end - start) + suffix.length();
+    }
+
+    @Override
+    public boolean isLast() {
+        return true;
+    }
+
+    /**
+     * 把三段内容依次写入 writer
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(prefix);
+        writer.write(source, start, end - start);
+        writer.write(suffix);
+    }
+
+    /**
+     * 发送到 Session：标准 JSR-356 容器（Tomcat 等）走 sendWriter 流式写出，其余情况退化为普通 TextMessage
+     */
+    public void sendTo(WebSocketSession session) throws IOException {
+        if (payload == null && session instanceof NativeWebSocketSession nativeSession) {
+            jakarta.websocket.Session standard = nativeSession.getNativeSession(jakarta.websocket.Session.class);
+            if (standard != null) {
+                try (Writer writer = standard.getBasicRemote().getSendWriter()) {
+                    writeTo(writer);
+                }
+                return;
+            }
+        }
+        session.sendMessage(new TextMessage(getPayload()));
+    }
+}
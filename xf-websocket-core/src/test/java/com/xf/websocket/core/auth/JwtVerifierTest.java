@@ -0,0 +1,85 @@
+package com.xf.websocket.core.auth;
+
+import com.xf.websocket.core.support.TestTokens;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JwtVerifierTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private final JwtVerifier hmacVerifier = new JwtVerifier(SECRET, "", "", Duration.ofSeconds(30));
+
+    @Test
+    void acceptsValidHs256Token() throws Exception {
+        long now = System.currentTimeMillis();
+        VerifiedToken verified = hmacVerifier.verify(TestTokens.hs256(SECRET, TestTokens.claims("1001", 60)), now);
+
+        assertNotNull(verified);
+        assertEquals("1001", verified.subject());
+        assertEquals(now / 1000 + 60, verified.expiresAtMillis() / 1000, 1);
+    }
+
+    @Test
+    void rejectsWrongSecretAndTamperedClaims() throws Exception {
+        long now = System.currentTimeMillis();
+        assertNull(hmacVerifier.verify(TestTokens.hs256("another-secret", TestTokens.claims("1001", 60)), now));
+
+        String token = TestTokens.hs256(SECRET, TestTokens.claims("1001", 60));
+        String forged = TestTokens.hs256(SECRET, TestTokens.claims("1002", 60));
+        // 拿 1001 的签名配 1002 的声明
+        String tampered = forged.substring(0, forged.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+        assertNull(hmacVerifier.verify(tampered, now));
+        assertNull(hmacVerifier.verify("not-a-token", now));
+    }
+
+    @Test
+    void checksExpiryWithClockSkew() throws Exception {
+        long now = System.currentTimeMillis();
+        // 过期 10 秒，仍在 30 秒偏差之内
+        assertNotNull(hmacVerifier.verify(TestTokens.hs256(SECRET, TestTokens.claims("1001", -10)), now));
+        assertNull(hmacVerifier.verify(TestTokens.hs256(SECRET, TestTokens.claims("1001", -60)), now));
+        assertNull(hmacVerifier.verify(TestTokens.hs256(SECRET, "{\"exp\":" + (now / 1000 + 60) + "}"), now));
+    }
+
+    @Test
+    void checksIssuer() throws Exception {
+        JwtVerifier verifier = new JwtVerifier(SECRET, "", "auth.xf.com", Duration.ZERO);
+        long now = System.currentTimeMillis();
+        assertNotNull(verifier.verify(TestTokens.hs256(SECRET, "{\"sub\":\"1001\",\"iss\":\"auth.xf.com\"}"), now));
+        assertNull(verifier.verify(TestTokens.hs256(SECRET, "{\"sub\":\"1001\",\"iss\":\"evil.com\"}"), now));
+    }
+
+    /**
+     * 只配置了 RS256 时不接受 HS256，反之亦然，也不接受 alg=none
+     */
+    @Test
+    void acceptsOnlyConfiguredAlgorithms() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        String pem = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----";
+        JwtVerifier rsaVerifier = new JwtVerifier("", pem, "", Duration.ZERO);
+        long now = System.currentTimeMillis();
+
+        String rsaToken = TestTokens.rs256(keyPair.getPrivate(), TestTokens.claims("1001", 60));
+        assertEquals("1001", rsaVerifier.verify(rsaToken, now).subject());
+        assertNull(hmacVerifier.verify(rsaToken, now));
+        assertNull(rsaVerifier.verify(TestTokens.hs256(SECRET, TestTokens.claims("1001", 60)), now));
+
+        String unsigned = Base64.getUrlEncoder().withoutPadding().encodeToString("{\"alg\":\"none\"}".getBytes())
+                + "." + Base64.getUrlEncoder().withoutPadding().encodeToString("{\"sub\":\"1001\"}".getBytes()) + ".";
+        assertNull(rsaVerifier.verify(unsigned, now));
+        assertNull(hmacVerifier.verify(unsigned, now));
+    }
+}
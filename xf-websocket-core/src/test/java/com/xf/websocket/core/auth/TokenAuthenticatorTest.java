@@ -0,0 +1,16 @@
+package com.xf.websocket.core.auth;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenAuthenticatorTest {
+
+    @Test
+    void unresolvedSecretPlaceholderFailsStartup() {
+        XfWebSocketCoreProperties properties = new XfWebSocketCoreProperties();
+        properties.getAuth().setHmacSecret("${XF_WEBSOCKET_HMAC_SECRET}");
+        assertThrows(IllegalStateException.class, () -> new TokenAuthenticator(properties));
+    }
+}
@@ -0,0 +1,44 @@
+package com.xf.websocket.core.auth;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenCacheTest {
+
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    void entryExpiresAtTokenExpOrTtlWhicheverIsFirst() {
+        TokenCache cache = new TokenCache(10, 1000);
+        cache.put("short", new VerifiedToken("1001", NOW + 100), NOW);
+        cache.put("long", new VerifiedToken("1002", Long.MAX_VALUE), NOW);
+
+        assertNotNull(cache.get("short", NOW + 99));
+        assertNull(cache.get("short", NOW + 100));
+        assertNotNull(cache.get("long", NOW + 999));
+        assertNull(cache.get("long", NOW + 1000));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void staysBoundedWhenFull() {
+        TokenCache cache = new TokenCache(100, 60_000);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("token-" + i, new VerifiedToken("u" + i, Long.MAX_VALUE), NOW);
+            assertTrue(cache.size() <= 100);
+        }
+        // 最新写入的一条一定在
+        assertEquals("u999", cache.get("token-999", NOW).subject());
+    }
+
+    @Test
+    void zeroMaxEntriesDisablesCaching() {
+        TokenCache cache = new TokenCache(0, 60_000);
+        cache.put("token", new VerifiedToken("1001", Long.MAX_VALUE), NOW);
+        assertNull(cache.get("token", NOW));
+    }
+}
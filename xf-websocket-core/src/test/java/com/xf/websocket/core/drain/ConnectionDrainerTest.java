@@ -0,0 +1,81 @@
+package com.xf.websocket.core.drain;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionDrainerTest {
+
+    @Test
+    void batchSizeFollowsRateUnlessDeadlineRequiresMore() {
+        // 500/s、100ms 一批 = 每批 50 个
+        assertEquals(50, ConnectionDrainer.batchSize(1000, 500, 100, 20_000));
+        // 20s 内只有 200 批，10 万个连接每批至少 500 个
+        assertEquals(500, ConnectionDrainer.batchSize(100_000, 500, 100, 20_000));
+        assertEquals(1, ConnectionDrainer.batchSize(3, 1, 100, 20_000));
+    }
+
+    /**
+     * 每个连接先收到带随机退避的重连提示，再以 1012 关闭；排空开始后拒绝新连接
+     */
+    @Test
+    void hintsThenClosesEverySession() throws InterruptedException {
+        XfWebSocketCoreProperties properties = new XfWebSocketCoreProperties();
+        properties.getDrain().setReconnectRate(20);
+        properties.getDrain().setBatchInterval(Duration.ofMillis(10));
+        properties.getDrain().setReconnectJitter(Duration.ofSeconds(3));
+        OutboundQueueManager outboundQueueManager = new OutboundQueueManager(properties);
+        List<StubWebSocketSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            StubWebSocketSession session = new StubWebSocketSession("s" + i, "u" + i);
+            sessions.add(session);
+            outboundQueueManager.register(session);
+        }
+        AtomicInteger upstreamWaits = new AtomicInteger();
+        ConnectionDrainer drainer = new ConnectionDrainer(outboundQueueManager, new DrainHandler() {
+            @Override
+            public TextMessage reconnectHint(WebSocketSession session, long afterMillis) {
+                return new TextMessage("reconnect:" + afterMillis);
+            }
+
+            @Override
+            public boolean awaitUpstream(long timeoutMillis) {
+                upstreamWaits.incrementAndGet();
+                return true;
+            }
+        }, properties);
+        assertFalse(drainer.isDraining());
+
+        try {
+            drainer.drain();
+        } finally {
+            outboundQueueManager.shutdown();
+        }
+
+        assertTrue(drainer.isDraining());
+        assertEquals(3, drainer.getRetryAfterSeconds());
+        assertEquals(5, drainer.getDrainedCount());
+        // 20/s、10ms 一批 = 每批 1 个，每批之前都等一次上游
+        assertEquals(5, upstreamWaits.get());
+        for (StubWebSocketSession session : sessions) {
+            assertEquals(CloseStatus.SERVICE_RESTARTED, session.getCloseStatus());
+            assertEquals(1, session.getSentMessages().size());
+            String hint = ((TextMessage) session.getSentMessages().get(0)).getPayload();
+            long after = Long.parseLong(hint.substring("reconnect:".length()));
+            assertTrue(after >= 0 && after < 3000, hint);
+        }
+    }
+}
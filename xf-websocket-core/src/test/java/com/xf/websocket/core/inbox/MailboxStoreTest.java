@@ -0,0 +1,108 @@
+package com.xf.websocket.core.inbox;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MailboxStoreTest {
+
+    private final MailboxStore store = new MailboxStore(60_000, 3, 1024, 1 << 20);
+
+    @Test
+    void peekDoesNotRemoveAndRemoveDropsOnlyDelivered() {
+        IntStream.range(0, 3).forEach(i -> store.store("alice", bytes("m" + i)));
+
+        List<byte[]> batch = new ArrayList<>();
+        MailboxStore.Cursor cursor = store.peek("alice", batch, 10);
+        assertEquals(List.of("m0", "m1", "m2"), strings(batch));
+        assertEquals(3, store.size("alice"));
+
+        store.remove("alice", cursor, 2);
+        assertEquals(List.of("m2"), take("alice"));
+        assertEquals(0, store.getMailboxCount());
+        assertEquals(0, store.getTotalBytes());
+    }
+
+    /**
+     * peek 之后有条目被挤出：按序号移除，不会误删之后存入的
+     */
+    @Test
+    void removeSkipsEntriesEvictedSincePeek() {
+        IntStream.range(0, 3).forEach(i -> store.store("bob", bytes("m" + i)));
+        List<byte[]> batch = new ArrayList<>();
+        MailboxStore.Cursor cursor = store.peek("bob", batch, 2);
+
+        store.store("bob", bytes("m3"));
+        store.remove("bob", cursor, 2);
+
+        assertEquals(List.of("m2", "m3"), take("bob"));
+        assertEquals(1, store.getEvictedCount());
+    }
+
+    /**
+     * 收件箱清空后重建，旧的 cursor 不再生效
+     */
+    @Test
+    void staleCursorDoesNotTouchRecreatedMailbox() {
+        store.store("carol", bytes("old"));
+        MailboxStore.Cursor cursor = store.peek("carol", new ArrayList<>(), 10);
+        take("carol");
+        store.store("carol", bytes("new"));
+
+        store.remove("carol", cursor, 1);
+
+        assertEquals(List.of("new"), take("carol"));
+        assertNull(store.peek("carol", new ArrayList<>(), 10));
+        assertFalse(store.contains("carol"));
+    }
+
+    /**
+     * 总上限按缓冲区容量计：扩容后的收件箱即使只剩一条消息，占用的容量仍计入，用户再多也不会超过上限
+     */
+    @Test
+    void totalLimitBoundsBufferCapacityAcrossUsers() {
+        MailboxStore bounded = new MailboxStore(60_000, 100, 4096, 16 * 1024);
+        byte[] payload = new byte[1000];
+        for (int user = 0; user < 100; user++) {
+            String name = "u" + user;
+            // 四条 1012 字节的条目把缓冲区扩到 4096，取走三条后只剩一条
+            IntStream.range(0, 4).forEach(i -> bounded.store(name, payload));
+            bounded.remove(name, bounded.peek(name, new ArrayList<>(), 3), 3);
+            assertTrue(bounded.getTotalBytes() <= 16 * 1024);
+        }
+        assertEquals(4, bounded.getMailboxCount());
+        assertEquals(16 * 1024, bounded.getTotalBytes());
+        assertEquals(96 * 4, bounded.getRejectedCount());
+
+        // 收件箱清空后归还容量，新用户可以存入
+        bounded.remove("u0", bounded.peek("u0", new ArrayList<>(), 1), 1);
+        assertEquals(12 * 1024, bounded.getTotalBytes());
+        assertTrue(bounded.store("u100", payload));
+        assertEquals(13 * 1024, bounded.getTotalBytes());
+    }
+
+    /**
+     * 和回放一样先 peek 再 remove，取走该用户的全部消息
+     */
+    private List<String> take(String user) {
+        List<byte[]> batch = new ArrayList<>();
+        store.remove(user, store.peek(user, batch, Integer.MAX_VALUE), batch.size());
+        return strings(batch);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> entries) {
+        return entries.stream().map(entry -> new String(entry, StandardCharsets.UTF_8)).toList();
+    }
+}
@@ -0,0 +1,139 @@
+package com.xf.websocket.core.ratelimit;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimiterTest {
+
+    private final XfWebSocketCoreProperties properties = new XfWebSocketCoreProperties();
+    private RateLimiter limiter;
+
+    @AfterEach
+    void tearDown() {
+        limiter.shutdown();
+    }
+
+    private RateLimiter limiter(XfWebSocketCoreProperties.Limit session, XfWebSocketCoreProperties.Limit user) {
+        properties.getRateLimit().setSession(session);
+        properties.getRateLimit().setUser(user);
+        limiter = new RateLimiter(properties);
+        return limiter;
+    }
+
+    private static XfWebSocketCoreProperties.Limit messages(int burst) {
+        // 补充速率极低，测试期间相当于不补充
+        return new XfWebSocketCoreProperties.Limit(0.001, burst, DataSize.ofBytes(0), DataSize.ofBytes(0));
+    }
+
+    @Test
+    void sessionLimitThrottlesOnlyThatSession() {
+        RateLimiter limiter = limiter(messages(2), messages(100));
+        StubWebSocketSession first = new StubWebSocketSession("s1", "alice");
+        StubWebSocketSession second = new StubWebSocketSession("s2", "alice");
+
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(first, "alice", 10));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(first, "alice", 10));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquire(first, "alice", 10));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(second, "alice", 10));
+        assertEquals(1, limiter.getThrottledCount());
+    }
+
+    /**
+     * 同一用户多端合计受用户维度限制
+     */
+    @Test
+    void userLimitSpansSessions() {
+        RateLimiter limiter = limiter(messages(100), messages(3));
+        StubWebSocketSession first = new StubWebSocketSession("s1", "bob");
+        StubWebSocketSession second = new StubWebSocketSession("s2", "bob");
+
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(first, "bob", 10));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(second, "bob", 10));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(first, "bob", 10));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquire(second, "bob", 10));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(new StubWebSocketSession("s3", "carol"), "carol", 10));
+    }
+
+    @Test
+    void byteLimitRejectsLargeMessages() {
+        RateLimiter limiter = limiter(new XfWebSocketCoreProperties.Limit(0, 0, DataSize.ofBytes(1),
+                DataSize.ofKilobytes(1)), messages(100));
+        StubWebSocketSession session = new StubWebSocketSession("s1", "dave");
+
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(session, "dave", 1000));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquire(session, "dave", 100));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(session, "dave", 24));
+    }
+
+    /**
+     * 连续超限达到阈值后关闭；中间有一次通过则重新计数
+     */
+    @Test
+    void closesAfterConsecutiveViolations() {
+        properties.getRateLimit().setCloseAfterViolations(3);
+        RateLimiter limiter = limiter(messages(1), messages(100));
+        StubWebSocketSession session = new StubWebSocketSession("s1", "eve");
+
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(session, "eve", 10));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquire(session, "eve", 10));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquire(session, "eve", 10));
+        assertEquals(RateLimiter.Decision.CLOSE, limiter.acquire(session, "eve", 10));
+        assertEquals(1, limiter.getClosedCount());
+    }
+
+    @Test
+    void closeActionClosesOnFirstViolation() {
+        properties.getRateLimit().setAction(RateLimitAction.CLOSE);
+        RateLimiter limiter = limiter(messages(1), messages(100));
+        StubWebSocketSession session = new StubWebSocketSession("s1", "frank");
+
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(session, "frank", 10));
+        assertEquals(RateLimiter.Decision.CLOSE, limiter.acquire(session, "frank", 10));
+    }
+
+    /**
+     * ack 只扣单独的 ack 桶：发送额度用完后 ack 照常通过，ack 超限也不影响发送
+     */
+    @Test
+    void acksUseSeparateCountOnlyBucket() {
+        properties.getRateLimit().setAck(messages(2));
+        RateLimiter limiter = limiter(messages(1), messages(100));
+        StubWebSocketSession session = new StubWebSocketSession("s1", "ivy");
+
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(session, "ivy", 10));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquire(session, "ivy", 10));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquireAck(session));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquireAck(session));
+        assertEquals(RateLimiter.Decision.THROTTLE, limiter.acquireAck(session));
+        assertEquals(RateLimiter.Decision.ALLOW, limiter.acquireAck(new StubWebSocketSession("s2", "ivy")));
+    }
+
+    @Test
+    void sweepRemovesIdleUserBuckets() {
+        properties.getRateLimit().setIdleTimeout(Duration.ZERO);
+        RateLimiter limiter = limiter(messages(100), new XfWebSocketCoreProperties.Limit(1e9, 100,
+                DataSize.ofBytes(0), DataSize.ofBytes(0)));
+        limiter.acquire(new StubWebSocketSession("s1", "grace"), "grace", 10);
+        assertEquals(1, limiter.getUserBucketCount());
+
+        limiter.sweep();
+        assertEquals(0, limiter.getUserBucketCount());
+    }
+
+    @Test
+    void disabledAllowsEverything() {
+        properties.getRateLimit().setEnabled(false);
+        RateLimiter limiter = limiter(messages(1), messages(1));
+        StubWebSocketSession session = new StubWebSocketSession("s1", "henry");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(RateLimiter.Decision.ALLOW, limiter.acquire(session, "henry", 10));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.xf.websocket.core.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 满桶可以一次取完容量，之后按速率补充
+     */
+    @Test
+    void allowsBurstThenRefillsAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(1, now));
+        }
+        assertFalse(bucket.tryAcquire(1, now));
+
+        // 100ms 补充 1 个
+        assertTrue(bucket.tryAcquire(1, now + SECOND / 10));
+        assertFalse(bucket.tryAcquire(1, now + SECOND / 10));
+
+        // 空闲再久也只能回满到容量
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(1, later));
+        }
+        assertFalse(bucket.tryAcquire(1, later));
+    }
+
+    /**
+     * 令牌不足时整笔拒绝，不扣减
+     */
+    @Test
+    void rejectedAcquireDoesNotConsume() {
+        TokenBucket bucket = new TokenBucket(1000, 100);
+        long now = System.nanoTime();
+        assertFalse(bucket.tryAcquire(101, now));
+        assertTrue(bucket.tryAcquire(100, now));
+    }
+
+    @Test
+    void becomesIdleAfterRefill() {
+        TokenBucket bucket = new TokenBucket(10, 10);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(10, now));
+        assertFalse(bucket.isIdle(now, SECOND));
+        // 1 秒回满，再空闲 1 秒
+        assertTrue(bucket.isIdle(now + 2 * SECOND, SECOND));
+    }
+
+    /**
+     * 多线程同时取令牌，总数不超过容量
+     */
+    @Test
+    void concurrentAcquireNeverOverspends() throws Exception {
+        TokenBucket bucket = new TokenBucket(0.001, 1000);
+        long now = System.nanoTime();
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (bucket.tryAcquire(1, now)) {
+                        granted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        done.await(10, TimeUnit.SECONDS);
+        pool.shutdown();
+        assertEquals(1000, granted.get());
+    }
+}
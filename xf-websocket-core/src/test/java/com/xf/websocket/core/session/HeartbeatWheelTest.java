@@ -0,0 +1,84 @@
+package com.xf.websocket.core.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HeartbeatWheelTest {
+
+    private final long start = System.currentTimeMillis();
+    private final HeartbeatWheel wheel = new HeartbeatWheel(1000, 100, false);
+
+    @AfterEach
+    void tearDown() {
+        wheel.shutdown();
+    }
+
+    /**
+     * 没有活动的连接在超时后被关闭，有活动的连接被顺延
+     */
+    @Test
+    void evictsOnlyIdleSessions() throws Exception {
+        WebSocketSession idle = session();
+        WebSocketSession active = session();
+        wheel.register(idle);
+        wheel.register(active);
+
+        wheel.tick(start + 500);
+        wheel.touch(active);
+
+        wheel.tick(start + 1200);
+        verify(idle, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(active, never()).close(CloseStatus.SESSION_NOT_RELIABLE);
+
+        wheel.tick(start + 1700);
+        verify(active, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(2, wheel.getEvictedCount());
+    }
+
+    /**
+     * 已注销的连接不会再被关闭
+     */
+    @Test
+    void cancelledSessionsAreSkipped() throws Exception {
+        WebSocketSession session = session();
+        wheel.register(session);
+        wheel.cancel(session);
+
+        wheel.tick(start + 100);
+        wheel.tick(start + 2000);
+
+        assertEquals(0, wheel.getEvictedCount());
+        verify(session, never()).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * tick 线程被耽搁时，错过的槽会被补处理
+     */
+    @Test
+    void catchesUpMissedTicks() throws Exception {
+        WebSocketSession session = session();
+        wheel.register(session);
+
+        wheel.tick(start + 100);
+        wheel.tick(start + 5000);
+
+        verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    private static WebSocketSession session() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        return session;
+    }
+}
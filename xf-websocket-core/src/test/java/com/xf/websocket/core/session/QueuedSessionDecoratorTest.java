@@ -0,0 +1,203 @@
+package com.xf.websocket.core.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueuedSessionDecoratorTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 发送方不应被慢连接阻塞，且消息按入队顺序写出
+     */
+    @Test
+    void sendDoesNotBlockAndPreservesOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        WebSocketSession delegate = slowSession(release, written);
+
+        QueuedSessionDecorator session = new QueuedSessionDecorator(delegate,
+                options(16, OverflowPolicy.DROP_NEWEST), executor, scheduler);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            session.sendMessage(new TextMessage("m" + i));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+
+        release.countDown();
+        awaitSent(session, 5);
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m4"), written);
+    }
+
+    /**
+     * DROP_NEWEST：队列满时丢弃新消息
+     */
+    @Test
+    void dropNewestWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        QueuedSessionDecorator session = new QueuedSessionDecorator(slowSession(release, written),
+                options(2, OverflowPolicy.DROP_NEWEST), executor, scheduler);
+
+        // 第一条会被发送线程取走并卡在 socket 写入上，之后两条占满队列
+        assertTrue(session.trySend(new TextMessage("m0")));
+        awaitDepth(session, 0);
+        assertTrue(session.trySend(new TextMessage("m1")));
+        assertTrue(session.trySend(new TextMessage("m2")));
+        assertFalse(session.trySend(new TextMessage("m3")));
+
+        assertEquals(1, session.getDroppedCount());
+        release.countDown();
+        awaitSent(session, 3);
+        assertEquals(List.of("m0", "m1", "m2"), written);
+    }
+
+    /**
+     * DROP_OLDEST：队列满时丢弃最早的排队消息
+     */
+    @Test
+    void dropOldestWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        QueuedSessionDecorator session = new QueuedSessionDecorator(slowSession(release, written),
+                options(2, OverflowPolicy.DROP_OLDEST), executor, scheduler);
+
+        session.sendMessage(new TextMessage("m0"));
+        awaitDepth(session, 0);
+        session.sendMessage(new TextMessage("m1"));
+        session.sendMessage(new TextMessage("m2"));
+        session.sendMessage(new TextMessage("m3"));
+
+        assertEquals(1, session.getDroppedCount());
+        assertEquals(2, session.getHighWatermark());
+        release.countDown();
+        awaitSent(session, 3);
+        assertEquals(List.of("m0", "m2", "m3"), written);
+    }
+
+    /**
+     * CLOSE_SESSION：队列满时关闭会话
+     */
+    @Test
+    void closeSessionWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession delegate = slowSession(release, new CopyOnWriteArrayList<>());
+        QueuedSessionDecorator session = new QueuedSessionDecorator(delegate,
+                options(1, OverflowPolicy.CLOSE_SESSION), executor, scheduler);
+
+        session.sendMessage(new TextMessage("m0"));
+        awaitDepth(session, 0);
+        session.sendMessage(new TextMessage("m1"));
+        session.sendMessage(new TextMessage("m2"));
+
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+        release.countDown();
+    }
+
+    /**
+     * 关闭前已入队的消息（例如 STOMP 的 ERROR 帧）先发完再关闭，关闭后不再接受新消息
+     */
+    @Test
+    void closeFlushesQueuedMessagesFirst() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        WebSocketSession delegate = slowSession(release, written);
+        QueuedSessionDecorator session = new QueuedSessionDecorator(delegate,
+                options(16, OverflowPolicy.DROP_NEWEST), executor, scheduler);
+
+        session.sendMessage(new TextMessage("m0"));
+        session.sendMessage(new TextMessage("error"));
+        session.close(CloseStatus.PROTOCOL_ERROR);
+        assertFalse(session.trySend(new TextMessage("late")));
+        verify(delegate, never()).close(any());
+
+        release.countDown();
+        verify(delegate, timeout(5000)).close(CloseStatus.PROTOCOL_ERROR);
+        assertEquals(List.of("m0", "error"), written);
+    }
+
+    /**
+     * 窗口内连续排队的可合并消息应合并成一个 JSON 数组帧
+     */
+    @Test
+    void coalesceBatchableMessages() throws Exception {
+        CountDownLatch release = new CountDownLatch(0);
+        List<String> written = new CopyOnWriteArrayList<>();
+        QueuedSessionDecorator session = new QueuedSessionDecorator(slowSession(release, written),
+                new QueuedSessionDecorator.Options(16, 1024 * 1024, 10_000, OverflowPolicy.DROP_NEWEST, 64,
+                        TimeUnit.MILLISECONDS.toNanos(50), 1024),
+                executor, scheduler);
+
+        session.sendMessage(new BatchableTextMessage("{\"n\":1}"));
+        session.sendMessage(new BatchableTextMessage("{\"n\":2}"));
+        session.sendMessage(new BatchableTextMessage("{\"n\":3}"));
+        session.sendMessage(new TextMessage("pong"));
+
+        awaitSent(session, 2);
+        assertEquals(List.of("[{\"n\":1},{\"n\":2},{\"n\":3}]", "pong"), written);
+        assertEquals(2, session.getCoalescedCount());
+    }
+
+    private static QueuedSessionDecorator.Options options(int capacity, OverflowPolicy policy) {
+        return new QueuedSessionDecorator.Options(capacity, 1024 * 1024, 10_000, policy, 64, 0, 0);
+    }
+
+    private static WebSocketSession slowSession(CountDownLatch release, List<String> written) throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.isOpen()).thenReturn(true);
+        when(delegate.getId()).thenReturn("s1");
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            written.add((String) message.getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+        return delegate;
+    }
+
+    private static void awaitSent(QueuedSessionDecorator session, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (session.getSentCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, session.getSentCount());
+    }
+
+    private static void awaitDepth(QueuedSessionDecorator session, int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (session.getQueueDepth() != depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
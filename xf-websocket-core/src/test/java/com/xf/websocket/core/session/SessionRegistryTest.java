@@ -0,0 +1,97 @@
+package com.xf.websocket.core.session;
+
+import com.xf.websocket.core.support.StubWebSocketSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRegistryTest {
+
+    private final SessionRegistry registry = new SessionRegistry();
+
+    /**
+     * 同一个 uid 多端登录，旧连接断开不应影响新连接
+     */
+    @Test
+    void closingOldSessionKeepsNewOne() {
+        WebSocketSession phone = session("s1");
+        WebSocketSession pc = session("s2");
+
+        registry.register("1001", phone);
+        registry.register("1001", pc);
+        assertArrayEquals(new WebSocketSession[]{phone, pc}, registry.getSessions("1001"));
+        assertEquals(1, registry.getOnlineUserCount());
+        assertEquals(2, registry.getSessionCount());
+
+        assertTrue(registry.unregister("1001", "s1"));
+        assertArrayEquals(new WebSocketSession[]{pc}, registry.getSessions("1001"));
+        assertFalse(registry.unregister("1001", "s1"));
+
+        assertTrue(registry.unregister("1001", "s2"));
+        assertFalse(registry.isOnline("1001"));
+        assertEquals(0, registry.getOnlineUserCount());
+        assertEquals(0, registry.getSessionCount());
+    }
+
+    /**
+     * 重复注册同一个 Session 不重复计数
+     */
+    @Test
+    void registerIsIdempotent() {
+        WebSocketSession session = session("s1");
+        registry.register("1001", session);
+        registry.register("1001", session);
+        assertEquals(1, registry.getSessionCount());
+    }
+
+    /**
+     * 并发上下线后计数与实际内容一致
+     */
+    @Test
+    void countersStayConsistentUnderChurn() throws Exception {
+        int threads = 8;
+        int perThread = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            List<WebSocketSession> mine = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                mine.add(session(t + "-" + i));
+            }
+            pool.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    registry.register("u" + (i % 50), mine.get(i));
+                }
+                for (int i = 0; i < perThread; i += 2) {
+                    registry.unregister("u" + (i % 50), mine.get(i).getId());
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        int sessions = 0;
+        for (String uid : registry.getOnlineUsers()) {
+            sessions += registry.getSessions(uid).length;
+        }
+        assertEquals(threads * perThread / 2, registry.getSessionCount());
+        assertEquals(sessions, registry.getSessionCount());
+        assertEquals(registry.getOnlineUsers().size(), registry.getOnlineUserCount());
+    }
+
+    private static WebSocketSession session(String id) {
+        return new StubWebSocketSession(id);
+    }
+}
@@ -0,0 +1,158 @@
+package com.xf.websocket.core.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 测试用的轻量 Session：记录发出的消息，不做任何 IO
+ * <p>
+ * 高并发/大量连接的测试里用它代替 Mockito mock，避免调用记录带来的开销。
+ * 基准测试（随 test-jar 发布）用 {@link #counting} 创建，只计条数不保存消息，长时间运行内存不会增长。
+ */
+public class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<WebSocketMessage<?>> sent = new CopyOnWriteArrayList<>();
+    private final boolean recording;
+    private final LongAdder sentCount = new LongAdder();
+    private volatile CloseStatus closeStatus;
+
+    public StubWebSocketSession(String id) {
+        this(id, null, true);
+    }
+
+    public StubWebSocketSession(String id, String uid) {
+        this(id, uid, true);
+    }
+
+    private StubWebSocketSession(String id, String uid, boolean recording) {
+        this.id = id;
+        this.recording = recording;
+        if (uid != null) {
+            attributes.put("uid", uid);
+        }
+    }
+
+    /**
+     * 只计条数、不保存消息的 Session，{@link #getSentMessages()} 始终为空
+     */
+    public static StubWebSocketSession counting(String id) {
+        return new StubWebSocketSession(id, null, false);
+    }
+
+    public static StubWebSocketSession counting(String id, String uid) {
+        return new StubWebSocketSession(id, uid, false);
+    }
+
+    public List<WebSocketMessage<?>> getSentMessages() {
+        return sent;
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public CloseStatus getCloseStatus() {
+        return closeStatus;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return null;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return HttpHeaders.EMPTY;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sentCount.increment();
+        if (recording) {
+            sent.add(message);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return closeStatus == null;
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        closeStatus = status;
+    }
+}
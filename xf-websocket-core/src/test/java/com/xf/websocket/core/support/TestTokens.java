@@ -0,0 +1,47 @@
+package com.xf.websocket.core.support;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * 测试用的 JWT 签发
+ */
+public final class TestTokens {
+
+    private static final Base64.Encoder URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private TestTokens() {
+    }
+
+    public static String hs256(String secret, String claimsJson) throws GeneralSecurityException {
+        String signingInput = signingInput("HS256", claimsJson);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return signingInput + "." + URL_ENCODER.encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    public static String rs256(PrivateKey key, String claimsJson) throws GeneralSecurityException {
+        String signingInput = signingInput("RS256", claimsJson);
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(key);
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + "." + URL_ENCODER.encodeToString(signature.sign());
+    }
+
+    /**
+     * {"sub": subject, "exp": 现在 + ttlSeconds}
+     */
+    public static String claims(String subject, long ttlSeconds) {
+        return "{\"sub\":\"" + subject + "\",\"exp\":" + (System.currentTimeMillis() / 1000 + ttlSeconds) + "}";
+    }
+
+    private static String signingInput(String alg, String claimsJson) {
+        return URL_ENCODER.encodeToString(("{\"alg\":\"" + alg + "\",\"typ\":\"JWT\"}").getBytes(StandardCharsets.UTF_8))
+                + "." + URL_ENCODER.encodeToString(claimsJson.getBytes(StandardCharsets.UTF_8));
+    }
+}
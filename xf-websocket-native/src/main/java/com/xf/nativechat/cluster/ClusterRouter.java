@@ -0,0 +1,280 @@
+package com.xf.nativechat.cluster;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.websocket.core.session.SessionRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 跨节点消息路由
+ * <p>
+ * 原来的会话表只在本节点内存中，目标用户连在别的节点上时消息会被悄悄丢掉。这里补上集群路由：
+ * 1. 本节点的用户上下线同步到 {@link PresenceDirectory}（uid -> 节点）；
+ * 2. 发给某个用户时，除本地投递外，按目录只转发给该用户真正所在的节点，而不是全集群广播；
+ * 3. 发往同一节点的消息先进该节点的发件箱，攒够一批或窗口到期后通过 {@link ClusterTransport} 一次写出。
+ */
+@Component
+@Slf4j
+public class ClusterRouter {
+
+    private final String nodeId;
+    private final SessionRegistry sessionRegistry;
+    private final PresenceDirectory directory;
+    private final ClusterTransport transport;
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+
+    // Key: 目标节点，Value: 发往该节点的发件箱
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    // 上下线同步按 uid 分段加锁，保证目录里最终记录的是该 uid 在本节点的真实状态
+    private final Object[] presenceLocks = new Object[64];
+
+    private volatile Consumer<RoutedMessage> listener = message -> log.debug("No listener for cluster message");
+
+    private final LongAdder forwardedCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public ClusterRouter(NativeWebSocketProperties properties, SessionRegistry sessionRegistry,
+                         PresenceDirectory directory, ClusterTransport transport) {
+        NativeWebSocketProperties.Cluster config = properties.getCluster();
+        this.nodeId = StringUtils.hasText(config.getNodeId())
+                ? config.getNodeId()
+                : UUID.randomUUID().toString().substring(0, 8);
+        this.sessionRegistry = sessionRegistry;
+        this.directory = directory;
+        this.transport = transport;
+        this.batchWindowNanos = config.getBatchWindow().toNanos();
+        this.maxBatchSize = Math.max(1, config.getMaxBatchSize());
+        for (int i = 0; i < presenceLocks.length; i++) {
+            presenceLocks[i] = new Object();
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-cluster-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.start(nodeId, this::receive);
+        directory.join(nodeId);
+        log.info("Cluster node started: {}", nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 注册处理其他节点发来的消息的回调（通常由聊天处理器做本地投递）
+     */
+    public void onRemoteMessage(Consumer<RoutedMessage> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 用户在本节点的连接发生变化后调用，把本节点是否还有该用户的连接同步到目录
+     */
+    public void syncPresence(String uid) {
+        synchronized (presenceLocks[(uid.hashCode() & 0x7fffffff) % presenceLocks.length]) {
+            if (sessionRegistry.isOnline(uid)) {
+                directory.online(uid, nodeId);
+            } else {
+                directory.offline(uid, nodeId);
+            }
+        }
+    }
+
+    /**
+     * 该用户是否在集群中任意节点上在线
+     */
+    public boolean isOnline(String uid) {
+        return !directory.nodesOf(uid).isEmpty();
+    }
+
+    /**
+     * 该用户是否连在本节点以外的节点上；本节点的连接是否收下消息由调用方自己判断
+     */
+    public boolean isOnlineElsewhere(String uid) {
+        for (String node : directory.nodesOf(uid)) {
+            if (!node.equals(nodeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 转发给连在其他节点上的该用户（本地连接由调用方自己投递）
+     */
+    public void forward(String uid, WebSocketMessage<?> message) {
+        Set<String> nodes = directory.nodesOf(uid);
+        if (nodes.isEmpty() || (nodes.size() == 1 && nodes.contains(nodeId))) {
+            return;
+        }
+        // 只有真的需要跨节点时才取完整内容（拼接帧会在这里拼出字符串）
+        RoutedMessage routed = RoutedMessage.toUser(uid, String.valueOf(message.getPayload()));
+        for (String node : nodes) {
+            if (!node.equals(nodeId)) {
+                outbox(node).add(routed);
+            }
+        }
+    }
+
+    /**
+     * 转发给一组用户中连在其他节点上的那部分，每个节点只收到一条带着本节点用户列表的消息
+     */
+    public void forward(Collection<String> uids, String payload) {
+        Map<String, List<String>> byNode = null;
+        for (String uid : uids) {
+            for (String node : directory.nodesOf(uid)) {
+                if (!node.equals(nodeId)) {
+                    if (byNode == null) {
+                        byNode = new HashMap<>();
+                    }
+                    byNode.computeIfAbsent(node, k -> new ArrayList<>()).add(uid);
+                }
+            }
+        }
+        if (byNode != null) {
+            byNode.forEach((node, targets) -> outbox(node).add(new RoutedMessage(targets, payload)));
+        }
+    }
+
+    /**
+     * 广播给其他所有节点
+     */
+    public void broadcast(String payload) {
+        RoutedMessage routed = RoutedMessage.broadcast(payload);
+        for (String node : directory.nodes()) {
+            if (!node.equals(nodeId)) {
+                outbox(node).add(routed);
+            }
+        }
+    }
+
+    /**
+     * 房间消息转发给其他所有节点，由各节点投递给本地加入了该房间的连接
+     * <p>
+     * 成员关系只在各节点本地维护，不同步到目录，所以这里不按成员挑选节点。
+     */
+    public void broadcastToRoom(String room, String payload) {
+        RoutedMessage routed = RoutedMessage.toRoom(room, payload);
+        for (String node : directory.nodes()) {
+            if (!node.equals(nodeId)) {
+                outbox(node).add(routed);
+            }
+        }
+    }
+
+    private Outbox outbox(String node) {
+        return outboxes.computeIfAbsent(node, Outbox::new);
+    }
+
+    private void receive(List<RoutedMessage> batch) {
+        receivedCount.add(batch.size());
+        Consumer<RoutedMessage> current = listener;
+        for (RoutedMessage message : batch) {
+            try {
+                current.accept(message);
+            } catch (RuntimeException e) {
+                log.error("Deliver cluster message failed", e);
+            }
+        }
+    }
+
+    public long getForwardedCount() {
+        return forwardedCount.sum();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    /**
+     * 累计的传输写入次数，和 forwardedCount 对比即可看出批量效果
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        directory.leave(nodeId);
+        transport.stop();
+        flusher.shutdown();
+    }
+
+    /**
+     * 发往某个节点的发件箱
+     */
+    private final class Outbox {
+
+        private final String node;
+        private final Queue<RoutedMessage> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Outbox(String node) {
+            this.node = node;
+        }
+
+        void add(RoutedMessage message) {
+            queue.add(message);
+            if (size.incrementAndGet() == maxBatchSize) {
+                // 攒满一批不再等窗口
+                flusher.execute(this::flush);
+            } else if (scheduled.compareAndSet(false, true)) {
+                flusher.schedule(this::flush, batchWindowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * 只在 flusher 线程上执行，同一个节点的批次按顺序写出
+         */
+        void flush() {
+            scheduled.set(false);
+            while (!queue.isEmpty()) {
+                List<RoutedMessage> batch = new ArrayList<>();
+                RoutedMessage message;
+                while (batch.size() < maxBatchSize && (message = queue.poll()) != null) {
+                    batch.add(message);
+                }
+                size.addAndGet(-batch.size());
+                try {
+                    transport.send(node, batch);
+                    forwardedCount.add(batch.size());
+                    batchCount.increment();
+                } catch (Exception e) {
+                    failedCount.add(batch.size());
+                    log.warn("Forward {} messages to node {} failed: {}", batch.size(), node, e.getMessage());
+                }
+            }
+        }
+    }
+}
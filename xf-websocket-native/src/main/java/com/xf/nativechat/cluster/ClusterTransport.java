@@ -0,0 +1,30 @@
+package com.xf.nativechat.cluster;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 节点间传输 SPI
+ * <p>
+ * 只负责把一批消息送到指定节点，不关心消息内容。{@link ClusterRouter} 已经按目标节点攒好批，
+ * 实现类每次 {@link #send} 应当只做一次网络写（一个 MQ 消息 / 一次 RPC / 一个 TCP 帧）。
+ * 内置的 {@link LoopbackClusterTransport} 在进程内直接投递，用于单机部署和测试。
+ */
+public interface ClusterTransport {
+
+    /**
+     * 以 nodeId 身份启动，receiver 接收发给本节点的消息批次
+     */
+    void start(String nodeId, Consumer<List<RoutedMessage>> receiver);
+
+    /**
+     * 把一批消息发往目标节点
+     */
+    void send(String targetNodeId, List<RoutedMessage> batch) throws IOException;
+
+    /**
+     * 停止接收
+     */
+    void stop();
+}
@@ -0,0 +1,73 @@
+package com.xf.nativechat.cluster;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的在线目录
+ * <p>
+ * 单节点部署时直接使用；测试中让多个节点共享同一个实例，就能在一个 JVM 里模拟集群。
+ * 每个 uid 对应的节点集合是不可变的，查询无锁，修改时在 compute 中整体替换。
+ */
+public class InMemoryPresenceDirectory implements PresenceDirectory {
+
+    private final ConcurrentHashMap<String, Set<String>> users = new ConcurrentHashMap<>();
+    private final Set<String> nodes = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void join(String nodeId) {
+        nodes.add(nodeId);
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        nodes.remove(nodeId);
+        // 节点下线很少发生，直接全表扫描
+        for (String uid : users.keySet()) {
+            offline(uid, nodeId);
+        }
+    }
+
+    @Override
+    public void online(String uid, String nodeId) {
+        users.compute(uid, (key, current) -> {
+            if (current == null) {
+                return Set.of(nodeId);
+            }
+            if (current.contains(nodeId)) {
+                return current;
+            }
+            Set<String> next = new HashSet<>(current);
+            next.add(nodeId);
+            return Collections.unmodifiableSet(next);
+        });
+    }
+
+    @Override
+    public void offline(String uid, String nodeId) {
+        users.computeIfPresent(uid, (key, current) -> {
+            if (!current.contains(nodeId)) {
+                return current;
+            }
+            if (current.size() == 1) {
+                return null;
+            }
+            Set<String> next = new HashSet<>(current);
+            next.remove(nodeId);
+            return Collections.unmodifiableSet(next);
+        });
+    }
+
+    @Override
+    public Set<String> nodesOf(String uid) {
+        Set<String> result = users.get(uid);
+        return result != null ? result : Set.of();
+    }
+
+    @Override
+    public Set<String> nodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+}
@@ -0,0 +1,64 @@
+package com.xf.nativechat.cluster;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 进程内传输：同一个 {@link Hub} 上的节点直接互相投递，不经过任何外部中间件
+ * <p>
+ * 单节点部署时它永远不会被调用（没有其他节点）；测试中多个节点共享一个 Hub，
+ * 就能在一个 JVM 里验证跨节点路由和批量写入。
+ */
+public class LoopbackClusterTransport implements ClusterTransport {
+
+    private final Hub hub;
+    private volatile String nodeId;
+
+    public LoopbackClusterTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void start(String nodeId, Consumer<List<RoutedMessage>> receiver) {
+        this.nodeId = nodeId;
+        hub.receivers.put(nodeId, receiver);
+    }
+
+    @Override
+    public void send(String targetNodeId, List<RoutedMessage> batch) throws IOException {
+        Consumer<List<RoutedMessage>> receiver = hub.receivers.get(targetNodeId);
+        if (receiver == null) {
+            throw new IOException("Node not reachable: " + targetNodeId);
+        }
+        hub.writes.incrementAndGet();
+        receiver.accept(batch);
+    }
+
+    @Override
+    public void stop() {
+        String id = nodeId;
+        if (id != null) {
+            hub.receivers.remove(id);
+        }
+    }
+
+    /**
+     * 进程内的“网络”
+     */
+    public static final class Hub {
+
+        private final Map<String, Consumer<List<RoutedMessage>>> receivers = new ConcurrentHashMap<>();
+        private final AtomicLong writes = new AtomicLong();
+
+        /**
+         * 累计的传输写入次数（每个批次算一次）
+         */
+        public long getWriteCount() {
+            return writes.get();
+        }
+    }
+}
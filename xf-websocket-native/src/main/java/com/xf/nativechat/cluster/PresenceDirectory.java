@@ -0,0 +1,42 @@
+package com.xf.nativechat.cluster;
+
+import java.util.Set;
+
+/**
+ * 集群在线目录：uid -> 所在节点
+ * <p>
+ * 每个节点只登记自己这里的用户，查询时返回该用户所在的全部节点（多端可能分布在不同节点）。
+ * 单机/测试使用 {@link InMemoryPresenceDirectory}，生产环境可以换成 Redis 等共享存储的实现。
+ */
+public interface PresenceDirectory {
+
+    /**
+     * 节点加入集群
+     */
+    void join(String nodeId);
+
+    /**
+     * 节点离开集群，同时清除它登记的所有用户
+     */
+    void leave(String nodeId);
+
+    /**
+     * 登记：用户在该节点上线（幂等）
+     */
+    void online(String uid, String nodeId);
+
+    /**
+     * 登记：用户在该节点已没有连接（幂等）
+     */
+    void offline(String uid, String nodeId);
+
+    /**
+     * 用户所在的节点，不在线时返回空集合
+     */
+    Set<String> nodesOf(String uid);
+
+    /**
+     * 集群中的所有节点
+     */
+    Set<String> nodes();
+}
@@ -0,0 +1,39 @@
+package com.xf.nativechat.cluster;
+
+import java.util.List;
+
+/**
+ * 节点间转发的一条消息
+ *
+ * @param toUsers 目标用户，{@link #BROADCAST} 表示广播给该节点上的所有人；房间消息为空列表
+ * @param room    目标房间，接收节点只投递给本地加入了该房间的连接；不是房间消息时为 null
+ * @param payload 已经是最终下发给客户端的内容，接收节点原样投递，不再解析
+ */
+public record RoutedMessage(List<String> toUsers, String room, String payload) {
+
+    public static final String BROADCAST = "*";
+
+    public RoutedMessage(List<String> toUsers, String payload) {
+        this(toUsers, null, payload);
+    }
+
+    public static RoutedMessage toUser(String uid, String payload) {
+        return new RoutedMessage(List.of(uid), payload);
+    }
+
+    public static RoutedMessage broadcast(String payload) {
+        return new RoutedMessage(List.of(BROADCAST), payload);
+    }
+
+    public static RoutedMessage toRoom(String room, String payload) {
+        return new RoutedMessage(List.of(), room, payload);
+    }
+
+    public boolean isBroadcast() {
+        return toUsers.size() == 1 && BROADCAST.equals(toUsers.get(0));
+    }
+
+    public boolean isRoom() {
+        return room != null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.xf.nativechat.config;
+
+import com.xf.nativechat.cluster.ClusterTransport;
+import com.xf.nativechat.cluster.InMemoryPresenceDirectory;
+import com.xf.nativechat.cluster.LoopbackClusterTransport;
+import com.xf.nativechat.cluster.PresenceDirectory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 集群路由的默认组件
+ * <p>
+ * 默认是单节点：在线目录放在本机内存，传输走进程内回环（没有其他节点，实际不会产生任何转发）。
+ * 多节点部署时自行声明基于 Redis / MQ 等的 {@link PresenceDirectory} 和 {@link ClusterTransport} Bean 即可替换。
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PresenceDirectory presenceDirectory() {
+        return new InMemoryPresenceDirectory();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ClusterTransport clusterTransport() {
+        return new LoopbackClusterTransport(new LoopbackClusterTransport.Hub());
+    }
+}
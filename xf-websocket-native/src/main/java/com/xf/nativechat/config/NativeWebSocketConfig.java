@@ -1,10 +1,16 @@
 package com.xf.nativechat.config;
 
 import com.xf.nativechat.handler.AuthHandshakeInterceptor;
+import com.xf.nativechat.handler.MediaStreamHandler;
 import com.xf.nativechat.handler.MyNativeChatHandler;
+import com.xf.nativechat.session.CompressionMode;
+import com.xf.websocket.core.handshake.DeflateNegotiationHandshakeHandler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
@@ -15,37 +21,63 @@ import org.springframework.web.socket.server.standard.ServletServerContainerFact
  * <p>
  * 注意这里使用 @EnableWebSocket 而不是 @EnableWebSocketMessageBroker
  * 这意味着我们没有 Broker，没有 STOMP，只有纯净的 WebSocket 通道。
+ * 这是默认的 servlet（Tomcat）运行模式，reactive 模式见 {@link ReactiveNativeWebSocketConfig}。
  */
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableWebSocket
+@EnableConfigurationProperties(NativeWebSocketProperties.class)
 @RequiredArgsConstructor
 public class NativeWebSocketConfig implements WebSocketConfigurer {
 
     private final MyNativeChatHandler myNativeChatHandler;
+    private final MediaStreamHandler mediaStreamHandler;
     private final AuthHandshakeInterceptor authHandshakeInterceptor;
+    private final NativeWebSocketProperties properties;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        NativeWebSocketProperties.Compression compression = properties.getCompression();
         // 注册处理器，并设置路径：/ws/native
         // setAllowedOriginPatterns("*") 允许跨域
         // addInterceptors 增加握手拦截器（用于鉴权）
         registry.addHandler(myNativeChatHandler, "/ws/native")
                 .addInterceptors(authHandshakeInterceptor) // 握手拦截，提取 token
+                .setHandshakeHandler(new DeflateNegotiationHandshakeHandler(
+                        compression.isPermessageDeflate(), compression.isContextTakeover(),
+                        NativeWebSocketConfig::withoutAppCompression))
                 .setAllowedOriginPatterns("*");
+
+        // 图片/文件走独立的二进制通道，分片流式转发：/ws/native/media
+        // 图片本身已经是压缩格式，默认不协商 permessage-deflate
+        registry.addHandler(mediaStreamHandler, "/ws/native/media")
+                .addInterceptors(authHandshakeInterceptor)
+                .setHandshakeHandler(new DeflateNegotiationHandshakeHandler(
+                        compression.isMediaPermessageDeflate(), compression.isContextTakeover(),
+                        NativeWebSocketConfig::withoutAppCompression))
+                .setAllowedOriginPatterns("*");
+    }
+
+    /**
+     * 客户端已选择应用层压缩（compress 参数）时不再协商 permessage-deflate，避免同一条消息被压缩两次
+     */
+    private static boolean withoutAppCompression(ServerHttpRequest request) {
+        return CompressionMode.requested(request) == CompressionMode.NONE;
     }
 
     /**
      * 配置 WebSocket 引擎属性（比如消息体大小限制）
-     * 默认限制很小（约8K），发图片（Base64）很容易超限导致连接断开。
-     * 这里设置为 5MB，防止因图片过大断开。
+     * 缓冲区是每个连接各自占用的，原来为了让 Base64 图片塞进一个 TextMessage 调到了 5MB，
+     * 连接一多就是大量常驻内存。现在图片改走 /ws/native/media 分片传输，缓冲区回到 64KB 即可。
      */
     @Bean
     public ServletServerContainerFactoryBean createWebSocketContainer() {
+        NativeWebSocketProperties.Container config = properties.getContainer();
         ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
-        // 文本缓存大小 (5MB)
-        container.setMaxTextMessageBufferSize(5 * 1024 * 1024);
-        // 二进制缓存大小 (5MB)
-        container.setMaxBinaryMessageBufferSize(5 * 1024 * 1024);
+        // 文本缓存大小，单条文本消息的上限
+        container.setMaxTextMessageBufferSize((int) config.getMaxTextMessageBufferSize().toBytes());
+        // 二进制缓存大小，媒体通道每个分片的大小
+        container.setMaxBinaryMessageBufferSize((int) config.getMaxBinaryMessageBufferSize().toBytes());
         return container;
     }
 }
@@ -0,0 +1,295 @@
+package com.xf.nativechat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 原生 WebSocket 模块配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.native.* 配置项。出站队列、心跳、认证、限流和停机排空是公共组件，
+ * 配置在 xf.websocket.core.* 下（见 xf-websocket-core 的 XfWebSocketCoreProperties）。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.native")
+public class NativeWebSocketProperties {
+
+    /**
+     * WebSocket 容器（Tomcat）缓冲区配置；reactive 模式下文本缓冲区大小作为单条消息的上限，缓冲区按需从池中分配
+     */
+    private final Container container = new Container();
+
+    /**
+     * 二进制媒体通道配置
+     */
+    private final Media media = new Media();
+
+    /**
+     * 集群路由配置
+     */
+    private final Cluster cluster = new Cluster();
+
+    /**
+     * 消息持久化配置
+     */
+    private final Persistence persistence = new Persistence();
+
+    /**
+     * 离线收件箱配置
+     */
+    private final Inbox inbox = new Inbox();
+
+    /**
+     * 单聊序号 / 确认 / 断线续传配置
+     */
+    private final Delivery delivery = new Delivery();
+
+    /**
+     * 出站压缩配置
+     */
+    private final Compression compression = new Compression();
+
+    /**
+     * 房间（群聊）配置
+     */
+    private final Room room = new Room();
+
+    /**
+     * 客户端广播配置
+     */
+    private final Broadcast broadcast = new Broadcast();
+
+    @Data
+    public static class Container {
+
+        /**
+         * 文本消息缓冲区大小，单条文本消息不能超过它；大文件走媒体通道，这里保持较小即可
+         */
+        private DataSize maxTextMessageBufferSize = DataSize.ofKilobytes(64);
+
+        /**
+         * 二进制消息缓冲区大小；媒体通道支持分片，它只决定每个分片的大小，不限制文件大小
+         */
+        private DataSize maxBinaryMessageBufferSize = DataSize.ofKilobytes(64);
+    }
+
+    @Data
+    public static class Media {
+
+        /**
+         * 单个媒体文件（信封中的 bodyLength）的大小上限
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(50);
+
+        /**
+         * 一路传输两个分片之间的最长间隔，超过后结束给接收者的消息并关闭发送方（文本心跳不算）
+         */
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 一路传输从头部到最后一个分片的总时长上限
+         */
+        private Duration transferTimeout = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Cluster {
+
+        /**
+         * 本节点 ID，集群内唯一；为空时启动时随机生成
+         */
+        private String nodeId;
+
+        /**
+         * 发往同一节点的消息攒批窗口
+         */
+        private Duration batchWindow = Duration.ofMillis(2);
+
+        /**
+         * 单批最多消息条数，攒满立即发送
+         */
+        private int maxBatchSize = 256;
+    }
+
+    @Data
+    public static class Persistence {
+
+        /**
+         * 是否持久化路由的聊天消息
+         */
+        private boolean enabled = true;
+
+        /**
+         * 段文件目录
+         */
+        private String directory = "data/messages";
+
+        /**
+         * 单个段文件大小（预先映射），单条消息不能超过它
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * 最多保留的段文件数，0 表示全部保留
+         */
+        private int retainSegments = 0;
+
+        /**
+         * 待写盘队列长度（取整为 2 的幂），满了之后新消息不再持久化
+         */
+        private int ringBufferSize = 65536;
+
+        /**
+         * 单次组提交最多写入的条数
+         */
+        private int maxBatchSize = 1024;
+
+        /**
+         * 每批写完后是否 fsync；关闭后只写到页缓存，由操作系统择机落盘
+         */
+        private boolean fsync = true;
+    }
+
+    @Data
+    public static class Inbox {
+
+        /**
+         * 离线消息保留时长
+         */
+        private Duration ttl = Duration.ofDays(7);
+
+        /**
+         * 单个用户最多保存的离线消息条数，超过后丢弃最旧的
+         */
+        private int maxMessagesPerUser = 1000;
+
+        /**
+         * 单个用户离线消息的总大小上限，超过后丢弃最旧的
+         */
+        private DataSize maxSizePerUser = DataSize.ofMegabytes(1);
+
+        /**
+         * 所有收件箱占用的堆外内存（按缓冲区容量计）上限，超过后拒绝新的离线消息
+         */
+        private DataSize maxTotalSize = DataSize.ofMegabytes(256);
+
+        /**
+         * 上线回放时每批发送的条数
+         */
+        private int replayBatchSize = 50;
+
+        /**
+         * 两批回放之间的间隔
+         */
+        private Duration replayInterval = Duration.ofMillis(20);
+
+        /**
+         * 出站队列积压超过该条数时暂停回放，等队列消化后再继续
+         */
+        private int replayPauseQueueDepth = 256;
+
+        /**
+         * 过期消息清理间隔
+         */
+        private Duration sweepInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Delivery {
+
+        /**
+         * 每个用户最多保留的未确认单聊消息条数，超过后丢弃最旧的（续传时会标记 truncated）
+         */
+        private int windowSize = 256;
+
+        /**
+         * 每个用户未确认消息的总大小上限（按字符数计）
+         */
+        private DataSize maxWindowSize = DataSize.ofMegabytes(4);
+
+        /**
+         * 用户所有连接断开后，未确认窗口保留多久等待续传
+         */
+        private Duration resumeTimeout = Duration.ofMinutes(2);
+    }
+
+    @Data
+    public static class Compression {
+
+        /**
+         * 文本通道是否接受浏览器发起的 permessage-deflate 协商（由容器压缩每一帧）
+         */
+        private boolean permessageDeflate = true;
+
+        /**
+         * 媒体通道是否接受 permessage-deflate，图片等已压缩的数据再压缩只浪费 CPU，默认关闭
+         */
+        private boolean mediaPermessageDeflate = false;
+
+        /**
+         * permessage-deflate 是否跨消息保留压缩上下文；关闭后每个连接少占一个滑动窗口的内存，但压缩率下降
+         */
+        private boolean contextTakeover = true;
+
+        /**
+         * 应用层压缩（客户端握手时带 compress=deflate / deflate-dict）的最小消息大小，小于它的原样发送
+         */
+        private DataSize threshold = DataSize.ofBytes(512);
+
+        /**
+         * 应用层压缩级别 1-9
+         */
+        private int level = 6;
+
+        /**
+         * deflate-dict 模式的预置字典，客户端需要使用同一份；为空时使用内置的聊天报文字典
+         */
+        private String dictionary = "";
+    }
+
+    @Data
+    public static class Room {
+
+        /**
+         * 单个连接最多加入的房间数
+         */
+        private int maxRoomsPerSession = 256;
+
+        /**
+         * 房间名的最大长度
+         */
+        private int maxNameLength = 128;
+    }
+
+    @Data
+    public static class Broadcast {
+
+        /**
+         * 允许在消息里用 toUser = "*" 广播的 uid，以 * 结尾的按前缀匹配（如 ops-*）；为空时客户端都不能广播，
+         * 服务端代码仍可调用 MyNativeChatHandler.broadcast
+         */
+        private Set<String> senders = new HashSet<>();
+
+        /**
+         * 该 uid 是否可以从客户端发起广播
+         */
+        public boolean isAllowed(String uid) {
+            if (uid == null || senders.isEmpty()) {
+                return false;
+            }
+            if (senders.contains(uid)) {
+                return true;
+            }
+            for (String sender : senders) {
+                if (sender.endsWith("*") && uid.startsWith(sender.substring(0, sender.length() - 1))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.xf.nativechat.config;
+
+import com.xf.nativechat.store.MappedSegmentMessageStore;
+import com.xf.nativechat.store.MessageStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 消息持久化的默认存储
+ * <p>
+ * 默认写本地内存映射段文件。要写数据库 / MQ 时声明自己的 {@link MessageStore} Bean 即可替换；
+ * xf.websocket.native.persistence.enabled=false 时不创建存储，持久化管道随之关闭。
+ */
+@Configuration
+public class PersistenceConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "xf.websocket.native.persistence", name = "enabled", matchIfMissing = true)
+    public MessageStore messageStore(NativeWebSocketProperties properties) throws IOException {
+        NativeWebSocketProperties.Persistence config = properties.getPersistence();
+        return new MappedSegmentMessageStore(Path.of(config.getDirectory()),
+                (int) config.getSegmentSize().toBytes(), config.getRetainSegments());
+    }
+}
@@ -0,0 +1,104 @@
+package com.xf.nativechat.config;
+
+import com.xf.nativechat.handler.AuthHandshakeInterceptor;
+import com.xf.nativechat.handler.MyNativeChatHandler;
+import com.xf.nativechat.metrics.NativeChatMetrics;
+import com.xf.nativechat.reactive.AuthHandshakeWebSocketService;
+import com.xf.nativechat.reactive.ReactiveHandlerAdapter;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.drain.ConnectionDrainer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.util.Map;
+
+/**
+ * 原生 WebSocket 的 reactive 运行模式（WebFlux + Reactor Netty），用 reactive profile 启用
+ * <p>
+ * 协议、路径（/ws/native）和握手参数与 servlet 模式一致，MyNativeChatHandler、出站队列、心跳时间轮原样复用，
+ * 区别在传输层：每个连接不再有 Tomcat 的常驻读写缓冲区，收发帧按需从 Netty 的池化直接内存分配，用完归还。
+ * 媒体通道 /ws/native/media 依赖 servlet 容器的分片消息，只在 servlet 模式下提供。
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(NativeWebSocketProperties.class)
+@RequiredArgsConstructor
+public class ReactiveNativeWebSocketConfig implements WebFluxConfigurer {
+
+    private final AuthHandshakeInterceptor authHandshakeInterceptor;
+    private final ConnectionDrainer connectionDrainer;
+    private final NativeChatMetrics metrics;
+    private final NativeWebSocketProperties properties;
+
+    /**
+     * 固定使用 Reactor Netty：servlet 模式用的 Tomcat 也在 classpath 上，不指定时 Spring Boot 会优先选 Tomcat。
+     * 连接上的缓冲区统一从池化分配器分配，不受 io.netty.allocator.type 等全局设置影响。
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+        factory.addServerCustomizers(server -> server.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT));
+        return factory;
+    }
+
+    @Bean
+    public HandlerMapping nativeWebSocketMapping(MyNativeChatHandler myNativeChatHandler,
+                                                 XfWebSocketCoreProperties coreProperties) {
+        long sendTimeLimit = coreProperties.getOutbound().getSendTimeLimit().toMillis();
+        ReactiveHandlerAdapter handler = new ReactiveHandlerAdapter(myNativeChatHandler, sendTimeLimit, maxFramePayload());
+        // 排在注解 Controller 的映射之前
+        return new SimpleUrlHandlerMapping(Map.of("/ws/native", handler), -1);
+    }
+
+    /**
+     * WebFlux 默认的 WebSocketHandlerAdapter 使用这里返回的握手服务
+     * <p>
+     * permessage-deflate 由 Reactor Netty 统一协商，不像 servlet 模式那样在客户端选了应用层压缩时跳过。
+     */
+    @Override
+    public WebSocketService getWebSocketService() {
+        NativeWebSocketProperties.Compression compression = properties.getCompression();
+        ReactorNettyRequestUpgradeStrategy upgradeStrategy = new ReactorNettyRequestUpgradeStrategy(
+                () -> WebsocketServerSpec.builder()
+                        .maxFramePayloadLength(maxFramePayload())
+                        .compress(compression.isPermessageDeflate())
+                        .compressionAllowServerNoContext(!compression.isContextTakeover())
+                        .compressionPreferredClientNoContext(!compression.isContextTakeover()));
+        return new AuthHandshakeWebSocketService(upgradeStrategy, authHandshakeInterceptor, connectionDrainer, metrics);
+    }
+
+    /**
+     * 池化分配器占用的直接内存，与 jvm.memory.used 一起估算 reactive 模式下每个连接的内存
+     */
+    @Bean
+    public MeterBinder nettyAllocatorMetrics() {
+        return registry -> Gauge.builder("xf.native.reactive.direct.memory", PooledByteBufAllocator.DEFAULT.metric(),
+                        ByteBufAllocatorMetric::usedDirectMemory)
+                .description("Netty 池化分配器占用的直接内存")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    /**
+     * 单帧（聚合后单条消息）的大小上限，对应 servlet 模式的文本缓冲区大小
+     */
+    private int maxFramePayload() {
+        return (int) properties.getContainer().getMaxTextMessageBufferSize().toBytes();
+    }
+}
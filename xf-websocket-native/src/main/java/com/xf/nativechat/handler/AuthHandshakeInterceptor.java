@@ -1,47 +1,122 @@
 package com.xf.nativechat.handler;
 
+import com.xf.nativechat.metrics.NativeChatMetrics;
+import com.xf.nativechat.session.CompressionMode;
+import com.xf.nativechat.session.FrameCompressor;
+import com.xf.websocket.core.auth.TokenAuthenticator;
+import com.xf.websocket.core.auth.VerifiedToken;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.drain.ConnectionDrainer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
-import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
  * 握手拦截器
  * <p>
  * 在 WebSocket 建立连接之前（HTTP 升级阶段）拦截请求。
- * 作用：从 URL 参数中获取 token/uid，并进行简单的认证，如果不通过直接拒绝连接。
+ * 作用：校验客户端带来的 JWT，把其中的 sub 作为 uid；不通过直接拒绝连接。
+ * 令牌放在 Authorization: Bearer 头或 token 参数中（浏览器的 WebSocket API 不能设置请求头，只能用参数）。
+ * 只有开启 allow-plain-user 时才接受不带令牌、直接带 uid 参数的旧式握手。
+ * 节点停机排空期间直接返回 503 和 Retry-After，不再验签。
  */
 @Component
 @Slf4j
 public class AuthHandshakeInterceptor implements HandshakeInterceptor {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenAuthenticator tokenAuthenticator;
+    private final NativeChatMetrics metrics;
+    private final ConnectionDrainer connectionDrainer;
+    private final boolean allowPlainUid;
+
+    public AuthHandshakeInterceptor(TokenAuthenticator tokenAuthenticator, NativeChatMetrics metrics,
+                                    ConnectionDrainer connectionDrainer, XfWebSocketCoreProperties properties) {
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.metrics = metrics;
+        this.connectionDrainer = connectionDrainer;
+        this.allowPlainUid = properties.getAuth().isAllowPlainUser();
+    }
+
     @Override
     public boolean beforeHandshake(@NonNull ServerHttpRequest request,
             @NonNull ServerHttpResponse response,
             @NonNull WebSocketHandler wsHandler,
             @NonNull Map<String, Object> attributes) {
 
-        if (request instanceof ServletServerHttpRequest) {
-            ServletServerHttpRequest servletRequest = (ServletServerHttpRequest) request;
-            String uid = servletRequest.getServletRequest().getParameter("uid");
+        if (connectionDrainer.isDraining()) {
+            // 本节点正在停机，让负载均衡把客户端分到其他节点
+            metrics.handshakeRejected();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(connectionDrainer.getRetryAfterSeconds()));
+            return false;
+        }
+        if (!accept(request.getURI(), request.getHeaders(), attributes)) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 校验令牌，通过时把 uid 和客户端选择的应用层压缩方式放入 attributes
+     * <p>
+     * servlet 和 reactive 两种运行模式共用，停机排空的判断由调用方负责。
+     */
+    public boolean accept(URI uri, HttpHeaders headers, Map<String, Object> attributes) {
+        String uid = authenticate(UriComponentsBuilder.fromUri(uri).build().getQueryParams(), headers);
 
-            if (uid != null && !uid.trim().isEmpty()) {
-                // 将用户ID放入 Session Attributes 中，方便后续 Handler 使用
-                attributes.put("uid", uid);
-                log.info("Native WS Handshake success, uid: {}", uid);
-                return true;
+        if (uid != null && !uid.trim().isEmpty()) {
+            // 将用户ID放入 Session Attributes 中，方便后续 Handler 使用
+            attributes.put("uid", uid);
+            // 客户端选择的应用层压缩方式，出站队列据此决定是否压缩
+            CompressionMode compression = CompressionMode.requested(uri);
+            if (compression != CompressionMode.NONE) {
+                attributes.put(FrameCompressor.SESSION_ATTR, compression);
             }
+            metrics.handshakeAccepted();
+            log.debug("Native WS Handshake success, uid: {}", uid);
+            return true;
         }
-        log.warn("Native WS Handshake failed: missing uid");
+        metrics.handshakeRejected();
+        log.warn("Native WS Handshake failed: missing or invalid token");
         return false; // 返回 false 拒绝连接
     }
 
+    private String authenticate(MultiValueMap<String, String> params, HttpHeaders headers) {
+        String token = param(params, "token");
+        if (token == null) {
+            String authorization = headers.getFirst(HttpHeaders.AUTHORIZATION);
+            if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+                token = authorization.substring(BEARER_PREFIX.length()).trim();
+            }
+        }
+        if (token != null && !token.isEmpty()) {
+            VerifiedToken verified = tokenAuthenticator.authenticate(token);
+            return verified != null ? verified.subject() : null;
+        }
+        return allowPlainUid ? param(params, "uid") : null;
+    }
+
+    private static String param(MultiValueMap<String, String> params, String name) {
+        String value = params.getFirst(name);
+        return value != null ? UriUtils.decode(value, StandardCharsets.UTF_8) : null;
+    }
+
     @Override
     public void afterHandshake(@NonNull ServerHttpRequest request,
             @NonNull ServerHttpResponse response,
@@ -0,0 +1,379 @@
+package com.xf.nativechat.handler;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.nativechat.protocol.MediaEnvelope;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.SessionRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 媒体（图片/文件）二进制通道处理器
+ * <p>
+ * 和 /ws/native 的文本聊天分开，路径为 /ws/native/media，消息格式见 {@link MediaEnvelope}。
+ * <p>
+ * 开启了 {@link #supportsPartialMessages()}：容器按缓冲区大小（默认 64KB）把一条大消息拆成多个分片回调，
+ * 每个分片到达后立即作为同一条消息的一个分片转发给接收者，服务端内存里任何时候都只有一个分片，
+ * 不会把整个文件攒在堆里，所以容器缓冲区也不再需要为了大图调到 5MB。
+ * <p>
+ * 一个 WebSocket 连接在一条分片消息发完之前不能穿插发送别的消息，
+ * 所以每个接收连接同一时刻只能承载一路传输：被占用时本次跳过该连接，并在回执中计入 busy。
+ * 发给连接的文本通知（回执、pong）遇到连接被占用时先排队，等传输结束释放连接时再发出。
+ * <p>
+ * 发送方发完头部后长时间不发分片（只靠文本心跳保活）会一直占着接收者的连接：
+ * 后台线程按 idle-timeout / transfer-timeout 检查进行中的传输，超时的结束给接收者的消息、释放连接并关闭发送方。
+ */
+@Component
+@Slf4j
+public class MediaStreamHandler extends BinaryWebSocketHandler {
+
+    private static final String TRANSFER_ATTR = "mediaTransfer";
+    private static final String SINK_ATTR = "mediaSink";
+
+    /**
+     * 每个连接最多排队的文本通知数，超出的丢弃
+     */
+    private static final int MAX_PENDING_NOTICES = 16;
+
+    // 媒体通道的在线会话，和聊天通道分开登记
+    private final SessionRegistry mediaSessions = new SessionRegistry();
+    private final HeartbeatWheel heartbeatWheel;
+    private final long maxSize;
+    private final long idleTimeoutNanos;
+    private final long transferTimeoutNanos;
+
+    // 已经发出头部、还没结束的传输，由后台线程检查超时
+    private final Set<Transfer> transfers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService sweeper;
+
+    public MediaStreamHandler(HeartbeatWheel heartbeatWheel, NativeWebSocketProperties properties) {
+        NativeWebSocketProperties.Media config = properties.getMedia();
+        this.heartbeatWheel = heartbeatWheel;
+        this.maxSize = config.getMaxSize().toBytes();
+        this.idleTimeoutNanos = config.getIdleTimeout().toNanos();
+        this.transferTimeoutNanos = config.getTransferTimeout().toNanos();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-media-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, config.getIdleTimeout().toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession session) {
+        String uid = (String) session.getAttributes().get("uid");
+        if (uid != null) {
+            session.getAttributes().put(SINK_ATTR, new Sink(session));
+            mediaSessions.register(uid, session);
+            heartbeatWheel.register(session);
+            log.info("Media channel connected: {}", uid);
+        }
+    }
+
+    /**
+     * 媒体通道上的文本消息只用于心跳
+     */
+    @Override
+    protected void handleTextMessage(@NonNull WebSocketSession session, TextMessage message) {
+        heartbeatWheel.touch(session);
+        if ("ping".equalsIgnoreCase(message.getPayload())) {
+            sendNotice(session, "pong");
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(@NonNull WebSocketSession session, BinaryMessage message) throws IOException {
+        heartbeatWheel.touch(session);
+
+        Transfer transfer = (Transfer) session.getAttributes().get(TRANSFER_ATTR);
+        if (transfer == null) {
+            transfer = new Transfer(session);
+            session.getAttributes().put(TRANSFER_ATTR, transfer);
+        } else if (transfer.isDone()) {
+            // 已因超时结束，连接正在关闭，之后到达的分片直接丢弃
+            return;
+        }
+        ByteBuffer chunk = message.getPayload();
+
+        if (transfer.header == null) {
+            MediaEnvelope.Header header;
+            try {
+                header = transfer.decoder.decode(chunk);
+            } catch (IllegalArgumentException e) {
+                reject(session, CloseStatus.BAD_DATA.withReason(e.getMessage()));
+                return;
+            }
+            if (header == null) {
+                if (message.isLast()) {
+                    reject(session, CloseStatus.BAD_DATA.withReason("Incomplete media header"));
+                }
+                return;
+            }
+            if (header.bodyLength() < 0 || header.bodyLength() > maxSize) {
+                reject(session, CloseStatus.TOO_BIG_TO_PROCESS.withReason("Media exceeds " + maxSize + " bytes"));
+                return;
+            }
+            begin(session, transfer, header);
+        }
+
+        transfer.received += chunk.remaining();
+        boolean last = message.isLast();
+        if (transfer.received > transfer.header.bodyLength() || (last && transfer.received != transfer.header.bodyLength())) {
+            // 实际长度和声明不符：丢弃这个分片并结束给接收者的消息，接收者按 bodyLength 校验即可发现
+            transfer.forward(ByteBuffer.allocate(0), true);
+            transfers.remove(transfer);
+            reject(session, CloseStatus.BAD_DATA.withReason("Media length mismatch"));
+            return;
+        }
+        if (!transfer.forward(chunk, last)) {
+            return;
+        }
+
+        if (last) {
+            session.getAttributes().remove(TRANSFER_ATTR);
+            transfers.remove(transfer);
+            sendNotice(session, "{\"type\":\"media-ack\",\"size\":" + transfer.received
+                    + ",\"delivered\":" + transfer.delivered() + ",\"busy\":" + transfer.busy + "}");
+        }
+    }
+
+    /**
+     * 头部解析完成：占用接收者的连接，并把改写了对端 uid 的头部作为第一个分片发出去
+     */
+    private void begin(WebSocketSession session, Transfer transfer, MediaEnvelope.Header header) {
+        String fromUid = (String) session.getAttributes().get("uid");
+        transfer.header = header;
+        for (WebSocketSession target : mediaSessions.getSessions(header.peer())) {
+            Sink sink = sink(target);
+            if (sink == null) {
+                continue;
+            }
+            if (sink.tryAcquire()) {
+                transfer.sinks.add(sink);
+            } else {
+                transfer.busy++;
+            }
+        }
+        transfer.forward(header.withPeer(fromUid).encode(), false);
+        transfers.add(transfer);
+    }
+
+    /**
+     * 结束超时的传输：接收者收到一个长度不足 bodyLength 的消息（会丢弃），连接随即释放，发送方以 1008 关闭
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        for (Iterator<Transfer> it = transfers.iterator(); it.hasNext(); ) {
+            Transfer transfer = it.next();
+            if (transfer.isDone()) {
+                it.remove();
+            } else if (transfer.isExpired(now, idleTimeoutNanos, transferTimeoutNanos)) {
+                it.remove();
+                timeout(transfer);
+            }
+        }
+    }
+
+    private void timeout(Transfer transfer) {
+        if (!transfer.forward(ByteBuffer.allocate(0), true)) {
+            // 发送方线程刚好结束了这路传输
+            return;
+        }
+        WebSocketSession sender = transfer.sender;
+        log.warn("Media transfer from {} timed out after {} bytes", sender.getAttributes().get("uid"),
+                transfer.received);
+        try {
+            sender.close(CloseStatus.POLICY_VIOLATION.withReason("Media transfer timed out"));
+        } catch (IOException e) {
+            log.debug("Close timed out media session {} failed: {}", sender.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
+        Transfer transfer = (Transfer) session.getAttributes().remove(TRANSFER_ATTR);
+        if (transfer != null && transfer.header != null) {
+            // 发送方中途断开：结束接收者那边的消息（长度不足 bodyLength，接收者会丢弃），并释放连接
+            transfer.forward(ByteBuffer.allocate(0), true);
+            transfers.remove(transfer);
+        }
+        heartbeatWheel.cancel(session);
+        String uid = (String) session.getAttributes().get("uid");
+        if (uid != null) {
+            mediaSessions.unregister(uid, session.getId());
+            log.info("Media channel disconnected: {}", uid);
+        }
+    }
+
+    private void reject(WebSocketSession session, CloseStatus status) throws IOException {
+        log.warn("Reject media message from {}: {}", session.getAttributes().get("uid"), status.getReason());
+        session.getAttributes().remove(TRANSFER_ATTR);
+        session.close(status);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 给连接发一条文本通知；连接正在承载传输时先排队（不能插在分片中间），传输结束后发出
+     */
+    private void sendNotice(WebSocketSession session, String text) {
+        Sink sink = sink(session);
+        if (sink != null) {
+            sink.notice(new TextMessage(text));
+        }
+    }
+
+    private static Sink sink(WebSocketSession session) {
+        return (Sink) session.getAttributes().get(SINK_ATTR);
+    }
+
+    /**
+     * 一路进行中的传输，由发送方连接的回调线程读写；超时检查线程只通过加锁的 forward 结束它
+     */
+    private static final class Transfer {
+
+        private final WebSocketSession sender;
+        private final long startedAt = System.nanoTime();
+        private final MediaEnvelope.HeaderDecoder decoder = new MediaEnvelope.HeaderDecoder();
+        private final List<Sink> sinks = new ArrayList<>(2);
+        private MediaEnvelope.Header header;
+        private volatile long received;
+        private int busy;
+        private volatile long lastChunkAt = startedAt;
+        private boolean done;
+
+        Transfer(WebSocketSession sender) {
+            this.sender = sender;
+        }
+
+        /**
+         * 把一个分片转发给所有接收者，分片内容不复制，每个接收者各自持有一个 slice
+         *
+         * @return 传输已经结束（超时或发送方断开）时返回 false，分片不再转发
+         */
+        synchronized boolean forward(ByteBuffer chunk, boolean last) {
+            if (done) {
+                return false;
+            }
+            lastChunkAt = System.nanoTime();
+            for (int i = sinks.size() - 1; i >= 0; i--) {
+                Sink sink = sinks.get(i);
+                if (!sink.send(new BinaryMessage(chunk.slice(), last))) {
+                    sinks.remove(i);
+                    sink.release();
+                }
+            }
+            if (last) {
+                done = true;
+                sinks.forEach(Sink::release);
+            }
+            return true;
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        boolean isExpired(long now, long idleTimeoutNanos, long transferTimeoutNanos) {
+            return now - lastChunkAt >= idleTimeoutNanos || now - startedAt >= transferTimeoutNanos;
+        }
+
+        int delivered() {
+            return sinks.size();
+        }
+    }
+
+    /**
+     * 接收方连接的写入权：同一时刻只允许一路传输（或一批通知）写入
+     */
+    private static final class Sink {
+
+        private final WebSocketSession session;
+        private final AtomicBoolean busy = new AtomicBoolean();
+        private final Queue<TextMessage> notices = new ArrayBlockingQueue<>(MAX_PENDING_NOTICES);
+
+        Sink(WebSocketSession session) {
+            this.session = session;
+        }
+
+        boolean tryAcquire() {
+            return busy.compareAndSet(false, true);
+        }
+
+        void release() {
+            busy.set(false);
+            flushNotices();
+        }
+
+        void notice(TextMessage message) {
+            if (!notices.offer(message)) {
+                log.debug("Drop notice to media session {}: too many pending", session.getId());
+                return;
+            }
+            flushNotices();
+        }
+
+        /**
+         * 入队后取写入权、释放写入权后查队列，两边顺序相反，不会有通知留在队列里没人发
+         */
+        private void flushNotices() {
+            while (!notices.isEmpty() && tryAcquire()) {
+                TextMessage notice;
+                while ((notice = notices.poll()) != null) {
+                    send(notice);
+                }
+                busy.set(false);
+            }
+        }
+
+        boolean send(WebSocketMessage<?> message) {
+            if (!session.isOpen()) {
+                return false;
+            }
+            try {
+                session.sendMessage(message);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Media send to {} failed: {}", session.getId(), e.getMessage());
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException ignored) {
+                    // 连接已经不可用
+                }
+                return false;
+            }
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package com.xf.nativechat.handler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.nativechat.cluster.ClusterRouter;
+import com.xf.nativechat.cluster.RoutedMessage;
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.nativechat.metrics.NativeChatMetrics;
+import com.xf.nativechat.protocol.ChatMessageCodec;
+import com.xf.nativechat.room.RoomRegistry;
+import com.xf.nativechat.session.DeliveryTracker;
+import com.xf.nativechat.session.FrameCompressor;
+import com.xf.nativechat.store.MessageRecord;
+import com.xf.nativechat.store.OfflineInbox;
+import com.xf.nativechat.store.PersistencePipeline;
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import com.xf.websocket.core.session.BatchableTextMessage;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import com.xf.websocket.core.session.QueuedSessionDecorator;
+import com.xf.websocket.core.session.SessionRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
 
 /**
  * 原生 WebSocket 处理器
@@ -22,22 +41,45 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class MyNativeChatHandler extends TextWebSocketHandler {
 
-    // 在线用户 Session 池
-    // Key: uid, Value: Session
-    private static final Map<String, WebSocketSession> USER_SESSION_MAP = new ConcurrentHashMap<>();
+    /**
+     * toUser 为该值时表示广播给所有在线用户，只有配置在 xf.websocket.native.broadcast.senders 中的用户可以使用
+     */
+    public static final String BROADCAST_TARGET = "*";
+
     // JSON 转换工具
     private final ObjectMapper objectMapper = new ObjectMapper();
+    // 在线用户 Session 池，一个 uid 可以有多个端同时在线
+    private final SessionRegistry sessionRegistry;
+    // 出站队列，所有发送都经过它，避免收消息线程被慢连接阻塞
+    private final OutboundQueueManager outboundQueueManager;
+    // 心跳时间轮，负责僵尸连接检测
+    private final HeartbeatWheel heartbeatWheel;
+    // 集群路由，目标用户连在其他节点上时转发过去
+    private final ClusterRouter clusterRouter;
+    // 异步持久化，入队即返回，不在收消息线程上做存储 IO
+    private final PersistencePipeline persistencePipeline;
+    // 离线收件箱，接收者不在线时暂存，上线后回放
+    private final OfflineInbox offlineInbox;
+    // 单聊序号、确认和断线续传
+    private final DeliveryTracker deliveryTracker;
+    // 收发路径上的指标，均为预先注册好的 Meter
+    private final NativeChatMetrics metrics;
+    // 入站限流，按连接和用户两层令牌桶
+    private final RateLimiter rateLimiter;
+    // 房间成员索引，房间内发送只遍历成员
+    private final RoomRegistry roomRegistry;
+    // 应用层压缩，握手时选择了压缩方式的连接由出站队列在发送线程上调用
+    private final FrameCompressor frameCompressor;
+    // 模块配置，这里只用到客户端广播的白名单
+    private final NativeWebSocketProperties properties;
 
-    /**
-     * 连接建立成功
-     */
-    /**
-     * 更新心跳时间
-     */
-    private void updateLastHeartbeat(WebSocketSession session) {
-        session.getAttributes().put("lastHeartbeat", System.currentTimeMillis());
+    @PostConstruct
+    public void init() {
+        // 其他节点转发过来的消息只做本地投递，不再继续转发
+        clusterRouter.onRemoteMessage(this::deliverLocally);
     }
 
     @Override
@@ -45,50 +87,137 @@ public class MyNativeChatHandler extends TextWebSocketHandler {
         String payload = message.getPayload();
 
         // 任何消息都算一次“活跃”，更新心跳时间
-        updateLastHeartbeat(session);
+        heartbeatWheel.touch(session);
+
+        WebSocketSession outbound = outboundQueueManager.outbound(session);
+        String fromUid = (String) session.getAttributes().get("uid");
 
+        // 限流按消息类别进行：ack 是对收到消息的应答，数量取决于别人发来多少，单独按条数计，不占发送方额度
         if ("ping".equalsIgnoreCase(payload)) {
-            session.sendMessage(new TextMessage("pong"));
+            if (!admit(session, outbound, fromUid, payload)) {
+                return;
+            }
+            metrics.routed(NativeChatMetrics.Route.PING);
+            outbound.sendMessage(new TextMessage("pong"));
             return;
         }
 
-        String fromUid = (String) session.getAttributes().get("uid");
-
-        // ... (JSON handling logic) ...
+        // 流式解析消息头，content 原样转发，不构建 JsonNode 树
         try {
-            com.fasterxml.jackson.databind.JsonNode json = objectMapper.readTree(payload);
-            if (json.has("toUser") && json.has("content")) {
-                String toUser = json.get("toUser").asText();
-                String content = json.get("content").asText();
-                String type = json.has("type") ? json.get("type").asText() : "text";
-
-                java.util.Map<String, Object> msgMap = new java.util.HashMap<>();
-                msgMap.put("fromUser", fromUid);
-                msgMap.put("content", content);
-                msgMap.put("type", type);
-
-                String forwardJson = objectMapper.writeValueAsString(msgMap);
-
-                sendToUser(toUser, forwardJson);
-                // 业务处理 异步/MQ 添加消息记录到数据库中
+            ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+            if (header != null) {
+                if (!admit(session, outbound, fromUid, payload)) {
+                    return;
+                }
+                String toUser = header.toUser();
+                if (header.isRoom()) {
+                    metrics.routed(NativeChatMetrics.Route.ROOM);
+                    // 没加入房间不能往里发，免得任何人都能向任意房间灌消息
+                    if (!roomRegistry.isMember(outbound, header.toRoom())) {
+                        outbound.sendMessage(new TextMessage(ChatMessageCodec.roomError(header.toRoom(), "not_joined")));
+                        return;
+                    }
+                    // 发送者的这个连接收到的是回执，不再收到自己的消息；同一用户的其他端照常收到
+                    sendToRoom(header.toRoom(), ChatMessageCodec.forwardToRoom(fromUid, header, payload), outbound);
+                } else if (BROADCAST_TARGET.equals(toUser)) {
+                    // 广播会发到集群里每个连接，普通用户不能发起，也不能把 "*" 当作用户名私聊
+                    if (!properties.getBroadcast().isAllowed(fromUid)) {
+                        outbound.sendMessage(new TextMessage(ChatMessageCodec.BROADCAST_FORBIDDEN));
+                        return;
+                    }
+                    // 广播需要参与帧合并，按完整字符串入队
+                    metrics.routed(NativeChatMetrics.Route.BROADCAST);
+                    broadcast(ChatMessageCodec.forward(fromUid, header, payload));
+                } else {
+                    // 单聊转发直接引用原始报文中的 content，发送线程流式写出
+                    metrics.routed(NativeChatMetrics.Route.PRIVATE);
+                    sendChat(fromUid, toUser, header, payload);
+                }
+                // 只引用原始报文入队，由写盘线程批量落盘
+                persistencePipeline.submit(MessageRecord.of(fromUid, header, payload));
 
-                session.sendMessage(new TextMessage("系统: 已发送 " + type + " 消息给 " + toUser));
+                outbound.sendMessage(new TextMessage(ChatMessageCodec.sentAck(header)));
+                return;
+            }
+            ChatMessageCodec.ControlFrame control = ChatMessageCodec.parseControl(payload);
+            if (control != null) {
+                if (control.isAck() ? !admitAck(session, fromUid) : !admit(session, outbound, fromUid, payload)) {
+                    return;
+                }
+                if (control.isRoomControl()) {
+                    metrics.routed(NativeChatMetrics.Route.MEMBERSHIP);
+                    handleRoomControl(control, outbound);
+                    return;
+                }
+                metrics.routed(control.isAck() ? NativeChatMetrics.Route.ACK : NativeChatMetrics.Route.RESUME);
+                handleControl(fromUid, control, outbound);
                 return;
             }
         } catch (Exception e) {
             log.debug("Not a standard JSON message: {}", e.getMessage());
         }
 
+        if (!admit(session, outbound, fromUid, payload)) {
+            return;
+        }
+        metrics.routed(NativeChatMetrics.Route.UNKNOWN);
         log.info("Received from {}: {}", fromUid, payload);
     }
 
+    /**
+     * 检查限流额度；超限时丢弃消息并通知客户端，或直接关闭连接
+     *
+     * @return 额度足够、可以继续处理时返回 true
+     */
+    private boolean admit(WebSocketSession session, WebSocketSession outbound, String uid, String payload) {
+        RateLimiter.Decision decision = rateLimiter.acquire(session, uid, payload.length());
+        if (decision == RateLimiter.Decision.ALLOW) {
+            return true;
+        }
+        try {
+            if (decision == RateLimiter.Decision.CLOSE) {
+                log.warn("Closing flooding session of {}", uid);
+                session.close(CloseStatus.POLICY_VIOLATION);
+            } else {
+                outbound.sendMessage(new TextMessage(ChatMessageCodec.THROTTLED));
+            }
+        } catch (IOException e) {
+            log.debug("Reject flooding session of {} failed: {}", uid, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * 检查 ack 额度；超限的 ack 直接丢弃、不回通知，之后的累计确认会覆盖它
+     */
+    private boolean admitAck(WebSocketSession session, String uid) {
+        RateLimiter.Decision decision = rateLimiter.acquireAck(session);
+        if (decision == RateLimiter.Decision.CLOSE) {
+            log.warn("Closing ack flooding session of {}", uid);
+            try {
+                session.close(CloseStatus.POLICY_VIOLATION);
+            } catch (IOException e) {
+                log.debug("Reject flooding session of {} failed: {}", uid, e.getMessage());
+            }
+        }
+        return decision == RateLimiter.Decision.ALLOW;
+    }
+
+    /**
+     * 连接建立成功
+     */
     @Override
     public void afterConnectionEstablished(@NonNull WebSocketSession session) {
         String uid = (String) session.getAttributes().get("uid");
         if (uid != null) {
-            USER_SESSION_MAP.put(uid, session);
-            updateLastHeartbeat(session); // 初始化心跳时间
-            log.info("User connected: {}", uid);
+            WebSocketSession outbound = outboundQueueManager.register(session, frameCompressor.encoderFor(session));
+            sessionRegistry.register(uid, outbound);
+            clusterRouter.syncPresence(uid);
+            heartbeatWheel.register(session); // 挂到心跳时间轮上
+            deliveryTracker.attach(uid);
+            // 离线消息在收件箱线程上分批回放，不占用建连线程
+            offlineInbox.replay(uid, new InboxReplay(uid));
+            log.debug("User connected: {}", uid);
         }
     }
 
@@ -97,45 +226,297 @@ public class MyNativeChatHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) {
+        outboundQueueManager.unregister(session);
+        heartbeatWheel.cancel(session);
+        roomRegistry.leaveAll(session);
         String uid = (String) session.getAttributes().get("uid");
         if (uid != null) {
-            USER_SESSION_MAP.remove(uid);
-            log.info("User disconnected: {}", uid);
+            // 按 sessionId 移除，不会误删同一个 uid 在其他端的新连接
+            sessionRegistry.unregister(uid, session.getId());
+            clusterRouter.syncPresence(uid);
+            if (sessionRegistry.getSessions(uid).length == 0) {
+                // 未确认窗口保留一段时间，等客户端重连后续传
+                deliveryTracker.detach(uid);
+            }
+            log.debug("User disconnected: {}", uid);
         }
     }
 
     /**
-     * 定时清理僵尸连接 (需要开启 @EnableScheduling)
-     * 每 30 秒执行一次
+     * 业务方法：发送消息给指定用户（该用户所有在线端都会收到）
+     * <p>
+     * 这里只是入队，真正的 socket 写入由出站队列的发送线程完成。
      */
-    @Scheduled(fixedRate = 30000)
-    public void cleanZombieSessions() {
-        long now = System.currentTimeMillis();
-        USER_SESSION_MAP.forEach((uid, session) -> {
-            Long lastHeartbeat = (Long) session.getAttributes().get("lastHeartbeat");
-            // 如果超过 60 秒没动静
-            if (lastHeartbeat != null && (now - lastHeartbeat > 60000)) {
-                try {
-                    log.warn("Closing zombie session: {}", uid);
-                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
-                } catch (IOException e) {
-                    log.error("Close zombie session failed", e);
+    public void sendToUser(String uid, String message) {
+        sendToUser(uid, new TextMessage(message));
+    }
+
+    /**
+     * 业务方法：发送一个已构造好的帧给指定用户，同一个帧对象被所有端共享
+     * <p>
+     * 本节点上的连接直接投递，连在其他节点上的由集群路由转发；本节点没有连接收下（不在线、连接正在关闭或出站队列拒绝）
+     * 且不在其他节点上时存入离线收件箱。
+     */
+    public void sendToUser(String uid, WebSocketMessage<?> message) {
+        int delivered = deliverToUser(uid, message);
+        clusterRouter.forward(uid, message);
+        if (delivered == 0 && !clusterRouter.isOnlineElsewhere(uid)) {
+            storeOffline(uid, message);
+        }
+    }
+
+    /**
+     * 单聊：本节点上的连接收到带会话序号的帧，序号由接收者所在节点分配；
+     * 连在其他节点上的收到不带序号的帧，由那个节点投递时再编号
+     */
+    private void sendChat(String fromUid, String toUser, ChatMessageCodec.RoutingHeader header, String payload) {
+        int delivered = 0;
+        if (sessionRegistry.getSessions(toUser).length > 0) {
+            WebSocketMessage<?> frame = deliveryTracker.track(toUser, fromUid,
+                    (epoch, seq) -> ChatMessageCodec.forwardFrame(fromUid, header, payload, epoch, seq));
+            delivered = deliverToUser(toUser, frame);
+        }
+        WebSocketMessage<?> unsequenced = ChatMessageCodec.forwardFrame(fromUid, header, payload);
+        clusterRouter.forward(toUser, unsequenced);
+        if (delivered == 0 && !clusterRouter.isOnlineElsewhere(toUser)) {
+            storeOffline(toUser, unsequenced);
+        }
+    }
+
+    /**
+     * 客户端确认 / 续传
+     */
+    private void handleControl(String uid, ChatMessageCodec.ControlFrame control, WebSocketSession outbound)
+            throws IOException {
+        if (control.isAck()) {
+            deliveryTracker.ack(uid, control.fromUser(), control.epoch(), control.seq());
+            return;
+        }
+        // 只重发给发起续传的这个连接，帧进出站队列，不在收消息线程上写 socket
+        DeliveryTracker.Resume resume = deliveryTracker.resume(uid, control.fromUser(), control.epoch(),
+                control.seq());
+        for (WebSocketMessage<?> frame : resume.frames()) {
+            outbound.sendMessage(frame);
+        }
+        outbound.sendMessage(new TextMessage(ChatMessageCodec.resumedAck(resume.epoch(), resume.frames().size(),
+                resume.truncated())));
+    }
+
+    /**
+     * 加入 / 退出房间，成员关系记在连接上，投递时使用出站队列包装后的连接
+     */
+    private void handleRoomControl(ChatMessageCodec.ControlFrame control, WebSocketSession outbound)
+            throws IOException {
+        String room = control.room();
+        String reply;
+        if (ChatMessageCodec.TYPE_JOIN.equals(control.type())) {
+            reply = switch (roomRegistry.join(outbound, room)) {
+                case JOINED, ALREADY_JOINED -> ChatMessageCodec.joinedAck(room, roomRegistry.getMemberCount(room));
+                case TOO_MANY_ROOMS -> ChatMessageCodec.roomError(room, "too_many_rooms");
+                case INVALID_NAME -> ChatMessageCodec.roomError(room, "invalid_name");
+            };
+        } else {
+            roomRegistry.leave(outbound, room);
+            reply = ChatMessageCodec.leftAck(room);
+        }
+        outbound.sendMessage(new TextMessage(reply));
+    }
+
+    /**
+     * @return 成功入队的本地连接数
+     */
+    private int deliverToUser(String uid, WebSocketMessage<?> message) {
+        long start = System.nanoTime();
+        int delivered = 0;
+        for (WebSocketSession session : sessionRegistry.getSessions(uid)) {
+            try {
+                if (session.isOpen() && enqueue(session, message)) {
+                    delivered++;
+                } else {
+                    metrics.sendFailed();
                 }
+            } catch (IOException e) {
+                metrics.sendFailed();
+                log.error("Send message failed", e);
             }
-        });
+        }
+        metrics.recordSend(start);
+        return delivered;
     }
 
     /**
-     * 业务方法：发送消息给指定用户
+     * @return 消息是否进入了该连接的出站队列；连接已关闭或正在关闭、队列拒绝时返回 false
      */
-    public void sendToUser(String uid, String message) {
-        WebSocketSession session = USER_SESSION_MAP.get(uid);
-        if (session != null && session.isOpen()) {
+    private static boolean enqueue(WebSocketSession session, WebSocketMessage<?> message) throws IOException {
+        if (session instanceof QueuedSessionDecorator queued) {
+            return queued.trySend(message);
+        }
+        session.sendMessage(message);
+        return true;
+    }
+
+    private void storeOffline(String uid, WebSocketMessage<?> message) {
+        // 只有离线时才取完整内容（拼接帧会在这里拼出字符串）
+        if (message.getPayload() instanceof CharSequence text && !offlineInbox.store(uid, text.toString())) {
+            log.warn("Offline inbox is full, message to {} dropped", uid);
+        }
+    }
+
+    /**
+     * 业务方法：广播给所有在线用户
+     * <p>
+     * payload 只序列化一次，同一个帧对象放进所有会话的出站队列，
+     * 出站队列会把短时间内的多条广播合并成一个帧发送。
+     *
+     * @param payload 已序列化的 JSON 字符串，或任意可被 Jackson 序列化的对象
+     */
+    public void broadcast(Object payload) {
+        BatchableTextMessage message = toFrame(payload);
+        if (message != null) {
+            sessionRegistry.forEachSession(session -> send(session, message));
+            clusterRouter.broadcast(message.getPayload());
+        }
+    }
+
+    /**
+     * 业务方法：发送给一组用户（按 uid 列表扇出；按连接加入的房间用 sendToRoom）
+     *
+     * @param uids    接收者 uid 集合
+     * @param payload 已序列化的 JSON 字符串，或任意可被 Jackson 序列化的对象
+     */
+    public void sendToUsers(Collection<String> uids, Object payload) {
+        BatchableTextMessage message = toFrame(payload);
+        if (message == null) {
+            return;
+        }
+        deliverToUsers(uids, message);
+        clusterRouter.forward(uids, message.getPayload());
+    }
+
+    /**
+     * 业务方法：发送给房间内的所有成员（系统通知等），包括连在其他节点上的成员
+     *
+     * @param payload 已序列化的 JSON 字符串，或任意可被 Jackson 序列化的对象
+     */
+    public void sendToRoom(String room, Object payload) {
+        BatchableTextMessage message = toFrame(payload);
+        if (message != null) {
+            sendToRoom(room, message.getPayload(), null);
+        }
+    }
+
+    /**
+     * 报文只构造一次，同一个帧对象放进本地每个成员的出站队列，其他节点各收到一条
+     *
+     * @param exclude 不投递的本地连接，可以为 null
+     */
+    private void sendToRoom(String room, String payload, WebSocketSession exclude) {
+        long start = System.nanoTime();
+        BatchableTextMessage message = new BatchableTextMessage(payload);
+        roomRegistry.forEachMember(room, exclude, session -> send(session, message));
+        metrics.recordSend(start);
+        clusterRouter.broadcastToRoom(room, payload);
+    }
+
+    /**
+     * 投递其他节点转发过来的消息
+     */
+    private void deliverLocally(RoutedMessage routed) {
+        if (routed.isRoom()) {
+            BatchableTextMessage message = new BatchableTextMessage(routed.payload());
+            roomRegistry.forEachMember(routed.room(), null, session -> send(session, message));
+        } else if (routed.isBroadcast()) {
+            BatchableTextMessage message = new BatchableTextMessage(routed.payload());
+            sessionRegistry.forEachSession(session -> send(session, message));
+        } else if (routed.toUsers().size() == 1) {
+            String uid = routed.toUsers().get(0);
+            WebSocketMessage<?> message = sequenceRemote(uid, routed.payload());
+            // 转发途中用户已经下线
+            if (deliverToUser(uid, message) == 0) {
+                storeOffline(uid, new TextMessage(routed.payload()));
+            }
+        } else {
+            deliverToUsers(routed.toUsers(), new BatchableTextMessage(routed.payload()));
+        }
+    }
+
+    /**
+     * 其他节点转发来的单聊在这里编号；系统消息等非单聊格式原样投递
+     */
+    private WebSocketMessage<?> sequenceRemote(String uid, String payload) {
+        if (sessionRegistry.getSessions(uid).length > 0) {
             try {
-                session.sendMessage(new TextMessage(message));
+                String fromUser = ChatMessageCodec.fromUserOf(payload);
+                if (fromUser != null) {
+                    return deliveryTracker.track(uid, fromUser,
+                            (epoch, seq) -> ChatMessageCodec.sequenced(epoch, seq, payload));
+                }
             } catch (IOException e) {
-                log.error("Send message failed", e);
+                log.debug("Remote payload is not a chat frame: {}", e.getMessage());
+            }
+        }
+        return new TextMessage(payload);
+    }
+
+    private void deliverToUsers(Collection<String> uids, BatchableTextMessage message) {
+        for (String uid : uids) {
+            for (WebSocketSession session : sessionRegistry.getSessions(uid)) {
+                send(session, message);
             }
         }
     }
+
+    private void send(WebSocketSession session, BatchableTextMessage message) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(message);
+        } catch (IOException e) {
+            log.error("Fanout message failed", e);
+        }
+    }
+
+    private BatchableTextMessage toFrame(Object payload) {
+        try {
+            String json = payload instanceof String str ? str : objectMapper.writeValueAsString(payload);
+            return new BatchableTextMessage(json);
+        } catch (JsonProcessingException e) {
+            log.error("Serialize fanout payload failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * 离线消息的回放目标：和 sendToUser 一样发给该用户的所有端（含其他节点上的），但投递失败时不再存回收件箱，
+     * 由收件箱保留没交出去的条目
+     */
+    private final class InboxReplay implements OfflineInbox.ReplayTarget {
+
+        private final String uid;
+
+        private InboxReplay(String uid) {
+            this.uid = uid;
+        }
+
+        @Override
+        public int backlog() {
+            int backlog = -1;
+            for (WebSocketSession session : sessionRegistry.getSessions(uid)) {
+                if (session.isOpen()) {
+                    int depth = session instanceof QueuedSessionDecorator queued ? queued.getQueueDepth() : 0;
+                    backlog = Math.max(backlog, depth);
+                }
+            }
+            return backlog;
+        }
+
+        @Override
+        public boolean deliver(String payload) {
+            TextMessage message = new TextMessage(payload);
+            int delivered = deliverToUser(uid, message);
+            clusterRouter.forward(uid, message);
+            return delivered > 0;
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package com.xf.nativechat.handler;
+
+import com.xf.nativechat.protocol.ChatMessageCodec;
+import com.xf.websocket.core.drain.DrainHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 停机排空时发给聊天连接的重连提示：{"type":"reconnect","after":N}
+ * <p>
+ * 演示页面收到后记下 N，连接以 1012 关闭时等待 N 毫秒再重连。
+ */
+@Component
+public class ReconnectHintHandler implements DrainHandler {
+
+    @Override
+    public TextMessage reconnectHint(WebSocketSession session, long afterMillis) {
+        return new TextMessage(ChatMessageCodec.reconnect(afterMillis));
+    }
+}
@@ -0,0 +1,82 @@
+package com.xf.nativechat.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 收发路径上的 Micrometer 指标
+ * <p>
+ * 所有 Counter / Timer 在启动时按固定的标签组合注册好，热路径上只做 increment / record，
+ * 不拼接字符串、不创建 Tag，也不按消息查找 Meter。
+ * 组件内部已有的计数（在线数、队列深度、僵尸连接、压缩、持久化等）由 {@link NativeMetricsBinder} 在采集时读取。
+ */
+@Component
+public class NativeChatMetrics {
+
+    /**
+     * 入站消息的路由结果
+     */
+    public enum Route {
+        PRIVATE, BROADCAST, ROOM, MEMBERSHIP, ACK, RESUME, PING, UNKNOWN
+    }
+
+    private final Counter handshakeAccepted;
+    private final Counter handshakeRejected;
+    private final Counter[] routed;
+    private final Timer sendTimer;
+    private final Counter sendFailures;
+
+    public NativeChatMetrics(MeterRegistry registry) {
+        this.handshakeAccepted = handshake(registry, "accepted");
+        this.handshakeRejected = handshake(registry, "rejected");
+        Route[] routes = Route.values();
+        this.routed = new Counter[routes.length];
+        for (Route route : routes) {
+            routed[route.ordinal()] = Counter.builder("xf.native.messages")
+                    .tag("route", route.name().toLowerCase(Locale.ROOT))
+                    .description("按路由结果统计的入站消息数")
+                    .register(registry);
+        }
+        this.sendTimer = Timer.builder("xf.native.send")
+                .description("给一个用户的所有本地连接入队一条消息的耗时")
+                .register(registry);
+        this.sendFailures = Counter.builder("xf.native.send.failures")
+                .description("入队失败的消息数（连接已关闭或出站队列拒绝）")
+                .register(registry);
+    }
+
+    private static Counter handshake(MeterRegistry registry, String result) {
+        return Counter.builder("xf.native.handshakes")
+                .tag("result", result)
+                .description("握手次数")
+                .register(registry);
+    }
+
+    public void handshakeAccepted() {
+        handshakeAccepted.increment();
+    }
+
+    public void handshakeRejected() {
+        handshakeRejected.increment();
+    }
+
+    public void routed(Route route) {
+        routed[route.ordinal()].increment();
+    }
+
+    /**
+     * @param startNanos 开始时的 System.nanoTime()
+     */
+    public void recordSend(long startNanos) {
+        sendTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sendFailed() {
+        sendFailures.increment();
+    }
+}
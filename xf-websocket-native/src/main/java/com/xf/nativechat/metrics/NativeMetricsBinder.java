@@ -0,0 +1,106 @@
+package com.xf.nativechat.metrics;
+
+import com.xf.nativechat.cluster.ClusterRouter;
+import com.xf.nativechat.room.RoomRegistry;
+import com.xf.nativechat.session.DeliveryTracker;
+import com.xf.nativechat.session.FrameCompressor;
+import com.xf.nativechat.store.OfflineInbox;
+import com.xf.nativechat.store.PersistencePipeline;
+import com.xf.websocket.core.session.SessionRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把各组件自己维护的计数注册为 Gauge / FunctionCounter（xf.native.*）
+ * <p>
+ * 这些值只在采集时读取一次（LongAdder.sum 等），不给收发路径增加任何开销。
+ * 出站队列、心跳、限流、认证和停机排空的指标由 xf-websocket-core 统一注册为 xf.websocket.*。
+ */
+@Component
+@RequiredArgsConstructor
+public class NativeMetricsBinder implements MeterBinder {
+
+    private final SessionRegistry sessionRegistry;
+    private final FrameCompressor frameCompressor;
+    private final DeliveryTracker deliveryTracker;
+    private final OfflineInbox offlineInbox;
+    private final PersistencePipeline persistencePipeline;
+    private final ClusterRouter clusterRouter;
+    private final RoomRegistry roomRegistry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("xf.native.sessions", sessionRegistry, SessionRegistry::getSessionCount)
+                .description("本节点在线连接数")
+                .register(registry);
+        Gauge.builder("xf.native.users", sessionRegistry, SessionRegistry::getOnlineUserCount)
+                .description("本节点在线用户数")
+                .register(registry);
+        Gauge.builder("xf.native.rooms", roomRegistry, RoomRegistry::getRoomCount)
+                .description("本节点上至少有一个成员的房间数")
+                .register(registry);
+        Gauge.builder("xf.native.room.memberships", roomRegistry, RoomRegistry::getMembershipCount)
+                .description("本节点上连接加入房间的总次数（一个连接加入 n 个房间计 n 次）")
+                .register(registry);
+
+        counter(registry, "xf.native.compression.compressed", "应用层压缩后发送的消息数",
+                frameCompressor, FrameCompressor::getCompressedCount);
+        counter(registry, "xf.native.compression.skipped", "低于压缩阈值直接发送的消息数",
+                frameCompressor, FrameCompressor::getSkippedCount);
+        FunctionCounter.builder("xf.native.compression.bytes.in", frameCompressor, FrameCompressor::getBytesIn)
+                .description("尝试压缩的消息原始字节数")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        FunctionCounter.builder("xf.native.compression.bytes.out", frameCompressor, FrameCompressor::getBytesOut)
+                .description("尝试压缩的消息实际发出的字节数")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+
+        counter(registry, "xf.native.delivery.tracked", "分配了会话序号的单聊消息数",
+                deliveryTracker, DeliveryTracker::getTrackedCount);
+        counter(registry, "xf.native.delivery.acked", "客户端确认的单聊消息数",
+                deliveryTracker, DeliveryTracker::getAckedCount);
+        counter(registry, "xf.native.delivery.resent", "断线续传重发的消息数",
+                deliveryTracker, DeliveryTracker::getResentCount);
+        counter(registry, "xf.native.delivery.evicted", "未确认就被挤出窗口的消息数",
+                deliveryTracker, DeliveryTracker::getEvictedCount);
+
+        counter(registry, "xf.native.inbox.stored", "存入离线收件箱的消息数", offlineInbox, OfflineInbox::getStoredCount);
+        counter(registry, "xf.native.inbox.replayed", "上线后回放的离线消息数", offlineInbox, OfflineInbox::getReplayedCount);
+        counter(registry, "xf.native.inbox.dropped", "超过单用户上限被丢弃或过期的离线消息数",
+                offlineInbox, inbox -> inbox.getEvictedCount() + inbox.getExpiredCount());
+        counter(registry, "xf.native.inbox.rejected", "超过总容量被拒绝的离线消息数",
+                offlineInbox, OfflineInbox::getRejectedCount);
+        Gauge.builder("xf.native.inbox.size", offlineInbox, OfflineInbox::getTotalBytes)
+                .description("离线收件箱占用的堆外内存")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+
+        counter(registry, "xf.native.persistence.persisted", "已落盘的消息数",
+                persistencePipeline, PersistencePipeline::getPersistedCount);
+        counter(registry, "xf.native.persistence.dropped", "待写盘队列满被丢弃的消息数",
+                persistencePipeline, PersistencePipeline::getDroppedCount);
+        Gauge.builder("xf.native.persistence.backlog", persistencePipeline, PersistencePipeline::getBacklog)
+                .description("等待写盘的消息数")
+                .register(registry);
+
+        counter(registry, "xf.native.cluster.forwarded", "转发到其他节点的消息数",
+                clusterRouter, ClusterRouter::getForwardedCount);
+        counter(registry, "xf.native.cluster.received", "其他节点转发过来的消息数",
+                clusterRouter, ClusterRouter::getReceivedCount);
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, String description, T target,
+                                    ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, target, count)
+                .description(description)
+                .register(registry);
+    }
+}
@@ -0,0 +1,382 @@
+package com.xf.nativechat.protocol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.xf.websocket.core.session.SplicedTextMessage;
+
+import java.io.IOException;
+
+/**
+ * 原生协议消息编解码（流式，低分配）
+ * <p>
+ * 入站消息格式: {"toUser": "1002", "type": "text", "content": "..."}
+ * 转发消息格式: {"seq": 42, "epoch": 7, "fromUser": "1001", "type": "text", "content": "..."}
+ * 控制消息格式: {"type": "ack", "fromUser": "1001", "epoch": 7, "seq": 42} / {"type": "resume", "fromUser": "1001", "epoch": 7, "seq": 40}
+ * 房间消息格式: {"toRoom": "r1", "type": "text", "content": "..."}，转发为 {"room": "r1", "fromUser": "1001", ...}
+ * 房间控制格式: {"type": "join", "room": "r1"} / {"type": "leave", "room": "r1"}
+ * <p>
+ * 原来的做法是 readTree 得到整棵 JsonNode 树，取出 content 字符串，再放进 HashMap 重新 writeValueAsString，
+ * 一条 5MB 的 base64 图片会在内存里被复制好几遍。这里改为：
+ * 1. 用 JsonParser 流式读取，只取 toUser / type 这类很短的头部字段；
+ * 2. content 不解码，只记录它在原始报文中的起止位置（连同引号和转义字符原样保留）；
+ * 3. 转发时只拼一个很短的头部，content 的原始片段由 {@link SplicedTextMessage} 直接引用，
+ * 发送时流式写入 socket，整个转发过程不复制 content。
+ */
+public final class ChatMessageCodec {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final JsonStringEncoder ENCODER = JsonStringEncoder.getInstance();
+
+    private static final String DEFAULT_TYPE = "text";
+
+    public static final String TYPE_ACK = "ack";
+    public static final String TYPE_RESUME = "resume";
+    public static final String TYPE_JOIN = "join";
+    public static final String TYPE_LEAVE = "leave";
+
+    private ChatMessageCodec() {
+    }
+
+    /**
+     * 解析消息头
+     *
+     * @return 不是合法的路由消息（toUser 和 toRoom 都没有，或缺少 content）时返回 null
+     */
+    public static RoutingHeader parse(String payload) throws IOException {
+        if (!looksLikeObject(payload)) {
+            return null;
+        }
+        String toUser = null;
+        String toRoom = null;
+        String type = DEFAULT_TYPE;
+        String msgId = null;
+        int contentStart = -1;
+        int contentEnd = -1;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                // 字段名由 JsonFactory 的符号表复用，不会每条消息都新建字符串
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "toUser" -> toUser = token.isScalarValue() ? parser.getValueAsString() : null;
+                    case "toRoom" -> toRoom = token.isScalarValue() ? parser.getValueAsString() : null;
+                    case "type" -> type = token.isScalarValue() ? parser.getValueAsString(DEFAULT_TYPE) : DEFAULT_TYPE;
+                    case "msgId" -> msgId = token.isScalarValue() ? parser.getValueAsString() : null;
+                    case "content" -> {
+                        contentStart = (int) parser.currentTokenLocation().getCharOffset();
+                        contentEnd = endOfValue(parser, token, payload, contentStart);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if ((toUser == null && toRoom == null) || contentStart < 0) {
+            return null;
+        }
+        return new RoutingHeader(toUser, toRoom, type, contentStart, contentEnd, msgId);
+    }
+
+    /**
+     * 解析客户端的确认 / 续传 / 加入退出房间请求
+     *
+     * @return 不是控制消息时返回 null
+     */
+    public static ControlFrame parseControl(String payload) throws IOException {
+        if (!looksLikeObject(payload)) {
+            return null;
+        }
+        String type = null;
+        String fromUser = null;
+        long epoch = -1;
+        long seq = -1;
+        String room = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "type" -> type = token.isScalarValue() ? parser.getValueAsString() : null;
+                    case "fromUser" -> fromUser = token.isScalarValue() ? parser.getValueAsString() : null;
+                    case "epoch" -> epoch = token.isNumeric() ? parser.getLongValue() : -1;
+                    case "seq" -> seq = token.isNumeric() ? parser.getLongValue() : -1;
+                    case "room" -> room = token.isScalarValue() ? parser.getValueAsString() : null;
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (TYPE_JOIN.equals(type) || TYPE_LEAVE.equals(type)) {
+            return room == null ? null : new ControlFrame(type, null, -1, -1, room);
+        }
+        if (!TYPE_ACK.equals(type) && !TYPE_RESUME.equals(type)) {
+            return null;
+        }
+        // ack 必须指明会话和序号；resume 不带 fromUser 表示续传所有会话
+        if (TYPE_ACK.equals(type) && (fromUser == null || seq < 0)) {
+            return null;
+        }
+        return new ControlFrame(type, fromUser, epoch, seq, null);
+    }
+
+    /**
+     * 从本模块生成的转发消息中取出发送者（其他节点转发过来的消息只有最终报文）
+     *
+     * @return 不是单聊转发格式时返回 null
+     */
+    public static String fromUserOf(String forwarded) throws IOException {
+        if (!looksLikeObject(forwarded)) {
+            return null;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(forwarded)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            // fromUser 是头部第一个字段，读到就停，不扫描 content
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("fromUser".equals(field)) {
+                    return token.isScalarValue() ? parser.getValueAsString() : null;
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 计算 content 值在原始报文中的结束位置（不含）
+     */
+    private static int endOfValue(JsonParser parser, JsonToken token, String payload, int start) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            // 字符串值此时尚未被解码（Jackson 延迟解码），自己找结束引号，随后 nextToken 会直接跳过它
+            return closingQuote(payload, start + 1) + 1;
+        }
+        if (token.isStructStart()) {
+            parser.skipChildren();
+        }
+        return (int) parser.currentLocation().getCharOffset();
+    }
+
+    /**
+     * 快速排除 ping、纯文本等非 JSON 对象消息，免得为它们创建解析器
+     */
+    private static boolean looksLikeObject(String payload) {
+        for (int i = 0, n = payload.length(); i < n; i++) {
+            char c = payload.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    private static int closingQuote(String payload, int from) {
+        for (int i = from, n = payload.length(); i < n; i++) {
+            char c = payload.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string in payload");
+    }
+
+    /**
+     * 构造转发给接收者的消息，content 原样拷贝，不做解码/重新转义
+     */
+    public static String forward(String fromUser, RoutingHeader header, String payload) {
+        int contentLength = header.contentEnd() - header.contentStart();
+        StringBuilder out = new StringBuilder(contentLength + fromUser.length() + header.type().length() + 48);
+        out.append('{');
+        appendHead(out, fromUser, header);
+        out.append(payload, header.contentStart(), header.contentEnd());
+        return out.append('}').toString();
+    }
+
+    /**
+     * 构造房间消息的转发报文，所有成员共享同一个字符串
+     */
+    public static String forwardToRoom(String fromUser, RoutingHeader header, String payload) {
+        int contentLength = header.contentEnd() - header.contentStart();
+        StringBuilder out = new StringBuilder(contentLength + header.toRoom().length() + fromUser.length()
+                + header.type().length() + 56);
+        out.append("{\"room\":\"");
+        ENCODER.quoteAsString(header.toRoom(), out);
+        out.append("\",");
+        appendHead(out, fromUser, header);
+        out.append(payload, header.contentStart(), header.contentEnd());
+        return out.append('}').toString();
+    }
+
+    /**
+     * 构造转发帧，content 不复制，直接引用原始报文（发送时由 {@link SplicedTextMessage} 流式写出）
+     */
+    public static SplicedTextMessage forwardFrame(String fromUser, RoutingHeader header, String payload) {
+        return forwardFrame(fromUser, header, payload, -1, -1);
+    }
+
+    /**
+     * 构造带会话序号的转发帧
+     *
+     * @param epoch 序号所属窗口的 epoch
+     * @param seq   会话内序号，小于 0 表示不带序号
+     */
+    public static SplicedTextMessage forwardFrame(String fromUser, RoutingHeader header, String payload, long epoch,
+                                                  long seq) {
+        StringBuilder head = new StringBuilder(fromUser.length() + header.type().length() + 80);
+        if (seq >= 0) {
+            head.append("{\"seq\":").append(seq).append(",\"epoch\":").append(epoch).append(',');
+        } else {
+            head.append('{');
+        }
+        appendHead(head, fromUser, header);
+        return new SplicedTextMessage(head.toString(), payload, header.contentStart(), header.contentEnd(), "}");
+    }
+
+    /**
+     * 给已经构造好的转发报文加上序号，原报文不复制
+     */
+    public static SplicedTextMessage sequenced(long epoch, long seq, String forwarded) {
+        return new SplicedTextMessage("{\"seq\":" + seq + ",\"epoch\":" + epoch + ",", forwarded, 1,
+                forwarded.length(), "");
+    }
+
+    /**
+     * 发送成功的回执: {"type":"sent","toUser":"1002","msgType":"text","msgId":"..."}，房间消息为 "toRoom":"r1"
+     */
+    public static String sentAck(RoutingHeader header) {
+        StringBuilder out = new StringBuilder(64);
+        if (header.isRoom()) {
+            out.append("{\"type\":\"sent\",\"toRoom\":\"");
+            ENCODER.quoteAsString(header.toRoom(), out);
+        } else {
+            out.append("{\"type\":\"sent\",\"toUser\":\"");
+            ENCODER.quoteAsString(header.toUser(), out);
+        }
+        out.append("\",\"msgType\":\"");
+        ENCODER.quoteAsString(header.type(), out);
+        out.append('"');
+        if (header.msgId() != null) {
+            out.append(",\"msgId\":\"");
+            ENCODER.quoteAsString(header.msgId(), out);
+            out.append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * 续传结束的回执: {"type":"resumed","epoch":7,"count":3,"truncated":false}
+     *
+     * @param epoch     当前窗口的 epoch，与客户端记录的不同时客户端清空记录的序号
+     * @param truncated 请求的序号之后有消息已被挤出窗口或随旧窗口释放，客户端需要拉取历史补齐
+     */
+    public static String resumedAck(long epoch, int count, boolean truncated) {
+        return "{\"type\":\"resumed\",\"epoch\":" + epoch + ",\"count\":" + count + ",\"truncated\":" + truncated
+                + "}";
+    }
+
+    /**
+     * 加入房间的回执: {"type":"joined","room":"r1","members":12}
+     *
+     * @param members 加入后本节点上该房间的成员连接数
+     */
+    public static String joinedAck(String room, int members) {
+        return roomReply("joined", room).append(",\"members\":").append(members).append('}').toString();
+    }
+
+    /**
+     * 退出房间的回执: {"type":"left","room":"r1"}
+     */
+    public static String leftAck(String room) {
+        return roomReply("left", room).append('}').toString();
+    }
+
+    /**
+     * 房间操作被拒绝: {"type":"roomError","room":"r1","reason":"not_joined"}
+     *
+     * @param reason not_joined（未加入就发消息）/ too_many_rooms / invalid_name
+     */
+    public static String roomError(String room, String reason) {
+        return roomReply("roomError", room).append(",\"reason\":\"").append(reason).append("\"}").toString();
+    }
+
+    private static StringBuilder roomReply(String type, String room) {
+        StringBuilder out = new StringBuilder(48 + room.length());
+        out.append("{\"type\":\"").append(type).append("\",\"room\":\"");
+        ENCODER.quoteAsString(room, out);
+        return out.append('"');
+    }
+
+    /**
+     * 节点停机前的重连提示: {"type":"reconnect","after":1234}，客户端等待 after 毫秒后重连（会被负载均衡分到其他节点）
+     */
+    public static String reconnect(long afterMillis) {
+        return "{\"type\":\"reconnect\",\"after\":" + afterMillis + "}";
+    }
+
+    /**
+     * 入站消息超过限流额度被丢弃时的通知: {"type":"throttled"}，客户端收到后应放慢发送
+     */
+    public static final String THROTTLED = "{\"type\":\"throttled\"}";
+
+    /**
+     * 没有广播权限的用户发了 toUser = "*" 的消息: {"type":"forbidden","reason":"broadcast"}，消息被丢弃
+     */
+    public static final String BROADCAST_FORBIDDEN = "{\"type\":\"forbidden\",\"reason\":\"broadcast\"}";
+
+    private static void appendHead(StringBuilder out, String fromUser, RoutingHeader header) {
+        out.append("\"fromUser\":\"");
+        ENCODER.quoteAsString(fromUser, out);
+        out.append("\",\"type\":\"");
+        ENCODER.quoteAsString(header.type(), out);
+        out.append("\",\"content\":");
+    }
+
+    /**
+     * 消息头
+     *
+     * @param toUser       接收者，房间消息时可以为 null
+     * @param toRoom       目标房间，同时带了 toUser 时以房间为准；单聊 / 广播为 null
+     * @param type         消息类型，缺省为 text
+     * @param contentStart content 值在原始报文中的起始位置（含引号）
+     * @param contentEnd   content 值在原始报文中的结束位置（不含）
+     * @param msgId        客户端生成的消息 ID（可选），原样带回发送回执里用于去重
+     */
+    public record RoutingHeader(String toUser, String toRoom, String type, int contentStart, int contentEnd,
+                                String msgId) {
+
+        public boolean isRoom() {
+            return toRoom != null;
+        }
+    }
+
+    /**
+     * 客户端控制消息
+     *
+     * @param type     {@link #TYPE_ACK}、{@link #TYPE_RESUME}、{@link #TYPE_JOIN} 或 {@link #TYPE_LEAVE}
+     * @param fromUser 会话对端（消息发送者）；resume 时为 null 表示所有会话
+     * @param epoch    客户端记录的窗口 epoch，没有带时为 -1
+     * @param seq      ack: 已收到的最大序号（累计确认）；resume: 已收到的最大序号，之后的重发
+     * @param room     join / leave 的房间名，其他类型为 null
+     */
+    public record ControlFrame(String type, String fromUser, long epoch, long seq, String room) {
+
+        public boolean isAck() {
+            return TYPE_ACK.equals(type);
+        }
+
+        public boolean isRoomControl() {
+            return room != null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.xf.nativechat.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 媒体消息的二进制信封
+ * <p>
+ * 一条媒体消息就是一个 WebSocket 二进制消息，格式为（大端序）：
+ * <pre>
+ * +---------+---------+------------+---------+-----------+-------------+--------------+
+ * | version | peerLen | peer       | mimeLen | mime      | bodyLength  | body ...     |
+ * | 1 byte  | 1 byte  | UTF-8 字节 | 1 byte  | UTF-8 字节 | 8 byte long | bodyLength 字节 |
+ * +---------+---------+------------+---------+-----------+-------------+--------------+
+ * </pre>
+ * 发送方填写的 peer 是接收者 uid，服务端转发时改写为发送者 uid，body 原样透传。
+ * 相比 base64 文本，体积少了 1/3，也不需要整段解码。
+ * <p>
+ * 接收方应校验实际收到的 body 字节数是否等于 bodyLength：发送方中途断开时服务端会提前结束这条消息。
+ */
+public final class MediaEnvelope {
+
+    public static final byte VERSION = 1;
+
+    /**
+     * 头部最大长度：version + peerLen + peer + mimeLen + mime + bodyLength
+     */
+    public static final int MAX_HEADER_SIZE = 1 + 1 + 255 + 1 + 255 + Long.BYTES;
+
+    private MediaEnvelope() {
+    }
+
+    /**
+     * 信封头部
+     *
+     * @param peer       对端 uid（请求中是接收者，转发后是发送者）
+     * @param mimeType   媒体类型，例如 image/png
+     * @param bodyLength body 字节数
+     */
+    public record Header(String peer, String mimeType, long bodyLength) {
+
+        /**
+         * 编码头部，返回的 buffer 已 flip，可直接发送
+         */
+        public ByteBuffer encode() {
+            byte[] peerBytes = peer.getBytes(StandardCharsets.UTF_8);
+            byte[] mimeBytes = mimeType.getBytes(StandardCharsets.UTF_8);
+            if (peerBytes.length > 255 || mimeBytes.length > 255) {
+                throw new IllegalArgumentException("peer/mimeType too long");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(3 + peerBytes.length + mimeBytes.length + Long.BYTES);
+            buffer.put(VERSION)
+                    .put((byte) peerBytes.length).put(peerBytes)
+                    .put((byte) mimeBytes.length).put(mimeBytes)
+                    .putLong(bodyLength);
+            return buffer.flip();
+        }
+
+        /**
+         * 换一个对端（转发时用发送者 uid 替换接收者 uid）
+         */
+        public Header withPeer(String newPeer) {
+            return new Header(newPeer, mimeType, bodyLength);
+        }
+    }
+
+    /**
+     * 增量头部解码器
+     * <p>
+     * 容器按缓冲区大小把一条消息拆成多个分片交给我们，头部可能被拆开，
+     * 所以这里先把头部字节攒进一个很小的固定缓冲区（不超过 {@link #MAX_HEADER_SIZE}），凑齐再解析。
+     */
+    public static final class HeaderDecoder {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+
+        /**
+         * 从分片中读取头部字节
+         *
+         * @return 头部还不完整时返回 null；解析成功时 chunk 的 position 恰好指向 body 起点
+         * @throws IllegalArgumentException 版本号不支持
+         */
+        public Header decode(ByteBuffer chunk) {
+            int required = requiredLength();
+            while (buffer.position() < required && chunk.hasRemaining()) {
+                buffer.put(chunk.get());
+                required = requiredLength();
+            }
+            if (buffer.position() < required) {
+                return null;
+            }
+            ByteBuffer header = buffer.duplicate().flip();
+            header.get(); // version 已在 requiredLength 中校验
+            String peer = readString(header);
+            String mimeType = readString(header);
+            return new Header(peer, mimeType, header.getLong());
+        }
+
+        /**
+         * 根据已读到的长度字段推算头部总长度
+         */
+        private int requiredLength() {
+            int read = buffer.position();
+            if (read < 2) {
+                return 2;
+            }
+            if (buffer.get(0) != VERSION) {
+                throw new IllegalArgumentException("Unsupported media envelope version: " + buffer.get(0));
+            }
+            int mimeLenIndex = 2 + Byte.toUnsignedInt(buffer.get(1));
+            if (read <= mimeLenIndex) {
+                return mimeLenIndex + 1;
+            }
+            return mimeLenIndex + 1 + Byte.toUnsignedInt(buffer.get(mimeLenIndex)) + Long.BYTES;
+        }
+
+        private static String readString(ByteBuffer header) {
+            int length = Byte.toUnsignedInt(header.get());
+            String value = new String(header.array(), header.position(), length, StandardCharsets.UTF_8);
+            header.position(header.position() + length);
+            return value;
+        }
+    }
+}
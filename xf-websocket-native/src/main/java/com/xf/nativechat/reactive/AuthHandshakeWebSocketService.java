@@ -0,0 +1,60 @@
+package com.xf.nativechat.reactive;
+
+import com.xf.nativechat.handler.AuthHandshakeInterceptor;
+import com.xf.nativechat.metrics.NativeChatMetrics;
+import com.xf.websocket.core.drain.ConnectionDrainer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * reactive 模式的握手
+ * <p>
+ * 升级前按 {@link AuthHandshakeInterceptor} 的规则校验令牌，不通过返回 401；节点停机排空期间返回 503 和 Retry-After。
+ * 校验得到的 uid 和压缩方式直接交给 {@link ReactiveHandlerAdapter} 作为会话属性：WebFlux 默认只从 WebSession 复制属性，
+ * 那样每次握手都要创建一个 WebSession，连接风暴时白白多一次分配和 ID 生成。
+ */
+public class AuthHandshakeWebSocketService extends HandshakeWebSocketService {
+
+    private final AuthHandshakeInterceptor authInterceptor;
+    private final ConnectionDrainer connectionDrainer;
+    private final NativeChatMetrics metrics;
+
+    public AuthHandshakeWebSocketService(RequestUpgradeStrategy upgradeStrategy, AuthHandshakeInterceptor authInterceptor,
+                                         ConnectionDrainer connectionDrainer, NativeChatMetrics metrics) {
+        super(upgradeStrategy);
+        this.authInterceptor = authInterceptor;
+        this.connectionDrainer = connectionDrainer;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Mono<Void> handleRequest(ServerWebExchange exchange, WebSocketHandler handler) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        if (connectionDrainer.isDraining()) {
+            // 本节点正在停机，让负载均衡把客户端分到其他节点
+            metrics.handshakeRejected();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(connectionDrainer.getRetryAfterSeconds()));
+            return response.setComplete();
+        }
+        Map<String, Object> attributes = new HashMap<>(4);
+        if (!authInterceptor.accept(request.getURI(), request.getHeaders(), attributes)) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return response.setComplete();
+        }
+        WebSocketHandler target = handler instanceof ReactiveHandlerAdapter adapter
+                ? adapter.withAttributes(attributes) : handler;
+        return super.handleRequest(exchange, target);
+    }
+}
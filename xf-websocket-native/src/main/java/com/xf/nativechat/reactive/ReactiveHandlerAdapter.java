@@ -0,0 +1,119 @@
+package com.xf.nativechat.reactive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * 在 WebFlux 上运行 Spring WebSocket 风格的 Handler
+ * <p>
+ * 入站帧在 Netty IO 线程上转换后同步交给被适配的 Handler（它只做路由和入队，不阻塞），
+ * 转换完 Netty 就释放池化的帧缓冲区；出站帧由 {@link ReactiveSessionAdapter} 按 Netty 的需求推给 session.send()。
+ * 入站和出站都结束后回调 afterConnectionClosed。
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveHandlerAdapter implements WebSocketHandler {
+
+    private final org.springframework.web.socket.WebSocketHandler delegate;
+
+    /**
+     * 发送线程等待 Netty 需求的上限，与出站队列的 send-time-limit 一致
+     */
+    private final long sendTimeLimitMillis;
+
+    /**
+     * 单条消息的大小上限，与握手时设置的帧大小上限一致
+     */
+    private final int messageSizeLimit;
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        return handle(session, session.getAttributes());
+    }
+
+    /**
+     * 绑定握手时得到的会话属性（uid、压缩方式），供握手服务在升级时使用
+     */
+    public WebSocketHandler withAttributes(Map<String, Object> attributes) {
+        return session -> handle(session, attributes);
+    }
+
+    private Mono<Void> handle(WebSocketSession session, Map<String, Object> attributes) {
+        ReactiveSessionAdapter adapter = new ReactiveSessionAdapter(session, attributes, sendTimeLimitMillis,
+                messageSizeLimit);
+        session.closeStatus().subscribe(adapter::remoteClosed);
+        try {
+            delegate.afterConnectionEstablished(adapter);
+        } catch (Exception e) {
+            log.warn("afterConnectionEstablished failed for session {}", session.getId(), e);
+            adapter.terminate();
+            return session.close(org.springframework.web.reactive.socket.CloseStatus.SERVER_ERROR);
+        }
+
+        Mono<Void> inbound = session.receive()
+                .doOnNext(message -> handleMessage(adapter, message))
+                .doFinally(signal -> adapter.terminate())
+                .then();
+        Mono<Void> outbound = session.send(adapter.outbound());
+        return Mono.when(inbound, outbound)
+                .onErrorResume(e -> {
+                    log.debug("Reactive WebSocket session {} terminated with error: {}", session.getId(), e.toString());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> afterConnectionClosed(adapter));
+    }
+
+    private void handleMessage(ReactiveSessionAdapter adapter, WebSocketMessage message) {
+        org.springframework.web.socket.WebSocketMessage<?> converted = switch (message.getType()) {
+            case TEXT -> new TextMessage(message.getPayloadAsText());
+            case BINARY -> new BinaryMessage(copy(message.getPayload()));
+            case PONG -> new PongMessage(copy(message.getPayload()));
+            // Ping 由 Reactor Netty 自动回复 Pong
+            case PING -> null;
+        };
+        if (converted == null) {
+            return;
+        }
+        try {
+            delegate.handleMessage(adapter, converted);
+        } catch (Exception e) {
+            // 与 servlet 模式的 ExceptionWebSocketHandlerDecorator 一致：Handler 抛异常就以 1011 关闭连接
+            log.error("Unhandled error for session {}, closing", adapter.getId(), e);
+            try {
+                adapter.close(CloseStatus.SERVER_ERROR);
+            } catch (Exception ignored) {
+                // closeInternal 只是异步发起关闭，不会抛出
+            }
+        }
+    }
+
+    private void afterConnectionClosed(ReactiveSessionAdapter adapter) {
+        adapter.terminate();
+        try {
+            delegate.afterConnectionClosed(adapter, adapter.getCloseStatus());
+        } catch (Exception e) {
+            log.warn("afterConnectionClosed failed for session {}", adapter.getId(), e);
+        }
+    }
+
+    /**
+     * 入站帧的缓冲区在回调结束后由 Netty 释放，Handler 拿到的必须是堆上的副本
+     */
+    private static ByteBuffer copy(DataBuffer payload) {
+        ByteBuffer copy = ByteBuffer.allocate(payload.readableByteCount());
+        payload.toByteBuffer(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,292 @@
+package com.xf.nativechat.reactive;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.adapter.AbstractWebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Operators;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 WebFlux 的 WebSocketSession 包装成 Spring WebSocket 的 WebSocketSession
+ * <p>
+ * 这样 {@link com.xf.nativechat.handler.MyNativeChatHandler}、出站队列和心跳时间轮不用改动就能跑在 Reactor Netty 上。
+ * 出站帧经 {@link #outbound()} 交给 session.send()，只在 Netty 请求（连接可写）时才往下推：
+ * 没有需求时发送线程最多等 send-time-limit，超时抛出 IOException，出站队列据此把慢连接当作不可靠关闭。
+ * 文本直接按 UTF-8 编码进连接分配器（池化直接内存）的 ByteBuf，不经过中间的 byte[]，写出后由 Netty 释放。
+ * <p>
+ * 发送只能在出站队列的发送线程上调用，不能在 Netty 的 IO 线程上调用，需求要由 IO 线程补充。
+ */
+@Slf4j
+public class ReactiveSessionAdapter extends AbstractWebSocketSession<WebSocketSession> {
+
+    private final long sendTimeLimitNanos;
+    private final DataBufferFactory bufferFactory;
+
+    /**
+     * 保护 requested、terminated 和 sink，发送线程在上面等待需求
+     */
+    private final Object lock = new Object();
+    private long requested;
+    private boolean terminated;
+    private FluxSink<WebSocketMessage> sink;
+
+    private volatile CloseStatus closeStatus;
+    private int textMessageSizeLimit;
+    private int binaryMessageSizeLimit;
+
+    public ReactiveSessionAdapter(WebSocketSession session, Map<String, Object> attributes, long sendTimeLimitMillis,
+                                  int messageSizeLimit) {
+        super(attributes);
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        this.bufferFactory = session.bufferFactory();
+        this.textMessageSizeLimit = messageSizeLimit;
+        this.binaryMessageSizeLimit = messageSizeLimit;
+        initializeNativeSession(session);
+    }
+
+    /**
+     * 出站帧流，交给 session.send() 订阅，只能订阅一次
+     */
+    public Flux<WebSocketMessage> outbound() {
+        return Flux.create(emitter -> {
+            synchronized (lock) {
+                if (terminated) {
+                    emitter.complete();
+                    return;
+                }
+                sink = emitter;
+            }
+            emitter.onRequest(this::onRequest);
+            emitter.onDispose(this::terminate);
+        });
+    }
+
+    /**
+     * 入站结束或连接断开后调用：唤醒还在等需求的发送线程，并结束出站帧流
+     */
+    public void terminate() {
+        FluxSink<WebSocketMessage> emitter;
+        synchronized (lock) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            emitter = sink;
+            lock.notifyAll();
+        }
+        if (emitter != null) {
+            emitter.complete();
+        }
+    }
+
+    /**
+     * 记录对端发来的关闭状态，连接结束时回调 afterConnectionClosed 用
+     */
+    public void remoteClosed(org.springframework.web.reactive.socket.CloseStatus status) {
+        if (closeStatus == null) {
+            closeStatus = new CloseStatus(status.getCode(), status.getReason());
+        }
+    }
+
+    /**
+     * 本端或对端关闭时的状态，都没有时（例如 TCP 直接断开）为 NO_CLOSE_FRAME
+     */
+    public CloseStatus getCloseStatus() {
+        CloseStatus status = closeStatus;
+        return status != null ? status : CloseStatus.NO_CLOSE_FRAME;
+    }
+
+    private void onRequest(long n) {
+        synchronized (lock) {
+            requested = Operators.addCap(requested, n);
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    protected void sendTextMessage(TextMessage message) throws IOException {
+        emit(WebSocketMessage.Type.TEXT, encode(message.getPayload()));
+    }
+
+    @Override
+    protected void sendBinaryMessage(BinaryMessage message) throws IOException {
+        emit(WebSocketMessage.Type.BINARY, copy(message.getPayload()));
+    }
+
+    @Override
+    protected void sendPingMessage(PingMessage message) throws IOException {
+        emit(WebSocketMessage.Type.PING, copy(message.getPayload()));
+    }
+
+    @Override
+    protected void sendPongMessage(PongMessage message) throws IOException {
+        emit(WebSocketMessage.Type.PONG, copy(message.getPayload()));
+    }
+
+    private void emit(WebSocketMessage.Type type, DataBuffer payload) throws IOException {
+        long deadline = System.nanoTime() + sendTimeLimitNanos;
+        synchronized (lock) {
+            try {
+                while (!terminated && (sink == null || requested == 0)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new IOException("No write demand from session " + getId() + " within send time limit");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+                if (terminated) {
+                    throw new IOException("Session " + getId() + " is closed");
+                }
+                if (requested != Long.MAX_VALUE) {
+                    requested--;
+                }
+                // 在锁内交给 sink，与 terminate() 互斥，不会在流结束后再塞进去导致缓冲区泄漏
+                sink.next(new WebSocketMessage(type, payload));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                DataBufferUtils.release(payload);
+                throw new InterruptedIOException("Interrupted while waiting for write demand");
+            } catch (IOException | RuntimeException e) {
+                DataBufferUtils.release(payload);
+                throw e;
+            }
+        }
+    }
+
+    private DataBuffer encode(String text) {
+        if (bufferFactory instanceof NettyDataBufferFactory netty) {
+            ByteBuf buf = netty.getByteBufAllocator().directBuffer(ByteBufUtil.utf8Bytes(text));
+            ByteBufUtil.writeUtf8(buf, text);
+            return netty.wrap(buf);
+        }
+        return bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DataBuffer copy(ByteBuffer payload) {
+        if (bufferFactory instanceof NettyDataBufferFactory netty) {
+            ByteBuf buf = netty.getByteBufAllocator().directBuffer(payload.remaining());
+            buf.writeBytes(payload.duplicate());
+            return netty.wrap(buf);
+        }
+        ByteBuffer copy = ByteBuffer.allocate(payload.remaining()).put(payload.duplicate()).flip();
+        return bufferFactory.wrap(copy);
+    }
+
+    @Override
+    protected void closeInternal(CloseStatus status) {
+        if (closeStatus == null) {
+            closeStatus = status;
+        }
+        getNativeSession()
+                .close(new org.springframework.web.reactive.socket.CloseStatus(status.getCode(), status.getReason()))
+                .subscribe(null, ex -> log.debug("Failed to close session {}: {}", getId(), ex.toString()));
+    }
+
+    @Override
+    public String getId() {
+        return getNativeSession().getId();
+    }
+
+    @Override
+    public URI getUri() {
+        return handshakeInfo().getUri();
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return handshakeInfo().getHeaders();
+    }
+
+    /**
+     * 用户身份放在 uid 属性里，不使用 Principal
+     */
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return handshakeInfo().getRemoteAddress();
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return handshakeInfo().getSubProtocol();
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+        this.textMessageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return textMessageSizeLimit;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        this.binaryMessageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return binaryMessageSizeLimit;
+    }
+
+    /**
+     * permessage-deflate 由 Reactor Netty 在握手时协商，这里不单独暴露
+     */
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isOpen() {
+        synchronized (lock) {
+            if (terminated) {
+                return false;
+            }
+        }
+        return getNativeSession().isOpen();
+    }
+
+    private HandshakeInfo handshakeInfo() {
+        return getNativeSession().getHandshakeInfo();
+    }
+}
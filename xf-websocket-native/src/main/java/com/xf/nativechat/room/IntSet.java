@@ -0,0 +1,170 @@
+package com.xf.nativechat.room;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.IntConsumer;
+
+/**
+ * 非负 int 的开放寻址集合（房间成员的连接标记）
+ * <p>
+ * 每个元素占 4 字节，没有装箱和链表节点，10 万成员约 2MB（装载率 1/4 ~ 1/2）。
+ * 写操作由调用方串行化（RoomRegistry 在 ConcurrentHashMap.compute 中修改）；读操作无锁：
+ * 1. 删除只把槽位标成墓碑，元素从不在数组内移动，遍历中的读线程不会因为删除而漏看或重复看到其他元素；
+ * 2. 扩容 / 收缩时建一张新表整体替换，正在遍历旧表的读线程继续看旧表；
+ * 3. 元素的写入用 release、读取用 acquire，读线程看到的槽位值总是完整写入过的。
+ * 遍历是弱一致的：遍历期间加入的元素可能看不到，退出的可能仍被看到，由调用方再校验。
+ */
+public final class IntSet {
+
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final int FREE = -1;
+    private static final int REMOVED = -2;
+    private static final int MIN_CAPACITY = 8;
+
+    private volatile int[] table = newTable(MIN_CAPACITY);
+    private volatile int size;
+    // size + 墓碑数，决定何时重建
+    private int used;
+
+    /**
+     * @return 集合中原来没有该元素时返回 true
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("IntSet only holds non-negative values");
+        }
+        int[] current = table;
+        int mask = current.length - 1;
+        int index = mix(value) & mask;
+        int tombstone = -1;
+        while (true) {
+            int existing = current[index];
+            if (existing == value) {
+                return false;
+            }
+            if (existing == REMOVED && tombstone < 0) {
+                tombstone = index;
+            } else if (existing == FREE) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        if (tombstone >= 0) {
+            ELEMENTS.setRelease(current, tombstone, value);
+        } else {
+            ELEMENTS.setRelease(current, index, value);
+            used++;
+        }
+        size++;
+        if (used * 2 > current.length) {
+            rebuild(capacityFor(size));
+        }
+        return true;
+    }
+
+    /**
+     * @return 集合中确实有该元素时返回 true
+     */
+    public boolean remove(int value) {
+        int[] current = table;
+        int mask = current.length - 1;
+        int index = mix(value) & mask;
+        while (true) {
+            int existing = current[index];
+            if (existing == FREE) {
+                return false;
+            }
+            if (existing == value) {
+                ELEMENTS.setRelease(current, index, REMOVED);
+                size--;
+                // 成员大量退出后收缩，避免大房间散了以后一直占着大表
+                if (current.length > MIN_CAPACITY && size * 8 < current.length) {
+                    rebuild(capacityFor(size));
+                }
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public boolean contains(int value) {
+        int[] current = table;
+        int mask = current.length - 1;
+        int index = mix(value) & mask;
+        while (true) {
+            int existing = (int) ELEMENTS.getAcquire(current, index);
+            if (existing == value) {
+                return true;
+            }
+            if (existing == FREE) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 无锁遍历当前所有元素（弱一致）
+     */
+    public void forEach(IntConsumer action) {
+        int[] current = table;
+        for (int i = 0; i < current.length; i++) {
+            int value = (int) ELEMENTS.getAcquire(current, i);
+            if (value >= 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    private void rebuild(int capacity) {
+        int[] current = table;
+        int[] next = newTable(capacity);
+        int mask = capacity - 1;
+        for (int value : current) {
+            if (value >= 0) {
+                int index = mix(value) & mask;
+                while (next[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                next[index] = value;
+            }
+        }
+        used = size;
+        // volatile 写发布新表，之后的读线程看到的是完整填好的新表
+        table = next;
+    }
+
+    /**
+     * 装载率不超过 1/4，留出墓碑的余量
+     */
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        java.util.Arrays.fill(table, FREE);
+        return table;
+    }
+
+    /**
+     * 元素的低位是从 0 开始分配的紧凑槽位，直接按值放置：分布本来就均匀，
+     * 而且遍历顺序与槽位顺序一致，房间内发送时按顺序访问槽位表，缓存友好
+     */
+    private static int mix(int value) {
+        return value;
+    }
+}
@@ -0,0 +1,275 @@
+package com.xf.nativechat.room;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 房间成员索引
+ * <p>
+ * 原来要给一个群发消息只能由业务方传入 uid 列表，再逐个到 SessionRegistry 里查连接，每条消息都要复制一遍成员列表。
+ * 这里按连接维护房间成员：
+ * 1. 每个加入过房间的本地连接分配一个紧凑的 int 槽位，槽位 -> 连接存在一张数组表里，断开后槽位回收复用；
+ * 2. 每个房间的成员是槽位组成的 {@link IntSet}，10 万成员的房间约 2MB，小房间每个只占一两百字节；
+ * 3. 房间内发送只遍历该房间的成员槽位，不扫描全部在线连接，也不复制成员集合；
+ * 4. 成员集合里存的是“槽位 + 槽位代数”，槽位每回收一次代数加一，投递前与槽位上当前连接的标记比较，
+ * 发送线程拿到的旧槽位即使刚被新连接复用也不会误投；这个校验只比较一个 int，不额外访问内存。
+ * 成员变更都在 ConcurrentHashMap.compute 中进行（同一个房间的变更串行化，不同房间互不影响），发送时完全无锁。
+ * 成员关系只属于连接：同一用户的多个端各自加入，断线后需要重新加入。
+ */
+@Component
+public class RoomRegistry {
+
+    /**
+     * 加入房间的结果
+     */
+    public enum JoinResult {
+        JOINED, ALREADY_JOINED, TOO_MANY_ROOMS, INVALID_NAME
+    }
+
+    private static final String MEMBER_ATTRIBUTE = RoomRegistry.class.getName() + ".member";
+    private static final Room[] NO_ROOMS = new Room[0];
+
+    // 标记的低 22 位是槽位（单节点最多约 400 万个连接同时加入房间），其余位是槽位代数
+    private static final int SLOT_BITS = 22;
+    private static final int MAX_SLOTS = 1 << SLOT_BITS;
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+    private final int maxRoomsPerSession;
+    private final int maxNameLength;
+
+    // Key: 房间名，Value: 房间（没有成员时移除）
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+
+    // 槽位 -> 成员；扩容时整表替换，读线程无锁读取
+    private volatile Member[] members = new Member[1024];
+    private final Object slotLock = new Object();
+    private int[] generations = new int[1024];
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private int nextSlot;
+
+    private final LongAdder membershipCount = new LongAdder();
+
+    public RoomRegistry(NativeWebSocketProperties properties) {
+        NativeWebSocketProperties.Room config = properties.getRoom();
+        this.maxRoomsPerSession = Math.max(1, config.getMaxRoomsPerSession());
+        this.maxNameLength = Math.max(1, config.getMaxNameLength());
+    }
+
+    /**
+     * 加入房间
+     *
+     * @param session 之后用于投递的连接（通常是出站队列包装后的连接）
+     */
+    public JoinResult join(WebSocketSession session, String name) {
+        if (name == null || name.isEmpty() || name.length() > maxNameLength) {
+            return JoinResult.INVALID_NAME;
+        }
+        Member member = memberOf(session, true);
+        Room[] joined = member.rooms;
+        if (joined.length >= maxRoomsPerSession) {
+            return isMember(session, name) ? JoinResult.ALREADY_JOINED : JoinResult.TOO_MANY_ROOMS;
+        }
+        boolean[] added = new boolean[1];
+        rooms.compute(name, (key, room) -> {
+            Room target = room != null ? room : new Room(key);
+            // 先登记到连接上，再放进成员集合：发送线程看到槽位时，连接上一定已经有这个房间
+            if (member.add(target)) {
+                target.members.add(member.tag);
+                added[0] = true;
+            }
+            return target;
+        });
+        if (!added[0]) {
+            return JoinResult.ALREADY_JOINED;
+        }
+        membershipCount.increment();
+        return JoinResult.JOINED;
+    }
+
+    /**
+     * 退出房间，最后一个成员退出后房间被移除
+     *
+     * @return 确实在该房间中时返回 true
+     */
+    public boolean leave(WebSocketSession session, String name) {
+        Member member = memberOf(session, false);
+        return member != null && leave(member, name);
+    }
+
+    private boolean leave(Member member, String name) {
+        boolean[] removed = new boolean[1];
+        rooms.computeIfPresent(name, (key, room) -> {
+            // 与加入相反：先移出成员集合，再从连接上注销
+            if (room.members.remove(member.tag)) {
+                member.remove(room);
+                removed[0] = true;
+            }
+            return room.members.isEmpty() ? null : room;
+        });
+        if (removed[0]) {
+            membershipCount.decrement();
+        }
+        return removed[0];
+    }
+
+    /**
+     * 连接断开时调用：退出所有房间并回收槽位
+     */
+    public void leaveAll(WebSocketSession session) {
+        Member member = (Member) session.getAttributes().remove(MEMBER_ATTRIBUTE);
+        if (member == null) {
+            return;
+        }
+        for (Room room : member.rooms) {
+            leave(member, room.name);
+        }
+        synchronized (slotLock) {
+            members[member.slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+            }
+            freeSlots[freeCount++] = member.slot;
+        }
+    }
+
+    public boolean isMember(WebSocketSession session, String name) {
+        Member member = memberOf(session, false);
+        Room room = rooms.get(name);
+        return member != null && room != null && room.members.contains(member.tag);
+    }
+
+    /**
+     * 把房间的每个本地成员交给 action（无锁，弱一致：遍历期间刚加入的成员可能收不到）
+     *
+     * @param exclude 跳过的连接（通常是发送者自己的这个连接），可以为 null
+     * @return 交给 action 的成员数
+     */
+    public int forEachMember(String name, WebSocketSession exclude, Consumer<WebSocketSession> action) {
+        Room room = rooms.get(name);
+        if (room == null) {
+            return 0;
+        }
+        int[] visited = new int[1];
+        room.members.forEach(tag -> {
+            Member[] table = members;
+            int slot = tag & (MAX_SLOTS - 1);
+            Member member = slot < table.length ? table[slot] : null;
+            // 槽位可能已被回收给别的连接，代数不同说明不是当初加入的那个连接
+            if (member != null && member.tag == tag && member.session != exclude) {
+                action.accept(member.session);
+                visited[0]++;
+            }
+        });
+        return visited[0];
+    }
+
+    public int getMemberCount(String name) {
+        Room room = rooms.get(name);
+        return room == null ? 0 : room.members.size();
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    public long getMembershipCount() {
+        return membershipCount.sum();
+    }
+
+    private Member memberOf(WebSocketSession session, boolean create) {
+        Map<String, Object> attributes = session.getAttributes();
+        Member member = (Member) attributes.get(MEMBER_ATTRIBUTE);
+        if (member != null || !create) {
+            return member;
+        }
+        synchronized (slotLock) {
+            if (freeCount == 0 && nextSlot == MAX_SLOTS) {
+                throw new IllegalStateException("Too many sessions in rooms: " + MAX_SLOTS);
+            }
+            int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+            Member[] table = members;
+            if (slot >= table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+                generations = Arrays.copyOf(generations, table.length);
+            }
+            int generation = (generations[slot] + 1) & GENERATION_MASK;
+            generations[slot] = generation;
+            member = new Member(slot, generation << SLOT_BITS | slot, session);
+            table[slot] = member;
+            // volatile 写发布，之后读到这张表的线程一定能看到新成员
+            members = table;
+        }
+        attributes.put(MEMBER_ATTRIBUTE, member);
+        return member;
+    }
+
+    private static final class Room {
+
+        private final String name;
+        private final IntSet members = new IntSet();
+
+        private Room(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 一个加入过房间的本地连接
+     */
+    private static final class Member {
+
+        private final int slot;
+        // 槽位 + 代数，成员集合中存的就是它
+        private final int tag;
+        private final WebSocketSession session;
+        // 加入的房间，写时复制；一个连接加入的房间数有上限，数组很小
+        private volatile Room[] rooms = NO_ROOMS;
+
+        private Member(int slot, int tag, WebSocketSession session) {
+            this.slot = slot;
+            this.tag = tag;
+            this.session = session;
+        }
+
+        private boolean isIn(Room room) {
+            for (Room joined : rooms) {
+                if (joined == room) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized boolean add(Room room) {
+            if (isIn(room)) {
+                return false;
+            }
+            Room[] current = rooms;
+            Room[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = room;
+            rooms = next;
+            return true;
+        }
+
+        private synchronized void remove(Room room) {
+            Room[] current = rooms;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == room) {
+                    Room[] next = new Room[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, i);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    rooms = next;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.xf.nativechat.session;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+
+/**
+ * 客户端在握手时选择的应用层压缩方式（URL 参数 compress）
+ */
+public enum CompressionMode {
+
+    /**
+     * 不做应用层压缩（仍可能由容器做 permessage-deflate）
+     */
+    NONE,
+
+    /**
+     * 超过阈值的文本消息压缩成 raw deflate，以二进制帧发送，首字节 0x02
+     */
+    DEFLATE,
+
+    /**
+     * 同 DEFLATE，但使用预置字典，短小的聊天报文也能压缩，首字节 0x03
+     */
+    DEFLATE_DICT;
+
+    /**
+     * 解析握手参数，无法识别时返回 NONE
+     */
+    public static CompressionMode of(String value) {
+        if ("deflate".equalsIgnoreCase(value)) {
+            return DEFLATE;
+        }
+        if ("deflate-dict".equalsIgnoreCase(value)) {
+            return DEFLATE_DICT;
+        }
+        return NONE;
+    }
+
+    /**
+     * 客户端在 URL 参数中选择的应用层压缩方式
+     */
+    public static CompressionMode requested(ServerHttpRequest request) {
+        return requested(request.getURI());
+    }
+
+    /**
+     * 同上，按握手地址判断，reactive 模式的握手用
+     */
+    public static CompressionMode requested(URI uri) {
+        return of(UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("compress"));
+    }
+}
@@ -0,0 +1,344 @@
+package com.xf.nativechat.session;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单聊投递跟踪：会话序号、累计确认、断线续传
+ * <p>
+ * 原生协议原来是发完即忘，移动端网络抖一下，断线前已经写进 socket 但客户端没收到的消息就没了，只能全量拉历史。这里：
+ * 1. 每个 (接收者, 发送者) 会话一个单调递增的序号，投递时写进转发帧的 seq 字段；
+ * 2. 投递出去的帧按序号留在接收者的未确认窗口里（固定大小的环形数组，帧对象直接复用，不复制内容），
+ * 客户端回 ack 累计确认后释放；
+ * 3. 重连后客户端带上每个会话收到的最大序号发 resume，只重发窗口里之后的帧；
+ * 窗口装不下被挤掉的消息会在回执里标记 truncated，客户端再去拉历史补齐。
+ * <p>
+ * 窗口按 uid 而不是按连接保存，重连换了 sessionId 也能续传；用户所有连接断开超过 resumeTimeout 后整体释放。
+ * 序号和窗口都在投递所在的节点上，同一用户的多个端分别连在不同节点时各自独立编号。
+ * <p>
+ * 窗口被释放、节点重启或用户重连到其他节点后，序号会从 1 重新开始。为了让客户端分辨，每个窗口创建时生成一个随机的
+ * epoch，随序号一起写进转发帧和续传回执：客户端发现 epoch 变了就清空记录的序号；续传时带的 epoch 不是当前的，
+ * 说明旧窗口里没确认的消息已经丢失，回执标记 truncated，旧序号也不再当作确认。
+ */
+@Component
+public class DeliveryTracker {
+
+    /**
+     * epoch 的上限，保证在 JavaScript 中也能精确表示
+     */
+    private static final long MAX_EPOCH = 1L << 53;
+
+    private final int windowSize;
+    private final long maxWindowChars;
+    private final long resumeTimeoutMillis;
+
+    // Key: 接收者 uid
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder trackedCount = new LongAdder();
+    private final LongAdder ackedCount = new LongAdder();
+    private final LongAdder resentCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    public DeliveryTracker(NativeWebSocketProperties properties) {
+        NativeWebSocketProperties.Delivery config = properties.getDelivery();
+        this.windowSize = Math.max(1, config.getWindowSize());
+        this.maxWindowChars = config.getMaxWindowSize().toBytes();
+        this.resumeTimeoutMillis = config.getResumeTimeout().toMillis();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-delivery-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, resumeTimeoutMillis / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按窗口的 epoch 和分配到的序号构造最终下发的帧
+     */
+    @FunctionalInterface
+    public interface FrameFactory {
+
+        WebSocketMessage<?> create(long epoch, long seq);
+    }
+
+    /**
+     * 为一条单聊消息分配序号并放进接收者的未确认窗口
+     *
+     * @param frameFactory 按分配到的序号构造最终下发的帧
+     * @return 带序号的帧，所有在线端共用
+     */
+    public WebSocketMessage<?> track(String uid, String fromUser, FrameFactory frameFactory) {
+        Stream stream = streams.computeIfAbsent(uid, key -> new Stream());
+        trackedCount.increment();
+        synchronized (stream) {
+            // 在锁内构造帧，保证窗口中的顺序就是序号顺序
+            Conversation conversation = stream.conversation(fromUser);
+            long seq = ++conversation.lastSeq;
+            WebSocketMessage<?> frame = frameFactory.create(stream.epoch, seq);
+            stream.append(fromUser, conversation, seq, frame);
+            return frame;
+        }
+    }
+
+    /**
+     * 累计确认：该会话中序号不大于 seq 的消息都已收到
+     *
+     * @param epoch 序号所属窗口的 epoch，小于 0 表示客户端没有带（按当前窗口处理）；与当前窗口不符时忽略
+     */
+    public void ack(String uid, String fromUser, long epoch, long seq) {
+        Stream stream = streams.get(uid);
+        if (stream == null || (epoch >= 0 && epoch != stream.epoch)) {
+            return;
+        }
+        synchronized (stream) {
+            Conversation conversation = stream.conversations.get(fromUser);
+            if (conversation == null || seq <= conversation.ackedSeq) {
+                return;
+            }
+            conversation.ackedSeq = Math.min(seq, conversation.lastSeq);
+            stream.release(fromUser, conversation);
+        }
+    }
+
+    /**
+     * 取出需要重发的帧
+     *
+     * @param fromUser 只续传该会话；为 null 时续传所有会话中未确认的消息
+     * @param epoch    客户端记录的 epoch，小于 0 表示没有带
+     * @param afterSeq 客户端在该会话中收到的最大序号，之后的消息重发；fromUser 为 null 时忽略
+     */
+    public Resume resume(String uid, String fromUser, long epoch, long afterSeq) {
+        // 没有窗口时也创建一个，回执里带上之后投递所用的 epoch
+        Stream stream = streams.computeIfAbsent(uid, key -> new Stream());
+        synchronized (stream) {
+            // 客户端的序号属于已经释放的窗口，窗口里现有的消息全部重发，旧窗口中没确认的需要拉取历史
+            boolean stale = epoch >= 0 ? epoch != stream.epoch : afterSeq > 0 && !stream.knows(fromUser, afterSeq);
+            if (fromUser != null && !stale) {
+                // 客户端报告的序号本身也是一次确认
+                Conversation conversation = stream.conversations.get(fromUser);
+                if (conversation != null && afterSeq > conversation.ackedSeq) {
+                    conversation.ackedSeq = Math.min(afterSeq, conversation.lastSeq);
+                    stream.release(fromUser, conversation);
+                }
+            }
+            Resume resume = stream.collect(fromUser, stale);
+            resentCount.add(resume.frames().size());
+            return resume;
+        }
+    }
+
+    /**
+     * 用户有连接上线，取消窗口的过期计时
+     */
+    public void attach(String uid) {
+        Stream stream = streams.get(uid);
+        if (stream != null) {
+            stream.detachedAt = 0;
+        }
+    }
+
+    /**
+     * 用户最后一个连接断开，窗口保留 resumeTimeout 等待续传
+     */
+    public void detach(String uid) {
+        Stream stream = streams.get(uid);
+        if (stream != null) {
+            stream.detachedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 释放断线超时用户的窗口
+     */
+    public void sweep() {
+        long deadline = System.currentTimeMillis() - resumeTimeoutMillis;
+        streams.entrySet().removeIf(entry -> {
+            long detachedAt = entry.getValue().detachedAt;
+            return detachedAt != 0 && detachedAt <= deadline;
+        });
+    }
+
+    /**
+     * 该用户窗口中未确认的消息数
+     */
+    public int getPendingCount(String uid) {
+        Stream stream = streams.get(uid);
+        if (stream == null) {
+            return 0;
+        }
+        synchronized (stream) {
+            return stream.pending;
+        }
+    }
+
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    public long getTrackedCount() {
+        return trackedCount.sum();
+    }
+
+    public long getAckedCount() {
+        return ackedCount.sum();
+    }
+
+    public long getResentCount() {
+        return resentCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 续传结果
+     *
+     * @param epoch     当前窗口的 epoch
+     * @param frames    需要重发的帧，按投递顺序
+     * @param truncated 有未确认的消息已被挤出窗口或随旧窗口释放，客户端需要拉取历史补齐
+     */
+    public record Resume(long epoch, List<WebSocketMessage<?>> frames, boolean truncated) {
+    }
+
+    private static final class Conversation {
+        private long lastSeq;
+        private long ackedSeq;
+        // 未确认就被挤出窗口的最大序号
+        private long evictedSeq;
+        // 窗口中还没确认的帧数，为 0 时确认不用扫描窗口
+        private int pending;
+    }
+
+    /**
+     * 一个接收者的未确认窗口：环形数组 [head, head + size)，已确认的槽位置 null，等移到队头时跳过
+     */
+    private final class Stream {
+
+        private final long epoch = ThreadLocalRandom.current().nextLong(1, MAX_EPOCH);
+        private final Map<String, Conversation> conversations = new HashMap<>(4);
+        private final String[] peers = new String[windowSize];
+        private final long[] seqs = new long[windowSize];
+        private final WebSocketMessage<?>[] frames = new WebSocketMessage<?>[windowSize];
+        private int head;
+        private int size;
+        private int pending;
+        private long chars;
+        private volatile long detachedAt;
+
+        Conversation conversation(String fromUser) {
+            return conversations.computeIfAbsent(fromUser, key -> new Conversation());
+        }
+
+        void append(String fromUser, Conversation conversation, long seq, WebSocketMessage<?> frame) {
+            int length = frame.getPayloadLength();
+            while (size > 0 && (size == windowSize || (pending > 0 && chars + length > maxWindowChars))) {
+                evictHead();
+            }
+            int slot = (head + size) % windowSize;
+            peers[slot] = fromUser;
+            seqs[slot] = seq;
+            frames[slot] = frame;
+            size++;
+            pending++;
+            conversation.pending++;
+            chars += length;
+        }
+
+        /**
+         * 同一会话的帧在窗口中按序号排列：遇到第一个序号大于 ackedSeq 的、或者该会话已没有未确认的帧就停下，
+         * 每次 ack 扫到该会话新确认的最后一帧就结束，不必扫完整个窗口
+         */
+        void release(String fromUser, Conversation conversation) {
+            for (int i = 0; i < size && conversation.pending > 0; i++) {
+                int slot = (head + i) % windowSize;
+                if (frames[slot] == null || !fromUser.equals(peers[slot])) {
+                    continue;
+                }
+                if (seqs[slot] > conversation.ackedSeq) {
+                    break;
+                }
+                clear(slot, conversation);
+                ackedCount.increment();
+            }
+            skipReleased();
+        }
+
+        /**
+         * 客户端没带 epoch 时的兜底判断：报告的序号超过了当前窗口分配过的，说明窗口已经重建
+         */
+        boolean knows(String fromUser, long seq) {
+            if (fromUser == null) {
+                return true;
+            }
+            Conversation conversation = conversations.get(fromUser);
+            return conversation != null && seq <= conversation.lastSeq;
+        }
+
+        Resume collect(String fromUser, boolean stale) {
+            List<WebSocketMessage<?>> out = new ArrayList<>(pending);
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) % windowSize;
+                if (frames[slot] != null && (fromUser == null || fromUser.equals(peers[slot]))) {
+                    out.add(frames[slot]);
+                }
+            }
+            boolean truncated = stale;
+            for (Map.Entry<String, Conversation> entry : conversations.entrySet()) {
+                if ((fromUser == null || fromUser.equals(entry.getKey()))
+                        && entry.getValue().evictedSeq > entry.getValue().ackedSeq) {
+                    truncated = true;
+                }
+            }
+            return new Resume(epoch, out, truncated);
+        }
+
+        private void evictHead() {
+            if (frames[head] != null) {
+                Conversation conversation = conversations.get(peers[head]);
+                conversation.evictedSeq = Math.max(conversation.evictedSeq, seqs[head]);
+                clear(head, conversation);
+                evictedCount.increment();
+            }
+            peers[head] = null;
+            head = (head + 1) % windowSize;
+            size--;
+        }
+
+        private void clear(int slot, Conversation conversation) {
+            chars -= frames[slot].getPayloadLength();
+            frames[slot] = null;
+            pending--;
+            conversation.pending--;
+        }
+
+        private void skipReleased() {
+            while (size > 0 && frames[head] == null) {
+                peers[head] = null;
+                head = (head + 1) % windowSize;
+                size--;
+            }
+        }
+    }
+}
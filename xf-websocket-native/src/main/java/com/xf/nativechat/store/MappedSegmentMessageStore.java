@@ -0,0 +1,294 @@
+package com.xf.nativechat.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 基于内存映射分段文件的追加写消息存储
+ * <p>
+ * 目录下按序号存放固定大小的段文件（00000000000000000000.log、00000000000000000001.log ...），
+ * 写入直接编码到映射内存，不经过用户态缓冲区；当前段写满后强制刷盘并切换到下一段。
+ * sync 只刷新上次 sync 之后写入的区间，一次 fsync 覆盖整批消息。
+ * <p>
+ * 记录格式: length(int) | crc32c(int) | timestamp(long) | from | to | type | content，
+ * 其中 from / to / type 为 short 长度 + UTF-8（超过 65535 字节的记录不写入），content 为剩余字节。length 最后写入，
+ * 段文件新建时全为 0，读到 length 为 0 或 CRC 不符即为数据末尾，进程崩溃后据此恢复写入位置。
+ */
+@Slf4j
+public class MappedSegmentMessageStore implements MessageStore {
+
+    private static final String SUFFIX = ".log";
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_SHORT_STRING = 0xffff;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retainSegments;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CRC32C crc = new CRC32C();
+
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    private int syncedPosition;
+
+    /**
+     * @param segmentSize    单个段文件大小，单条消息编码后不能超过它
+     * @param retainSegments 最多保留的段文件数，0 表示全部保留
+     */
+    public MappedSegmentMessageStore(Path directory, int segmentSize, int retainSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retainSegments = retainSegments;
+        Files.createDirectories(directory);
+        List<Long> existing = segmentIndexes();
+        if (existing.isEmpty()) {
+            open(0);
+        } else {
+            open(existing.get(existing.size() - 1));
+            recover();
+        }
+    }
+
+    @Override
+    public void append(List<MessageRecord> batch) throws IOException {
+        for (MessageRecord record : batch) {
+            if (!fitsShortString(record.fromUser()) || !fitsShortString(record.toUser())
+                    || !fitsShortString(record.type())) {
+                log.warn("Message from {} has a from/to/type field longer than {} bytes, skipped",
+                        abbreviate(record.fromUser()), MAX_SHORT_STRING);
+                continue;
+            }
+            if (!write(record)) {
+                roll();
+                if (!write(record)) {
+                    log.warn("Message from {} is larger than segment size {}, skipped", record.fromUser(), segmentSize);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sync() {
+        int position = segment.position();
+        if (position > syncedPosition) {
+            segment.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+        }
+    }
+
+    @Override
+    public void scan(Consumer<MessageRecord> consumer) throws IOException {
+        for (long index : segmentIndexes()) {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int position = 0;
+            MessageRecord record;
+            while ((record = read(buffer, position)) != null) {
+                consumer.accept(record);
+                position = buffer.position();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (segment != null) {
+            sync();
+            segment = null;
+        }
+    }
+
+    /**
+     * 当前段序号和写入位置，用于观察和测试
+     */
+    public long getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    public int getWritePosition() {
+        return segment.position();
+    }
+
+    // ----------------- 写 -----------------
+
+    /**
+     * 写入一条记录，剩余空间不够时返回 false（已写的半条不会被读到，因为 length 还是 0）
+     */
+    private boolean write(MessageRecord record) {
+        MappedByteBuffer buffer = segment;
+        int start = buffer.position();
+        try {
+            buffer.position(start + RECORD_HEADER);
+            buffer.putLong(record.timestamp());
+            putShortString(buffer, record.fromUser());
+            putShortString(buffer, record.toUser());
+            putShortString(buffer, record.type());
+            encoder.reset();
+            CoderResult result = encoder.encode(
+                    CharBuffer.wrap(record.source(), record.contentStart(), record.contentEnd()), buffer, true);
+            if (result.isOverflow() || encoder.flush(buffer).isOverflow() || buffer.remaining() < 4) {
+                // 至少留出 4 字节的 0 作为结束标记
+                buffer.position(start);
+                return false;
+            }
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            return false;
+        }
+        int end = buffer.position();
+        int length = end - start - RECORD_HEADER;
+        crc.reset();
+        crc.update(buffer.slice(start + RECORD_HEADER, length));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        // length 最后写，写完这条记录才对读取方可见
+        buffer.putInt(start, length);
+        return true;
+    }
+
+    private static boolean fitsShortString(String value) {
+        // UTF-8 下每个 char 最多 3 字节，短字符串不用编码就能判断
+        return value == null || value.length() <= MAX_SHORT_STRING / 3
+                || value.getBytes(StandardCharsets.UTF_8).length <= MAX_SHORT_STRING;
+    }
+
+    private static String abbreviate(String value) {
+        return value == null || value.length() <= 64 ? value : value.substring(0, 64) + "...";
+    }
+
+    /**
+     * 长度已在 {@link #append} 中校验过不超过 65535 字节，按无符号 short 写入
+     */
+    private static void putShortString(ByteBuffer buffer, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void roll() throws IOException {
+        // 旧段整体刷盘后再切换，保证 sync 只需要关心当前段
+        sync();
+        open(segmentIndex + 1);
+        if (retainSegments > 0) {
+            List<Long> indexes = segmentIndexes();
+            for (int i = 0; i < indexes.size() - retainSegments; i++) {
+                Files.deleteIfExists(segmentPath(indexes.get(i)));
+            }
+        }
+    }
+
+    private void open(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射建立后即可关闭通道，映射在 buffer 被回收前一直有效
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentIndex = index;
+        syncedPosition = 0;
+    }
+
+    /**
+     * 找到最后一条完整记录之后的位置，崩溃留下的半条记录清零
+     */
+    private void recover() {
+        int position = 0;
+        int count = 0;
+        while (read(segment, position) != null) {
+            position = segment.position();
+            count++;
+        }
+        segment.position(position);
+        if (position + 4 <= segmentSize && segment.getInt(position) != 0) {
+            log.warn("Truncating torn record at segment {} offset {}", segmentIndex, position);
+            for (int i = position; i < segmentSize; i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        syncedPosition = position;
+        log.info("Message store recovered: segment {}, {} records, offset {}", segmentIndex, count, position);
+    }
+
+    // ----------------- 读 -----------------
+
+    /**
+     * 从 position 读一条记录，成功后 buffer.position 指向下一条
+     *
+     * @return 已到数据末尾（或遇到损坏的记录）时返回 null
+     */
+    private MessageRecord read(ByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.limit()) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER + length > buffer.limit()) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(position + RECORD_HEADER, length);
+        CRC32C check = new CRC32C();
+        check.update(body.duplicate());
+        if ((int) check.getValue() != buffer.getInt(position + 4)) {
+            return null;
+        }
+        try {
+            long timestamp = body.getLong();
+            String from = getShortString(body);
+            String to = getShortString(body);
+            String type = getShortString(body);
+            String content = StandardCharsets.UTF_8.decode(body).toString();
+            buffer.position(position + RECORD_HEADER + length);
+            return new MessageRecord(timestamp, from, to, type, content, 0, content.length());
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String getShortString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%020d%s", index, SUFFIX));
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            indexes.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                            // 不是段文件
+                        }
+                    });
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+}
@@ -0,0 +1,48 @@
+package com.xf.nativechat.store;
+
+import com.xf.nativechat.protocol.ChatMessageCodec;
+
+import java.nio.CharBuffer;
+
+/**
+ * 一条待持久化 / 已持久化的聊天消息
+ * <p>
+ * content 以原始 JSON 片段保存（含引号和转义，与转发帧中的 content 完全一致），不做解码。
+ * 入队时只引用原始报文中的区间 [contentStart, contentEnd)，不复制；写盘线程直接从原始报文编码到文件。
+ *
+ * @param timestamp    服务端收到消息的时间（毫秒）
+ * @param fromUser     发送者
+ * @param toUser       接收者，广播为 "*"，房间消息为 "#" + 房间名
+ * @param type         消息类型
+ * @param source       content 所在的字符串
+ * @param contentStart content 在 source 中的起始位置（含）
+ * @param contentEnd   content 在 source 中的结束位置（不含）
+ */
+public record MessageRecord(long timestamp, String fromUser, String toUser, String type,
+                            String source, int contentStart, int contentEnd) {
+
+    /**
+     * 房间消息在 toUser 中的前缀，与用户 uid 区分开
+     */
+    public static final String ROOM_PREFIX = "#";
+
+    /**
+     * 由入站报文构造，不复制 content
+     */
+    public static MessageRecord of(String fromUser, ChatMessageCodec.RoutingHeader header, String payload) {
+        String toUser = header.isRoom() ? ROOM_PREFIX + header.toRoom() : header.toUser();
+        return new MessageRecord(System.currentTimeMillis(), fromUser, toUser, header.type(),
+                payload, header.contentStart(), header.contentEnd());
+    }
+
+    /**
+     * content 的原始 JSON 片段（不复制）
+     */
+    public CharSequence content() {
+        return CharBuffer.wrap(source, contentStart, contentEnd);
+    }
+
+    public int contentLength() {
+        return contentEnd - contentStart;
+    }
+}
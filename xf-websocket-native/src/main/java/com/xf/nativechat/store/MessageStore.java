@@ -0,0 +1,31 @@
+package com.xf.nativechat.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 消息存储 SPI
+ * <p>
+ * append / sync 只会被 {@link PersistencePipeline} 的写盘线程调用，实现不需要考虑并发写；
+ * 一批消息先全部 append，再调用一次 sync 落盘（组提交）。
+ * 默认实现为 {@link MappedSegmentMessageStore}，接入数据库 / MQ 时声明自己的 Bean 即可替换。
+ */
+public interface MessageStore extends Closeable {
+
+    /**
+     * 追加一批消息，不要求立即落盘
+     */
+    void append(List<MessageRecord> batch) throws IOException;
+
+    /**
+     * 把已追加的消息持久化（fsync / 提交事务 / 等待 MQ 确认）
+     */
+    void sync() throws IOException;
+
+    /**
+     * 按写入顺序遍历所有已写入的消息
+     */
+    void scan(Consumer<MessageRecord> consumer) throws IOException;
+}
@@ -0,0 +1,91 @@
+package com.xf.nativechat.store;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁环形队列（多生产者、单消费者）
+ * <p>
+ * 生产者用 CAS 抢占写入位置后直接写槽位，不加锁、不分配节点对象；消费者按顺序取出并清空槽位。
+ * 槽位为 null 表示"已抢占但尚未写入"，消费者遇到时停下，下次再取，保证按抢占顺序消费。
+ * 队列满时 {@link #offer} 立即返回 false，由调用方决定丢弃还是重试，生产者永远不会被阻塞。
+ */
+public final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final int capacity;
+
+    // 下一个可抢占的位置，所有生产者竞争
+    private final AtomicLong tail = new AtomicLong();
+    // 下一个要消费的位置，只有消费者写
+    private volatile long head;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /**
+     * 入队（任意线程）
+     *
+     * @return 队列已满时返回 false
+     */
+    public boolean offer(E element) {
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+        slots.lazySet((int) (position & mask), element);
+        return true;
+    }
+
+    /**
+     * 取出最多 max 个元素追加到 out（只能由唯一的消费者线程调用）
+     *
+     * @return 实际取出的个数
+     */
+    public int drainTo(List<? super E> out, int max) {
+        long position = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) (position & mask);
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            out.add(element);
+            position++;
+            count++;
+        }
+        if (count > 0) {
+            // volatile 写，之前清空槽位的操作对生产者可见后才释放这些位置
+            head = position;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
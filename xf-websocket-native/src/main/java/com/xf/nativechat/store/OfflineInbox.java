@@ -0,0 +1,183 @@
+package com.xf.nativechat.store;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.websocket.core.inbox.MailboxStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 离线收件箱
+ * <p>
+ * 原来 sendToUser 找不到在线连接时消息直接丢掉。这里为每个离线 uid 保存一个有界、带 TTL 的收件箱，
+ * 存储（堆外条目、上限、过期清理）见 {@link MailboxStore}，消息按 UTF-8 存放。
+ * 用户上线后按批次回放：每批之间让出发送线程，出站队列积压过多时暂停，回放不会占用建连线程也不会冲垮连接；
+ * 同一用户多个端同时上线只回放一次，发给该用户的所有端，条目交给出站队列后才从收件箱移除，发送失败时剩下的留到下次上线。
+ * <p>
+ * 收件箱只在本节点内存中，节点重启或用户连到其他节点时不会回放。
+ */
+@Component
+@Slf4j
+public class OfflineInbox {
+
+    private final MailboxStore store;
+    private final int replayBatchSize;
+    private final long replayIntervalMillis;
+    private final int replayPauseQueueDepth;
+
+    // 正在回放的 uid，同一用户多个端同时上线时只回放一次
+    private final Map<String, Boolean> replaying = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder replayedCount = new LongAdder();
+
+    public OfflineInbox(NativeWebSocketProperties properties) {
+        NativeWebSocketProperties.Inbox config = properties.getInbox();
+        this.store = new MailboxStore(config.getTtl().toMillis(), config.getMaxMessagesPerUser(),
+                (int) config.getMaxSizePerUser().toBytes(), config.getMaxTotalSize().toBytes());
+        this.replayBatchSize = Math.max(1, config.getReplayBatchSize());
+        this.replayIntervalMillis = config.getReplayInterval().toMillis();
+        this.replayPauseQueueDepth = config.getReplayPauseQueueDepth();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-offline-inbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweep = config.getSweepInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 保存一条离线消息
+     *
+     * @return 超过容量上限被拒绝时返回 false
+     */
+    public boolean store(String uid, String payload) {
+        return store.store(uid, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 回放的去向：该用户的所有在线端
+     */
+    public interface ReplayTarget {
+
+        /**
+         * 该用户各连接出站队列中积压最多的条数，超过 replay-pause-queue-depth 时暂停；没有打开的连接时返回 -1，回放结束
+         */
+        int backlog();
+
+        /**
+         * 把一条离线消息交给该用户各连接的出站队列
+         *
+         * @return 至少一个连接收下时返回 true；返回 false 时回放停止，这条和之后的消息留在收件箱
+         */
+        boolean deliver(String payload);
+    }
+
+    /**
+     * 异步分批回放离线消息，不阻塞调用线程；该用户已经在回放时直接返回，正在进行的回放会发给新连上的端
+     */
+    public void replay(String uid, ReplayTarget target) {
+        if (store.contains(uid) && replaying.putIfAbsent(uid, Boolean.TRUE) == null) {
+            scheduler.execute(() -> replayBatch(uid, target));
+        }
+    }
+
+    private void replayBatch(String uid, ReplayTarget target) {
+        boolean drained = false;
+        try {
+            int backlog = target.backlog();
+            if (backlog > replayPauseQueueDepth) {
+                scheduler.schedule(() -> replayBatch(uid, target), replayIntervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (backlog >= 0) {
+                // 先复制不移除，交给出站队列的才从收件箱删掉
+                List<byte[]> batch = new ArrayList<>(Math.min(replayBatchSize, 64));
+                MailboxStore.Cursor cursor = store.peek(uid, batch, replayBatchSize);
+                int delivered = 0;
+                while (delivered < batch.size()
+                        && target.deliver(new String(batch.get(delivered), StandardCharsets.UTF_8))) {
+                    delivered++;
+                }
+                store.remove(uid, cursor, delivered);
+                replayedCount.add(delivered);
+                if (delivered == replayBatchSize) {
+                    scheduler.schedule(() -> replayBatch(uid, target), replayIntervalMillis, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                drained = delivered == batch.size();
+                if (delivered > 0) {
+                    log.debug("Replayed offline messages to {}", uid);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Replay offline messages to {} failed: {}", uid, e.getMessage());
+        }
+        replaying.remove(uid);
+        // 收尾和释放标记之间又有消息存入、其间上线的连接被标记挡掉时，补一次回放
+        if (drained && store.contains(uid)) {
+            replay(uid, target);
+        }
+    }
+
+    /**
+     * 截掉所有收件箱中已过期的消息，清空的收件箱直接移除
+     */
+    public void purgeExpired() {
+        store.purgeExpired();
+    }
+
+    /**
+     * 该用户收件箱中的消息数（含尚未清理的过期消息）
+     */
+    public int size(String uid) {
+        return store.size(uid);
+    }
+
+    public int getMailboxCount() {
+        return store.getMailboxCount();
+    }
+
+    /**
+     * 所有收件箱占用的堆外字节数（缓冲区容量合计）
+     */
+    public long getTotalBytes() {
+        return store.getTotalBytes();
+    }
+
+    public long getStoredCount() {
+        return store.getStoredCount();
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return store.getEvictedCount();
+    }
+
+    public long getExpiredCount() {
+        return store.getExpiredCount();
+    }
+
+    public long getRejectedCount() {
+        return store.getRejectedCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,169 @@
+package com.xf.nativechat.store;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步批量持久化管道
+ * <p>
+ * 收消息线程只把 {@link MessageRecord} 放进无锁环形队列就返回，发送延迟里不包含任何存储 IO。
+ * 唯一的写盘线程循环：取出队列中已有的全部消息（最多 maxBatchSize 条）→ 一次性 append → 一次 sync。
+ * 写盘越慢，下一批攒得越多，一次 fsync 覆盖的消息也越多（组提交）。
+ * <p>
+ * 队列满（存储跟不上）时丢弃新消息并计数，不阻塞收消息线程。未配置 {@link MessageStore} 时整个管道不启用。
+ */
+@Component
+@Slf4j
+public class PersistencePipeline {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MessageStore store;
+    private final MpscRingBuffer<MessageRecord> ring;
+    private final int maxBatchSize;
+    private final boolean fsync;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+    // 写盘线程空闲等待时为 true，生产者据此决定是否需要唤醒它
+    private volatile boolean waiting;
+
+    private final LongAdder persistedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder syncCount = new LongAdder();
+
+    public PersistencePipeline(NativeWebSocketProperties properties, ObjectProvider<MessageStore> store) {
+        NativeWebSocketProperties.Persistence config = properties.getPersistence();
+        this.store = store.getIfAvailable();
+        this.ring = new MpscRingBuffer<>(config.getRingBufferSize());
+        this.maxBatchSize = Math.max(1, config.getMaxBatchSize());
+        this.fsync = config.isFsync();
+        if (this.store == null) {
+            this.writer = null;
+            log.info("Message persistence disabled");
+            return;
+        }
+        this.writer = new Thread(this::writeLoop, "ws-persist");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 提交一条消息（任意线程，不阻塞）
+     *
+     * @return 未启用或队列已满时返回 false
+     */
+    public boolean submit(MessageRecord record) {
+        if (writer == null) {
+            return false;
+        }
+        if (!ring.offer(record)) {
+            droppedCount.increment();
+            return false;
+        }
+        if (waiting) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    private void writeLoop() {
+        List<MessageRecord> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            if (ring.drainTo(batch, maxBatchSize) == 0) {
+                waiting = true;
+                // 设置 waiting 之后再检查一次，避免错过在这之间入队的消息
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+                continue;
+            }
+            commit(batch);
+        }
+        // 退出前把剩余消息写完，最后一次 sync 也在写盘线程上做，存储始终只有一个线程在写
+        while (ring.drainTo(batch, maxBatchSize) > 0) {
+            commit(batch);
+        }
+        if (!fsync) {
+            try {
+                store.sync();
+            } catch (Exception e) {
+                log.warn("Final sync failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void commit(List<MessageRecord> batch) {
+        try {
+            store.append(batch);
+            if (fsync) {
+                store.sync();
+                syncCount.increment();
+            }
+            persistedCount.add(batch.size());
+        } catch (Exception e) {
+            failedCount.add(batch.size());
+            log.error("Persist {} messages failed", batch.size(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * 队列中尚未写盘的消息数
+     */
+    public int getBacklog() {
+        return ring.size();
+    }
+
+    public long getPersistedCount() {
+        return persistedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 累计的 sync 次数，和 persistedCount 对比即可看出组提交效果
+     */
+    public long getSyncCount() {
+        return syncCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (writer.isAlive()) {
+            // 写盘线程还卡在存储上，这里不能再碰存储，剩下的消息和最后一次 sync 交给它自己
+            log.error("Persistence writer did not stop within 10s, {} messages not yet written", getBacklog());
+            return;
+        }
+        log.info("Message persistence stopped: persisted={}, dropped={}, failed={}, syncs={}",
+                getPersistedCount(), getDroppedCount(), getFailedCount(), getSyncCount());
+    }
+}
@@ -0,0 +1,32 @@
+package com.xf.nativechat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+// HS256 密钥在 application.yml 中只从环境变量读取，测试里直接给出
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "XF_WEBSOCKET_HMAC_SECRET=test-secret-with-at-least-32-bytes!")
+class NativeChatApplicationTests {
+
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void persistenceDirectory(DynamicPropertyRegistry registry) {
+        registry.add("xf.websocket.native.persistence.directory", () -> dataDir.resolve("messages").toString());
+    }
+
+    /**
+     * 加载上下文测试
+     * <p>
+     * 使用真实的 application.yml 和嵌入式容器启动，Bean 缺少可用的构造器、配置绑定失败等问题在这里暴露。
+     */
+    @Test
+    void contextLoads() {
+    }
+}
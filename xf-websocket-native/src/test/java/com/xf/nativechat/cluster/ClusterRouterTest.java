@@ -0,0 +1,111 @@
+package com.xf.nativechat.cluster;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.websocket.core.session.SessionRegistry;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在一个 JVM 里用共享的在线目录 + 回环传输模拟两个节点
+ */
+class ClusterRouterTest {
+
+    private final InMemoryPresenceDirectory directory = new InMemoryPresenceDirectory();
+    private final LoopbackClusterTransport.Hub hub = new LoopbackClusterTransport.Hub();
+
+    private SessionRegistry registryA;
+    private SessionRegistry registryB;
+    private ClusterRouter nodeA;
+    private ClusterRouter nodeB;
+    private final BlockingQueue<RoutedMessage> receivedByB = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        registryA = new SessionRegistry();
+        registryB = new SessionRegistry();
+        nodeA = node("A", registryA);
+        nodeB = node("B", registryB);
+        nodeB.onRemoteMessage(receivedByB::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void messageForRemoteUserIsForwardedToItsNodeOnly() throws Exception {
+        registryB.register("1002", new StubWebSocketSession("s1", "1002"));
+        nodeB.syncPresence("1002");
+        assertEquals(Set.of("B"), directory.nodesOf("1002"));
+
+        nodeA.forward("1002", new TextMessage("hello"));
+
+        RoutedMessage routed = receivedByB.poll(5, TimeUnit.SECONDS);
+        assertNotNull(routed);
+        assertEquals(List.of("1002"), routed.toUsers());
+        assertEquals("hello", routed.payload());
+
+        // 本节点的用户不经过传输
+        nodeB.forward("1002", new TextMessage("local"));
+        assertNull(receivedByB.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void messagesToSameNodeAreBatched() throws Exception {
+        registryB.register("1002", new StubWebSocketSession("s1", "1002"));
+        nodeB.syncPresence("1002");
+
+        for (int i = 0; i < 100; i++) {
+            nodeA.forward("1002", new TextMessage("m" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            RoutedMessage routed = receivedByB.poll(5, TimeUnit.SECONDS);
+            assertNotNull(routed);
+            assertEquals("m" + i, routed.payload());
+        }
+        assertEquals(100, nodeA.getForwardedCount());
+        assertTrue(hub.getWriteCount() < 10, "writes: " + hub.getWriteCount());
+    }
+
+    @Test
+    void presenceFollowsLastLocalSession() {
+        StubWebSocketSession phone = new StubWebSocketSession("s1", "1001");
+        StubWebSocketSession pc = new StubWebSocketSession("s2", "1001");
+        registryA.register("1001", phone);
+        nodeA.syncPresence("1001");
+        registryB.register("1001", pc);
+        nodeB.syncPresence("1001");
+        assertEquals(Set.of("A", "B"), directory.nodesOf("1001"));
+
+        registryA.unregister("1001", "s1");
+        nodeA.syncPresence("1001");
+        assertEquals(Set.of("B"), directory.nodesOf("1001"));
+
+        nodeB.shutdown();
+        assertTrue(directory.nodesOf("1001").isEmpty());
+    }
+
+    private ClusterRouter node(String id, SessionRegistry registry) {
+        NativeWebSocketProperties properties = new NativeWebSocketProperties();
+        properties.getCluster().setNodeId(id);
+        properties.getCluster().setBatchWindow(Duration.ofMillis(20));
+        return new ClusterRouter(properties, registry, directory, new LoopbackClusterTransport(hub));
+    }
+}
@@ -0,0 +1,24 @@
+package com.xf.nativechat.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeWebSocketPropertiesTest {
+
+    @Test
+    void broadcastIsDeniedUnlessSenderIsListed() {
+        NativeWebSocketProperties.Broadcast broadcast = new NativeWebSocketProperties().getBroadcast();
+        assertFalse(broadcast.isAllowed("1001"));
+
+        broadcast.setSenders(Set.of("admin", "ops-*"));
+        assertTrue(broadcast.isAllowed("admin"));
+        assertTrue(broadcast.isAllowed("ops-1"));
+        assertFalse(broadcast.isAllowed("admin2"));
+        assertFalse(broadcast.isAllowed("1001"));
+        assertFalse(broadcast.isAllowed(null));
+    }
+}
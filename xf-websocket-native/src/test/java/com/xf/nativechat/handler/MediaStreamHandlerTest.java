@@ -0,0 +1,171 @@
+package com.xf.nativechat.handler;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.nativechat.protocol.MediaEnvelope;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class MediaStreamHandlerTest {
+
+    private final NativeWebSocketProperties properties = new NativeWebSocketProperties();
+    private MediaStreamHandler handler;
+    private StubWebSocketSession sender;
+    private StubWebSocketSession receiver;
+
+    @BeforeEach
+    void setUp() {
+        handler = new MediaStreamHandler(mock(HeartbeatWheel.class), properties);
+        sender = new StubWebSocketSession("s1", "1001");
+        receiver = new StubWebSocketSession("s2", "1002");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(receiver);
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.shutdown();
+    }
+
+    @Test
+    void chunksAreStreamedToReceiverWithRewrittenHeader() throws Exception {
+        byte[] body = new byte[10_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        sendInChunks(sender, envelope("1002", body), 1000);
+
+        List<WebSocketMessage<?>> received = receiver.getSentMessages();
+        // 头部单独一个分片，随后每个入站分片对应一个出站分片
+        assertTrue(received.size() > 2);
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i == received.size() - 1, received.get(i).isLast());
+        }
+
+        ByteBuffer assembled = ByteBuffer.allocate(body.length + MediaEnvelope.MAX_HEADER_SIZE);
+        received.forEach(m -> assembled.put(((BinaryMessage) m).getPayload()));
+        assembled.flip();
+        MediaEnvelope.Header header = new MediaEnvelope.HeaderDecoder().decode(assembled);
+        assertEquals(new MediaEnvelope.Header("1001", "image/png", body.length), header);
+        byte[] forwarded = new byte[assembled.remaining()];
+        assembled.get(forwarded);
+        assertArrayEquals(body, forwarded);
+
+        TextMessage ack = (TextMessage) sender.getSentMessages().get(0);
+        assertEquals("{\"type\":\"media-ack\",\"size\":10000,\"delivered\":1,\"busy\":0}", ack.getPayload());
+    }
+
+    @Test
+    void busyReceiverIsSkippedUntilCurrentTransferEnds() throws Exception {
+        StubWebSocketSession other = new StubWebSocketSession("s3", "1003");
+        handler.afterConnectionEstablished(other);
+        ByteBuffer first = envelope("1002", new byte[100]);
+        handler.handleMessage(sender, new BinaryMessage(first.slice(0, 50), false));
+
+        sendInChunks(other, envelope("1002", new byte[10]), 100);
+        assertEquals("{\"type\":\"media-ack\",\"size\":10,\"delivered\":0,\"busy\":1}",
+                ((TextMessage) other.getSentMessages().get(0)).getPayload());
+
+        handler.handleMessage(sender, new BinaryMessage(first.slice(50, first.remaining() - 50), true));
+        int before = receiver.getSentMessages().size();
+        sendInChunks(other, envelope("1002", new byte[10]), 100);
+        assertTrue(receiver.getSentMessages().size() > before);
+    }
+
+    @Test
+    void senderDisconnectTerminatesReceiverMessage() throws Exception {
+        ByteBuffer message = envelope("1002", new byte[100]);
+        handler.handleMessage(sender, new BinaryMessage(message.slice(0, 60), false));
+
+        handler.afterConnectionClosed(sender, CloseStatus.GOING_AWAY);
+
+        List<WebSocketMessage<?>> received = receiver.getSentMessages();
+        assertTrue(received.get(received.size() - 1).isLast());
+        assertFalse(received.get(0).isLast());
+    }
+
+    /**
+     * 发送方自己的连接正在接收别人的文件时，回执排队，等那路传输结束后发出
+     */
+    @Test
+    void ackIsQueuedUntilSendersConnectionIsFree() throws Exception {
+        ByteBuffer incoming = envelope("1001", new byte[100]);
+        handler.handleMessage(receiver, new BinaryMessage(incoming.slice(0, 50), false));
+
+        sendInChunks(sender, envelope("1002", new byte[10]), 100);
+        assertTrue(sender.getSentMessages().stream().noneMatch(TextMessage.class::isInstance));
+
+        handler.handleMessage(receiver, new BinaryMessage(incoming.slice(50, incoming.remaining() - 50), true));
+        List<WebSocketMessage<?>> sent = sender.getSentMessages();
+        assertTrue(sent.get(sent.size() - 2).isLast());
+        assertEquals("{\"type\":\"media-ack\",\"size\":10,\"delivered\":1,\"busy\":0}",
+                ((TextMessage) sent.get(sent.size() - 1)).getPayload());
+    }
+
+    /**
+     * 发完头部后停住的发送方：超时后接收者的消息被结束、连接释放，发送方被关闭，之后的分片不再转发
+     */
+    @Test
+    void stalledTransferTimesOutAndReleasesReceiver() throws Exception {
+        handler.shutdown();
+        properties.getMedia().setIdleTimeout(Duration.ZERO);
+        setUp();
+        ByteBuffer message = envelope("1002", new byte[100]);
+        handler.handleMessage(sender, new BinaryMessage(message.slice(0, 60), false));
+        handler.handleMessage(sender, new TextMessage("ping"));
+
+        handler.sweep();
+
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), sender.getCloseStatus().getCode());
+        List<WebSocketMessage<?>> received = receiver.getSentMessages();
+        assertTrue(received.get(received.size() - 1).isLast());
+        int before = received.size();
+        handler.handleMessage(sender, new BinaryMessage(message.slice(60, message.remaining() - 60), true));
+        assertEquals(before, receiver.getSentMessages().size());
+
+        StubWebSocketSession other = new StubWebSocketSession("s3", "1003");
+        handler.afterConnectionEstablished(other);
+        sendInChunks(other, envelope("1002", new byte[10]), 100);
+        assertEquals("{\"type\":\"media-ack\",\"size\":10,\"delivered\":1,\"busy\":0}",
+                ((TextMessage) other.getSentMessages().get(0)).getPayload());
+    }
+
+    @Test
+    void oversizedMediaClosesSender() throws Exception {
+        ByteBuffer header = new MediaEnvelope.Header("1002", "video/mp4", Long.MAX_VALUE).encode();
+        handler.handleMessage(sender, new BinaryMessage(header, false));
+
+        assertEquals(CloseStatus.TOO_BIG_TO_PROCESS.getCode(), sender.getCloseStatus().getCode());
+        assertTrue(receiver.getSentMessages().isEmpty());
+    }
+
+    private void sendInChunks(StubWebSocketSession session, ByteBuffer message, int chunkSize) throws Exception {
+        while (message.hasRemaining()) {
+            int size = Math.min(chunkSize, message.remaining());
+            ByteBuffer chunk = message.slice(message.position(), size);
+            message.position(message.position() + size);
+            handler.handleMessage(session, new BinaryMessage(chunk, !message.hasRemaining()));
+        }
+    }
+
+    private static ByteBuffer envelope(String toUser, byte[] body) {
+        ByteBuffer header = new MediaEnvelope.Header(toUser, "image/png", body.length).encode();
+        return ByteBuffer.allocate(header.remaining() + body.length).put(header).put(body).flip();
+    }
+}
@@ -0,0 +1,140 @@
+package com.xf.nativechat.handler;
+
+import com.xf.nativechat.cluster.ClusterRouter;
+import com.xf.nativechat.cluster.InMemoryPresenceDirectory;
+import com.xf.nativechat.cluster.LoopbackClusterTransport;
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.nativechat.metrics.NativeChatMetrics;
+import com.xf.nativechat.room.RoomRegistry;
+import com.xf.nativechat.session.DeliveryTracker;
+import com.xf.nativechat.session.FrameCompressor;
+import com.xf.nativechat.store.MessageStore;
+import com.xf.nativechat.store.OfflineInbox;
+import com.xf.nativechat.store.PersistencePipeline;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import com.xf.websocket.core.session.OverflowPolicy;
+import com.xf.websocket.core.session.QueuedSessionDecorator;
+import com.xf.websocket.core.session.SessionRegistry;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MyNativeChatHandlerTest {
+
+    private final NativeWebSocketProperties properties = new NativeWebSocketProperties();
+    private final XfWebSocketCoreProperties coreProperties = new XfWebSocketCoreProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboundQueueManager outboundQueueManager;
+    private HeartbeatWheel heartbeatWheel;
+    private ClusterRouter clusterRouter;
+    private PersistencePipeline persistencePipeline;
+    private OfflineInbox offlineInbox;
+    private DeliveryTracker deliveryTracker;
+    private RateLimiter rateLimiter;
+    private MyNativeChatHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        properties.getPersistence().setEnabled(false);
+        coreProperties.getOutbound().setQueueCapacity(2);
+        coreProperties.getOutbound().setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        SessionRegistry sessionRegistry = new SessionRegistry();
+        outboundQueueManager = new OutboundQueueManager(coreProperties);
+        heartbeatWheel = new HeartbeatWheel(coreProperties);
+        clusterRouter = new ClusterRouter(properties, sessionRegistry, new InMemoryPresenceDirectory(),
+                new LoopbackClusterTransport(new LoopbackClusterTransport.Hub()));
+        persistencePipeline = new PersistencePipeline(properties,
+                new StaticListableBeanFactory().getBeanProvider(MessageStore.class));
+        offlineInbox = new OfflineInbox(properties);
+        deliveryTracker = new DeliveryTracker(properties);
+        rateLimiter = new RateLimiter(coreProperties);
+        handler = new MyNativeChatHandler(sessionRegistry, outboundQueueManager, heartbeatWheel, clusterRouter,
+                persistencePipeline, offlineInbox, deliveryTracker, new NativeChatMetrics(meterRegistry),
+                rateLimiter, new RoomRegistry(properties), new FrameCompressor(properties), properties);
+        handler.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        outboundQueueManager.shutdown();
+        heartbeatWheel.shutdown();
+        clusterRouter.shutdown();
+        persistencePipeline.shutdown();
+        offlineInbox.shutdown();
+        deliveryTracker.shutdown();
+        rateLimiter.shutdown();
+    }
+
+    /**
+     * 回放途中出站队列满了：被队列拒绝的消息不算投递，和之后的一起留在收件箱
+     */
+    @Test
+    void replayKeepsMessagesRejectedByFullQueue() throws Exception {
+        IntStream.range(0, 10).forEach(i -> handler.sendToUser("1002", "m" + i));
+        assertEquals(10, offlineInbox.size("1002"));
+
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingSession session = new BlockingSession("s1", "1002", release);
+        handler.afterConnectionEstablished(session);
+        QueuedSessionDecorator outbound = (QueuedSessionDecorator) outboundQueueManager.outbound(session);
+
+        // 第一条卡在写 socket 上，队列收下两条后拒绝，回放随即停止
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (offlineInbox.getReplayedCount() == 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(1, outbound.getDroppedCount());
+        assertEquals(1, meterRegistry.get("xf.native.send.failures").counter().count());
+        long replayed = offlineInbox.getReplayedCount();
+        assertTrue(replayed == 2 || replayed == 3, "replayed " + replayed);
+        assertEquals(10 - replayed, offlineInbox.size("1002"));
+
+        release.countDown();
+        while (session.getSentCount() < replayed && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(IntStream.range(0, (int) replayed).mapToObj(i -> "m" + i).toList(), payloads(session));
+    }
+
+    private static List<String> payloads(StubWebSocketSession session) {
+        return session.getSentMessages().stream().map(message -> String.valueOf(message.getPayload())).toList();
+    }
+
+    /**
+     * 写 socket 卡住直到 release，模拟不读数据的客户端
+     */
+    private static final class BlockingSession extends StubWebSocketSession {
+
+        private final CountDownLatch release;
+
+        BlockingSession(String id, String uid, CountDownLatch release) {
+            super(id, uid);
+            this.release = release;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.xf.nativechat.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeChatMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final NativeChatMetrics metrics = new NativeChatMetrics(registry);
+
+    @Test
+    void everyRouteIsRegisteredUpFront() {
+        for (NativeChatMetrics.Route route : NativeChatMetrics.Route.values()) {
+            assertNotNull(registry.find("xf.native.messages").tag("route", route.name().toLowerCase()).counter());
+        }
+        metrics.routed(NativeChatMetrics.Route.PRIVATE);
+        metrics.routed(NativeChatMetrics.Route.PRIVATE);
+        metrics.routed(NativeChatMetrics.Route.ACK);
+
+        assertEquals(2, registry.get("xf.native.messages").tag("route", "private").counter().count());
+        assertEquals(1, registry.get("xf.native.messages").tag("route", "ack").counter().count());
+        assertEquals(0, registry.get("xf.native.messages").tag("route", "broadcast").counter().count());
+    }
+
+    @Test
+    void handshakesAndSendsAreRecorded() {
+        metrics.handshakeAccepted();
+        metrics.handshakeRejected();
+        metrics.handshakeRejected();
+        metrics.recordSend(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.sendFailed();
+
+        assertEquals(1, registry.get("xf.native.handshakes").tag("result", "accepted").counter().count());
+        assertEquals(2, registry.get("xf.native.handshakes").tag("result", "rejected").counter().count());
+        assertEquals(1, registry.get("xf.native.send").timer().count());
+        assertTrue(registry.get("xf.native.send").timer().totalTime(TimeUnit.MILLISECONDS) >= 3);
+        assertEquals(1, registry.get("xf.native.send.failures").counter().count());
+    }
+}
@@ -0,0 +1,181 @@
+package com.xf.nativechat.protocol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.websocket.core.session.SplicedTextMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMessageCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void forwardsContentVerbatim() throws Exception {
+        String payload = "{\"toUser\":\"1002\",\"content\":\"he said \\\"hi\\\" \\\\ 你好 \\u00e9\",\"type\":\"text\"}";
+
+        JsonNode forwarded = route("1001", payload);
+
+        assertEquals("1001", forwarded.get("fromUser").asText());
+        assertEquals("text", forwarded.get("type").asText());
+        assertEquals("he said \"hi\" \\ 你好 é", forwarded.get("content").asText());
+    }
+
+    @Test
+    void headerFieldsMayFollowContentAndUnknownFieldsAreSkipped() throws Exception {
+        String payload = " { \"content\" : \"x\" , \"extra\": {\"a\": [1, 2, {\"content\": \"no\"}]}, \"type\": \"image\",\n \"toUser\": \"1002\" } ";
+
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        assertNotNull(header);
+        assertEquals("1002", header.toUser());
+        assertEquals("image", header.type());
+
+        JsonNode forwarded = objectMapper.readTree(ChatMessageCodec.forward("1001", header, payload));
+        assertEquals("x", forwarded.get("content").asText());
+    }
+
+    @Test
+    void structuredContentIsForwardedAsIs() throws Exception {
+        String payload = "{\"toUser\":\"1002\",\"content\":{\"w\":100,\"tags\":[\"a\",\"b\"]}}";
+
+        JsonNode forwarded = route("1001", payload);
+
+        assertEquals("text", forwarded.get("type").asText());
+        assertEquals(objectMapper.readTree("{\"w\":100,\"tags\":[\"a\",\"b\"]}"), forwarded.get("content"));
+    }
+
+    @Test
+    void largeContentUsesReaderPathCorrectly() throws Exception {
+        String image = "data:image/png;base64," + "QUJD".repeat(300_000);
+        String payload = objectMapper.writeValueAsString(Map.of("toUser", "1002", "type", "image", "content", image));
+
+        JsonNode forwarded = route("1001", payload);
+
+        assertEquals(image, forwarded.get("content").asText());
+        assertEquals("image", forwarded.get("type").asText());
+    }
+
+    @Test
+    void fromUserIsEscaped() throws Exception {
+        JsonNode forwarded = route("a\"b", "{\"toUser\":\"1002\",\"content\":\"x\"}");
+        assertEquals("a\"b", forwarded.get("fromUser").asText());
+    }
+
+    @Test
+    void splicedFrameMatchesForwardedString() throws Exception {
+        String payload = "{\"type\":\"image\",\"content\":\"QUJD\\n\",\"toUser\":\"1002\"}";
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        assertNotNull(header);
+
+        String expected = ChatMessageCodec.forward("1001", header, payload);
+        SplicedTextMessage frame = ChatMessageCodec.forwardFrame("1001", header, payload);
+        StringWriter writer = new StringWriter();
+        frame.writeTo(writer);
+
+        assertEquals(expected, writer.toString());
+        assertEquals(expected.length(), frame.getPayloadLength());
+        assertEquals(expected, frame.getPayload());
+    }
+
+    @Test
+    void nonRoutingMessagesAreIgnored() throws Exception {
+        assertNull(ChatMessageCodec.parse("ping"));
+        assertNull(ChatMessageCodec.parse(""));
+        assertNull(ChatMessageCodec.parse("{\"content\":\"x\"}"));
+        assertNull(ChatMessageCodec.parse("{\"toUser\":\"1002\"}"));
+    }
+
+    @Test
+    void sequencedFramesCarrySeqAndSender() throws Exception {
+        String payload = "{\"toUser\":\"1002\",\"content\":\"x\",\"msgId\":\"c-1\"}";
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        assertNotNull(header);
+        assertEquals("c-1", header.msgId());
+
+        JsonNode local = objectMapper.readTree(ChatMessageCodec.forwardFrame("1001", header, payload, 3, 7).getPayload());
+        assertEquals(7, local.get("seq").asLong());
+        assertEquals(3, local.get("epoch").asLong());
+        assertEquals("1001", local.get("fromUser").asText());
+
+        // 其他节点转发来的完整报文：取出发送者，再在前面拼上序号
+        String forwarded = ChatMessageCodec.forward("1001", header, payload);
+        assertEquals("1001", ChatMessageCodec.fromUserOf(forwarded));
+        JsonNode remote = objectMapper.readTree(ChatMessageCodec.sequenced(3, 8, forwarded).getPayload());
+        assertEquals(8, remote.get("seq").asLong());
+        assertEquals(3, remote.get("epoch").asLong());
+        assertEquals("x", remote.get("content").asText());
+
+        JsonNode sent = objectMapper.readTree(ChatMessageCodec.sentAck(header));
+        assertEquals("sent", sent.get("type").asText());
+        assertEquals("c-1", sent.get("msgId").asText());
+    }
+
+    @Test
+    void controlFramesAreParsed() throws Exception {
+        ChatMessageCodec.ControlFrame ack = ChatMessageCodec.parseControl("{\"type\":\"ack\",\"fromUser\":\"1001\",\"seq\":42}");
+        assertNotNull(ack);
+        assertTrue(ack.isAck());
+        assertEquals("1001", ack.fromUser());
+        assertEquals(42, ack.seq());
+        assertEquals(-1, ack.epoch());
+
+        ChatMessageCodec.ControlFrame resume = ChatMessageCodec.parseControl(
+                "{\"type\":\"resume\",\"fromUser\":\"1001\",\"epoch\":9,\"seq\":40}");
+        assertNotNull(resume);
+        assertEquals(9, resume.epoch());
+        assertEquals(40, resume.seq());
+
+        JsonNode resumed = objectMapper.readTree(ChatMessageCodec.resumedAck(9, 2, true));
+        assertEquals(9, resumed.get("epoch").asLong());
+        assertTrue(resumed.get("truncated").asBoolean());
+
+        ChatMessageCodec.ControlFrame resumeAll = ChatMessageCodec.parseControl("{\"type\":\"resume\"}");
+        assertNotNull(resumeAll);
+        assertNull(resumeAll.fromUser());
+
+        assertNull(ChatMessageCodec.parseControl("{\"type\":\"ack\",\"fromUser\":\"1001\"}"));
+        assertNull(ChatMessageCodec.parseControl("{\"type\":\"text\",\"seq\":1}"));
+        assertNull(ChatMessageCodec.parseControl("ping"));
+    }
+
+    @Test
+    void roomMessagesAndMembershipFrames() throws Exception {
+        String payload = "{\"toRoom\":\"r\\\"1\",\"content\":\"hi\",\"msgId\":\"m1\"}";
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        assertNotNull(header);
+        assertTrue(header.isRoom());
+        assertEquals("r\"1", header.toRoom());
+
+        JsonNode forwarded = objectMapper.readTree(ChatMessageCodec.forwardToRoom("1001", header, payload));
+        assertEquals("r\"1", forwarded.get("room").asText());
+        assertEquals("1001", forwarded.get("fromUser").asText());
+        assertEquals("hi", forwarded.get("content").asText());
+
+        JsonNode sent = objectMapper.readTree(ChatMessageCodec.sentAck(header));
+        assertEquals("r\"1", sent.get("toRoom").asText());
+        assertTrue(sent.path("toUser").isMissingNode());
+
+        ChatMessageCodec.ControlFrame join = ChatMessageCodec.parseControl("{\"type\":\"join\",\"room\":\"r1\"}");
+        assertNotNull(join);
+        assertTrue(join.isRoomControl());
+        assertEquals("r1", join.room());
+        assertNull(ChatMessageCodec.parseControl("{\"type\":\"leave\"}"));
+
+        assertEquals(3, objectMapper.readTree(ChatMessageCodec.joinedAck("r1", 3)).get("members").asInt());
+        assertEquals("not_joined",
+                objectMapper.readTree(ChatMessageCodec.roomError("r1", "not_joined")).get("reason").asText());
+    }
+
+    private JsonNode route(String fromUser, String payload) throws Exception {
+        ChatMessageCodec.RoutingHeader header = ChatMessageCodec.parse(payload);
+        assertNotNull(header);
+        return objectMapper.readTree(ChatMessageCodec.forward(fromUser, header, payload));
+    }
+}
@@ -0,0 +1,53 @@
+package com.xf.nativechat.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MediaEnvelopeTest {
+
+    @Test
+    void headerSplitAcrossChunksIsDecoded() {
+        MediaEnvelope.Header header = new MediaEnvelope.Header("用户1002", "image/png", 123_456_789L);
+        ByteBuffer encoded = header.encode();
+        ByteBuffer message = ByteBuffer.allocate(encoded.remaining() + 3).put(encoded).put(new byte[]{7, 8, 9}).flip();
+
+        MediaEnvelope.HeaderDecoder decoder = new MediaEnvelope.HeaderDecoder();
+        MediaEnvelope.Header decoded = null;
+        ByteBuffer chunk = null;
+        // 每个分片只有 1 个字节，头部必须跨分片拼起来
+        while (decoded == null) {
+            chunk = message.slice(message.position(), 1);
+            message.position(message.position() + 1);
+            decoded = decoder.decode(chunk);
+        }
+
+        assertEquals(header, decoded);
+        assertEquals(0, chunk.remaining());
+        assertEquals(3, message.remaining());
+    }
+
+    @Test
+    void bodyStartsRightAfterHeaderInSameChunk() {
+        MediaEnvelope.Header header = new MediaEnvelope.Header("1002", "image/jpeg", 2);
+        ByteBuffer encoded = header.encode();
+        ByteBuffer message = ByteBuffer.allocate(encoded.remaining() + 2).put(encoded).put(new byte[]{1, 2}).flip();
+
+        MediaEnvelope.Header decoded = new MediaEnvelope.HeaderDecoder().decode(message);
+
+        assertEquals(header, decoded);
+        assertEquals(2, message.remaining());
+        assertEquals(1, message.get());
+    }
+
+    @Test
+    void unsupportedVersionIsRejected() {
+        MediaEnvelope.HeaderDecoder decoder = new MediaEnvelope.HeaderDecoder();
+        assertNull(decoder.decode(ByteBuffer.wrap(new byte[]{9})));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{4})));
+    }
+}
@@ -0,0 +1,125 @@
+package com.xf.nativechat.reactive;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReactiveSessionAdapterTest {
+
+    private ReactiveSessionAdapter adapter;
+    private Collector collector;
+
+    @BeforeEach
+    void setUp() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        when(session.bufferFactory()).thenReturn(new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT));
+        adapter = new ReactiveSessionAdapter(session, Map.of("uid", "1001"), 200, 65536);
+        collector = new Collector();
+        adapter.outbound().subscribe(collector);
+    }
+
+    @AfterEach
+    void tearDown() {
+        collector.received.forEach(WebSocketMessage::release);
+    }
+
+    @Test
+    void textIsEncodedIntoPooledDirectBuffer() throws Exception {
+        collector.request(1);
+        adapter.sendMessage(new TextMessage("你好 reactive"));
+
+        assertEquals(1, collector.received.size());
+        WebSocketMessage message = collector.received.get(0);
+        assertEquals(WebSocketMessage.Type.TEXT, message.getType());
+        assertTrue(((NettyDataBuffer) message.getPayload()).getNativeBuffer().isDirect());
+        assertEquals("你好 reactive", message.getPayload().toString(StandardCharsets.UTF_8));
+        assertEquals("1001", adapter.getAttributes().get("uid"));
+    }
+
+    @Test
+    void sendWaitsForDemand() throws Exception {
+        collector.request(1);
+        adapter.sendMessage(new TextMessage("first"));
+
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            try {
+                adapter.sendMessage(new TextMessage("second"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        // 没有新的需求，第二条还在等
+        assertFalse(second.isDone());
+        assertEquals(1, collector.received.size());
+
+        collector.request(1);
+        second.get(1, TimeUnit.SECONDS);
+        assertEquals(2, collector.received.size());
+    }
+
+    @Test
+    void sendFailsWhenNoDemandWithinTimeLimit() {
+        long start = System.nanoTime();
+        assertThrows(IOException.class, () -> adapter.sendMessage(new TextMessage("stuck")));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(collector.received.isEmpty());
+    }
+
+    @Test
+    void terminateCompletesOutboundAndRejectsSends() {
+        adapter.terminate();
+
+        assertTrue(collector.completed);
+        assertFalse(adapter.isOpen());
+        assertThrows(IOException.class, () -> adapter.sendMessage(new TextMessage("late")));
+    }
+
+    /**
+     * 模拟 Netty 的写出端：不自动请求，由测试控制需求
+     */
+    private static class Collector extends BaseSubscriber<WebSocketMessage> {
+
+        final List<WebSocketMessage> received = new CopyOnWriteArrayList<>();
+        volatile boolean completed;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(WebSocketMessage value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+    }
+}
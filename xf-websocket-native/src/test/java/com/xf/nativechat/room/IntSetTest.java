@@ -0,0 +1,48 @@
+package com.xf.nativechat.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntSetTest {
+
+    @Test
+    void addRemoveContains() {
+        IntSet set = new IntSet();
+        assertTrue(set.add(3));
+        assertFalse(set.add(3));
+        assertTrue(set.contains(3));
+        assertTrue(set.remove(3));
+        assertFalse(set.remove(3));
+        assertFalse(set.contains(3));
+        assertTrue(set.isEmpty());
+    }
+
+    /**
+     * 随机增删并与 HashSet 对照，覆盖墓碑复用、扩容和收缩
+     */
+    @Test
+    void matchesHashSetUnderRandomChurn() {
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(i < 100_000 ? 50_000 : 500);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        Set<Integer> iterated = new HashSet<>();
+        set.forEach(value -> assertTrue(iterated.add(value)));
+        assertEquals(expected, iterated);
+    }
+}
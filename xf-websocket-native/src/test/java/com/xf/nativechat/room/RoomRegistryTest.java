@@ -0,0 +1,111 @@
+package com.xf.nativechat.room;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import com.xf.websocket.core.support.StubWebSocketSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomRegistryTest {
+
+    private final NativeWebSocketProperties properties = new NativeWebSocketProperties();
+    private final RoomRegistry registry = new RoomRegistry(properties);
+
+    @Test
+    void fanoutReachesOnlyMembersExceptExcluded() {
+        StubWebSocketSession a = new StubWebSocketSession("a", "1001");
+        StubWebSocketSession b = new StubWebSocketSession("b", "1002");
+        StubWebSocketSession c = new StubWebSocketSession("c", "1003");
+        assertEquals(RoomRegistry.JoinResult.JOINED, registry.join(a, "r1"));
+        assertEquals(RoomRegistry.JoinResult.ALREADY_JOINED, registry.join(a, "r1"));
+        registry.join(b, "r1");
+        registry.join(c, "r2");
+
+        assertEquals(List.of(b), members("r1", a));
+        assertEquals(2, registry.getMemberCount("r1"));
+        assertTrue(registry.isMember(a, "r1"));
+        assertFalse(registry.isMember(c, "r1"));
+        assertEquals(3, registry.getMembershipCount());
+    }
+
+    @Test
+    void emptyRoomsAreRemoved() {
+        StubWebSocketSession a = new StubWebSocketSession("a", "1001");
+        registry.join(a, "r1");
+        registry.join(a, "r2");
+        assertEquals(2, registry.getRoomCount());
+
+        assertTrue(registry.leave(a, "r1"));
+        assertFalse(registry.leave(a, "r1"));
+        assertEquals(1, registry.getRoomCount());
+
+        registry.leaveAll(a);
+        assertEquals(0, registry.getRoomCount());
+        assertEquals(0, registry.getMembershipCount());
+    }
+
+    /**
+     * 槽位回收后被新连接复用，新连接不会收到旧连接所在房间的消息
+     */
+    @Test
+    void recycledSlotDoesNotInheritMemberships() {
+        StubWebSocketSession old = new StubWebSocketSession("old", "1001");
+        StubWebSocketSession stay = new StubWebSocketSession("stay", "1002");
+        registry.join(old, "r1");
+        registry.join(stay, "r1");
+        registry.leaveAll(old);
+
+        StubWebSocketSession fresh = new StubWebSocketSession("fresh", "1003");
+        registry.join(fresh, "r2");
+
+        assertEquals(List.of(stay), members("r1", null));
+        assertEquals(List.of(fresh), members("r2", null));
+    }
+
+    @Test
+    void limitsRoomsPerSessionAndNameLength() {
+        properties.getRoom().setMaxRoomsPerSession(2);
+        properties.getRoom().setMaxNameLength(4);
+        RoomRegistry limited = new RoomRegistry(properties);
+        StubWebSocketSession a = new StubWebSocketSession("a", "1001");
+
+        assertEquals(RoomRegistry.JoinResult.INVALID_NAME, limited.join(a, "toolong"));
+        assertEquals(RoomRegistry.JoinResult.INVALID_NAME, limited.join(a, ""));
+        limited.join(a, "r1");
+        limited.join(a, "r2");
+        assertEquals(RoomRegistry.JoinResult.ALREADY_JOINED, limited.join(a, "r2"));
+        assertEquals(RoomRegistry.JoinResult.TOO_MANY_ROOMS, limited.join(a, "r3"));
+    }
+
+    @Test
+    void manyRoomsAndMembers() {
+        List<StubWebSocketSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StubWebSocketSession session = new StubWebSocketSession("s" + i, "u" + i);
+            sessions.add(session);
+            registry.join(session, "all");
+            registry.join(session, "room-" + (i % 1000));
+        }
+        assertEquals(1001, registry.getRoomCount());
+        assertEquals(5000, members("all", null).size());
+        assertEquals(5, members("room-7", null).size());
+
+        for (int i = 0; i < 5000; i += 2) {
+            registry.leaveAll(sessions.get(i));
+        }
+        assertEquals(2500, members("all", null).size());
+        assertEquals(10000 / 2, registry.getMembershipCount());
+    }
+
+    private List<WebSocketSession> members(String room, WebSocketSession exclude) {
+        List<WebSocketSession> visited = new ArrayList<>();
+        assertEquals(registry.forEachMember(room, exclude, visited::add), visited.size());
+        return visited;
+    }
+}
@@ -0,0 +1,148 @@
+package com.xf.nativechat.session;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeliveryTrackerTest {
+
+    private final NativeWebSocketProperties properties = new NativeWebSocketProperties();
+    private DeliveryTracker tracker;
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+    }
+
+    @Test
+    void sequencesArePerConversationAndAcksAreCumulative() {
+        tracker = new DeliveryTracker(properties);
+        for (int i = 0; i < 3; i++) {
+            track("1002", "1001");
+            track("1002", "1003");
+        }
+        assertEquals("1001:4", track("1002", "1001").getPayload());
+        assertEquals(7, tracker.getPendingCount("1002"));
+
+        tracker.ack("1002", "1001", -1, 2);
+        assertEquals(5, tracker.getPendingCount("1002"));
+
+        // 客户端断线后报告 1001 会话收到了 3，只重发之后的
+        DeliveryTracker.Resume resume = tracker.resume("1002", "1001", -1, 3);
+        assertEquals(List.of("1001:4"), payloads(resume));
+        assertFalse(resume.truncated());
+
+        // 不指定会话时重发所有未确认的，按投递顺序
+        assertEquals(List.of("1003:1", "1003:2", "1003:3", "1001:4"), payloads(tracker.resume("1002", null, -1, 0)));
+    }
+
+    /**
+     * 逐条确认、重复确认时只释放本会话已确认的帧，其他会话的帧不受影响
+     */
+    @Test
+    void incrementalAcksReleaseOnlyAckedFramesOfConversation() {
+        tracker = new DeliveryTracker(properties);
+        for (int i = 0; i < 4; i++) {
+            track("1002", "1001");
+            track("1002", "1003");
+        }
+        for (int seq = 1; seq <= 3; seq++) {
+            tracker.ack("1002", "1001", -1, seq);
+            tracker.ack("1002", "1001", -1, seq);
+        }
+        assertEquals(5, tracker.getPendingCount("1002"));
+        assertEquals(3, tracker.getAckedCount());
+        assertEquals(List.of("1003:1", "1003:2", "1003:3", "1001:4", "1003:4"),
+                payloads(tracker.resume("1002", null, -1, 0)));
+
+        tracker.ack("1002", "1001", -1, 9);
+        assertEquals(List.of("1003:1", "1003:2", "1003:3", "1003:4"), payloads(tracker.resume("1002", null, -1, 0)));
+    }
+
+    @Test
+    void evictedMessagesMarkResumeAsTruncated() {
+        properties.getDelivery().setWindowSize(2);
+        tracker = new DeliveryTracker(properties);
+        for (int i = 0; i < 5; i++) {
+            track("1002", "1001");
+        }
+        assertEquals(3, tracker.getEvictedCount());
+
+        DeliveryTracker.Resume resume = tracker.resume("1002", "1001", -1, 1);
+        assertEquals(List.of("1001:4", "1001:5"), payloads(resume));
+        assertTrue(resume.truncated());
+
+        // 客户端从历史补齐后确认到最新，不再提示
+        tracker.ack("1002", "1001", -1, 5);
+        assertFalse(tracker.resume("1002", "1001", -1, 5).truncated());
+        assertEquals(0, tracker.getPendingCount("1002"));
+    }
+
+    @Test
+    void detachedStreamsExpireAfterResumeTimeout() {
+        properties.getDelivery().setResumeTimeout(Duration.ZERO);
+        tracker = new DeliveryTracker(properties);
+        track("1002", "1001");
+
+        tracker.sweep();
+        assertEquals(1, tracker.getStreamCount());
+
+        tracker.detach("1002");
+        tracker.sweep();
+        assertEquals(0, tracker.getStreamCount());
+    }
+
+    @Test
+    void recreatedStreamHasNewEpochAndStaleResumeIsTruncated() {
+        properties.getDelivery().setResumeTimeout(Duration.ZERO);
+        tracker = new DeliveryTracker(properties);
+        track("1002", "1001");
+        track("1002", "1001");
+        long oldEpoch = tracker.resume("1002", "1001", -1, 0).epoch();
+
+        tracker.detach("1002");
+        tracker.sweep();
+
+        // 窗口重建后序号从 1 开始，epoch 变化让客户端清空记录的序号
+        assertEquals("1001:1", track("1002", "1001").getPayload());
+        DeliveryTracker.Resume resume = tracker.resume("1002", "1001", oldEpoch, 2);
+        assertTrue(resume.epoch() != oldEpoch);
+        assertEquals(List.of("1001:1"), payloads(resume));
+        assertTrue(resume.truncated());
+
+        // 旧 epoch 的确认不作用于新窗口
+        tracker.ack("1002", "1001", oldEpoch, 1);
+        assertEquals(1, tracker.getPendingCount("1002"));
+        tracker.ack("1002", "1001", resume.epoch(), 1);
+        assertEquals(0, tracker.getPendingCount("1002"));
+    }
+
+    @Test
+    void resumeBeyondKnownSeqIsTruncated() {
+        tracker = new DeliveryTracker(properties);
+        // 没带 epoch 的旧客户端：服务端没有它报告的序号，说明窗口已经重建过
+        DeliveryTracker.Resume resume = tracker.resume("1002", "1001", -1, 5);
+        assertTrue(resume.frames().isEmpty());
+        assertTrue(resume.truncated());
+
+        track("1002", "1001");
+        assertFalse(tracker.resume("1002", "1001", resume.epoch(), 0).truncated());
+    }
+
+    private WebSocketMessage<?> track(String uid, String fromUser) {
+        return tracker.track(uid, fromUser, (epoch, seq) -> new TextMessage(fromUser + ":" + seq));
+    }
+
+    private static List<String> payloads(DeliveryTracker.Resume resume) {
+        return resume.frames().stream().map(frame -> String.valueOf(frame.getPayload())).toList();
+    }
+}
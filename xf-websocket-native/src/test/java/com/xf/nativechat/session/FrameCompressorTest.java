@@ -0,0 +1,79 @@
+package com.xf.nativechat.session;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCompressorTest {
+
+    private static final String CHAT = "{\"seq\":1,\"fromUser\":\"1001\",\"type\":\"text\",\"content\":\"晚上一起吃饭吗\"}";
+
+    private final NativeWebSocketProperties properties = new NativeWebSocketProperties();
+
+    @Test
+    void framesBelowThresholdAndBinaryFramesAreSentAsIs() {
+        FrameCompressor compressor = new FrameCompressor(properties);
+        TextMessage small = new TextMessage(CHAT);
+        BinaryMessage media = new BinaryMessage(new byte[4096]);
+
+        assertSame(small, compressor.compress(small, CompressionMode.DEFLATE));
+        assertSame(media, compressor.compress(media, CompressionMode.DEFLATE));
+        assertEquals(1, compressor.getSkippedCount());
+        assertEquals(0, compressor.getBytesIn());
+    }
+
+    @Test
+    void largeFramesRoundTripThroughRawDeflate() throws Exception {
+        FrameCompressor compressor = new FrameCompressor(properties);
+        String batch = "[" + (CHAT + ",").repeat(40) + CHAT + "]";
+
+        WebSocketMessage<?> compressed = compressor.compress(new TextMessage(batch), CompressionMode.DEFLATE);
+
+        BinaryMessage binary = assertInstanceOf(BinaryMessage.class, compressed);
+        assertEquals(FrameCompressor.MARKER_DEFLATE, binary.getPayload().get(0));
+        assertEquals(batch, inflate(binary.getPayload(), null));
+        assertTrue(compressor.getBytesSaved() > batch.length() / 2);
+        assertEquals(1, compressor.getCompressedCount());
+    }
+
+    @Test
+    void dictionaryMakesShortChatMessagesWorthCompressing() throws Exception {
+        properties.getCompression().setThreshold(DataSize.ofBytes(0));
+        FrameCompressor compressor = new FrameCompressor(properties);
+
+        WebSocketMessage<?> plain = compressor.compress(new TextMessage(CHAT), CompressionMode.DEFLATE);
+        WebSocketMessage<?> dict = compressor.compress(new TextMessage(CHAT), CompressionMode.DEFLATE_DICT);
+
+        BinaryMessage binary = assertInstanceOf(BinaryMessage.class, dict);
+        assertEquals(FrameCompressor.MARKER_DEFLATE_DICT, binary.getPayload().get(0));
+        assertEquals(CHAT, inflate(binary.getPayload(), compressor.getDictionary()));
+        assertTrue(binary.getPayloadLength() < plain.getPayloadLength());
+    }
+
+    private static String inflate(ByteBuffer payload, byte[] dictionary) throws Exception {
+        byte[] data = new byte[payload.remaining() - 1];
+        payload.duplicate().position(1).get(data);
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(data);
+        if (dictionary != null) {
+            // raw deflate 没有字典校验头，解压前直接设置
+            inflater.setDictionary(dictionary);
+        }
+        byte[] out = new byte[64 * 1024];
+        int length = inflater.inflate(out);
+        inflater.end();
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+}
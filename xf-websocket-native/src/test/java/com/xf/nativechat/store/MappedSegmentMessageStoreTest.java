@@ -0,0 +1,114 @@
+package com.xf.nativechat.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedSegmentMessageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedRecordsAreReadBackInOrderAcrossSegments() throws IOException {
+        MappedSegmentMessageStore store = new MappedSegmentMessageStore(directory, 4096, 0);
+        List<MessageRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String payload = "{\"toUser\":\"1002\",\"content\":\"消息-" + i + "\"}";
+            batch.add(new MessageRecord(i, "1001", "1002", "text", payload,
+                    payload.indexOf("\"消息"), payload.length() - 1));
+        }
+        store.append(batch);
+        store.sync();
+        assertTrue(store.getSegmentIndex() > 0, "200 records should not fit in one 4KB segment");
+
+        List<MessageRecord> read = scan(store);
+        assertEquals(200, read.size());
+        for (int i = 0; i < 200; i++) {
+            MessageRecord record = read.get(i);
+            assertEquals(i, record.timestamp());
+            assertEquals("1001", record.fromUser());
+            assertEquals("1002", record.toUser());
+            assertEquals("text", record.type());
+            assertEquals("\"消息-" + i + "\"", record.content().toString());
+        }
+        store.close();
+    }
+
+    @Test
+    void reopenContinuesAfterLastRecordAndDropsTornWrite() throws IOException {
+        MappedSegmentMessageStore store = new MappedSegmentMessageStore(directory, 1 << 16, 0);
+        store.append(List.of(record("a"), record("b")));
+        store.sync();
+        int end = store.getWritePosition();
+        store.close();
+
+        // 模拟崩溃：length 已落盘，正文没有写完
+        try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(40).putInt(123).putInt(7).flip(), end);
+        }
+
+        MappedSegmentMessageStore reopened = new MappedSegmentMessageStore(directory, 1 << 16, 0);
+        assertEquals(end, reopened.getWritePosition());
+        reopened.append(List.of(record("c")));
+        reopened.sync();
+        assertEquals(List.of("\"a\"", "\"b\"", "\"c\""),
+                scan(reopened).stream().map(r -> r.content().toString()).toList());
+        reopened.close();
+    }
+
+    /**
+     * from / to / type 按 short 长度存放，超过 65535 字节的记录整条跳过，不会写出截断的长度
+     */
+    @Test
+    void recordsWithOversizedShortFieldsAreSkipped() throws IOException {
+        MappedSegmentMessageStore store = new MappedSegmentMessageStore(directory, 1 << 20, 0);
+        String toUser = "用".repeat(30_000);
+        store.append(List.of(record("a"), new MessageRecord(0, "1001", toUser, "text", "\"b\"", 0, 3), record("c")));
+        store.sync();
+
+        assertEquals(List.of("\"a\"", "\"c\""), scan(store).stream().map(r -> r.content().toString()).toList());
+        store.close();
+    }
+
+    @Test
+    void oldSegmentsAreDeletedBeyondRetention() throws IOException {
+        MappedSegmentMessageStore store = new MappedSegmentMessageStore(directory, 256, 2);
+        for (int i = 0; i < 50; i++) {
+            store.append(List.of(record("message-" + i)));
+        }
+        store.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    private static MessageRecord record(String content) {
+        String quoted = "\"" + content + "\"";
+        return new MessageRecord(System.currentTimeMillis(), "1001", "1002", "text", quoted, 0, quoted.length());
+    }
+
+    private static List<MessageRecord> scan(MessageStore store) throws IOException {
+        List<MessageRecord> read = new ArrayList<>();
+        store.scan(read::add);
+        return read;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.xf.nativechat.store;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineInboxTest {
+
+    private final NativeWebSocketProperties properties = new NativeWebSocketProperties();
+    private OfflineInbox inbox;
+
+    @AfterEach
+    void tearDown() {
+        inbox.shutdown();
+    }
+
+    @Test
+    void messagesAreReplayedInOrderAndMailboxIsReleased() throws Exception {
+        properties.getInbox().setReplayInterval(Duration.ofMillis(1));
+        inbox = new OfflineInbox(properties);
+        // 远超最小缓冲区容量，触发多次扩容
+        IntStream.range(0, 100).forEach(i -> inbox.store("1002", "{\"content\":\"离线消息 " + i + "\"}"));
+        assertEquals(100, inbox.size("1002"));
+
+        RecordingTarget target = new RecordingTarget(Integer.MAX_VALUE);
+        inbox.replay("1002", target);
+        awaitDelivered(target, 100);
+
+        assertEquals("{\"content\":\"离线消息 0\"}", target.delivered.get(0));
+        assertEquals("{\"content\":\"离线消息 99\"}", target.delivered.get(99));
+        awaitMailboxCount(0);
+        assertEquals(0, inbox.getTotalBytes());
+    }
+
+    @Test
+    void oldestMessagesAreEvictedBeyondPerUserBounds() throws Exception {
+        properties.getInbox().setMaxMessagesPerUser(3);
+        inbox = new OfflineInbox(properties);
+        IntStream.range(0, 5).forEach(i -> inbox.store("1002", "m" + i));
+        assertEquals(2, inbox.getEvictedCount());
+
+        RecordingTarget target = new RecordingTarget(Integer.MAX_VALUE);
+        inbox.replay("1002", target);
+        awaitDelivered(target, 3);
+        assertEquals(List.of("m2", "m3", "m4"), target.delivered);
+    }
+
+    @Test
+    void totalSizeLimitRejectsNewMessages() {
+        // 每个收件箱的缓冲区最小 64 字节，只够两个用户
+        properties.getInbox().setMaxTotalSize(DataSize.ofBytes(128));
+        inbox = new OfflineInbox(properties);
+
+        assertTrue(inbox.store("a", "0123456789"));
+        assertTrue(inbox.store("b", "0123456789"));
+        assertFalse(inbox.store("c", "0123456789"));
+        assertEquals(1, inbox.getRejectedCount());
+    }
+
+    @Test
+    void expiredMessagesAreNotReplayed() throws Exception {
+        properties.getInbox().setTtl(Duration.ofMillis(1));
+        inbox = new OfflineInbox(properties);
+        inbox.store("1002", "old");
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        RecordingTarget target = new RecordingTarget(Integer.MAX_VALUE);
+        inbox.replay("1002", target);
+        awaitMailboxCount(0);
+        assertTrue(target.delivered.isEmpty());
+        assertEquals(1, inbox.getExpiredCount());
+    }
+
+    @Test
+    void replayStreamsAllMessagesInBatches() throws Exception {
+        properties.getInbox().setReplayBatchSize(10);
+        properties.getInbox().setReplayInterval(Duration.ofMillis(1));
+        inbox = new OfflineInbox(properties);
+        IntStream.range(0, 35).forEach(i -> inbox.store("1002", "m" + i));
+
+        RecordingTarget target = new RecordingTarget(Integer.MAX_VALUE);
+        inbox.replay("1002", target);
+        // 同一用户的第二个端上线时已经在回放，不会重复发送
+        inbox.replay("1002", target);
+        awaitDelivered(target, 35);
+
+        assertEquals(IntStream.range(0, 35).mapToObj(i -> "m" + i).toList(), target.delivered);
+        assertEquals(35, inbox.getReplayedCount());
+        assertEquals(0, inbox.getMailboxCount());
+    }
+
+    @Test
+    void undeliveredMessagesStayInInbox() throws Exception {
+        properties.getInbox().setReplayBatchSize(10);
+        properties.getInbox().setReplayInterval(Duration.ofMillis(1));
+        inbox = new OfflineInbox(properties);
+        IntStream.range(0, 15).forEach(i -> inbox.store("1002", "m" + i));
+
+        // 第 13 条开始出站队列收不下，连接随即断开
+        RecordingTarget target = new RecordingTarget(12);
+        inbox.replay("1002", target);
+        awaitDelivered(target, 12);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inbox.size("1002") > 3 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+
+        assertEquals(3, inbox.size("1002"));
+        assertEquals(12, inbox.getReplayedCount());
+        // 下次上线从没交出去的那条继续
+        RecordingTarget next = new RecordingTarget(Integer.MAX_VALUE);
+        inbox.replay("1002", next);
+        awaitDelivered(next, 3);
+        assertEquals(List.of("m12", "m13", "m14"), next.delivered);
+    }
+
+    private void awaitMailboxCount(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inbox.getMailboxCount() != count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(count, inbox.getMailboxCount());
+    }
+
+    private static void awaitDelivered(RecordingTarget target, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (target.delivered.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    /**
+     * 收下前 capacity 条，之后的投递失败
+     */
+    private static final class RecordingTarget implements OfflineInbox.ReplayTarget {
+
+        private final List<String> delivered = new CopyOnWriteArrayList<>();
+        private final int capacity;
+
+        RecordingTarget(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public int backlog() {
+            return 0;
+        }
+
+        @Override
+        public boolean deliver(String payload) {
+            if (delivered.size() >= capacity) {
+                return false;
+            }
+            delivered.add(payload);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.xf.nativechat.store;
+
+import com.xf.nativechat.config.NativeWebSocketProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistencePipelineTest {
+
+    @Test
+    void concurrentProducersAreGroupCommitted() throws Exception {
+        SlowStore store = new SlowStore();
+        PersistencePipeline pipeline = pipeline(store);
+
+        int producers = 4;
+        int perProducer = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        // 生产者线程里的断言失败不会让用例失败，只记下被拒绝的条数，回到测试线程再断言
+        AtomicInteger rejected = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String from = "u" + p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    rejected.addAndGet(perProducer);
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    String content = from + "-" + i;
+                    if (!pipeline.submit(new MessageRecord(i, from, "*", "text", content, 0, content.length()))) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(thread.isAlive(), "producer did not finish");
+        }
+        pipeline.shutdown();
+
+        assertEquals(0, rejected.get());
+        assertEquals(producers * perProducer, store.records.size());
+        assertEquals(producers * perProducer, pipeline.getPersistedCount());
+        assertTrue(pipeline.getSyncCount() < pipeline.getPersistedCount() / 10,
+                "one sync should cover many messages, syncs=" + pipeline.getSyncCount());
+    }
+
+    /**
+     * 不逐批 fsync 时停机前还要 sync 一次，这次 sync 也在写盘线程上，存储始终只有一个线程访问
+     */
+    @Test
+    void finalSyncRunsOnWriterThread() throws Exception {
+        SlowStore store = new SlowStore();
+        PersistencePipeline pipeline = pipeline(store, false);
+        assertTrue(pipeline.submit(new MessageRecord(0, "a", "b", "text", "x", 0, 1)));
+        pipeline.shutdown();
+
+        assertEquals(Set.of("x"), store.records);
+        assertEquals(Set.of("ws-persist"), store.syncThreads);
+    }
+
+    @Test
+    void disabledWithoutStore() throws Exception {
+        PersistencePipeline pipeline = new PersistencePipeline(new NativeWebSocketProperties(),
+                new StaticListableBeanFactory().getBeanProvider(MessageStore.class));
+        assertFalse(pipeline.isEnabled());
+        assertFalse(pipeline.submit(new MessageRecord(0, "a", "b", "text", "x", 0, 1)));
+        pipeline.shutdown();
+    }
+
+    private static PersistencePipeline pipeline(MessageStore store) {
+        return pipeline(store, true);
+    }
+
+    private static PersistencePipeline pipeline(MessageStore store, boolean fsync) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("messageStore", store);
+        NativeWebSocketProperties properties = new NativeWebSocketProperties();
+        properties.getPersistence().setRingBufferSize(1 << 14);
+        properties.getPersistence().setFsync(fsync);
+        return new PersistencePipeline(properties, beans.getBeanProvider(MessageStore.class));
+    }
+
+    /**
+     * 每次 sync 耗时 1ms 的存储，模拟 fsync
+     */
+    private static final class SlowStore implements MessageStore {
+
+        private final Set<String> records = ConcurrentHashMap.newKeySet();
+        private final Set<String> syncThreads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void append(List<MessageRecord> batch) {
+            batch.forEach(record -> records.add(record.content().toString()));
+        }
+
+        @Override
+        public void sync() {
+            syncThreads.add(Thread.currentThread().getName());
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        @Override
+        public void scan(Consumer<MessageRecord> consumer) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
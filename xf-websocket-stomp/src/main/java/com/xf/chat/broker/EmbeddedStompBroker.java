@@ -0,0 +1,278 @@
+package com.xf.chat.broker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.BufferingStompDecoder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的 STOMP 1.2 代理（外部代理的替身）
+ * <p>
+ * 只实现 Broker Relay 需要的最小子集：CONNECT/STOMP、SUBSCRIBE、UNSUBSCRIBE、SEND、DISCONNECT、RECEIPT 和心跳。
+ * 目的地按完整名称精确匹配（与 RabbitMQ 的 STOMP 插件对 /topic、/queue 的用法一致），不做认证、不持久化。
+ * <p>
+ * 它让 relay 模式的整条链路（TCP 连接、系统连接、/user 目的地解析、心跳）不依赖外部中间件就能跑起来，
+ * 仅用于开发和测试，生产环境请使用真正的代理。
+ */
+@Slf4j
+public class EmbeddedStompBroker {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    private final int requestedPort;
+    private final StompEncoder encoder = new StompEncoder();
+
+    // Key: destination, Value: 订阅了该目的地的所有订阅
+    private final Map<String, Set<Subscription>> destinations = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicInteger connectionIds = new AtomicInteger();
+
+    private volatile ServerSocket serverSocket;
+
+    public EmbeddedStompBroker(int port) {
+        this.requestedPort = port;
+    }
+
+    /**
+     * 绑定端口并开始接受连接（只监听本机回环地址）
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+        serverSocket = socket;
+        Thread acceptor = new Thread(this::acceptLoop, "stomp-embedded-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Embedded STOMP broker listening on {}", socket.getLocalSocketAddress());
+    }
+
+    public synchronized void stop() {
+        ServerSocket socket = serverSocket;
+        serverSocket = null;
+        if (socket != null) {
+            closeQuietly(socket);
+        }
+        connections.forEach(Connection::close);
+        destinations.clear();
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        if (socket == null) {
+            throw new IllegalStateException("Embedded STOMP broker is not started");
+        }
+        return socket.getLocalPort();
+    }
+
+    /**
+     * 当前连接数（含 Relay 的系统连接）
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private void acceptLoop() {
+        ServerSocket server = serverSocket;
+        while (server != null && !server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread reader = new Thread(connection::readLoop, "stomp-embedded-" + connectionIds.incrementAndGet());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    log.warn("Embedded STOMP broker accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void publish(String destination, Message<byte[]> send) {
+        Set<Subscription> subscriptions = destinations.get(destination);
+        if (subscriptions == null || subscriptions.isEmpty()) {
+            return;
+        }
+        StompHeaderAccessor source = StompHeaderAccessor.wrap(send);
+        for (Subscription subscription : subscriptions) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            // 透传业务头（content-type 等），协议相关的头重新生成
+            Map<String, List<String>> nativeHeaders = source.toNativeHeaderMap();
+            nativeHeaders.forEach((name, values) -> {
+                if (!isReservedHeader(name)) {
+                    values.forEach(value -> accessor.addNativeHeader(name, value));
+                }
+            });
+            accessor.setNativeHeader(StompHeaderAccessor.STOMP_DESTINATION_HEADER, destination);
+            accessor.setNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, subscription.id());
+            accessor.setNativeHeader(StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER,
+                    String.valueOf(messageIds.incrementAndGet()));
+            subscription.connection().write(MessageBuilder.createMessage(send.getPayload(), accessor.getMessageHeaders()));
+        }
+    }
+
+    private static boolean isReservedHeader(String name) {
+        return switch (name) {
+            case "destination", "subscription", "message-id", "content-length", "receipt", "transaction" -> true;
+            default -> false;
+        };
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 一个订阅
+     */
+    private record Subscription(Connection connection, String id, String destination) {
+    }
+
+    /**
+     * 一条客户端连接，读在自己的线程上，写可能来自任何连接的线程，用锁串行化
+     */
+    private final class Connection {
+
+        private final Socket socket;
+        private final OutputStream out;
+        // Key: 订阅 ID
+        private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        void readLoop() {
+            BufferingStompDecoder decoder = new BufferingStompDecoder(new StompDecoder(), MAX_FRAME_SIZE);
+            byte[] buffer = new byte[8192];
+            try (InputStream in = socket.getInputStream()) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    for (Message<byte[]> frame : decoder.decode(ByteBuffer.wrap(buffer, 0, n))) {
+                        if (!handle(frame)) {
+                            return;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (!socket.isClosed()) {
+                    log.debug("Embedded STOMP connection error: {}", e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * @return false 表示连接应当结束
+         */
+        private boolean handle(Message<byte[]> frame) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(frame);
+            if (accessor.isHeartbeat() || accessor.getCommand() == null) {
+                return true;
+            }
+            switch (accessor.getCommand()) {
+                case CONNECT, STOMP -> {
+                    StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+                    connected.setNativeHeader("version", "1.2");
+                    // 本代理不主动发心跳；按客户端自己声明的间隔要它发心跳，让网关的心跳时间轮看到空闲连接仍然存活，
+                    // 本代理收到心跳直接忽略，也不检测超时
+                    long[] heartbeat = accessor.getHeartbeat();
+                    connected.setNativeHeader("heart-beat", "0," + heartbeat[0]);
+                    connected.setNativeHeader("server", "xf-embedded-stomp");
+                    write(MessageBuilder.createMessage(EMPTY, connected.getMessageHeaders()));
+                }
+                case SUBSCRIBE -> {
+                    Subscription subscription = new Subscription(this, accessor.getSubscriptionId(), accessor.getDestination());
+                    subscriptions.put(subscription.id(), subscription);
+                    destinations.computeIfAbsent(subscription.destination(), k -> ConcurrentHashMap.newKeySet())
+                            .add(subscription);
+                }
+                case UNSUBSCRIBE -> unsubscribe(subscriptions.remove(accessor.getSubscriptionId()));
+                case SEND -> publish(accessor.getDestination(), frame);
+                case DISCONNECT -> {
+                    receipt(accessor);
+                    return false;
+                }
+                default -> log.debug("Embedded STOMP broker ignores {}", accessor.getCommand());
+            }
+            receipt(accessor);
+            return true;
+        }
+
+        private void receipt(StompHeaderAccessor accessor) {
+            String receipt = accessor.getReceipt();
+            if (receipt != null) {
+                StompHeaderAccessor reply = StompHeaderAccessor.create(StompCommand.RECEIPT);
+                reply.setNativeHeader("receipt-id", receipt);
+                write(MessageBuilder.createMessage(EMPTY, reply.getMessageHeaders()));
+            }
+        }
+
+        private void unsubscribe(Subscription subscription) {
+            if (subscription == null) {
+                return;
+            }
+            destinations.computeIfPresent(subscription.destination(), (key, set) -> {
+                set.remove(subscription);
+                return set.isEmpty() ? null : set;
+            });
+        }
+
+        void write(Message<byte[]> message) {
+            byte[] bytes = encoder.encode(message);
+            synchronized (this) {
+                try {
+                    out.write(bytes);
+                    out.flush();
+                } catch (IOException e) {
+                    log.debug("Embedded STOMP write failed: {}", e.getMessage());
+                    close();
+                }
+            }
+        }
+
+        void close() {
+            if (connections.remove(this)) {
+                subscriptions.values().forEach(this::unsubscribe);
+                subscriptions.clear();
+                closeQuietly(socket);
+            }
+        }
+    }
+}
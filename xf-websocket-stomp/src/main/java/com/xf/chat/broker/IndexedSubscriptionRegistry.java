@@ -0,0 +1,349 @@
+package com.xf.chat.broker;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 面向大量房间的订阅表，替换 SimpleBroker 默认的 DefaultSubscriptionRegistry
+ * <p>
+ * 默认实现只缓存最近 1024 个目的地的查询结果，房间一多缓存不断失效，每次 convertAndSend 都要遍历全部订阅做匹配。这里改为：
+ * 1. 精确目的地（/topic/public、/queue/private-userxxx）直接按目的地哈希索引，查询 O(1)；
+ * 2. 带通配符的订阅（/topic/room/*、/topic/**）单独放进按 "/" 分段的前缀树，没有通配符订阅时完全不走这条路径；
+ * 3. 每个目的地的查询结果是一个不可变快照：订阅/退订只修改并发 Map 并递增版本号，
+ * 查询发现版本变化才重建快照，订阅变动不会阻塞查询，查询也不会拿到中间状态；
+ * 4. 通配符订阅的增删在同一把锁内完成，退订后没有订阅的前缀树节点和模式随即摘除，按房间号订阅的模式不会越积越多。
+ * <p>
+ * 与默认实现的差异：不支持 SUBSCRIBE 帧上的 selector 表达式过滤。
+ */
+public class IndexedSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final MultiValueMap<String, String> EMPTY = CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>());
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    // Key: 精确目的地
+    private final Map<String, Subscribers> exact = new ConcurrentHashMap<>();
+    // 通配符订阅的前缀树根节点
+    private final TrieNode wildcardRoot = new TrieNode();
+    // 无法按整段匹配的模式（如 /topic/room-*），数量通常很少，逐个用 AntPathMatcher 匹配
+    private final List<PatternSubscribers> complexPatterns = new CopyOnWriteArrayList<>();
+    private final AtomicInteger wildcardCount = new AtomicInteger();
+    // 通配符订阅的增删（含建节点和摘除空节点）都在这把锁内，查询不加锁
+    private final Object patternLock = new Object();
+
+    // Key: sessionId, Value: (subscriptionId -> destination)，用于退订和会话断开时清理；内层 Map 只在会话桶锁内读写
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final LongAdder subscriptionCount = new LongAdder();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+        // 在会话桶锁内登记，避免与退订后"删空会话"交错导致订阅登记到已摘除的 Map 上
+        boolean[] added = new boolean[1];
+        sessions.compute(sessionId, (key, current) -> {
+            Map<String, String> sessionSubscriptions = current != null ? current : new HashMap<>(4);
+            added[0] = sessionSubscriptions.putIfAbsent(subscriptionId, destination) == null;
+            return sessionSubscriptions;
+        });
+        if (!added[0]) {
+            return;
+        }
+        subscriptionCount.increment();
+        if (isPattern(destination)) {
+            wildcardCount.incrementAndGet();
+            addPattern(sessionId, subscriptionId, destination);
+        } else {
+            // 增删都在该目的地的桶锁内完成，与"删空即摘除"互斥；查询只做 get，不受影响
+            exact.compute(destination, (key, subscribers) -> {
+                Subscribers target = subscribers != null ? subscribers : new Subscribers();
+                target.add(sessionId, subscriptionId);
+                return target;
+            });
+        }
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        String[] removed = new String[1];
+        sessions.computeIfPresent(sessionId, (key, current) -> {
+            removed[0] = current.remove(subscriptionId);
+            return current.isEmpty() ? null : current;
+        });
+        if (removed[0] != null) {
+            remove(sessionId, subscriptionId, removed[0]);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> sessionSubscriptions = sessions.remove(sessionId);
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.forEach((subscriptionId, destination) -> remove(sessionId, subscriptionId, destination));
+        }
+    }
+
+    private void remove(String sessionId, String subscriptionId, String destination) {
+        subscriptionCount.decrement();
+        if (isPattern(destination)) {
+            wildcardCount.decrementAndGet();
+            removePattern(sessionId, subscriptionId, destination);
+        } else {
+            exact.computeIfPresent(destination, (key, subscribers) -> {
+                subscribers.remove(sessionId, subscriptionId);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        Subscribers subscribers = exact.get(destination);
+        MultiValueMap<String, String> exactResult = subscribers != null ? subscribers.snapshot() : EMPTY;
+        if (wildcardCount.get() == 0) {
+            return exactResult;
+        }
+
+        List<Subscribers> matched = new ArrayList<>();
+        collect(wildcardRoot, destination.split("/", -1), 0, matched);
+        for (PatternSubscribers candidate : complexPatterns) {
+            if (pathMatcher.match(candidate.pattern(), destination)) {
+                matched.add(candidate.subscribers());
+            }
+        }
+        if (matched.isEmpty()) {
+            return exactResult;
+        }
+        // 快照里的列表不可变，合并结果需要自己的列表
+        LinkedMultiValueMap<String, String> merged = new LinkedMultiValueMap<>();
+        exactResult.forEach((sessionId, ids) -> merged.put(sessionId, new ArrayList<>(ids)));
+        for (Subscribers s : matched) {
+            s.snapshot().forEach((sessionId, ids) -> merged.computeIfAbsent(sessionId, k -> new ArrayList<>()).addAll(ids));
+        }
+        return merged;
+    }
+
+    /**
+     * 当前订阅总数
+     */
+    public long getSubscriptionCount() {
+        return subscriptionCount.sum();
+    }
+
+    // ----------------- 通配符前缀树 -----------------
+
+    private void addPattern(String sessionId, String subscriptionId, String pattern) {
+        String[] segments = pattern.split("/", -1);
+        synchronized (patternLock) {
+            if (!isTriePattern(segments)) {
+                PatternSubscribers entry = complexPattern(pattern);
+                if (entry == null) {
+                    entry = new PatternSubscribers(pattern, new Subscribers());
+                    complexPatterns.add(entry);
+                }
+                entry.subscribers().add(sessionId, subscriptionId);
+                return;
+            }
+            TrieNode node = wildcardRoot;
+            for (String segment : segments) {
+                node = node.children.computeIfAbsent(trieKey(segment), k -> new TrieNode());
+            }
+            node.subscribers.add(sessionId, subscriptionId);
+        }
+    }
+
+    /**
+     * 退订后自底向上摘掉既没有订阅也没有子节点的前缀树节点，模式没有订阅时从列表中移除
+     * <p>
+     * 与 addPattern 同一把锁，不会把刚建好、还没登记订阅的节点摘掉；并发的查询最多多走一个空节点。
+     */
+    private void removePattern(String sessionId, String subscriptionId, String pattern) {
+        String[] segments = pattern.split("/", -1);
+        synchronized (patternLock) {
+            if (!isTriePattern(segments)) {
+                PatternSubscribers entry = complexPattern(pattern);
+                if (entry != null) {
+                    entry.subscribers().remove(sessionId, subscriptionId);
+                    if (entry.subscribers().isEmpty()) {
+                        complexPatterns.remove(entry);
+                    }
+                }
+                return;
+            }
+            TrieNode[] path = new TrieNode[segments.length + 1];
+            path[0] = wildcardRoot;
+            for (int i = 0; i < segments.length; i++) {
+                path[i + 1] = path[i].children.get(trieKey(segments[i]));
+                if (path[i + 1] == null) {
+                    return;
+                }
+            }
+            path[segments.length].subscribers.remove(sessionId, subscriptionId);
+            for (int i = segments.length; i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].children.remove(trieKey(segments[i - 1]));
+            }
+        }
+    }
+
+    private PatternSubscribers complexPattern(String pattern) {
+        for (PatternSubscribers candidate : complexPatterns) {
+            if (candidate.pattern().equals(pattern)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 前缀树节点数（不含根节点）和逐个匹配的模式数，用于确认退订后没有残留
+     */
+    int getPatternEntryCount() {
+        return countNodes(wildcardRoot) + complexPatterns.size();
+    }
+
+    private static int countNodes(TrieNode node) {
+        int count = 0;
+        for (TrieNode child : node.children.values()) {
+            count += 1 + countNodes(child);
+        }
+        return count;
+    }
+
+    private static String trieKey(String segment) {
+        return isVariable(segment) ? "*" : segment;
+    }
+
+    /**
+     * 沿前缀树匹配：字面量、单段通配 *、多段通配 **
+     */
+    private static void collect(TrieNode node, String[] segments, int index, List<Subscribers> matched) {
+        TrieNode any = node.children.get("**");
+        if (any != null) {
+            // ** 可以吞掉剩余的 0..n 段
+            for (int i = index; i <= segments.length; i++) {
+                collect(any, segments, i, matched);
+            }
+        }
+        if (index == segments.length) {
+            // 多个 ** 可能从不同路径走到同一节点，只算一次
+            if (!node.subscribers.isEmpty() && !matched.contains(node.subscribers)) {
+                matched.add(node.subscribers);
+            }
+            return;
+        }
+        TrieNode literal = node.children.get(segments[index]);
+        if (literal != null) {
+            collect(literal, segments, index + 1, matched);
+        }
+        TrieNode single = node.children.get("*");
+        if (single != null) {
+            collect(single, segments, index + 1, matched);
+        }
+    }
+
+    private boolean isPattern(String destination) {
+        return pathMatcher.isPattern(destination);
+    }
+
+    /**
+     * 每一段要么是字面量，要么是完整的 * / ** / {var}，才能放进前缀树
+     */
+    private static boolean isTriePattern(String[] segments) {
+        for (String segment : segments) {
+            boolean wildcard = segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+            if (wildcard && !segment.equals("*") && !segment.equals("**") && !isVariable(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}'
+                && segment.indexOf('}') == segment.length() - 1;
+    }
+
+    private static final class TrieNode {
+        private final Map<String, TrieNode> children = new ConcurrentHashMap<>();
+        private final Subscribers subscribers = new Subscribers();
+
+        boolean isEmpty() {
+            return subscribers.isEmpty() && children.isEmpty();
+        }
+    }
+
+    private record PatternSubscribers(String pattern, Subscribers subscribers) {
+    }
+
+    /**
+     * 一个目的地（或一个模式）下的全部订阅
+     * <p>
+     * 写入只改并发 Map 并递增版本号；读取时版本号没变就直接返回上次的快照，零分配。
+     */
+    private static final class Subscribers {
+
+        // Key: sessionId, Value: 该会话在这个目的地上的订阅 ID（通常只有一个）
+        private static final AtomicLongFieldUpdater<Subscribers> VERSION =
+                AtomicLongFieldUpdater.newUpdater(Subscribers.class, "version");
+
+        private final Map<String, List<String>> bySession = new ConcurrentHashMap<>();
+        private volatile long version;
+        private volatile Snapshot snapshot;
+
+        void add(String sessionId, String subscriptionId) {
+            bySession.merge(sessionId, List.of(subscriptionId), (current, added) -> {
+                List<String> next = new ArrayList<>(current.size() + 1);
+                next.addAll(current);
+                next.add(subscriptionId);
+                return List.copyOf(next);
+            });
+            VERSION.incrementAndGet(this);
+        }
+
+        void remove(String sessionId, String subscriptionId) {
+            bySession.computeIfPresent(sessionId, (key, current) -> {
+                if (current.size() == 1) {
+                    return current.get(0).equals(subscriptionId) ? null : current;
+                }
+                List<String> next = new ArrayList<>(current);
+                next.remove(subscriptionId);
+                return List.copyOf(next);
+            });
+            VERSION.incrementAndGet(this);
+        }
+
+        boolean isEmpty() {
+            return bySession.isEmpty();
+        }
+
+        MultiValueMap<String, String> snapshot() {
+            long current = version;
+            Snapshot cached = snapshot;
+            if (cached != null && cached.version == current) {
+                return cached.subscriptions;
+            }
+            // 在读到 current 之后构建，结果至少和 current 一样新；期间若有新变更，下次查询会再次重建
+            LinkedMultiValueMap<String, String> built = new LinkedMultiValueMap<>(bySession.size());
+            bySession.forEach((sessionId, ids) -> built.put(sessionId, ids));
+            MultiValueMap<String, String> result = CollectionUtils.unmodifiableMultiValueMap(built);
+            snapshot = new Snapshot(current, result);
+            return result;
+        }
+    }
+
+    private record Snapshot(long version, MultiValueMap<String, String> subscriptions) {
+    }
+}
@@ -0,0 +1,265 @@
+package com.xf.chat.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.xf.chat.model.ChatMessage;
+import com.xf.chat.model.MessageType;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * ChatMessage 的紧凑二进制格式
+ * <p>
+ * JSON 每一帧都要重复 "type" / "content" / "sender" / "receiver" 这些字段名和 "CHAT" 这样的枚举名，
+ * 短消息的大部分字节都花在这上面。二进制格式按固定顺序排列字段，不带字段名：
+ * <pre>
+ * version(1) | type(1) | sender | receiver | content
+ * type:  MessageType 序号 + 1，0 表示 null
+ * 字段:  varint(UTF-8 字节数 + 1) + UTF-8 字节，长度为 0 表示 null
+ * </pre>
+ * 编码前就能算出总长度，直接写进一个正好大小的数组（Spring 要求每帧持有自己的 byte[]，池化的缓冲区最后还得再拷贝一次）。
+ * <p>
+ * 内容类型必须是 application/octet-stream（带 codec 参数区分），Spring 只对这个类型用 WebSocket 二进制帧发送，
+ * 其他类型会按文本帧发送，非 UTF-8 的字节会被破坏。
+ */
+public final class ChatBinaryCodec {
+
+    public static final String CODEC = "xf-chat";
+    public static final MimeType MIME_TYPE = new MimeType("application", "octet-stream", Map.of("codec", CODEC));
+
+    private static final int VERSION = 1;
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int SENDER = 0;
+    private static final int RECEIVER = 1;
+    private static final int CONTENT = 2;
+
+    private ChatBinaryCodec() {
+    }
+
+    /**
+     * 是否是本格式的内容类型（application/octet-stream;codec=xf-chat）
+     */
+    public static boolean isBinary(MimeType mimeType) {
+        return mimeType != null && MimeTypeUtils.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(mimeType)
+                && CODEC.equals(mimeType.getParameter("codec"));
+    }
+
+    public static byte[] encode(ChatMessage message) {
+        byte[][] fields = {utf8(message.getSender()), utf8(message.getReceiver()), utf8(message.getContent())};
+        MessageType type = message.getType();
+        return assemble(type == null ? 0 : type.ordinal() + 1, fields, null, null);
+    }
+
+    /**
+     * @throws IllegalArgumentException 数据不完整或版本不认识
+     */
+    public static ChatMessage decode(byte[] data) {
+        if (data.length < 2 || data[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported chat frame");
+        }
+        int typeIndex = data[1] & 0xff;
+        if (typeIndex > TYPES.length) {
+            throw new IllegalArgumentException("Unknown message type: " + typeIndex);
+        }
+        Reader reader = new Reader(data, 2);
+        ChatMessage message = new ChatMessage();
+        message.setType(typeIndex == 0 ? null : TYPES[typeIndex - 1]);
+        message.setSender(reader.string());
+        message.setReceiver(reader.string());
+        message.setContent(reader.string());
+        if (reader.position != data.length) {
+            throw new IllegalArgumentException("Trailing bytes in chat frame");
+        }
+        return message;
+    }
+
+    /**
+     * 把 ChatMessage 的 JSON 直接转成二进制格式，不经过 ChatMessage 对象
+     * <p>
+     * 没有转义字符的字符串值（绝大多数情况）在 JSON 里的字节就是它的 UTF-8 编码，直接从原报文拷贝，不解码成 String。
+     *
+     * @return 不是 ChatMessage 的 JSON（有未知字段、类型不对等）时返回 null，调用方应原样发送
+     */
+    public static byte[] transcodeJson(byte[] json) throws IOException {
+        byte[][] fields = new byte[3][];
+        int[] offsets = new int[3];
+        int[] lengths = {-1, -1, -1};
+        int type = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                int index = switch (field) {
+                    case "sender" -> SENDER;
+                    case "receiver" -> RECEIVER;
+                    case "content" -> CONTENT;
+                    case "type" -> -1;
+                    default -> -2;
+                };
+                if (index == -2) {
+                    return null;
+                }
+                if (token == JsonToken.VALUE_NULL) {
+                    if (index == -1) {
+                        type = 0;
+                    } else {
+                        fields[index] = null;
+                        lengths[index] = -1;
+                    }
+                    continue;
+                }
+                if (token != JsonToken.VALUE_STRING) {
+                    return null;
+                }
+                if (index == -1) {
+                    type = typeIndex(parser.getText());
+                    if (type < 0) {
+                        return null;
+                    }
+                    continue;
+                }
+                // 字符串此时尚未被 Jackson 解码，token 起点就是开引号
+                int start = (int) parser.currentTokenLocation().getByteOffset() + 1;
+                int end = rawStringEnd(json, start);
+                if (end >= 0) {
+                    fields[index] = json;
+                    offsets[index] = start;
+                    lengths[index] = end - start;
+                } else {
+                    // 带转义字符的值才需要解码
+                    fields[index] = parser.getText().getBytes(StandardCharsets.UTF_8);
+                    offsets[index] = 0;
+                    lengths[index] = fields[index].length;
+                }
+            }
+        }
+        return assemble(type, fields, offsets, lengths);
+    }
+
+    /**
+     * @return 没有转义字符时返回结束引号的位置，否则返回 -1
+     */
+    private static int rawStringEnd(byte[] json, int from) {
+        for (int i = from; i < json.length; i++) {
+            byte b = json[i];
+            if (b == '"') {
+                return i;
+            }
+            if (b == '\\') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int typeIndex(String name) {
+        for (MessageType type : TYPES) {
+            if (type.name().equals(name)) {
+                return type.ordinal() + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param offsets 为 null 时每个字段就是整个数组
+     */
+    private static byte[] assemble(int type, byte[][] fields, int[] offsets, int[] lengths) {
+        int total = 2;
+        for (int i = 0; i < fields.length; i++) {
+            int length = length(fields, lengths, i);
+            total += varintSize(length + 1) + Math.max(length, 0);
+        }
+        byte[] out = new byte[total];
+        out[0] = VERSION;
+        out[1] = (byte) type;
+        int position = 2;
+        for (int i = 0; i < fields.length; i++) {
+            int length = length(fields, lengths, i);
+            position = writeVarint(out, position, length + 1);
+            if (length > 0) {
+                System.arraycopy(fields[i], offsets == null ? 0 : offsets[i], out, position, length);
+                position += length;
+            }
+        }
+        return out;
+    }
+
+    private static int length(byte[][] fields, int[] lengths, int i) {
+        if (fields[i] == null) {
+            return -1;
+        }
+        return lengths == null ? fields[i].length : lengths[i];
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private String string() {
+            int encoded = varint();
+            if (encoded == 0) {
+                return null;
+            }
+            int length = encoded - 1;
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalArgumentException("Truncated chat frame");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("Truncated chat frame");
+                }
+                byte b = data[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed length in chat frame");
+        }
+    }
+}
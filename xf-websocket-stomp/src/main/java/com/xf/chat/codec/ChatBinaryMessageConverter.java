@@ -0,0 +1,50 @@
+package com.xf.chat.codec;
+
+import com.xf.chat.model.ChatMessage;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+
+/**
+ * ChatMessage 的二进制 MessageConverter
+ * <p>
+ * 只在消息头明确带着 {@link ChatBinaryCodec#MIME_TYPE} 时才生效（严格匹配），没有 content-type 的消息仍走 JSON，
+ * 所以 JSON 依旧是默认格式：客户端 SEND 帧带这个 content-type 时 @Payload ChatMessage 按二进制解码。
+ */
+public class ChatBinaryMessageConverter extends AbstractMessageConverter {
+
+    public ChatBinaryMessageConverter() {
+        super(ChatBinaryCodec.MIME_TYPE);
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return ChatMessage.class == clazz;
+    }
+
+    @Override
+    protected boolean supportsMimeType(MessageHeaders headers) {
+        // 父类只比较 type/subtype，普通的 application/octet-stream 不能当成本格式
+        return ChatBinaryCodec.isBinary(getMimeType(headers));
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, @NonNull Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+        try {
+            return ChatBinaryCodec.decode(payload);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException(message, "Malformed binary chat message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(@NonNull Object payload, MessageHeaders headers, Object conversionHint) {
+        return ChatBinaryCodec.encode((ChatMessage) payload);
+    }
+}
@@ -0,0 +1,182 @@
+package com.xf.chat.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按连接协商下行消息的编码格式
+ * <p>
+ * 客户端在 CONNECT 帧里带 content-type: application/octet-stream;codec=xf-chat 表示希望收到二进制格式，不带则仍是 JSON。
+ * 广播和私聊在源头仍按 JSON 序列化一次（发送时不知道有哪些订阅者），发往二进制连接的 MESSAGE 帧在出站通道上转码：
+ * SimpleBroker 给所有订阅者的帧共用同一个 payload 数组、并在同一个线程上依次发出，
+ * 每个线程记住最近一次转码的结果，一条广播只转码一次；relay 模式下每个帧来自代理、payload 各不相同，按帧转码。
+ */
+@Component
+@Slf4j
+public class PayloadFormatNegotiator {
+
+    // 选择了二进制格式的会话
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<LastTranscode> lastTranscode = ThreadLocal.withInitial(LastTranscode::new);
+
+    private final ChannelInterceptor inboundInterceptor = new InboundInterceptor();
+    private final ChannelInterceptor outboundInterceptor = new OutboundInterceptor();
+
+    private final LongAdder transcodedCount = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * 入站通道拦截器：CONNECT 时记录连接选择的格式，DISCONNECT 时移除
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return inboundInterceptor;
+    }
+
+    /**
+     * 出站通道拦截器：发往二进制连接的 ChatMessage JSON 转成二进制
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return outboundInterceptor;
+    }
+
+    public boolean isBinary(String sessionId) {
+        return binarySessions.contains(sessionId);
+    }
+
+    public int getBinarySessionCount() {
+        return binarySessions.size();
+    }
+
+    public long getTranscodedCount() {
+        return transcodedCount.sum();
+    }
+
+    /**
+     * 发往二进制连接的帧比 JSON 少发的字节数
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    private static MimeType contentType(MessageHeaders headers) {
+        Object value = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (value instanceof MimeType mimeType) {
+            return mimeType;
+        }
+        if (value instanceof String text) {
+            try {
+                return MimeTypeUtils.parseMimeType(text);
+            } catch (InvalidMimeTypeException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private final class InboundInterceptor implements ChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+            StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+            if (accessor == null || accessor.getCommand() == null) {
+                return message;
+            }
+            switch (accessor.getCommand()) {
+                case CONNECT, STOMP -> {
+                    String requested = accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER);
+                    if (requested != null && isBinaryType(requested)) {
+                        binarySessions.add(accessor.getSessionId());
+                    }
+                }
+                case DISCONNECT -> binarySessions.remove(accessor.getSessionId());
+                default -> {
+                }
+            }
+            return message;
+        }
+
+        private boolean isBinaryType(String requested) {
+            try {
+                return ChatBinaryCodec.isBinary(MimeTypeUtils.parseMimeType(requested));
+            } catch (InvalidMimeTypeException e) {
+                return false;
+            }
+        }
+    }
+
+    private final class OutboundInterceptor implements ChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+            if (binarySessions.isEmpty()) {
+                return message;
+            }
+            MessageHeaders headers = message.getHeaders();
+            if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                    || !binarySessions.contains(SimpMessageHeaderAccessor.getSessionId(headers))
+                    || !(message.getPayload() instanceof byte[] json)) {
+                return message;
+            }
+            MimeType contentType = contentType(headers);
+            if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+                return message;
+            }
+            byte[] binary = transcode(json);
+            if (binary == null) {
+                return message;
+            }
+            savedBytes.add(json.length - binary.length);
+            MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+            // StompHeaderAccessor 会同时改写原生的 content-type 头，content-length 由编码器按新 payload 计算
+            accessor.setContentType(ChatBinaryCodec.MIME_TYPE);
+            return MessageBuilder.createMessage(binary, accessor.getMessageHeaders());
+        }
+
+        private byte[] transcode(byte[] json) {
+            LastTranscode last = lastTranscode.get();
+            if (last.source == json) {
+                return last.result;
+            }
+            byte[] result;
+            try {
+                result = ChatBinaryCodec.transcodeJson(json);
+            } catch (IOException e) {
+                log.debug("Outbound payload is not a chat message: {}", e.getMessage());
+                result = null;
+            }
+            last.source = json;
+            last.result = result;
+            if (result != null) {
+                transcodedCount.increment();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 线程最近一次转码的输入和结果（按数组身份比较）
+     */
+    private static final class LastTranscode {
+
+        private byte[] source;
+        private byte[] result;
+    }
+}
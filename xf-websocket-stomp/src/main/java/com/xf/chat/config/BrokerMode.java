@@ -0,0 +1,14 @@
+package com.xf.chat.config;
+
+/**
+ * 消息代理模式
+ * <p>
+ * SIMPLE: Spring 内置的 SimpleBroker，订阅表在本机内存中，只能单节点
+ * RELAY: 转发到外部 STOMP 代理（RabbitMQ / ActiveMQ 等），订阅和投递由代理完成，可多节点
+ * EMBEDDED: 与 RELAY 走同一条转发链路，但目标是进程内启动的 {@link com.xf.chat.broker.EmbeddedStompBroker}，用于本地开发和测试
+ */
+public enum BrokerMode {
+    SIMPLE,
+    RELAY,
+    EMBEDDED
+}
@@ -0,0 +1,12 @@
+package com.xf.chat.config;
+
+/**
+ * 通道执行器模式
+ * <p>
+ * POOL: 有界线程池，队列满后扩容，再满则由提交消息的线程自己执行（反压）
+ * VIRTUAL: 每条消息一个虚拟线程（Java 21+），阻塞的写出不再占住平台线程；低版本运行时自动退回 POOL
+ */
+public enum ChannelExecutorMode {
+    POOL,
+    VIRTUAL
+}
@@ -0,0 +1,66 @@
+package com.xf.chat.config;
+
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * SEND 帧限流拦截器
+ * <p>
+ * 排在 {@link WebSocketAuthInterceptor} 之后，只检查 SEND 帧（CONNECT / SUBSCRIBE / 心跳不计入额度）。
+ * 超限的帧在这里返回 null 直接丢弃，不会进入线程池和 Controller；
+ * 需要断开时向 clientOutboundChannel 发一个 ERROR 帧，StompSubProtocolHandler 写出 ERROR 后会关闭连接。
+ */
+@Component
+@Slf4j
+public class RateLimitInterceptor implements ChannelInterceptor {
+
+    private final RateLimiter rateLimiter;
+    // 出站通道由 WebSocketConfig 所在的配置类创建，而本类又被 WebSocketConfig 引用，只能延迟获取
+    private final ObjectProvider<MessageChannel> clientOutboundChannel;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter,
+                                @Qualifier("clientOutboundChannel") ObjectProvider<MessageChannel> clientOutboundChannel) {
+        this.rateLimiter = rateLimiter;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+        Principal user = accessor.getUser();
+        int length = message.getPayload() instanceof byte[] bytes ? bytes.length : 0;
+        RateLimiter.Decision decision = rateLimiter.acquire(accessor.getSessionAttributes(),
+                user != null ? user.getName() : null, length);
+        if (decision == RateLimiter.Decision.ALLOW) {
+            return message;
+        }
+        if (decision == RateLimiter.Decision.CLOSE) {
+            log.warn("Closing flooding session {} of {}", accessor.getSessionId(), user != null ? user.getName() : null);
+            closeSession(accessor.getSessionId());
+        }
+        return null;
+    }
+
+    private void closeSession(String sessionId) {
+        StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+        error.setMessage("Rate limit exceeded");
+        error.setSessionId(sessionId);
+        clientOutboundChannel.getObject().send(MessageBuilder.createMessage(new byte[0], error.getMessageHeaders()));
+    }
+}
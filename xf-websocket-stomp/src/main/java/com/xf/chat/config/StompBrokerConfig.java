@@ -0,0 +1,52 @@
+package com.xf.chat.config;
+
+import com.xf.chat.broker.EmbeddedStompBroker;
+import com.xf.chat.broker.IndexedSubscriptionRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+
+import java.io.IOException;
+
+/**
+ * 消息代理相关的 Bean
+ * <p>
+ * embedded 模式下在这里启动进程内 STOMP 代理。Bean 创建时就绑定端口，
+ * 保证 {@link WebSocketConfig} 配置 Relay 时已经能拿到实际端口（支持随机端口）。
+ */
+@Configuration
+@EnableConfigurationProperties({StompBrokerProperties.class, StompChannelProperties.class, StompInboxProperties.class,
+        StompCompressionProperties.class, StompPresenceProperties.class})
+public class StompBrokerConfig {
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "xf.websocket.stomp.broker", name = "mode", havingValue = "embedded")
+    public EmbeddedStompBroker embeddedStompBroker(StompBrokerProperties properties) throws IOException {
+        EmbeddedStompBroker broker = new EmbeddedStompBroker(properties.getEmbedded().getPort());
+        broker.start();
+        return broker;
+    }
+
+    /**
+     * 给 SimpleBroker 换上按目的地索引的订阅表
+     * <p>
+     * SimpleBrokerRegistration 没有暴露订阅表的设置入口，只能在处理器初始化前替换。
+     * relay / embedded 模式下不存在 SimpleBrokerMessageHandler，这里什么也不做。
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "xf.websocket.stomp.broker.simple", name = "indexed-registry", matchIfMissing = true)
+    public static BeanPostProcessor indexedSubscriptionRegistryPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler handler) {
+                    handler.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+                }
+                return bean;
+            }
+        };
+    }
+}
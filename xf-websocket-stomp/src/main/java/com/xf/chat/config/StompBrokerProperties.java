@@ -0,0 +1,128 @@
+package com.xf.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * STOMP 消息代理配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.stomp.broker.* 配置项。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.stomp.broker")
+public class StompBrokerProperties {
+
+    /**
+     * 代理模式，默认使用内置 SimpleBroker
+     */
+    private BrokerMode mode = BrokerMode.SIMPLE;
+
+    /**
+     * 内置代理配置（simple 模式）
+     */
+    private final Simple simple = new Simple();
+
+    /**
+     * 外部代理转发配置（relay 模式）
+     */
+    private final Relay relay = new Relay();
+
+    /**
+     * 进程内代理配置（embedded 模式）
+     */
+    private final Embedded embedded = new Embedded();
+
+    @Data
+    public static class Simple {
+
+        /**
+         * 使用按目的地索引的订阅表 {@link com.xf.chat.broker.IndexedSubscriptionRegistry}，
+         * 关闭后退回 Spring 默认的 DefaultSubscriptionRegistry（需要 selector 过滤时关闭）
+         */
+        private boolean indexedRegistry = true;
+
+        /**
+         * 与客户端协商的心跳间隔（双向），0 表示不发也不要求心跳；
+         * 客户端按它发心跳，空闲连接才不会被心跳时间轮（xf.websocket.core.heartbeat）当作僵尸连接关闭
+         */
+        private Duration heartbeat = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Relay {
+
+        private String host = "localhost";
+
+        private int port = 61613;
+
+        /**
+         * 为每个客户端会话建立 CONNECT 时使用的账号
+         */
+        private String clientLogin = "guest";
+
+        private String clientPasscode = "guest";
+
+        /**
+         * 共享“系统连接”的账号，服务端主动推送的消息走这条连接
+         */
+        private String systemLogin = "guest";
+
+        private String systemPasscode = "guest";
+
+        /**
+         * 代理上的虚拟主机，RabbitMQ 等需要时配置
+         */
+        private String virtualHost;
+
+        /**
+         * 系统连接向代理发送心跳的间隔，0 表示不发送
+         */
+        private Duration systemHeartbeatSendInterval = Duration.ofSeconds(10);
+
+        /**
+         * 期望代理发来心跳的间隔，超过约 3 倍未收到即认为连接已断开并重连，0 表示不检测
+         */
+        private Duration systemHeartbeatReceiveInterval = Duration.ofSeconds(10);
+
+        /**
+         * 到代理的最大 TCP 连接数（每个 WebSocket 会话占一条，外加一条系统连接）
+         */
+        private int maxConnections = 1000;
+
+        /**
+         * 连接数已满时，新连接最多排队等待的时长
+         */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        /**
+         * 连接池中空闲连接的最长保留时间
+         */
+        private Duration maxIdleTime = Duration.ofMinutes(5);
+
+        /**
+         * 处理代理连接 IO 的线程数，0 表示 CPU 核数
+         */
+        private int ioThreads = 0;
+
+        /**
+         * 多节点时，本节点找不到目标用户会话的 /user 消息广播到这个目的地，由其他节点处理
+         */
+        private String userDestinationBroadcast = "/topic/unresolved-user-destination";
+
+        /**
+         * 多节点时，各节点定期在这个目的地上广播本地在线用户表
+         */
+        private String userRegistryBroadcast = "/topic/simp-user-registry";
+    }
+
+    @Data
+    public static class Embedded {
+
+        /**
+         * 监听端口，0 表示随机端口
+         */
+        private int port = 0;
+    }
+}
@@ -0,0 +1,184 @@
+package com.xf.chat.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * STOMP 客户端入站 / 出站通道的执行器
+ * <p>
+ * Spring 默认给两个通道各配一个 CPU * 2 线程、无界队列的线程池：私聊扇出高峰时出站消息在队列里越排越长，
+ * 排在慢连接后面的消息全部被拖住（队头阻塞），而线程数永远不会增加。这里改为按配置创建：
+ * 1. pool：有界队列，队列满后扩到 maxPoolSize，再满则由提交方线程执行，形成反压而不是无限堆积；
+ * 2. virtual：每条消息一个虚拟线程，阻塞在慢连接上的写出不占平台线程（需要 Java 21+）。
+ * <p>
+ * 同时把两个通道的排队数、活跃线程数、线程数注册为 Micrometer Gauge（xf.stomp.channel.*，按 channel 标签区分）。
+ * 执行器交给 {@link WebSocketConfig} 注册到通道后，由 Spring 作为 clientInboundChannelExecutor /
+ * clientOutboundChannelExecutor Bean 管理初始化和关闭。
+ */
+@Component
+@Slf4j
+public class StompChannelExecutors implements MeterBinder {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private final ChannelExecutor inbound;
+    private final ChannelExecutor outbound;
+
+    public StompChannelExecutors(StompChannelProperties properties) {
+        this.inbound = create("clientInboundChannel-", properties.getInbound());
+        this.outbound = create("clientOutboundChannel-", properties.getOutbound());
+    }
+
+    public TaskExecutor inbound() {
+        return inbound.executor();
+    }
+
+    public TaskExecutor outbound() {
+        return outbound.executor();
+    }
+
+    /**
+     * 出站通道当前排队的消息数，后台批量推送（如离线消息回放）据此让路
+     */
+    public int outboundQueueSize() {
+        return outbound.queueSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "inbound", inbound);
+        bind(registry, "outbound", outbound);
+    }
+
+    private static void bind(MeterRegistry registry, String channel, ChannelExecutor executor) {
+        Gauge.builder("xf.stomp.channel.queue.size", executor, ChannelExecutor::queueSize)
+                .tag("channel", channel)
+                .description("等待执行的消息数")
+                .register(registry);
+        Gauge.builder("xf.stomp.channel.active", executor, ChannelExecutor::activeCount)
+                .tag("channel", channel)
+                .description("正在处理消息的线程数")
+                .register(registry);
+        Gauge.builder("xf.stomp.channel.pool.size", executor, ChannelExecutor::poolSize)
+                .tag("channel", channel)
+                .description("线程池当前线程数（virtual 模式下为 0）")
+                .register(registry);
+    }
+
+    private static ChannelExecutor create(String threadNamePrefix, StompChannelProperties.ExecutorSettings settings) {
+        if (settings.getMode() == ChannelExecutorMode.VIRTUAL) {
+            if (Runtime.version().feature() >= 21) {
+                log.info("{} uses virtual threads", threadNamePrefix);
+                return new VirtualChannelExecutor(new VirtualThreadTaskExecutor(threadNamePrefix));
+            }
+            log.warn("{} requested virtual threads, but Java {} does not support them, falling back to pool",
+                    threadNamePrefix, Runtime.version().feature());
+        }
+        int core = settings.getCorePoolSize() > 0 ? settings.getCorePoolSize() : CPUS * 2;
+        int max = Math.max(core, settings.getMaxPoolSize() > 0 ? settings.getMaxPoolSize() : CPUS * 8);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(core);
+        executor.setMaxPoolSize(max);
+        executor.setQueueCapacity(settings.getQueueCapacity());
+        executor.setKeepAliveSeconds((int) settings.getKeepAlive().toSeconds());
+        // 队列和线程都满时由提交方执行：入站会拖慢读取该连接的线程，出站会拖慢发布者，而不是丢消息
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return new PooledChannelExecutor(executor);
+    }
+
+    /**
+     * 执行器及其统计口径
+     */
+    private interface ChannelExecutor {
+
+        TaskExecutor executor();
+
+        int queueSize();
+
+        int activeCount();
+
+        int poolSize();
+    }
+
+    private record PooledChannelExecutor(ThreadPoolTaskExecutor executor) implements ChannelExecutor {
+
+        @Override
+        public int queueSize() {
+            return executor.getQueueSize();
+        }
+
+        @Override
+        public int activeCount() {
+            return executor.getActiveCount();
+        }
+
+        @Override
+        public int poolSize() {
+            return executor.getPoolSize();
+        }
+    }
+
+    /**
+     * 虚拟线程执行器，自己统计已提交未开始（等待载体线程）和正在执行的任务数
+     */
+    private static final class VirtualChannelExecutor implements ChannelExecutor, TaskExecutor {
+
+        private final TaskExecutor delegate;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+
+        VirtualChannelExecutor(TaskExecutor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            queued.incrementAndGet();
+            try {
+                delegate.execute(() -> {
+                    queued.decrementAndGet();
+                    active.incrementAndGet();
+                    try {
+                        task.run();
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                queued.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public TaskExecutor executor() {
+            return this;
+        }
+
+        @Override
+        public int queueSize() {
+            return queued.get();
+        }
+
+        @Override
+        public int activeCount() {
+            return active.get();
+        }
+
+        @Override
+        public int poolSize() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.xf.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * STOMP 客户端入站 / 出站通道的线程配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.stomp.channel.* 配置项。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.stomp.channel")
+public class StompChannelProperties {
+
+    /**
+     * clientInboundChannel：处理客户端发来的帧（SUBSCRIBE、SEND 到 @MessageMapping 等）
+     */
+    private final ExecutorSettings inbound = new ExecutorSettings();
+
+    /**
+     * clientOutboundChannel：把消息写回客户端，私聊扇出、广播都走这里
+     */
+    private final ExecutorSettings outbound = new ExecutorSettings();
+
+    /**
+     * 同一会话发往客户端的消息严格按发布顺序投递（会话内串行，不同会话之间仍并行）
+     */
+    private boolean preservePublishOrder = false;
+
+    /**
+     * 同一会话收到的帧严格按到达顺序处理
+     */
+    private boolean preserveReceiveOrder = false;
+
+    @Data
+    public static class ExecutorSettings {
+
+        /**
+         * 执行模式；virtual 需要 Java 21+，低版本运行时自动退回 pool
+         */
+        private ChannelExecutorMode mode = ChannelExecutorMode.POOL;
+
+        /**
+         * 核心线程数，0 = CPU 核数 * 2（与 Spring 默认一致）
+         */
+        private int corePoolSize = 0;
+
+        /**
+         * 最大线程数，0 = CPU 核数 * 8。队列满后才会扩到核心线程数以上
+         */
+        private int maxPoolSize = 0;
+
+        /**
+         * 等待队列长度。Spring 默认无界，突发时消息只会越排越长、线程数永远不会增加
+         */
+        private int queueCapacity = 1000;
+
+        private Duration keepAlive = Duration.ofSeconds(60);
+    }
+}
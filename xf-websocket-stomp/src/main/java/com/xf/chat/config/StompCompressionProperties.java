@@ -0,0 +1,24 @@
+package com.xf.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * /ws 端点的 permessage-deflate 配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.stomp.compression.* 配置项。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.stomp.compression")
+public class StompCompressionProperties {
+
+    /**
+     * 是否接受客户端发起的 permessage-deflate 协商
+     */
+    private boolean permessageDeflate = true;
+
+    /**
+     * 是否跨消息保留压缩上下文；关闭后每个连接少占一个滑动窗口的内存，但压缩率下降
+     */
+    private boolean contextTakeover = true;
+}
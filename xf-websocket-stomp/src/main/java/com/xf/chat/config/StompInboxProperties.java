@@ -0,0 +1,57 @@
+package com.xf.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 离线收件箱配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.stomp.inbox.* 配置项。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.stomp.inbox")
+public class StompInboxProperties {
+
+    /**
+     * 离线消息保留时长
+     */
+    private Duration ttl = Duration.ofDays(7);
+
+    /**
+     * 单个用户最多保存的离线消息条数，超过后丢弃最旧的
+     */
+    private int maxMessagesPerUser = 1000;
+
+    /**
+     * 单个用户离线消息的总大小上限，超过后丢弃最旧的
+     */
+    private DataSize maxSizePerUser = DataSize.ofMegabytes(1);
+
+    /**
+     * 所有收件箱占用的堆外内存（按缓冲区容量计）上限，超过后拒绝新的离线消息
+     */
+    private DataSize maxTotalSize = DataSize.ofMegabytes(256);
+
+    /**
+     * 订阅私聊队列后回放时每批发送的条数
+     */
+    private int replayBatchSize = 50;
+
+    /**
+     * 两批回放之间的间隔
+     */
+    private Duration replayInterval = Duration.ofMillis(20);
+
+    /**
+     * 出站通道排队消息超过该条数时暂停回放
+     */
+    private int replayPauseQueueDepth = 500;
+
+    /**
+     * 过期消息清理间隔
+     */
+    private Duration sweepInterval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,31 @@
+package com.xf.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 在线状态（上线 / 下线广播）配置
+ * <p>
+ * 对应 application.yml 中的 xf.websocket.stomp.presence.* 配置项。
+ */
+@Data
+@ConfigurationProperties(prefix = "xf.websocket.stomp.presence")
+public class StompPresenceProperties {
+
+    /**
+     * 发布在线状态增量的周期，周期内的上线 / 下线合并成一条消息
+     */
+    private Duration publishInterval = Duration.ofSeconds(1);
+
+    /**
+     * 用户最后一个会话断开后等待多久才广播下线，期间重连的不广播下线也不重复广播上线
+     */
+    private Duration gracePeriod = Duration.ofSeconds(5);
+
+    /**
+     * 单条增量消息最多带的用户名个数，超出的留到下一个周期
+     */
+    private int maxBatchSize = 1000;
+}
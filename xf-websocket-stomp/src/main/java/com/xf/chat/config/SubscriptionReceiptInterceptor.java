@@ -0,0 +1,60 @@
+package com.xf.chat.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * SimpleBroker 模式下为带 receipt 头的 SUBSCRIBE 回 RECEIPT
+ * <p>
+ * relay / embedded 模式的 RECEIPT 由代理在登记订阅后发出，SimpleBroker 则完全不回。客户端要靠 RECEIPT 确认订阅已生效
+ * （例如收到私聊队列的回执后才请求回放离线消息），这里在登记订阅的处理器执行完之后补发：
+ * /user 目的地由 UserDestinationMessageHandler 转换后同步交给代理，其余由 SimpleBrokerMessageHandler 直接登记。
+ * 入站通道的各个处理器在线程池上并发执行，只能在登记订阅的那个处理器之后发，不能在 preSend 里发。
+ */
+@Component
+public class SubscriptionReceiptInterceptor implements ExecutorChannelInterceptor {
+
+    private static final String USER_DESTINATION_PREFIX = "/user/";
+
+    // 出站通道由 WebSocketConfig 所在的配置类创建，而本类又被 WebSocketConfig 引用，只能延迟获取
+    private final ObjectProvider<MessageChannel> clientOutboundChannel;
+
+    public SubscriptionReceiptInterceptor(
+            @Qualifier("clientOutboundChannel") ObjectProvider<MessageChannel> clientOutboundChannel) {
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                    @NonNull MessageHandler handler, @Nullable Exception ex) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (ex != null || accessor == null || !StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                || accessor.getReceipt() == null || !registers(handler, accessor.getDestination())) {
+            return;
+        }
+        StompHeaderAccessor receipt = StompHeaderAccessor.create(StompCommand.RECEIPT);
+        receipt.setReceiptId(accessor.getReceipt());
+        receipt.setSessionId(accessor.getSessionId());
+        clientOutboundChannel.getObject().send(MessageBuilder.createMessage(new byte[0], receipt.getMessageHeaders()));
+    }
+
+    private static boolean registers(MessageHandler handler, String destination) {
+        if (destination != null && destination.startsWith(USER_DESTINATION_PREFIX)) {
+            return handler instanceof UserDestinationMessageHandler;
+        }
+        return handler instanceof SimpleBrokerMessageHandler;
+    }
+}
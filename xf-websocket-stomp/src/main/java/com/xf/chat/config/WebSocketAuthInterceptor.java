@@ -1,53 +1,110 @@
 package com.xf.chat.config;
 
+import com.xf.chat.metrics.StompMetrics;
+import com.xf.websocket.core.auth.TokenAuthenticator;
+import com.xf.websocket.core.auth.VerifiedToken;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.drain.ConnectionDrainer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.stereotype.Component;
-
-import java.util.List;
+import org.springframework.util.StringUtils;
 
 /**
  * WebSocket 认证拦截器 (方案 B: 更安全专业)
  * <p>
  * 不再从 URL 获取参数，而是直接在 STOMP 协议的 CONNECT 帧头中获取认证信息。
  * 这种方式更符合生产环境标准，可以防止 Token 在 URL 日志中泄露。
+ * <p>
+ * CONNECT 帧带 "Authorization: Bearer &lt;JWT&gt;"（或 "token" 头），验签通过后以 sub 作为用户名；
+ * 令牌不合法时抛出异常，Spring 会回一个 ERROR 帧并关闭连接。
+ * 只有开启 xf.websocket.core.auth.allow-plain-user 时才接受不带令牌的旧式 CONNECT（信任 username 头）。
+ * 节点停机排空期间直接拒绝 CONNECT，不再验签，客户端重连到其他节点。
  */
 @Component
 @Slf4j
 public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenAuthenticator tokenAuthenticator;
+    private final StompMetrics metrics;
+    private final ConnectionDrainer connectionDrainer;
+    private final boolean allowPlainUser;
+
+    public WebSocketAuthInterceptor(TokenAuthenticator tokenAuthenticator, StompMetrics metrics,
+                                    ConnectionDrainer connectionDrainer, XfWebSocketCoreProperties properties) {
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.metrics = metrics;
+        this.connectionDrainer = connectionDrainer;
+        this.allowPlainUser = properties.getAuth().isAllowPlainUser();
+    }
+
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 
         // 只有在 CONNECT 阶段才进行认证
         if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
-            // 从 STOMP 头部获取 "username" (生产环境中这里通常是 "Authorization": "Bearer token")
-            // 前端 connect() 时需要传递这个 header
-            List<String> authorization = accessor.getNativeHeader("username");
-
-            log.info("WebSocket Interceptor: Connecting...");
-
-            if (authorization != null && !authorization.isEmpty()) {
-                String username = authorization.get(0);
-                if (username != null && !username.isEmpty()) {
-                    // 绑定 User 到 WebSocket Session
-                    // 之后 Controller 里的 Principal 就有值了
-                    accessor.setUser(new StompPrincipal(username));
-                    log.info("WebSocket Interceptor: Authenticated user '{}'", username);
+            log.debug("WebSocket Interceptor: Connecting...");
+
+            if (connectionDrainer.isDraining()) {
+                metrics.connectRejected();
+                throw new MessageDeliveryException(message, "Server is restarting");
+            }
+
+            String token = token(accessor);
+            if (token != null) {
+                VerifiedToken verified = tokenAuthenticator.authenticate(token);
+                if (verified == null) {
+                    metrics.connectRejected();
+                    log.warn("WebSocket Interceptor: Rejected CONNECT with invalid token");
+                    throw new MessageDeliveryException(message, "Invalid token");
                 }
-            } else {
-                // 如果没有认证信息，视业务需求，可以抛出异常拒绝连接
-                // throw new IllegalArgumentException("未认证的用户");
-                log.warn("WebSocket Interceptor: User tried to connect without username header");
+                authenticated(accessor, verified.subject());
+                return message;
             }
+            if (!allowPlainUser) {
+                metrics.connectRejected();
+                log.warn("WebSocket Interceptor: Rejected CONNECT without token");
+                throw new MessageDeliveryException(message, "Missing token");
+            }
+
+            // 开发模式：从 STOMP 头部获取 "username"，前端 connect() 时需要传递这个 header
+            String username = accessor.getFirstNativeHeader("username");
+            if (StringUtils.hasText(username)) {
+                authenticated(accessor, username);
+                return message;
+            }
+            log.warn("WebSocket Interceptor: User tried to connect without username header");
+            metrics.connectAnonymous();
         }
         return message;
     }
+
+    private void authenticated(StompHeaderAccessor accessor, String username) {
+        // 绑定 User 到 WebSocket Session
+        // 之后 Controller 里的 Principal 就有值了
+        accessor.setUser(new StompPrincipal(username));
+        metrics.connectAuthenticated();
+        log.debug("WebSocket Interceptor: Authenticated user '{}'", username);
+    }
+
+    private static String token(StompHeaderAccessor accessor) {
+        String authorization = accessor.getFirstNativeHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            String token = authorization.substring(BEARER_PREFIX.length()).trim();
+            return token.isEmpty() ? null : token;
+        }
+        String token = accessor.getFirstNativeHeader("token");
+        return StringUtils.hasText(token) ? token : null;
+    }
 }
@@ -1,12 +1,33 @@
 package com.xf.chat.config;
 
+import com.xf.chat.broker.EmbeddedStompBroker;
+import com.xf.chat.codec.ChatBinaryMessageConverter;
+import com.xf.chat.codec.PayloadFormatNegotiator;
+import com.xf.chat.metrics.StompMetrics;
+import com.xf.websocket.core.handshake.DeflateNegotiationHandshakeHandler;
+import com.xf.websocket.core.session.HeartbeatWheel;
+import com.xf.websocket.core.session.ManagedSessionHandlerDecorator;
+import com.xf.websocket.core.session.OutboundQueueManager;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -14,30 +35,162 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final SubscriptionReceiptInterceptor subscriptionReceiptInterceptor;
+    private final StompBrokerProperties brokerProperties;
+    private final StompChannelProperties channelProperties;
+    private final StompCompressionProperties compressionProperties;
+    private final StompChannelExecutors channelExecutors;
+    private final StompMetrics metrics;
+    private final PayloadFormatNegotiator payloadFormatNegotiator;
+    private final ObjectProvider<EmbeddedStompBroker> embeddedStompBroker;
+    private final OutboundQueueManager outboundQueueManager;
+    private final HeartbeatWheel heartbeatWheel;
+
+    // Relay 到代理的连接池和 IO 线程，由本类创建，也由本类释放
+    private ConnectionProvider relayConnections;
+    private LoopResources relayLoops;
+    // SimpleBroker 发心跳用的调度线程，同样由本类创建和释放
+    private ThreadPoolTaskScheduler heartbeatScheduler;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // 1. 移除 withSockJS()
         // 这样对外暴露的就是标准的 WebSocket 协议 (ws://domain/ws)，所有客户端(Web/App/小程序)都能直连
         registry.addEndpoint("/ws")
+                // permessage-deflate 是否协商、是否保留压缩上下文
+                .setHandshakeHandler(new DeflateNegotiationHandshakeHandler(
+                        compressionProperties.isPermessageDeflate(), compressionProperties.isContextTakeover()))
                 .setAllowedOriginPatterns("*"); // 允许跨域
+        registry.setPreserveReceiveOrder(channelProperties.isPreserveReceiveOrder());
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // 增加 "/queue" 用于点对点消息
-        registry.enableSimpleBroker("/topic", "/queue");
+        switch (brokerProperties.getMode()) {
+            // 增加 "/queue" 用于点对点消息
+            case SIMPLE -> enableSimpleBroker(registry);
+            // 外部代理：订阅和投递交给代理，多节点共享
+            case RELAY -> enableRelay(registry, brokerProperties.getRelay().getHost(),
+                    brokerProperties.getRelay().getPort());
+            // 进程内代理：链路与 RELAY 完全相同，只是目标换成本机
+            case EMBEDDED -> enableRelay(registry, "127.0.0.1", embeddedStompBroker.getObject().getPort());
+        }
         registry.setApplicationDestinationPrefixes("/app");
+        // 开启后同一会话的出站消息串行投递，关闭时同一会话的消息可能被不同线程并发写出、乱序到达
+        registry.setPreservePublishOrder(channelProperties.isPreservePublishOrder());
         // 指定用户点对点消息的前缀，默认为 "/user"
         // 客户端订阅地址: /user/queue/private (Spring 会自动转换为 /queue/private-user{session})
         registry.setUserDestinationPrefix("/user");
     }
 
     /**
-     * 配置客户端入站通道拦截器
+     * 启用内置 SimpleBroker
+     * <p>
+     * SimpleBroker 默认回 heart-beat:0,0，客户端不会发心跳，空闲连接会被心跳时间轮关闭；
+     * 这里给它单独的调度线程并按配置协商心跳。relay / embedded 模式的心跳由代理在 CONNECTED 帧中协商。
+     */
+    private void enableSimpleBroker(MessageBrokerRegistry registry) {
+        var registration = registry.enableSimpleBroker("/topic", "/queue");
+        long heartbeat = brokerProperties.getSimple().getHeartbeat().toMillis();
+        if (heartbeat > 0) {
+            heartbeatScheduler = new ThreadPoolTaskScheduler();
+            heartbeatScheduler.setThreadNamePrefix("stomp-heartbeat-");
+            heartbeatScheduler.setDaemon(true);
+            heartbeatScheduler.initialize();
+            registration.setHeartbeatValue(new long[]{heartbeat, heartbeat}).setTaskScheduler(heartbeatScheduler);
+        }
+    }
+
+    /**
+     * 启用 STOMP Broker Relay
+     * <p>
+     * Spring 默认的 TCP 客户端连接池上限是 10000，IO 线程与其他 Reactor 组件共用。
+     * 这里为到代理的连接单独建池和 IO 线程，连接数、排队超时都可配置，避免代理被打满或拖慢其他组件。
+     */
+    private void enableRelay(MessageBrokerRegistry registry, String host, int port) {
+        StompBrokerProperties.Relay relay = brokerProperties.getRelay();
+
+        relayConnections = ConnectionProvider.builder("stomp-relay")
+                .maxConnections(relay.getMaxConnections())
+                .pendingAcquireTimeout(relay.getPendingAcquireTimeout())
+                .maxIdleTime(relay.getMaxIdleTime())
+                .build();
+        relayLoops = LoopResources.create("stomp-relay",
+                relay.getIoThreads() > 0 ? relay.getIoThreads() : LoopResources.DEFAULT_IO_WORKER_COUNT, true);
+        TcpClient tcpClient = TcpClient.create(relayConnections)
+                .host(host)
+                .port(port)
+                .runOn(relayLoops, false);
+
+        var registration = registry.enableStompBrokerRelay("/topic", "/queue")
+                .setTcpClient(new ReactorNettyTcpClient<>(tcpClient, new StompReactorNettyCodec()))
+                .setClientLogin(relay.getClientLogin())
+                .setClientPasscode(relay.getClientPasscode())
+                .setSystemLogin(relay.getSystemLogin())
+                .setSystemPasscode(relay.getSystemPasscode())
+                .setSystemHeartbeatSendInterval(relay.getSystemHeartbeatSendInterval().toMillis())
+                .setSystemHeartbeatReceiveInterval(relay.getSystemHeartbeatReceiveInterval().toMillis())
+                // 多节点时让 /user 目的地能找到连在其他节点上的用户
+                .setUserDestinationBroadcast(relay.getUserDestinationBroadcast())
+                .setUserRegistryBroadcast(relay.getUserRegistryBroadcast());
+        if (StringUtils.hasText(relay.getVirtualHost())) {
+            registration.setVirtualHost(relay.getVirtualHost());
+        }
+    }
+
+    /**
+     * 连接接入公共组件的出站队列和心跳时间轮：
+     * 写出不再占用出站通道线程，慢连接按 xf.websocket.core.outbound.* 的策略丢弃或断开，长时间没有任何入站帧（含心跳）的连接被关闭
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(handler ->
+                new ManagedSessionHandlerDecorator(handler, outboundQueueManager, heartbeatWheel));
+    }
+
+    /**
+     * 在默认转换器（JSON 等）之前加上二进制 ChatMessage 转换器，它只处理明确带二进制 content-type 的消息
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new ChatBinaryMessageConverter());
+        return true;
+    }
+
+    /**
+     * 配置客户端入站通道拦截器：认证 -> 限流 -> 格式协商 -> 计数，被限流丢弃的帧不计入吞吐；
+     * SimpleBroker 不回 SUBSCRIBE 的 RECEIPT，由 {@link SubscriptionReceiptInterceptor} 补上
      */
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(webSocketAuthInterceptor);
+        registration.executor(channelExecutors.inbound())
+                .interceptors(webSocketAuthInterceptor, rateLimitInterceptor,
+                        payloadFormatNegotiator.inboundInterceptor(), metrics.inboundInterceptor());
+        if (brokerProperties.getMode() == BrokerMode.SIMPLE) {
+            registration.interceptors(subscriptionReceiptInterceptor);
+        }
+    }
+
+    /**
+     * 配置客户端出站通道执行器（私聊扇出、广播写回客户端都在这里执行），发往二进制会话的帧在这里转码
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutors.outbound())
+                .interceptors(payloadFormatNegotiator.outboundInterceptor(), metrics.outboundInterceptor());
+    }
+
+    @PreDestroy
+    public void disposeBrokerResources() {
+        if (relayConnections != null) {
+            relayConnections.dispose();
+        }
+        if (relayLoops != null) {
+            relayLoops.dispose();
+        }
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.shutdown();
+        }
     }
 }
@@ -1,5 +1,8 @@
 package com.xf.chat.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.chat.inbox.OfflineInbox;
 import com.xf.chat.model.ChatMessage;
 import com.xf.chat.model.MessageType;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +12,7 @@ import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
@@ -20,6 +24,9 @@ import java.util.Objects;
 public class ChatController {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final OfflineInbox offlineInbox;
+    private final ObjectMapper objectMapper;
 
     @MessageMapping("/chat.sendMessage")
     @SendTo("/topic/public")
@@ -40,6 +47,12 @@ public class ChatController {
 
         log.info("Private message from {} to {}", principal.getName(), receiver);
 
+        // 接收者不在线时 /user 目的地解析不到任何会话，先存进离线收件箱，私聊订阅确认生效后回放
+        if (userRegistry.getUser(receiver) == null) {
+            storeOffline(receiver, chatMessage);
+            return;
+        }
+
         // 发送给接收者
         // 目标地址由 UserDestinationPrefix (/user) + receiver + destination (/queue/private)
         // 组成
@@ -53,18 +66,40 @@ public class ChatController {
         // 或者前端直接在发送成功后渲染
     }
 
+    private void storeOffline(String receiver, ChatMessage chatMessage) {
+        try {
+            if (!offlineInbox.store(receiver, objectMapper.writeValueAsBytes(chatMessage))) {
+                log.warn("Offline inbox full, private message to {} dropped", receiver);
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Serialize offline message to {} failed: {}", receiver, e.getMessage());
+        }
+    }
+
+    /**
+     * 私聊订阅确认生效：客户端订阅 /user/queue/private 时带 receipt 头，收到 RECEIPT 后发到 /app/inbox.ready，
+     * 此时代理已经登记了订阅，回放的离线消息不会因为订阅还没生效被丢掉
+     */
+    @MessageMapping("/inbox.ready")
+    public void inboxReady(Principal principal) {
+        offlineInbox.replay(principal.getName());
+    }
+
+    /**
+     * 记录会话的用户名
+     * <p>
+     * 不再向 /topic/public 广播 JOIN，上线由 PresenceService 合并后发布到 /topic/presence。
+     */
     @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
-    public ChatMessage addUser(@Payload ChatMessage chatMessage,
+    public void addUser(@Payload ChatMessage chatMessage,
             SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
         // 其实有了 HandshakeHandler，Principal 已经在 Session 里了
         // 这里如果是为了兼容旧逻辑或者做 double check
         if (principal != null) {
-            log.info("User connected: {}", principal.getName());
+            log.debug("User connected: {}", principal.getName());
             Objects.requireNonNull(headerAccessor.getSessionAttributes()).put("username", principal.getName());
         }
-        return chatMessage;
     }
 
 }
@@ -0,0 +1,25 @@
+package com.xf.chat.controller;
+
+import com.xf.chat.model.PresenceSnapshot;
+import com.xf.chat.presence.PresenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+/**
+ * 在线用户快照
+ * <p>
+ * 客户端先订阅 /topic/presence 收增量，再订阅 /app/presence 拿一次快照，
+ * 快照直接回给订阅者，不经过代理；之后只应用 version 大于快照的增量。
+ */
+@Controller
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private final PresenceService presenceService;
+
+    @SubscribeMapping("/presence")
+    public PresenceSnapshot snapshot() {
+        return presenceService.snapshot();
+    }
+}
@@ -0,0 +1,59 @@
+package com.xf.chat.drain;
+
+import com.xf.chat.config.StompChannelExecutors;
+import com.xf.websocket.core.drain.DrainHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 停机排空中 STOMP 相关的部分
+ * <p>
+ * 关闭前给会话发一个 ERROR 帧，带 reconnect-after 头（建议等待的毫秒数），演示页面收到后按这个时间重连。
+ * ERROR 帧直接写入会话的出站队列，不经过 clientOutboundChannel，由 {@link com.xf.websocket.core.drain.ConnectionDrainer}
+ * 在队列发完后以 1012 关闭连接。为了让提示排在已经发出的消息之后，每批开始前先等出站通道线程池的队列排空。
+ */
+@Component
+@RequiredArgsConstructor
+public class StompReconnectHintHandler implements DrainHandler {
+
+    /**
+     * ERROR 帧中建议客户端等待多少毫秒再重连的头
+     */
+    public static final String RECONNECT_AFTER_HEADER = "reconnect-after";
+
+    private static final long FLUSH_POLL_MILLIS = 10;
+
+    private final StompEncoder encoder = new StompEncoder();
+    private final StompChannelExecutors channelExecutors;
+
+    @Override
+    public WebSocketMessage<?> reconnectHint(WebSocketSession session, long afterMillis) {
+        StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+        error.setMessage("Server is restarting");
+        error.setNativeHeader(RECONNECT_AFTER_HEADER, Long.toString(afterMillis));
+        return new TextMessage(encoder.encode(MessageBuilder.createMessage(new byte[0], error.getMessageHeaders())));
+    }
+
+    @Override
+    public boolean awaitUpstream(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (channelExecutors.outboundQueueSize() > 0 && System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(FLUSH_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
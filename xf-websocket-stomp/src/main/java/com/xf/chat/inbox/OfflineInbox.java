@@ -0,0 +1,189 @@
+package com.xf.chat.inbox;
+
+import com.xf.chat.config.StompChannelExecutors;
+import com.xf.chat.config.StompInboxProperties;
+import com.xf.websocket.core.inbox.MailboxStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 私聊离线收件箱
+ * <p>
+ * 原来 convertAndSendToUser 发给不在线的用户时，/user 目的地解析不到任何会话，消息直接丢掉。这里为每个离线用户保存一个有界、带 TTL 的收件箱，
+ * 存储（堆外条目、上限、过期清理）见 {@link MailboxStore}，条目就是序列化好的 JSON。
+ * 用户的私聊订阅确认生效后（客户端收到 SUBSCRIBE 的 RECEIPT 再发 /app/inbox.ready）分批回放，出站通道积压过多时暂停，
+ * 回放不占用入站线程也不会冲垮连接；条目发布出去后才从收件箱移除，回放中途用户的连接全部断开时剩下的留到下次。
+ * <p>
+ * 收件箱只在本节点内存中，节点重启或用户连到其他节点时不会回放。
+ */
+@Component
+@Slf4j
+public class OfflineInbox {
+
+    public static final String PRIVATE_DESTINATION = "/queue/private";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final StompChannelExecutors channelExecutors;
+
+    private final MailboxStore store;
+    private final int replayBatchSize;
+    private final long replayIntervalMillis;
+    private final int replayPauseQueueDepth;
+
+    // 正在回放的用户，同一用户多个会话同时确认订阅时只回放一次
+    private final Map<String, Boolean> replaying = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder replayedCount = new LongAdder();
+
+    public OfflineInbox(SimpMessagingTemplate messagingTemplate, SimpUserRegistry userRegistry,
+                        StompChannelExecutors channelExecutors, StompInboxProperties properties) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.channelExecutors = channelExecutors;
+        this.store = new MailboxStore(properties.getTtl().toMillis(), properties.getMaxMessagesPerUser(),
+                (int) properties.getMaxSizePerUser().toBytes(), properties.getMaxTotalSize().toBytes());
+        this.replayBatchSize = Math.max(1, properties.getReplayBatchSize());
+        this.replayIntervalMillis = properties.getReplayInterval().toMillis();
+        this.replayPauseQueueDepth = properties.getReplayPauseQueueDepth();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stomp-offline-inbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweep = properties.getSweepInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 保存一条发给离线用户的私聊消息
+     *
+     * @param json 已序列化的消息体
+     * @return 超过容量上限被拒绝时返回 false
+     */
+    public boolean store(String user, byte[] json) {
+        return store.store(user, json);
+    }
+
+    /**
+     * 异步分批回放该用户的离线消息到 /user/queue/private，不阻塞调用线程
+     * <p>
+     * 只能在私聊订阅确认生效后调用（SUBSCRIBE 的 RECEIPT 之后），否则发布时代理还没有登记订阅，消息会被丢掉。
+     */
+    public void replay(String user) {
+        if (store.contains(user) && replaying.putIfAbsent(user, Boolean.TRUE) == null) {
+            scheduler.execute(() -> replayBatch(user));
+        }
+    }
+
+    private void replayBatch(String user) {
+        boolean drained = false;
+        try {
+            if (channelExecutors.outboundQueueSize() > replayPauseQueueDepth) {
+                scheduler.schedule(() -> replayBatch(user), replayIntervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            // 先复制不移除，发布出去的才从收件箱删掉
+            List<byte[]> batch = new ArrayList<>(Math.min(replayBatchSize, 64));
+            MailboxStore.Cursor cursor = store.peek(user, batch, replayBatchSize);
+            // 与 convertAndSendToUser 的目的地拼法一致，但直接发送已序列化的 JSON，不再经过消息转换器
+            String destination = messagingTemplate.getUserDestinationPrefix()
+                    + StringUtils.replace(user, "/", "%2F") + PRIVATE_DESTINATION;
+            int published = 0;
+            try {
+                // 用户的连接全部断开后 /user 目的地解析不到会话，消息会被丢掉，剩下的留到下次上线
+                while (published < batch.size() && userRegistry.getUser(user) != null) {
+                    messagingTemplate.send(destination, jsonMessage(batch.get(published)));
+                    published++;
+                }
+            } finally {
+                store.remove(user, cursor, published);
+                replayedCount.add(published);
+            }
+            if (published == replayBatchSize) {
+                scheduler.schedule(() -> replayBatch(user), replayIntervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            drained = published == batch.size();
+        } catch (RuntimeException e) {
+            log.warn("Replay offline messages to {} failed: {}", user, e.getMessage());
+        }
+        replaying.remove(user);
+        // 收尾和释放标记之间又有消息存入、其间确认订阅的会话被标记挡掉时，补一次回放
+        if (drained && store.contains(user) && userRegistry.getUser(user) != null) {
+            replay(user);
+        }
+    }
+
+    private static Message<byte[]> jsonMessage(byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+
+    /**
+     * 截掉所有收件箱中已过期的消息，清空的收件箱直接移除
+     */
+    public void purgeExpired() {
+        store.purgeExpired();
+    }
+
+    /**
+     * 该用户收件箱中的消息数（含尚未清理的过期消息）
+     */
+    public int size(String user) {
+        return store.size(user);
+    }
+
+    /**
+     * 所有收件箱占用的堆外字节数（缓冲区容量合计）
+     */
+    public long getTotalBytes() {
+        return store.getTotalBytes();
+    }
+
+    public long getStoredCount() {
+        return store.getStoredCount();
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return store.getEvictedCount();
+    }
+
+    public long getExpiredCount() {
+        return store.getExpiredCount();
+    }
+
+    public long getRejectedCount() {
+        return store.getRejectedCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
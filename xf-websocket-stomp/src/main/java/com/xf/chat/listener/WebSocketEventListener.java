@@ -1,55 +1,58 @@
 package com.xf.chat.listener;
 
-import com.xf.chat.model.ChatMessage;
-import com.xf.chat.model.MessageType;
+import com.xf.chat.presence.PresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
-import java.util.Map;
+import java.security.Principal;
 
 /**
  * WebSocket 事件监听器
  * <p>
  * 用于监听 Socket 连接和断开事件。
- * 特别是断开连接时，需要广播用户离开的消息。
+ * 连接和断开交给 {@link PresenceService} 合并成在线状态增量。离线消息不在订阅事件里回放：事件发布时 SUBSCRIBE 帧还没到代理，
+ * 改由客户端收到订阅回执后发 /app/inbox.ready 触发（见 ChatController）。
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class WebSocketEventListener {
 
-    // SimpMessageSendingOperations 用于在代码中主动发送消息到指定 Topic
-    private final SimpMessageSendingOperations messagingTemplate;
+    private final PresenceService presenceService;
+
+    /**
+     * 监听连接建立事件，计入在线状态
+     */
+    @EventListener
+    public void handleWebSocketConnectedListener(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId == null) {
+            return;
+        }
+        Principal user = event.getUser();
+        if (user != null) {
+            presenceService.sessionConnected(sessionId, user.getName());
+        }
+    }
 
     /**
      * 监听 Session 断开事件
+     * <p>
+     * 不再逐个广播 LEAVE，由 {@link PresenceService} 在宽限期后合并发布下线增量。
      *
      * @param event 断开事件包含了 Session 信息
      */
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-
-        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
-        if (sessionAttributes != null) {
-            String username = (String) sessionAttributes.get("username");
-            if (username != null) {
-                log.info("User Disconnected : {}", username);
-
-                // 构建一个 LEAVE 类型的消息
-                ChatMessage chatMessage = ChatMessage.builder()
-                        .type(MessageType.LEAVE)
-                        .sender(username)
-                        .build();
-
-                // 广播消息到 /topic/public
-                messagingTemplate.convertAndSend("/topic/public", chatMessage);
-            }
+        Principal user = event.getUser();
+        if (user != null) {
+            log.debug("User Disconnected : {}", user.getName());
+            presenceService.sessionDisconnected(event.getSessionId(), user.getName());
         }
     }
 }
@@ -0,0 +1,82 @@
+package com.xf.chat.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * STOMP 收发路径上的 Micrometer 指标
+ * <p>
+ * Counter 在启动时按固定标签注册好，拦截器里只做 increment，不为每条消息创建 Tag 或拼接字符串。
+ * 在线会话数、离线收件箱等采集时才读取的指标见 {@link StompMetricsBinder}。
+ */
+@Component
+public class StompMetrics {
+
+    private final Counter connectAuthenticated;
+    private final Counter connectAnonymous;
+    private final Counter connectRejected;
+    private final ChannelInterceptor inboundInterceptor;
+    private final ChannelInterceptor outboundInterceptor;
+
+    public StompMetrics(MeterRegistry registry) {
+        this.connectAuthenticated = connect(registry, "authenticated");
+        this.connectAnonymous = connect(registry, "anonymous");
+        this.connectRejected = connect(registry, "rejected");
+        this.inboundInterceptor = new CountingInterceptor(channelMessages(registry, "inbound"));
+        this.outboundInterceptor = new CountingInterceptor(channelMessages(registry, "outbound"));
+    }
+
+    private static Counter connect(MeterRegistry registry, String result) {
+        return Counter.builder("xf.stomp.connects")
+                .tag("result", result)
+                .description("CONNECT 帧数，anonymous 为开发模式下没有带 username 头的连接，rejected 为令牌缺失或不合法")
+                .register(registry);
+    }
+
+    private static Counter channelMessages(MeterRegistry registry, String channel) {
+        return Counter.builder("xf.stomp.channel.messages")
+                .tag("channel", channel)
+                .description("经过客户端通道的消息数")
+                .register(registry);
+    }
+
+    public void connectAuthenticated() {
+        connectAuthenticated.increment();
+    }
+
+    public void connectAnonymous() {
+        connectAnonymous.increment();
+    }
+
+    public void connectRejected() {
+        connectRejected.increment();
+    }
+
+    /**
+     * 注册到 clientInboundChannel，统计入站吞吐
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return inboundInterceptor;
+    }
+
+    /**
+     * 注册到 clientOutboundChannel，统计出站吞吐
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return outboundInterceptor;
+    }
+
+    private record CountingInterceptor(Counter counter) implements ChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+            counter.increment();
+            return message;
+        }
+    }
+}
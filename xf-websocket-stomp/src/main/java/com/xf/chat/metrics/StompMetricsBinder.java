@@ -0,0 +1,91 @@
+package com.xf.chat.metrics;
+
+import com.xf.chat.codec.PayloadFormatNegotiator;
+import com.xf.chat.inbox.OfflineInbox;
+import com.xf.chat.presence.PresenceService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 在线会话数、离线收件箱、二进制转码和在线状态广播等只在采集时读取的指标（xf.stomp.*）
+ * <p>
+ * 出站队列、心跳、限流、认证缓存和停机排空的指标由 xf-websocket-core 以 xf.websocket.* 注册。
+ */
+@Component
+@RequiredArgsConstructor
+public class StompMetricsBinder implements MeterBinder {
+
+    private final SimpUserRegistry userRegistry;
+    private final OfflineInbox offlineInbox;
+    private final PayloadFormatNegotiator payloadFormatNegotiator;
+    private final PresenceService presenceService;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("xf.stomp.users", userRegistry, SimpUserRegistry::getUserCount)
+                .description("在线用户数")
+                .register(registry);
+        Gauge.builder("xf.stomp.sessions", userRegistry, StompMetricsBinder::sessionCount)
+                .description("在线会话数（同一用户可以有多个会话）")
+                .register(registry);
+
+        counter(registry, "xf.stomp.inbox.stored", "存入离线收件箱的私聊消息数",
+                offlineInbox, OfflineInbox::getStoredCount);
+        counter(registry, "xf.stomp.inbox.replayed", "订阅私聊队列后回放的离线消息数",
+                offlineInbox, OfflineInbox::getReplayedCount);
+        counter(registry, "xf.stomp.inbox.dropped", "超过单用户上限被丢弃或过期的离线消息数",
+                offlineInbox, inbox -> inbox.getEvictedCount() + inbox.getExpiredCount());
+        counter(registry, "xf.stomp.inbox.rejected", "超过总容量被拒绝的离线消息数",
+                offlineInbox, OfflineInbox::getRejectedCount);
+        Gauge.builder("xf.stomp.inbox.size", offlineInbox, OfflineInbox::getTotalBytes)
+                .description("离线收件箱占用的堆外内存")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+
+        bindPayloadFormat(registry);
+
+        Gauge.builder("xf.stomp.presence.online", presenceService, PresenceService::getOnlineCount)
+                .description("已广播为在线的用户数")
+                .register(registry);
+        counter(registry, "xf.stomp.presence.published", "发布到 /topic/presence 的在线状态增量条数",
+                presenceService, PresenceService::getPublishedCount);
+        counter(registry, "xf.stomp.presence.suppressed", "宽限期内重连等原因省掉的上线 / 下线广播次数",
+                presenceService, PresenceService::getSuppressedCount);
+    }
+
+    private void bindPayloadFormat(MeterRegistry registry) {
+        Gauge.builder("xf.stomp.binary.sessions", payloadFormatNegotiator, PayloadFormatNegotiator::getBinarySessionCount)
+                .description("选择二进制消息格式的会话数")
+                .register(registry);
+        counter(registry, "xf.stomp.binary.transcoded", "JSON 转码为二进制格式的次数（一条广播只转码一次）",
+                payloadFormatNegotiator, PayloadFormatNegotiator::getTranscodedCount);
+        FunctionCounter.builder("xf.stomp.binary.saved", payloadFormatNegotiator, PayloadFormatNegotiator::getSavedBytes)
+                .description("发往二进制会话的帧比 JSON 少发的字节数")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private static int sessionCount(SimpUserRegistry userRegistry) {
+        int sessions = 0;
+        for (SimpUser user : userRegistry.getUsers()) {
+            sessions += user.getSessions().size();
+        }
+        return sessions;
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, String description, T target,
+                                    ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, target, count)
+                .description(description)
+                .register(registry);
+    }
+}
@@ -0,0 +1,14 @@
+package com.xf.chat.model;
+
+import java.util.List;
+
+/**
+ * 在线状态增量，定期发布到 /topic/presence
+ *
+ * @param version 单调递增的版本号，客户端拿快照的 version 过滤掉更早的增量
+ * @param joined  本周期上线的用户
+ * @param left    本周期下线（超过宽限期仍未重连）的用户
+ * @param online  发布后本节点的在线用户数
+ */
+public record PresenceDelta(long version, List<String> joined, List<String> left, int online) {
+}
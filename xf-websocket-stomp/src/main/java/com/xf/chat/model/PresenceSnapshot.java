@@ -0,0 +1,12 @@
+package com.xf.chat.model;
+
+import java.util.List;
+
+/**
+ * 在线用户快照，订阅 /app/presence 时返回
+ *
+ * @param version 快照对应的增量版本号，之后只需应用 version 更大的增量
+ * @param online  在线用户列表
+ */
+public record PresenceSnapshot(long version, List<String> online) {
+}
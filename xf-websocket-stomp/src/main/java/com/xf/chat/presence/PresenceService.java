@@ -0,0 +1,236 @@
+package com.xf.chat.presence;
+
+import com.xf.chat.config.StompPresenceProperties;
+import com.xf.chat.model.PresenceDelta;
+import com.xf.chat.model.PresenceSnapshot;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在线状态服务
+ * <p>
+ * 原来每个用户加入都由 /app/chat.addUser 广播一条 JOIN，每次断开都广播一条 LEAVE，N 个用户同时上线就是 N 次全量广播、
+ * 共 N² 帧；网络抖动导致的断开重连还会刷出一对 LEAVE / JOIN。这里改为：
+ * 1. 连接、断开只更新本地的计数并把用户标记为“有变化”，不发任何消息；
+ * 2. 按固定周期把有变化的用户合并成一条 {@link PresenceDelta} 发布到 /topic/presence，每个周期最多一条广播；
+ * 3. 用户最后一个会话断开后要超过宽限期仍未重连才广播下线，宽限期内重连的既不广播下线也不重复广播上线，
+ *    同一周期内上线又下线的用户什么都不广播；
+ * 4. 新连接订阅 /app/presence 拿到带版本号的全量快照，之后只应用版本号更大的增量。
+ * <p>
+ * 每个在线用户只占一个 {@link Entry}（会话计数、断开时间、是否已广播），周期任务只遍历有变化的用户，与在线总数无关。
+ * 多节点部署时每个节点只广播本节点上的上线 / 下线，下线前查一次 {@link SimpUserRegistry}，用户仍在其他节点在线时不广播下线。
+ */
+@Component
+@Slf4j
+public class PresenceService {
+
+    public static final String PRESENCE_TOPIC = "/topic/presence";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final long gracePeriodNanos;
+    private final int maxBatchSize;
+
+    // Key: 用户名，下线广播之后（或从未广播过上线就断开）才移除
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 有变化、等待下一个周期处理的用户
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // 已计入的会话，SessionDisconnectEvent 可能对同一会话触发多次，按会话去重
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+    // 发布增量和生成快照互斥，保证快照的版本号与增量对得上
+    private final Object publishLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    // 以下两个字段只在 publishLock 内修改
+    private long version;
+    private int announcedCount;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder suppressedCount = new LongAdder();
+
+    public PresenceService(SimpMessagingTemplate messagingTemplate, SimpUserRegistry userRegistry,
+                           StompPresenceProperties properties) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.gracePeriodNanos = properties.getGracePeriod().toNanos();
+        this.maxBatchSize = Math.max(1, properties.getMaxBatchSize());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stomp-presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getPublishInterval().toMillis();
+        scheduler.scheduleAtFixedRate(this::publish, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 会话建立（收到 CONNECTED）
+     */
+    public void sessionConnected(String sessionId, String user) {
+        if (!sessions.add(sessionId)) {
+            return;
+        }
+        entries.compute(user, (key, entry) -> {
+            Entry target = entry != null ? entry : new Entry();
+            if (target.sessions++ == 0) {
+                if (target.announced) {
+                    // 宽限期内重连：下线还没广播，上线也不用再广播
+                    suppressedCount.increment();
+                }
+                target.offlineSince = 0;
+                dirty.add(key);
+            }
+            return target;
+        });
+    }
+
+    /**
+     * 会话断开，对同一会话重复调用时只计一次
+     */
+    public void sessionDisconnected(String sessionId, String user) {
+        if (!sessions.remove(sessionId)) {
+            return;
+        }
+        long now = System.nanoTime();
+        entries.computeIfPresent(user, (key, entry) -> {
+            if (entry.sessions > 0 && --entry.sessions == 0) {
+                entry.offlineSince = now;
+                dirty.add(key);
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * 当前已广播为在线的用户快照
+     */
+    public PresenceSnapshot snapshot() {
+        synchronized (publishLock) {
+            List<String> online = new ArrayList<>(announcedCount);
+            entries.forEach((user, entry) -> {
+                if (entry.announced) {
+                    online.add(user);
+                }
+            });
+            return new PresenceSnapshot(version, online);
+        }
+    }
+
+    private void publish() {
+        try {
+            flush(System.nanoTime());
+        } catch (RuntimeException e) {
+            log.warn("Publish presence delta failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理有变化的用户，有上线或下线时发布一条增量
+     *
+     * @param now System.nanoTime() 口径的当前时间
+     */
+    void flush(long now) {
+        synchronized (publishLock) {
+            List<String> joined = new ArrayList<>();
+            List<String> left = new ArrayList<>();
+            List<String> pending = new ArrayList<>();
+            Iterator<String> iterator = dirty.iterator();
+            while (iterator.hasNext() && joined.size() + left.size() < maxBatchSize) {
+                String user = iterator.next();
+                iterator.remove();
+                entries.computeIfPresent(user, (key, entry) -> settle(key, entry, now, joined, left, pending));
+            }
+            // 还在宽限期内的下次再看，不能在遍历时加回去，否则迭代器可能一直读到它们
+            dirty.addAll(pending);
+            if (joined.isEmpty() && left.isEmpty()) {
+                return;
+            }
+            announcedCount += joined.size() - left.size();
+            PresenceDelta delta = new PresenceDelta(++version, joined, left, announcedCount);
+            messagingTemplate.convertAndSend(PRESENCE_TOPIC, delta);
+            publishedCount.increment();
+        }
+    }
+
+    /**
+     * 在 ConcurrentHashMap 的桶锁内结算单个用户，返回 null 时移除该用户
+     */
+    private Entry settle(String user, Entry entry, long now, List<String> joined, List<String> left,
+                         List<String> pending) {
+        if (entry.sessions > 0) {
+            if (!entry.announced) {
+                entry.announced = true;
+                joined.add(user);
+            }
+            return entry;
+        }
+        if (!entry.announced) {
+            // 上线还没广播就断开了，两条都不用发
+            suppressedCount.increment();
+            return null;
+        }
+        if (now - entry.offlineSince < gracePeriodNanos) {
+            pending.add(user);
+            return entry;
+        }
+        if (userRegistry.getUser(user) == null) {
+            left.add(user);
+        } else {
+            // 仍在其他节点在线，由那个节点负责广播下线；本节点不再计入在线数
+            announcedCount--;
+        }
+        return null;
+    }
+
+    /**
+     * 已广播为在线的用户数
+     */
+    public int getOnlineCount() {
+        synchronized (publishLock) {
+            return announcedCount;
+        }
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * 宽限期内重连、或上线广播前就断开而省掉的上线 / 下线广播次数
+     */
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 单个用户的在线状态，只在 ConcurrentHashMap 的桶锁内修改
+     */
+    private static final class Entry {
+
+        // 本节点上该用户的会话数
+        private int sessions;
+        // 最后一个会话断开的时间（System.nanoTime），在线时为 0
+        private long offlineSince;
+        // 客户端是否已被告知该用户在线（只在 publishLock 内修改）
+        private boolean announced;
+    }
+}
@@ -13,6 +13,11 @@ var connectingElement = document.querySelector('.connecting');
 var stompClient = null;
 var username = null;
 
+// 在线状态：拿到快照之前收到的增量先缓存，快照到达后只应用版本号更大的
+var onlineUsers = null;
+var presenceVersion = 0;
+var pendingDeltas = [];
+
 var colors = [
     '#2196F3', '#32c787', '#00BCD4', '#ff5652',
     '#ffc107', '#ff85af', '#FF9800', '#39bbb0'
@@ -29,25 +34,33 @@ function connect(event) {
         chatPage.classList.remove('hidden');
         chatTitle.textContent = "Welcome, " + username;
 
-        // 1. 使用原生 WebSocket 构造函数 (不再依赖 sockjs.js)
-        // 注意：Web端必须写完整的 ws:// 或 wss:// 协议头
-        // 这里的路径 '/ws' 对应后端 registry.addEndpoint("/ws")
+        openConnection();
+    }
+    event.preventDefault();
+}
 
-        // 自动检测协议 (https -> wss, http -> ws)
-        var protocol = location.protocol === 'https:' ? 'wss://' : 'ws://';
-        var wsUrl = protocol + location.host + '/ws';
 
-        stompClient = Stomp.client(wsUrl);
+/**
+ * 建立 STOMP 连接，首次进入和服务端停机后重连都走这里
+ */
+function openConnection() {
+    // 1. 使用原生 WebSocket 构造函数 (不再依赖 sockjs.js)
+    // 注意：Web端必须写完整的 ws:// 或 wss:// 协议头
+    // 这里的路径 '/ws' 对应后端 registry.addEndpoint("/ws")
 
-        // 可选：开启心跳检测 (每10秒一次)
-        stompClient.heartbeat.outgoing = 10000;
-        stompClient.heartbeat.incoming = 10000;
+    // 自动检测协议 (https -> wss, http -> ws)
+    var protocol = location.protocol === 'https:' ? 'wss://' : 'ws://';
+    var wsUrl = protocol + location.host + '/ws';
 
-        // 2. 在 Connect Headers 中传递认证信息 (username)
-        // 生产环境中这里通常传 { 'Authorization': 'Bearer ' + token }
-        stompClient.connect({ username: username }, onConnected, onError);
-    }
-    event.preventDefault();
+    stompClient = Stomp.client(wsUrl);
+
+    // 可选：开启心跳检测 (每10秒一次)
+    stompClient.heartbeat.outgoing = 10000;
+    stompClient.heartbeat.incoming = 10000;
+
+    // 2. 在 Connect Headers 中传递认证信息 (username)
+    // 生产环境中这里通常传 { 'Authorization': 'Bearer ' + token }
+    stompClient.connect({ username: username }, onConnected, onError);
 }
 
 
@@ -55,14 +68,27 @@ function connect(event) {
  * 连接成功回调
  */
 function onConnected() {
+    onlineUsers = null;
+    pendingDeltas = [];
+
     // 订阅群聊 (Public Topic)
     stompClient.subscribe('/topic/public', onMessageReceived);
 
     // 订阅私聊 (User Specific Queue)
     // 客户端只需要订阅 "/user/queue/private"，Spring 会自动转换
-    stompClient.subscribe('/user/queue/private', onPrivateMessageReceived);
+    // 带上 receipt 头：收到回执说明订阅已生效，再请求回放离线期间的私聊，回放的消息不会因订阅还没生效而丢失
+    stompClient.onreceipt = function (frame) {
+        if (frame.headers['receipt-id'] === 'private-subscribed') {
+            stompClient.send("/app/inbox.ready", {}, '');
+        }
+    };
+    stompClient.subscribe('/user/queue/private', onPrivateMessageReceived, { receipt: 'private-subscribed' });
 
-    // 告诉服务器我们加入了 (群聊广播)
+    // 订阅在线状态：先订阅增量，再取一次快照
+    stompClient.subscribe('/topic/presence', onPresenceDelta);
+    stompClient.subscribe('/app/presence', onPresenceSnapshot);
+
+    // 告诉服务器我们加入了 (上线广播由服务端合并后发布到 /topic/presence)
     stompClient.send("/app/chat.addUser",
         {},
         JSON.stringify({ sender: username, type: 'JOIN' })
@@ -74,6 +100,13 @@ function onConnected() {
  * 连接错误回调
  */
 function onError(error) {
+    // 服务端停机排空时回 ERROR 帧并带 reconnect-after 头，按其中的随机等待时间重连，避免所有客户端同时涌向其他节点
+    if (error && error.headers && error.headers['reconnect-after'] !== undefined) {
+        var delay = parseInt(error.headers['reconnect-after'], 10) || 0;
+        console.log('Server is restarting, reconnect in ' + delay + 'ms');
+        setTimeout(openConnection, delay);
+        return;
+    }
     var status = document.querySelector('.status');
     if (status) { // defensive check
         status.textContent = '无法连接到 WebSocket 服务器，请刷新页面重试。';
@@ -160,6 +193,51 @@ function onPrivateMessageReceived(payload) {
     displayMessage(message);
 }
 
+/**
+ * 在线用户快照
+ */
+function onPresenceSnapshot(payload) {
+    var snapshot = JSON.parse(payload.body);
+    onlineUsers = {};
+    snapshot.online.forEach(function (user) {
+        onlineUsers[user] = true;
+    });
+    presenceVersion = snapshot.version;
+    pendingDeltas.forEach(applyPresenceDelta);
+    pendingDeltas = [];
+}
+
+/**
+ * 在线状态增量，一条里可能有多个用户上线 / 下线
+ */
+function onPresenceDelta(payload) {
+    var delta = JSON.parse(payload.body);
+    if (onlineUsers === null) {
+        pendingDeltas.push(delta);
+    } else {
+        applyPresenceDelta(delta);
+    }
+}
+
+function applyPresenceDelta(delta) {
+    if (delta.version <= presenceVersion) {
+        return;
+    }
+    presenceVersion = delta.version;
+    delta.joined.forEach(function (user) {
+        if (!onlineUsers[user]) {
+            onlineUsers[user] = true;
+            displayMessage({ type: 'JOIN', sender: user });
+        }
+    });
+    delta.left.forEach(function (user) {
+        if (onlineUsers[user]) {
+            delete onlineUsers[user];
+            displayMessage({ type: 'LEAVE', sender: user });
+        }
+    });
+}
+
 /**
  * 通用渲染消息逻辑
  */
@@ -3,7 +3,8 @@ package com.xf.chat;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// HS256 密钥在 application.yml 中只从环境变量读取，测试里直接给出
+@SpringBootTest(properties = "XF_WEBSOCKET_HMAC_SECRET=test-secret-with-at-least-32-bytes!")
 class ChatApplicationTests {
 
     /**
@@ -0,0 +1,232 @@
+package com.xf.chat.broker;
+
+import com.xf.chat.codec.ChatBinaryCodec;
+import com.xf.chat.codec.ChatBinaryMessageConverter;
+import com.xf.chat.inbox.OfflineInbox;
+import com.xf.chat.model.ChatMessage;
+import com.xf.chat.model.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * /topic/public 广播和 /user/queue/private 私聊在不同代理模式下的行为必须一致
+ * <p>
+ * 子类只负责用不同的 xf.websocket.stomp.broker.mode 启动应用，用例完全相同。
+ * 客户端像演示页面一样只带 username 头连接，使用 dev profile。
+ */
+@ActiveProfiles("dev")
+abstract class AbstractBrokerFlowTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OfflineInbox offlineInbox;
+
+    private WebSocketStompClient stompClient;
+    // 跟踪 RECEIPT 需要调度器
+    private ThreadPoolTaskScheduler receiptScheduler;
+
+    @BeforeEach
+    void setUpClient() {
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        receiptScheduler = new ThreadPoolTaskScheduler();
+        receiptScheduler.initialize();
+        stompClient.setTaskScheduler(receiptScheduler);
+        // 二进制转换器只处理带二进制 content-type 的帧，其余仍走 JSON
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new ChatBinaryMessageConverter(), new MappingJackson2MessageConverter())));
+    }
+
+    @AfterEach
+    void stopClient() {
+        stompClient.stop();
+        receiptScheduler.shutdown();
+    }
+
+    @Test
+    void publicMessageIsBroadcastToTopicSubscribers() throws Exception {
+        StompSession alice = connect("alice");
+        StompSession bob = connect("bob");
+        BlockingQueue<ChatMessage> bobInbox = subscribe(bob, "/topic/public");
+
+        ChatMessage message = ChatMessage.builder().type(MessageType.CHAT).sender("alice").content("hi all").build();
+        sendUntilReceived(alice, "/app/chat.sendMessage", message, bobInbox);
+    }
+
+    @Test
+    void privateMessageReachesOnlyTheReceiver() throws Exception {
+        StompSession alice = connect("alice");
+        StompSession bob = connect("bob");
+        StompSession carol = connect("carol");
+        BlockingQueue<ChatMessage> bobInbox = subscribe(bob, "/user/queue/private");
+        BlockingQueue<ChatMessage> carolInbox = subscribe(carol, "/user/queue/private");
+
+        ChatMessage message = ChatMessage.builder().receiver("bob").sender("mallory").content("secret").build();
+        ChatMessage received = sendUntilReceived(alice, "/app/chat.private", message, bobInbox);
+
+        // 发送者由服务端按 Principal 改写，防止伪造
+        assertEquals("alice", received.getSender());
+        assertEquals(MessageType.CHAT, received.getType());
+        assertEquals(0, carolInbox.size());
+    }
+
+    @Test
+    void privateMessageToOfflineUserIsReplayedOnSubscribe() throws Exception {
+        StompSession alice = connect("alice");
+        for (int i = 0; i < 3; i++) {
+            alice.send("/app/chat.private", ChatMessage.builder().receiver("dave").content("missed-" + i).build());
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (offlineInbox.size("dave") < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, offlineInbox.size("dave"));
+
+        StompSession dave = connect("dave");
+        // 与演示页面一致：私聊订阅的 RECEIPT 到达后才请求回放
+        CountDownLatch subscribed = new CountDownLatch(1);
+        dave.setAutoReceipt(true);
+        BlockingQueue<ChatMessage> daveInbox = new LinkedBlockingQueue<>();
+        dave.subscribe("/user/queue/private", queueing(daveInbox, null)).addReceiptTask(subscribed::countDown);
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS), "No RECEIPT for the private subscription");
+        dave.send("/app/inbox.ready", new byte[0]);
+        // 未开启 preserve-receive-order / preserve-publish-order 时通道线程池可能打乱同一会话的消息顺序，这里只校验内容
+        Set<String> contents = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            ChatMessage received = daveInbox.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received, "Offline message " + i + " not replayed");
+            assertEquals("alice", received.getSender());
+            contents.add(received.getContent());
+        }
+        assertEquals(Set.of("missed-0", "missed-1", "missed-2"), contents);
+        assertEquals(0, offlineInbox.size("dave"));
+    }
+
+    /**
+     * 在 CONNECT 帧里选择二进制格式的连接收到二进制帧；它用二进制发出的消息，JSON 连接照常收到 JSON
+     */
+    @Test
+    void binaryConnectionsReceiveBinaryFrames() throws Exception {
+        StompSession alice = connect("alice");
+        StompSession bob = connect("bob", true);
+        BlockingQueue<StompHeaders> bobFrames = new LinkedBlockingQueue<>();
+        BlockingQueue<ChatMessage> bobInbox = subscribe(bob, "/topic/public", bobFrames);
+        BlockingQueue<StompHeaders> aliceFrames = new LinkedBlockingQueue<>();
+        BlockingQueue<ChatMessage> aliceInbox = subscribe(alice, "/topic/public", aliceFrames);
+
+        ChatMessage fromAlice = ChatMessage.builder().type(MessageType.CHAT).sender("alice").content("json in").build();
+        ChatMessage received = sendUntilReceived(alice, "/app/chat.sendMessage", fromAlice, bobInbox);
+        assertEquals(MessageType.CHAT, received.getType());
+        assertEquals("alice", received.getSender());
+        assertTrue(ChatBinaryCodec.isBinary(bobFrames.take().getContentType()));
+
+        aliceInbox.clear();
+        aliceFrames.clear();
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/chat.sendMessage");
+        headers.setContentType(ChatBinaryCodec.MIME_TYPE);
+        bob.send(headers, ChatMessage.builder().type(MessageType.CHAT).sender("bob").content("binary in").build());
+        ChatMessage atAlice = poll(aliceInbox, "binary in");
+        assertEquals("bob", atAlice.getSender());
+        assertEquals("application/json", aliceFrames.take().getContentType().toString());
+    }
+
+    private StompSession connect(String username) throws Exception {
+        return connect(username, false);
+    }
+
+    private StompSession connect(String username, boolean binary) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("username", username);
+        if (binary) {
+            connectHeaders.setContentType(ChatBinaryCodec.MIME_TYPE);
+        }
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {
+                }).get(10, TimeUnit.SECONDS);
+    }
+
+    private BlockingQueue<ChatMessage> subscribe(StompSession session, String destination) {
+        return subscribe(session, destination, null);
+    }
+
+    private BlockingQueue<ChatMessage> subscribe(StompSession session, String destination,
+                                                 BlockingQueue<StompHeaders> frames) {
+        BlockingQueue<ChatMessage> inbox = new LinkedBlockingQueue<>();
+        session.subscribe(destination, queueing(inbox, frames));
+        return inbox;
+    }
+
+    private static StompFrameHandler queueing(BlockingQueue<ChatMessage> inbox, BlockingQueue<StompHeaders> frames) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                if (frames != null) {
+                    frames.add(headers);
+                }
+                inbox.add((ChatMessage) payload);
+            }
+        };
+    }
+
+    private ChatMessage poll(BlockingQueue<ChatMessage> inbox, String content) throws InterruptedException {
+        ChatMessage received;
+        while ((received = inbox.poll(5, TimeUnit.SECONDS)) != null) {
+            if (content.equals(received.getContent())) {
+                return received;
+            }
+        }
+        assertNotNull(null, "No message with content " + content);
+        return null;
+    }
+
+    /**
+     * SUBSCRIBE 没有回执，relay 模式下要经过代理才生效，所以重发直到收到为止
+     */
+    private ChatMessage sendUntilReceived(StompSession session, String destination, ChatMessage message,
+                                          BlockingQueue<ChatMessage> inbox) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            session.send(destination, message);
+            ChatMessage received = inbox.poll(200, TimeUnit.MILLISECONDS);
+            if (received != null) {
+                assertEquals(message.getContent(), received.getContent());
+                return received;
+            }
+        }
+        assertNotNull(null, "No message received on " + destination);
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.xf.chat.broker;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * relay 模式的完整链路：Spring Broker Relay -> TCP -> 进程内 STOMP 代理
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "xf.websocket.stomp.broker.mode=embedded")
+class EmbeddedRelayFlowTest extends AbstractBrokerFlowTest {
+
+    @Autowired
+    private EmbeddedStompBroker broker;
+
+    @Test
+    void relaySystemSessionIsConnectedToEmbeddedBroker() {
+        assertTrue(broker.getConnectionCount() >= 1);
+    }
+}
@@ -0,0 +1,143 @@
+package com.xf.chat.broker;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedSubscriptionRegistryTest {
+
+    private final IndexedSubscriptionRegistry registry = new IndexedSubscriptionRegistry();
+
+    @Test
+    void exactAndWildcardSubscriptionsAreMerged() {
+        subscribe(registry, "s1", "a", "/topic/room/1");
+        subscribe(registry, "s2", "b", "/topic/room/*");
+        subscribe(registry, "s3", "c", "/topic/**");
+        subscribe(registry, "s4", "d", "/topic/room-*");
+        subscribe(registry, "s5", "e", "/topic/room/{id}");
+
+        MultiValueMap<String, String> found = registry.findSubscriptions(message("/topic/room/1"));
+        assertEquals(Map.of("s1", List.of("a"), "s2", List.of("b"), "s3", List.of("c"), "s5", List.of("e")), found);
+        assertEquals(Map.of("s3", List.of("c"), "s4", List.of("d")),
+                registry.findSubscriptions(message("/topic/room-9")));
+        assertEquals(Map.of("s3", List.of("c")), registry.findSubscriptions(message("/topic/room/1/history")));
+        assertTrue(registry.findSubscriptions(message("/queue/private")).isEmpty());
+    }
+
+    @Test
+    void unsubscribeAndSessionCleanupUpdateSnapshots() {
+        subscribe(registry, "s1", "a", "/topic/public");
+        subscribe(registry, "s1", "b", "/topic/room/*");
+        subscribe(registry, "s2", "a", "/topic/public");
+        assertEquals(2, registry.findSubscriptions(message("/topic/public")).size());
+
+        unsubscribe(registry, "s2", "a");
+        assertEquals(Map.of("s1", List.of("a")), registry.findSubscriptions(message("/topic/public")));
+
+        registry.unregisterAllSubscriptions("s1");
+        assertTrue(registry.findSubscriptions(message("/topic/public")).isEmpty());
+        assertTrue(registry.findSubscriptions(message("/topic/room/1")).isEmpty());
+        assertEquals(0, registry.getSubscriptionCount());
+    }
+
+    /**
+     * 按房间号订阅的模式退订后不留下前缀树节点和模式条目，共享前缀的节点在还有订阅时保留
+     */
+    @Test
+    void unsubscribedPatternsArePruned() {
+        subscribe(registry, "s1", "a", "/topic/room/1/*");
+        subscribe(registry, "s1", "b", "/topic/room/2/*");
+        subscribe(registry, "s2", "a", "/topic/room-*");
+        subscribe(registry, "s2", "b", "/topic/room/**");
+
+        unsubscribe(registry, "s1", "a");
+        unsubscribe(registry, "s2", "a");
+        assertEquals(Map.of("s1", List.of("b"), "s2", List.of("b")),
+                registry.findSubscriptions(message("/topic/room/2/history")));
+        assertEquals(Map.of("s2", List.of("b")), registry.findSubscriptions(message("/topic/room/1/history")));
+
+        registry.unregisterAllSubscriptions("s1");
+        registry.unregisterAllSubscriptions("s2");
+        assertEquals(0, registry.getPatternEntryCount());
+        assertTrue(registry.findSubscriptions(message("/topic/room/2/history")).isEmpty());
+    }
+
+    @Test
+    void matchesDefaultRegistryUnderRandomChurn() {
+        DefaultSubscriptionRegistry reference = new DefaultSubscriptionRegistry();
+        String[] destinations = {"/topic/public", "/topic/room/1", "/topic/room/2", "/topic/room/*", "/topic/**",
+                "/queue/private-user1", "/topic/room/{id}"};
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String session = "s" + random.nextInt(20);
+            String subscription = "sub" + random.nextInt(3);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    String destination = destinations[random.nextInt(destinations.length)];
+                    // 同一个订阅 ID 重复订阅的行为两边不同，先退订保证语义一致
+                    unsubscribe(registry, session, subscription);
+                    unsubscribe(reference, session, subscription);
+                    subscribe(registry, session, subscription, destination);
+                    subscribe(reference, session, subscription, destination);
+                }
+                case 2 -> {
+                    unsubscribe(registry, session, subscription);
+                    unsubscribe(reference, session, subscription);
+                }
+                default -> {
+                    registry.unregisterAllSubscriptions(session);
+                    reference.unregisterAllSubscriptions(session);
+                }
+            }
+            for (String destination : new String[]{"/topic/public", "/topic/room/1", "/queue/private-user1"}) {
+                assertEquals(normalize(reference.findSubscriptions(message(destination))),
+                        normalize(registry.findSubscriptions(message(destination))), destination);
+            }
+        }
+        for (int i = 0; i < 20; i++) {
+            registry.unregisterAllSubscriptions("s" + i);
+        }
+        assertEquals(0, registry.getSubscriptionCount());
+        assertEquals(0, registry.getPatternEntryCount());
+    }
+
+    private static Map<String, List<String>> normalize(MultiValueMap<String, String> found) {
+        Map<String, List<String>> sorted = new TreeMap<>();
+        found.forEach((session, ids) -> sorted.put(session, ids.stream().sorted().toList()));
+        return sorted;
+    }
+
+    private static void subscribe(SubscriptionRegistry registry, String session, String id, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(session);
+        accessor.setSubscriptionId(id);
+        accessor.setDestination(destination);
+        registry.registerSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static void unsubscribe(SubscriptionRegistry registry, String session, String id) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(session);
+        accessor.setSubscriptionId(id);
+        registry.unregisterSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,35 @@
+package com.xf.chat.broker;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "xf.websocket.stomp.broker.mode=simple")
+class SimpleBrokerFlowTest extends AbstractBrokerFlowTest {
+
+    @Autowired
+    private SimpleBrokerMessageHandler simpleBrokerMessageHandler;
+
+    @Autowired
+    @Qualifier("clientOutboundChannelExecutor")
+    private TaskExecutor clientOutboundChannelExecutor;
+
+    @Test
+    void usesIndexedSubscriptionRegistry() {
+        assertInstanceOf(IndexedSubscriptionRegistry.class, simpleBrokerMessageHandler.getSubscriptionRegistry());
+    }
+
+    @Test
+    void outboundChannelUsesBoundedExecutor() {
+        ThreadPoolTaskExecutor executor = assertInstanceOf(ThreadPoolTaskExecutor.class, clientOutboundChannelExecutor);
+        assertEquals(1000, executor.getQueueCapacity());
+    }
+}
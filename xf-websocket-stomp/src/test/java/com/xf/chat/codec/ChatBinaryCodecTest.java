@@ -0,0 +1,126 @@
+package com.xf.chat.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xf.chat.model.ChatMessage;
+import com.xf.chat.model.MessageType;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatBinaryCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void roundTripsAllFields() {
+        ChatMessage message = ChatMessage.builder().type(MessageType.LEAVE).sender("小明")
+                .receiver(null).content("hi 😀 \"quoted\"\n" + "x".repeat(300)).build();
+
+        ChatMessage decoded = ChatBinaryCodec.decode(ChatBinaryCodec.encode(message));
+
+        assertEquals(MessageType.LEAVE, decoded.getType());
+        assertEquals("小明", decoded.getSender());
+        assertNull(decoded.getReceiver());
+        assertEquals(message.getContent(), decoded.getContent());
+    }
+
+    @Test
+    void emptyMessageIsTwoBytesPlusNullFields() {
+        byte[] encoded = ChatBinaryCodec.encode(new ChatMessage());
+
+        assertEquals(5, encoded.length);
+        ChatMessage decoded = ChatBinaryCodec.decode(encoded);
+        assertNull(decoded.getType());
+        assertNull(decoded.getContent());
+    }
+
+    /**
+     * JSON 直接转码的结果必须和先反序列化再编码完全一致，包括需要解码的转义字符
+     */
+    @Test
+    void transcodedJsonMatchesDirectEncoding() throws Exception {
+        ChatMessage message = ChatMessage.builder().type(MessageType.CHAT).sender("alice")
+                .receiver("bob").content("plain ünïcödé 你好").build();
+        ChatMessage escaped = ChatMessage.builder().type(MessageType.JOIN).sender("a\"b")
+                .content("line1\nline2\t\\ \u0001").build();
+
+        for (ChatMessage m : new ChatMessage[]{message, escaped}) {
+            byte[] json = objectMapper.writeValueAsBytes(m);
+            assertArrayEquals(ChatBinaryCodec.encode(m), ChatBinaryCodec.transcodeJson(json));
+        }
+    }
+
+    @Test
+    void transcodingRejectsOtherJson() throws Exception {
+        assertNull(ChatBinaryCodec.transcodeJson("{\"content\":\"x\",\"extra\":1}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(ChatBinaryCodec.transcodeJson("{\"type\":\"UNKNOWN\"}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(ChatBinaryCodec.transcodeJson("{\"content\":42}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(ChatBinaryCodec.transcodeJson("[1,2]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void binaryIsSmallerThanJsonForShortMessages() throws Exception {
+        ChatMessage message = ChatMessage.builder().type(MessageType.CHAT).sender("alice").content("hello").build();
+
+        int json = objectMapper.writeValueAsBytes(message).length;
+        int binary = ChatBinaryCodec.encode(message).length;
+
+        assertTrue(binary * 3 < json, "binary=" + binary + ", json=" + json);
+    }
+
+    /**
+     * 整个 STOMP MESSAGE 帧（含帧头）在线上也更小，长消息时二进制帧头里多出的 codec 参数不会抵消 payload 的节省
+     */
+    @Test
+    void binaryFrameIsSmallerOnTheWire() throws Exception {
+        for (int contentLength : new int[]{32, 4096}) {
+            ChatMessage message = ChatMessage.builder().type(MessageType.CHAT).sender("alice").receiver("bob")
+                    .content("x".repeat(contentLength)).build();
+
+            int json = frameSize(objectMapper.writeValueAsBytes(message), MimeTypeUtils.APPLICATION_JSON);
+            int binary = frameSize(ChatBinaryCodec.encode(message), ChatBinaryCodec.MIME_TYPE);
+
+            assertTrue(binary < json, "contentLength=" + contentLength + ", binary=" + binary + ", json=" + json);
+        }
+    }
+
+    private static int frameSize(byte[] payload, MimeType contentType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/public");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId("a1b2c3d4-0");
+        accessor.setContentType(contentType);
+        return new StompEncoder().encode(MessageBuilder.createMessage(payload, accessor.getMessageHeaders())).length;
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        byte[] encoded = ChatBinaryCodec.encode(ChatMessage.builder().content("hello").build());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ChatBinaryCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> ChatBinaryCodec.decode(new byte[]{9, 0, 0, 0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> ChatBinaryCodec.decode(new byte[]{1, 42, 0, 0, 0}));
+    }
+
+    @Test
+    void onlyTheCodecParameterSelectsTheBinaryFormat() {
+        assertTrue(ChatBinaryCodec.isBinary(MimeTypeUtils.parseMimeType("application/octet-stream;codec=xf-chat")));
+        assertFalse(ChatBinaryCodec.isBinary(MimeTypeUtils.APPLICATION_OCTET_STREAM));
+        assertFalse(ChatBinaryCodec.isBinary(MimeTypeUtils.APPLICATION_JSON));
+    }
+}
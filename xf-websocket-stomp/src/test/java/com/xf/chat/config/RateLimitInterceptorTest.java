@@ -0,0 +1,95 @@
+package com.xf.chat.config;
+
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.ratelimit.RateLimitAction;
+import com.xf.websocket.core.ratelimit.RateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitInterceptorTest {
+
+    private final XfWebSocketCoreProperties properties = new XfWebSocketCoreProperties();
+    private final MessageChannel outbound = mock(MessageChannel.class);
+    private final MessageChannel inbound = mock(MessageChannel.class);
+    private final Map<String, Object> sessionAttributes = new ConcurrentHashMap<>();
+    private RateLimiter rateLimiter;
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RateLimitInterceptor interceptor(int sessionBurst) {
+        // 补充速率极低，测试期间相当于不补充
+        properties.getRateLimit().setSession(new XfWebSocketCoreProperties.Limit(0.001, sessionBurst, DataSize.ofBytes(0),
+                DataSize.ofBytes(0)));
+        rateLimiter = new RateLimiter(properties);
+        ObjectProvider<MessageChannel> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(outbound);
+        return new RateLimitInterceptor(rateLimiter, provider);
+    }
+
+    private Message<byte[]> frame(StompCommand command) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("s1");
+        accessor.setSessionAttributes(sessionAttributes);
+        accessor.setUser(new StompPrincipal("alice"));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage("{}".getBytes(), accessor.getMessageHeaders());
+    }
+
+    /**
+     * 超限的 SEND 帧被丢弃，其他帧不受影响
+     */
+    @Test
+    void dropsSendFramesOverLimit() {
+        RateLimitInterceptor interceptor = interceptor(2);
+
+        Message<byte[]> send = frame(StompCommand.SEND);
+        assertSame(send, interceptor.preSend(send, inbound));
+        assertSame(send, interceptor.preSend(send, inbound));
+        assertNull(interceptor.preSend(send, inbound));
+
+        Message<byte[]> subscribe = frame(StompCommand.SUBSCRIBE);
+        assertSame(subscribe, interceptor.preSend(subscribe, inbound));
+        assertEquals(1, rateLimiter.getThrottledCount());
+        verify(outbound, never()).send(any());
+    }
+
+    @Test
+    void closeActionSendsErrorFrame() {
+        properties.getRateLimit().setAction(RateLimitAction.CLOSE);
+        RateLimitInterceptor interceptor = interceptor(1);
+
+        Message<byte[]> send = frame(StompCommand.SEND);
+        assertSame(send, interceptor.preSend(send, inbound));
+        assertNull(interceptor.preSend(send, inbound));
+
+        verify(outbound).send(argThat(message -> {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            return accessor.getCommand() == StompCommand.ERROR && "s1".equals(accessor.getSessionId());
+        }));
+        assertEquals(1, rateLimiter.getClosedCount());
+    }
+}
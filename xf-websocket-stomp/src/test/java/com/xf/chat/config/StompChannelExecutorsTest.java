@@ -0,0 +1,96 @@
+package com.xf.chat.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StompChannelExecutorsTest {
+
+    @Test
+    void poolModeUsesConfiguredBoundsAndReportsGauges() throws Exception {
+        StompChannelProperties properties = new StompChannelProperties();
+        properties.getOutbound().setCorePoolSize(1);
+        properties.getOutbound().setMaxPoolSize(1);
+        properties.getOutbound().setQueueCapacity(10);
+        StompChannelExecutors executors = new StompChannelExecutors(properties);
+
+        ThreadPoolTaskExecutor outbound = assertInstanceOf(ThreadPoolTaskExecutor.class, executors.outbound());
+        assertEquals(1, outbound.getMaxPoolSize());
+        assertEquals(10, outbound.getQueueCapacity());
+        outbound.initialize();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executors.bindTo(registry);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            outbound.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            outbound.execute(() -> { });
+            outbound.execute(() -> { });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertEquals(1.0, gauge(registry, "xf.stomp.channel.active", "outbound"));
+            assertEquals(2.0, gauge(registry, "xf.stomp.channel.queue.size", "outbound"));
+            assertEquals(1.0, gauge(registry, "xf.stomp.channel.pool.size", "outbound"));
+        } finally {
+            release.countDown();
+            outbound.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualModeFallsBackToPoolBeforeJava21() {
+        StompChannelProperties properties = new StompChannelProperties();
+        properties.getInbound().setMode(ChannelExecutorMode.VIRTUAL);
+
+        assertInstanceOf(ThreadPoolTaskExecutor.class, new StompChannelExecutors(properties).inbound());
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualModeRunsEachTaskOnVirtualThread() throws Exception {
+        StompChannelProperties properties = new StompChannelProperties();
+        properties.getInbound().setMode(ChannelExecutorMode.VIRTUAL);
+        StompChannelExecutors executors = new StompChannelExecutors(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executors.bindTo(registry);
+
+        assertFalse(executors.inbound() instanceof ThreadPoolTaskExecutor);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executors.inbound().execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, gauge(registry, "xf.stomp.channel.active", "inbound"));
+        release.countDown();
+    }
+
+    private static double gauge(SimpleMeterRegistry registry, String name, String channel) {
+        return registry.get(name).tag("channel", channel).gauge().value();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
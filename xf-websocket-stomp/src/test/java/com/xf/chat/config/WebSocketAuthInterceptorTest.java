@@ -0,0 +1,116 @@
+package com.xf.chat.config;
+
+import com.xf.chat.metrics.StompMetrics;
+import com.xf.websocket.core.auth.TokenAuthenticator;
+import com.xf.websocket.core.config.XfWebSocketCoreProperties;
+import com.xf.websocket.core.drain.ConnectionDrainer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WebSocketAuthInterceptorTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private final XfWebSocketCoreProperties properties = new XfWebSocketCoreProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final ConnectionDrainer connectionDrainer = mock(ConnectionDrainer.class);
+
+    private WebSocketAuthInterceptor interceptor() {
+        properties.getAuth().setHmacSecret(SECRET);
+        return new WebSocketAuthInterceptor(new TokenAuthenticator(properties), new StompMetrics(registry), connectionDrainer,
+                properties);
+    }
+
+    private static Message<byte[]> connect(String header, String value) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        if (header != null) {
+            accessor.setNativeHeader(header, value);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static String hs256(String secret, String claimsJson) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String signingInput = encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(claimsJson.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return signingInput + "." + encoder.encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String user(Message<?> message) {
+        return StompHeaderAccessor.wrap(message).getUser() == null ? null
+                : StompHeaderAccessor.wrap(message).getUser().getName();
+    }
+
+    @Test
+    void bearerTokenSetsPrincipalAndIsCached() throws Exception {
+        WebSocketAuthInterceptor interceptor = interceptor();
+        String token = hs256(SECRET, "{\"sub\":\"alice\",\"exp\":" + (System.currentTimeMillis() / 1000 + 60) + "}");
+
+        assertEquals("alice", user(interceptor.preSend(connect("Authorization", "Bearer " + token), channel)));
+        assertEquals("alice", user(interceptor.preSend(connect("token", token), channel)));
+
+        assertEquals(2, registry.get("xf.stomp.connects").tag("result", "authenticated").counter().count());
+    }
+
+    @Test
+    void invalidOrMissingTokenIsRejected() throws Exception {
+        WebSocketAuthInterceptor interceptor = interceptor();
+        String forged = hs256("another-secret", "{\"sub\":\"alice\"}");
+
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(connect("Authorization", "Bearer " + forged), channel));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(connect("username", "alice"), channel));
+        assertEquals(2, registry.get("xf.stomp.connects").tag("result", "rejected").counter().count());
+    }
+
+    /**
+     * 开发模式下仍然接受 username 头，带了令牌的照常验签
+     */
+    @Test
+    void plainUsernameOnlyWhenAllowed() throws Exception {
+        properties.getAuth().setAllowPlainUser(true);
+        WebSocketAuthInterceptor interceptor = interceptor();
+
+        assertEquals("bob", user(interceptor.preSend(connect("username", "bob"), channel)));
+        assertNull(user(interceptor.preSend(connect(null, null), channel)));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(connect("Authorization", "Bearer " + hs256("x", "{\"sub\":\"bob\"}")), channel));
+        assertEquals(1, registry.get("xf.stomp.connects").tag("result", "anonymous").counter().count());
+    }
+
+    /**
+     * 停机排空期间即使令牌合法也拒绝 CONNECT
+     */
+    @Test
+    void connectIsRejectedWhileDraining() throws Exception {
+        WebSocketAuthInterceptor interceptor = interceptor();
+        when(connectionDrainer.isDraining()).thenReturn(true);
+        String token = hs256(SECRET, "{\"sub\":\"alice\",\"exp\":" + (System.currentTimeMillis() / 1000 + 60) + "}");
+
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(connect("Authorization", "Bearer " + token), channel));
+        assertEquals(1, registry.get("xf.stomp.connects").tag("result", "rejected").counter().count());
+    }
+}
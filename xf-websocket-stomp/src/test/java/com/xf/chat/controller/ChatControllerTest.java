@@ -57,11 +57,9 @@ class ChatControllerTest {
         // 创建一个模拟的 Principal
         StompPrincipal principal = new StompPrincipal("NewUser");
 
-        // 执行
-        ChatMessage result = chatController.addUser(message, headerAccessor, principal);
+        // 执行（上线广播由 PresenceService 合并发布，这里不再返回 JOIN 消息）
+        chatController.addUser(message, headerAccessor, principal);
 
-        // 验证
-        assertEquals(message, result);
         // 验证用户名是否被正确放入 Session 中
         assertEquals("NewUser", sessionAttributes.get("username"));
     }
@@ -0,0 +1,144 @@
+package com.xf.chat.inbox;
+
+import com.xf.chat.config.StompChannelExecutors;
+import com.xf.chat.config.StompInboxProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OfflineInboxTest {
+
+    private final StompInboxProperties properties = new StompInboxProperties();
+    private final SimpUserRegistry userRegistry = mock(SimpUserRegistry.class);
+    private final StompChannelExecutors channelExecutors = mock(StompChannelExecutors.class);
+    // 发布到 /user 目的地的消息，由这里代替 UserDestinationMessageHandler 接收
+    private final List<Message<?>> published = new CopyOnWriteArrayList<>();
+    private OfflineInbox inbox;
+
+    @AfterEach
+    void tearDown() {
+        inbox.shutdown();
+    }
+
+    private OfflineInbox inbox() {
+        properties.setReplayBatchSize(2);
+        properties.setReplayInterval(Duration.ofMillis(1));
+        inbox = new OfflineInbox(new SimpMessagingTemplate((message, timeout) -> published.add(message)),
+                userRegistry, channelExecutors, properties);
+        return inbox;
+    }
+
+    /**
+     * /app/inbox.ready 之后分批把存下的 JSON 原样发布到该用户的私聊目的地，发布出去的从收件箱移除
+     */
+    @Test
+    void replayPublishesStoredJsonToPrivateDestination() throws Exception {
+        OfflineInbox inbox = inbox();
+        when(userRegistry.getUser("dave")).thenReturn(mock(SimpUser.class));
+        IntStream.range(0, 5).forEach(i -> inbox.store("dave", json(i)));
+
+        inbox.replay("dave");
+        awaitPublished(5);
+
+        for (int i = 0; i < 5; i++) {
+            Message<?> message = published.get(i);
+            assertEquals("/user/dave/queue/private", SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            assertEquals(MimeTypeUtils.APPLICATION_JSON, SimpMessageHeaderAccessor.wrap(message).getContentType());
+            assertEquals(new String(json(i), StandardCharsets.UTF_8),
+                    new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+        }
+        assertEquals(0, inbox.size("dave"));
+        assertEquals(5, inbox.getReplayedCount());
+        assertEquals(0, inbox.getTotalBytes());
+    }
+
+    /**
+     * 回放中途连接全部断开：已发布的移除，剩下的留到下次 inbox.ready
+     */
+    @Test
+    void replayStopsWhenUserDisconnects() throws Exception {
+        OfflineInbox inbox = inbox();
+        SimpUser dave = mock(SimpUser.class);
+        when(userRegistry.getUser("dave")).thenReturn(dave, dave, dave, null);
+        IntStream.range(0, 5).forEach(i -> inbox.store("dave", json(i)));
+
+        inbox.replay("dave");
+        awaitReplayed(3);
+        awaitSize(2);
+        assertEquals(3, published.size());
+
+        // 客户端重连后再次 inbox.ready；上一轮刚结束、还没释放标记时会被挡掉，所以重发直到收到
+        when(userRegistry.getUser("dave")).thenReturn(dave);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (published.size() < 5 && System.nanoTime() < deadline) {
+            inbox.replay("dave");
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        awaitPublished(5);
+        assertEquals(new String(json(3), StandardCharsets.UTF_8),
+                new String((byte[]) published.get(3).getPayload(), StandardCharsets.UTF_8));
+        awaitSize(0);
+    }
+
+    /**
+     * 出站通道积压时先不发布，降下来后继续
+     */
+    @Test
+    void replayWaitsForOutboundChannelBacklog() throws Exception {
+        OfflineInbox inbox = inbox();
+        when(userRegistry.getUser("dave")).thenReturn(mock(SimpUser.class));
+        when(channelExecutors.outboundQueueSize()).thenReturn(properties.getReplayPauseQueueDepth() + 1, 0);
+        inbox.store("dave", json(0));
+
+        inbox.replay("dave");
+        awaitPublished(1);
+        verify(channelExecutors, atLeast(2)).outboundQueueSize();
+        awaitSize(0);
+    }
+
+    private void awaitPublished(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (published.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(count, published.size());
+    }
+
+    private void awaitReplayed(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inbox.getReplayedCount() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(count, inbox.getReplayedCount());
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inbox.size("dave") != size && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(size, inbox.size("dave"));
+    }
+
+    private static byte[] json(int i) {
+        return ("{\"sender\":\"alice\",\"content\":\"missed-" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
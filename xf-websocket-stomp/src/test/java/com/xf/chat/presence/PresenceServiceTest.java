@@ -0,0 +1,125 @@
+package com.xf.chat.presence;
+
+import com.xf.chat.config.StompPresenceProperties;
+import com.xf.chat.model.PresenceDelta;
+import com.xf.chat.model.PresenceSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PresenceServiceTest {
+
+    private static final long AFTER_GRACE = TimeUnit.SECONDS.toNanos(10);
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SimpUserRegistry userRegistry = mock(SimpUserRegistry.class);
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        StompPresenceProperties properties = new StompPresenceProperties();
+        // 定时任务基本不会触发，测试里手动 flush
+        properties.setPublishInterval(Duration.ofHours(1));
+        properties.setGracePeriod(Duration.ofSeconds(5));
+        properties.setMaxBatchSize(2);
+        presenceService = new PresenceService(messagingTemplate, userRegistry, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        presenceService.shutdown();
+    }
+
+    private List<PresenceDelta> published(int times) {
+        ArgumentCaptor<PresenceDelta> captor = ArgumentCaptor.forClass(PresenceDelta.class);
+        verify(messagingTemplate, times(times)).convertAndSend(eq(PresenceService.PRESENCE_TOPIC), captor.capture());
+        return captor.getAllValues();
+    }
+
+    /**
+     * 一个周期内的上线合并成一条增量，超过批大小的留到下个周期
+     */
+    @Test
+    void batchesJoinsPerCycle() {
+        presenceService.sessionConnected("s1", "alice");
+        presenceService.sessionConnected("s2", "bob");
+        presenceService.sessionConnected("s3", "carol");
+        presenceService.sessionConnected("s4", "alice");
+
+        presenceService.flush(System.nanoTime());
+        presenceService.flush(System.nanoTime());
+        presenceService.flush(System.nanoTime());
+
+        List<PresenceDelta> deltas = published(2);
+        assertEquals(2, deltas.get(0).joined().size());
+        assertEquals(1, deltas.get(1).joined().size());
+        assertEquals(2, deltas.get(1).version());
+        assertEquals(3, deltas.get(1).online());
+
+        PresenceSnapshot snapshot = presenceService.snapshot();
+        assertEquals(2, snapshot.version());
+        assertEquals(3, snapshot.online().size());
+    }
+
+    /**
+     * 宽限期内断开重连不广播；超过宽限期才广播下线，重复的断开事件只计一次
+     */
+    @Test
+    void collapsesReconnectWithinGracePeriod() {
+        presenceService.sessionConnected("s1", "alice");
+        presenceService.flush(System.nanoTime());
+
+        presenceService.sessionDisconnected("s1", "alice");
+        presenceService.flush(System.nanoTime());
+        presenceService.sessionConnected("s2", "alice");
+        presenceService.flush(System.nanoTime() + AFTER_GRACE);
+        assertEquals(1, presenceService.getSuppressedCount());
+
+        presenceService.sessionDisconnected("s2", "alice");
+        presenceService.sessionDisconnected("s2", "alice");
+        presenceService.flush(System.nanoTime() + AFTER_GRACE);
+
+        List<PresenceDelta> deltas = published(2);
+        assertEquals(List.of("alice"), deltas.get(0).joined());
+        assertEquals(List.of("alice"), deltas.get(1).left());
+        assertEquals(0, deltas.get(1).online());
+        assertEquals(0, presenceService.snapshot().online().size());
+    }
+
+    /**
+     * 上线还没广播就断开的用户什么都不发；仍在其他节点在线的用户不广播下线
+     */
+    @Test
+    void skipsUnannouncedAndRemotelyOnlineUsers() {
+        presenceService.sessionConnected("s1", "alice");
+        presenceService.sessionDisconnected("s1", "alice");
+        presenceService.flush(System.nanoTime());
+        verify(messagingTemplate, never()).convertAndSend(eq(PresenceService.PRESENCE_TOPIC), any(Object.class));
+
+        presenceService.sessionConnected("s2", "bob");
+        presenceService.flush(System.nanoTime());
+        when(userRegistry.getUser("bob")).thenReturn(mock(SimpUser.class));
+        presenceService.sessionDisconnected("s2", "bob");
+        presenceService.flush(System.nanoTime() + AFTER_GRACE);
+
+        published(1);
+        assertEquals(0, presenceService.getOnlineCount());
+    }
+}